@@ -1,16 +1,95 @@
 package com.github.owamns.diabetesanalyticsapi.config;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public final class AppConstants {
     private AppConstants() { }
 
     public static final String DATASET_PATH = "input/datos.csv";
 
+    // Columnar copy of the dataset the jobs read instead of the CSV; rebuilt when the CSV changes
+    public static final boolean USE_COLUMNAR_SNAPSHOT = true;
+
+    public static final String COLUMNAR_SNAPSHOT_PATH = "input/datos-columnar";
+
+    // Materialized OLAP cube behind the group-by endpoints; rebuilt when the CSV changes
+    public static final String CUBE_PATH = "input/cubo";
+
+    // Trigram index over the text columns of the CSV, used by busqueda-subtexto; rebuilt when the CSV changes
+    public static final String SEARCH_INDEX_PATH = "input/indice-trigramas";
+
+    // Dataset split by sample month with a min/max date manifest, used by busqueda-fechas; rebuilt when the CSV changes
+    public static final String DATE_PARTITIONS_PATH = "input/datos-por-mes";
+
+    // Partial state per delivery appended to the CSV for the aggregation queries, so a refresh only reads the new bytes
+    public static final boolean USE_INCREMENTAL_AGGREGATION = true;
+
+    public static final String INCREMENTAL_STATE_PATH = "input/estado-incremental";
+
+    // Delivery states kept apart before they are compacted into one
+    public static final int INCREMENTAL_MAX_DELIVERIES = 12;
+
     public static final String HADOOP_OUTPUT_BASE = "output";
 
     public static final String DOWNLOAD_BASE_URL = "files";
 
+    // Upper bound for streaming one ZIP download
+    public static final long DOWNLOAD_TIMEOUT_MINUTES = 60;
+
     public static final int MAX_INLINE_RESULTS = 1000;
 
+    // Default page size of GET /runs/{runId}/results; pages are capped at MAX_INLINE_RESULTS
+    public static final int RESULTS_PAGE_SIZE = 100;
+
+    // Successful job responses kept in memory, least recently used evicted first
+    public static final int RESULT_CACHE_MAX_ENTRIES = 100;
+
+    // Download archive sizes remembered by ETag for resumed downloads, least recently used evicted first
+    public static final int DOWNLOAD_SIZE_CACHE_ENTRIES = 256;
+
+    // Background job execution: jobs running at once, submissions waiting, and how long finished runs stay queryable;
+    // the first two can be overridden with hadoop.jobs.max-concurrent and hadoop.jobs.max-queued
+    public static final int MAX_CONCURRENT_JOBS = 2;
+
+    public static final int MAX_QUEUED_JOBS = 50;
+
+    // Waiting jobs start in this order: interactive searches, then the other queries, then whole-dataset rewrites
+    public static final Set<String> INTERACTIVE_JOBS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("busqueda-subtexto", "busqueda-fechas")));
+
+    public static final Set<String> BATCH_JOBS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("normalizacion-minmax-colesterol", "batch")));
+
+    public static final long RUN_RETENTION_MINUTES = 60;
+
+    // Jobs whose input is at most this many bytes run in-process instead of through the Hadoop local runner; 0 disables it
+    public static final long IN_MEMORY_ENGINE_MAX_INPUT_BYTES = 512L * 1024 * 1024;
+
+    // Serialized map output an in-process job may hold before it is rerun on Hadoop; 0 disables the limit
+    public static final long IN_MEMORY_ENGINE_MAX_MAP_OUTPUT_BYTES = 256L * 1024 * 1024;
+
+    // Accuracy (k) of the quantile sketch behind estadisticas-colesterol; rank error stays below about 1.7 / k
+    public static final int QUANTILE_SKETCH_K = 200;
+
+    // Upper bound for the reducers a request may ask for
+    public static final int MAX_REDUCERS = 64;
+
+    // Upper bound for the topK of a ranked aggregation request
+    public static final int MAX_TOP_K = 10000;
+
+    // Reduce-side join mode of normalizacion-minmax-colesterol: reducers, and bytes of one province's rows buffered before spilling to disk
+    public static final int NORMALIZATION_JOIN_REDUCERS = 4;
+
+    public static final long NORMALIZATION_JOIN_SPILL_BYTES = 64L * 1024 * 1024;
+
+    // Codecs (none, deflate, gzip, bzip2; lz4 and snappy need native Hadoop) for map output and for the part files, unless the request picks others
+    public static final String DEFAULT_MAP_OUTPUT_CODEC = "none";
+
+    public static final String DEFAULT_OUTPUT_CODEC = "none";
+
     // Allowed frontend origin for CORS
     public static final String FRONTEND_ORIGIN = "http://localhost:5173";
 
@@ -0,0 +1,32 @@
+package com.github.owamns.diabetesanalyticsapi.config;
+
+import hadoop.comun.EjecutorJobs;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class JobExecutorConfig {
+
+    public JobExecutorConfig() {
+        EjecutorJobs.setUmbralEnMemoria(AppConstants.IN_MEMORY_ENGINE_MAX_INPUT_BYTES);
+        EjecutorJobs.setLimiteSalidaMapEnMemoria(AppConstants.IN_MEMORY_ENGINE_MAX_MAP_OUTPUT_BYTES);
+    }
+
+    // Fixed number of job slots; JobRunRegistry bounds the queue and only queues tasks that order by priority
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor hadoopJobExecutor(
+            @Value("${hadoop.jobs.max-concurrent:" + AppConstants.MAX_CONCURRENT_JOBS + "}") int maxConcurrentJobs) {
+        return new ThreadPoolExecutor(
+                maxConcurrentJobs,
+                maxConcurrentJobs,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new CustomizableThreadFactory("hadoop-job-"));
+    }
+}
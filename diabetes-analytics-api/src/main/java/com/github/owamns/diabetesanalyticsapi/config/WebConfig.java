@@ -1,10 +1,13 @@
 package com.github.owamns.diabetesanalyticsapi.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     @Override
@@ -13,6 +16,12 @@ public class WebConfig implements WebMvcConfigurer {
                 .addResourceLocations("file:" + AppConstants.HADOOP_OUTPUT_BASE + "/");
     }
 
+    // Streamed downloads run as async requests; the container default (30s on Tomcat) would cut large ZIPs short
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(TimeUnit.MINUTES.toMillis(AppConstants.DOWNLOAD_TIMEOUT_MINUTES));
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
@@ -1,21 +1,41 @@
 package com.github.owamns.diabetesanalyticsapi.controller;
 
 import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import com.github.owamns.diabetesanalyticsapi.dto.BatchJobResponse;
+import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobResponse;
+import com.github.owamns.diabetesanalyticsapi.service.JobRun;
+import com.github.owamns.diabetesanalyticsapi.service.JobRunRegistry;
+import com.github.owamns.diabetesanalyticsapi.service.ResultCache;
+import hadoop.comun.Compresion;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -23,58 +43,230 @@ import java.util.zip.ZipOutputStream;
 @RequestMapping("/api/hadoop")
 public class DownloadController {
 
+    private static final Pattern SINGLE_RANGE = Pattern.compile("^bytes=(\\d+)-(\\d*)$");
+
+    private final ResultCache resultCache;
+    private final JobRunRegistry jobRunRegistry;
+    // Archive sizes by ETag, so each resume of the same archive does not compress it once just to measure it
+    private final Map<String, Long> archiveSizes = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > AppConstants.DOWNLOAD_SIZE_CACHE_ENTRIES;
+                }
+            });
+
+    public DownloadController(ResultCache resultCache, JobRunRegistry jobRunRegistry) {
+        this.resultCache = resultCache;
+        this.jobRunRegistry = jobRunRegistry;
+    }
+
+    /**
+     * Streams the job output as a ZIP written straight to the response, so memory
+     * use does not depend on the output size. The archive is deterministic for a
+     * given directory (sorted entries, file mtimes as entry times), which lets a
+     * single-range request resume an interrupted download: the ZIP is generated
+     * again up to the end of the range and only the requested bytes are sent.
+     * The archive size is measured once per ETag and remembered. Part files written with an
+     * output codec go into the archive decompressed, under their name without
+     * the codec extension. The output directory is deleted once the last byte
+     * of the archive has been sent, unless the result cache still serves it.
+     * The runId is resolved through the run registry, so a run answered from
+     * the cache downloads the directory of the run that wrote it.
+     */
     @GetMapping("/download/{runId}/{jobName}")
-    public ResponseEntity<Resource> downloadJobOutput(
+    public ResponseEntity<StreamingResponseBody> downloadJobOutput(
             @PathVariable String runId,
-            @PathVariable String jobName
+            @PathVariable String jobName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange
     ) {
-        Path dir = Paths.get(AppConstants.HADOOP_OUTPUT_BASE, runId, jobName);
+        Path dir = outputDir(runId, jobName);
         if (!Files.exists(dir) || !Files.isDirectory(dir)) {
             return ResponseEntity.notFound().build();
         }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
-
-            try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
-                paths.filter(Files::isRegularFile)
-                     .forEach(path -> {
-                    try {
-                        ZipEntry entry = new ZipEntry(dir.relativize(path).toString());
-                        zos.putNextEntry(entry);
-                        zos.write(Files.readAllBytes(path));
-                        zos.closeEntry();
-                    } catch (IOException ignored) {}
-                });
-            }
-            // Finish the ZIP stream to write central directory before extracting bytes
-            zos.finish();
-            // Capture ZIP bytes before deleting the directory
-            byte[] zipBytes = baos.toByteArray();
-            // Delete the job output directory and its contents
-            try (java.util.stream.Stream<Path> deletePaths = Files.walk(dir)) {
-                deletePaths.sorted(java.util.Comparator.reverseOrder())
-                           .forEach(pathToDelete -> {
-                               try { Files.delete(pathToDelete); } catch (IOException ignored) {}
-                           });
-            } catch (IOException ignored) {}
-            // Delete the job directory itself
-            try {
-                Files.deleteIfExists(dir);
-            } catch (IOException ignored) {}
-            // Also delete the runId directory if empty
-            try {
-                Files.deleteIfExists(dir.getParent());
-            } catch (IOException ignored) {}
-            // Create resource from ZIP bytes
-            ByteArrayResource resource = new ByteArrayResource(zipBytes);
+        try {
+            List<Path> files = listFiles(dir);
+            String etag = etag(dir, files);
             String filename = jobName + ".zip";
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            headers.setETag(etag);
+
+            Matcher matcher = range == null ? null : SINGLE_RANGE.matcher(range.trim());
+            boolean partial = matcher != null && matcher.matches() && (ifRange == null || ifRange.equals(etag));
+            if (!partial) {
+                // Unknown length up front: sent with chunked transfer encoding
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(out -> {
+                            resultCache.downloadStarted(dir);
+                            boolean complete = false;
+                            try {
+                                writeZip(dir, files, out);
+                                complete = true;
+                            } finally {
+                                resultCache.downloadFinished(dir, complete);
+                            }
+                        });
+            }
+
+            long total = archiveSize(dir, files, etag);
+            long first = Long.parseLong(matcher.group(1));
+            long last = matcher.group(2).isEmpty() ? total - 1 : Math.min(Long.parseLong(matcher.group(2)), total - 1);
+            if (first >= total || first > last) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + total);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + total);
+            headers.setContentLength(last - first + 1);
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(headers)
+                    .body(out -> {
+                        resultCache.downloadStarted(dir);
+                        // only a range that reaches the end of the archive completes the download
+                        boolean complete = false;
+                        try {
+                            writeZip(dir, files, new RangeOutputStream(out, first, last));
+                            complete = true;
+                        } catch (RangeSent e) {
+                            // the rest of the archive is not needed
+                        } finally {
+                            resultCache.downloadFinished(dir, complete);
+                        }
+                    });
         } catch (IOException e) {
             return ResponseEntity.status(500).build();
         }
     }
+
+    // Where the run wrote jobName: a cached response points at an earlier run's directory
+    private Path outputDir(String runId, String jobName) {
+        Optional<JobRun> run = jobRunRegistry.find(runId);
+        HadoopJobResponse response = run.map(JobRun::getResponse).orElse(null);
+        if (response instanceof BatchJobResponse) {
+            response = ((BatchJobResponse) response).getQueries().get(jobName);
+        } else if (response != null && !run.get().getJobName().equals(jobName)) {
+            response = null;
+        }
+        if (response != null && response.getOutputPath() != null) {
+            return Paths.get(response.getOutputPath());
+        }
+        // runs expire from the registry; their outputs stay under their own runId
+        return Paths.get(AppConstants.HADOOP_OUTPUT_BASE, runId, jobName);
+    }
+
+    // Resuming needs the total size, measured by compressing once without keeping the bytes
+    private long archiveSize(Path dir, List<Path> files, String etag) throws IOException {
+        Long known = archiveSizes.get(etag);
+        if (known != null) {
+            return known;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        writeZip(dir, files, counter);
+        archiveSizes.put(etag, counter.count);
+        return counter.count;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Changes whenever a file is added, removed or rewritten, so a stale resume gets the full archive
+    private static String etag(Path dir, List<Path> files) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Path file : files) {
+            sb.append(dir.relativize(file)).append(':')
+              .append(Files.size(file)).append(':')
+              .append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static void writeZip(Path dir, List<Path> files, OutputStream out) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(out);
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            ZipEntry entry = new ZipEntry(dir.relativize(path).resolveSibling(Compresion.sinExtension(name)).toString());
+            entry.setTime(Files.getLastModifiedTime(path).toMillis());
+            zos.putNextEntry(entry);
+            try (InputStream in = Compresion.abrir(name, Files.newInputStream(path))) {
+                copy(in, zos);
+            }
+            zos.closeEntry();
+        }
+        // Finish writes the central directory without closing the servlet stream
+        zos.finish();
+        zos.flush();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    // Thrown at the first write past the range, to stop generating the archive
+    private static final class RangeSent extends IOException {
+    }
+
+    // Passes through only the bytes at positions first..last of what is written to it
+    private static final class RangeOutputStream extends FilterOutputStream {
+        private final long first;
+        private final long last;
+        private long position;
+
+        RangeOutputStream(OutputStream out, long first, long last) {
+            super(out);
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position > last) {
+                throw new RangeSent();
+            }
+            if (position >= first) {
+                out.write(b);
+            }
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (position > last && len > 0) {
+                throw new RangeSent();
+            }
+            long from = Math.max(position, first);
+            long to = Math.min(position + len - 1, last);
+            if (from <= to) {
+                out.write(b, off + (int) (from - position), (int) (to - from + 1));
+            }
+            position += len;
+        }
+    }
 }
@@ -1,18 +1,39 @@
 package com.github.owamns.diabetesanalyticsapi.controller;
 
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import com.github.owamns.diabetesanalyticsapi.dto.BatchJobResponse;
+import com.github.owamns.diabetesanalyticsapi.dto.CubeRollup;
 import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobRequest;
 import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobResponse;
+import com.github.owamns.diabetesanalyticsapi.dto.JobRunStatus;
+import com.github.owamns.diabetesanalyticsapi.dto.ResultPage;
+import com.github.owamns.diabetesanalyticsapi.service.CubeService;
 import com.github.owamns.diabetesanalyticsapi.service.HadoopJobService;
+import com.github.owamns.diabetesanalyticsapi.service.JobRun;
+import com.github.owamns.diabetesanalyticsapi.service.JobRunRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/hadoop")
@@ -20,118 +41,171 @@ import java.util.UUID;
 public class HadoopJobController {
 
     private final HadoopJobService hadoopJobService;
+    private final JobRunRegistry jobRunRegistry;
+    private final CubeService cubeService;
 
-    public HadoopJobController(HadoopJobService hadoopJobService) {
+    public HadoopJobController(HadoopJobService hadoopJobService, JobRunRegistry jobRunRegistry, CubeService cubeService) {
         this.hadoopJobService = hadoopJobService;
+        this.jobRunRegistry = jobRunRegistry;
+        this.cubeService = cubeService;
+    }
+
+    // Queues the job and answers 202 right away (400 for invalid job options); clients poll GET /runs/{runId} for the outcome.
+    // No outputPath yet: a run answered from the cache serves an earlier run's directory, known only once it finishes
+    private ResponseEntity<HadoopJobResponse> submit(String jobName, HadoopJobRequest request,
+                                                     Function<HadoopJobRequest, HadoopJobResponse> job) {
+        Optional<String> invalid = hadoopJobService.invalidJobOptions(request);
+        if (invalid.isPresent()) {
+            return ResponseEntity.badRequest().body(new HadoopJobResponse(false, null, invalid.get()));
+        }
+        String runId = UUID.randomUUID().toString();
+        request.setRunId(runId);
+        JobRun run;
+        try {
+            run = jobRunRegistry.submit(runId, jobName, request, () -> job.apply(request));
+        } catch (RejectedExecutionException e) {
+            HadoopJobResponse rejected = new HadoopJobResponse(false, null, "Job queue is full, try again later.");
+            rejected.setRunId(runId);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(rejected);
+        }
+        // an identical request already in flight hands back its run
+        boolean joined = !run.getRunId().equals(runId);
+        HadoopJobResponse accepted = new HadoopJobResponse(true, null,
+                joined ? "Joined identical run in progress." : "Job accepted.");
+        accepted.setRunId(run.getRunId());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/api/hadoop/runs/" + run.getRunId())
+                .body(accepted);
+    }
+
+    @GetMapping("/runs/{runId}")
+    @Operation(summary = "Get status, progress and result of a submitted job")
+    public ResponseEntity<JobRunStatus> getRun(@PathVariable String runId) {
+        return jobRunRegistry.find(runId)
+                .map(run -> ResponseEntity.ok(run.toStatus()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/runs/{runId}/results")
+    @Operation(summary = "Page through the output of a finished job; batch runs take the query name")
+    public ResponseEntity<ResultPage> getRunResults(@PathVariable String runId,
+                                                    @RequestParam(defaultValue = "0") long offset,
+                                                    @RequestParam(defaultValue = "" + AppConstants.RESULTS_PAGE_SIZE) int limit,
+                                                    @RequestParam(required = false) String query) {
+        Optional<JobRun> run = jobRunRegistry.find(runId);
+        if (!run.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (run.get().getStatus() != JobRun.Status.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        if (offset < 0 || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        HadoopJobResponse response = run.get().getResponse();
+        String jobName = run.get().getJobName();
+        if (response instanceof BatchJobResponse) {
+            response = query == null ? null : ((BatchJobResponse) response).getQueries().get(query);
+            if (response == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            jobName = query;
+        }
+        try {
+            ResultPage page = hadoopJobService.readResults(response.getOutputPath(), jobName, offset,
+                    Math.min(limit, AppConstants.MAX_INLINE_RESULTS));
+            page.setRunId(runId);
+            return ResponseEntity.ok(page);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/cube")
+    @Operation(summary = "Roll up the in-memory cube by any dimensions; other parameters filter by dimension value")
+    public ResponseEntity<CubeRollup> rollupCube(@RequestParam(required = false) List<String> groupBy,
+                                                 @RequestParam Map<String, String> params) {
+        Map<String, String> filters = new HashMap<>(params);
+        filters.remove("groupBy");
+        try {
+            return cubeService.rollup(groupBy == null ? Collections.emptyList() : groupBy, filters)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PostMapping("/edad-promedio")
     @Operation(summary = "Run average age by diagnosis job")
     public ResponseEntity<HadoopJobResponse> runEdadPromedio(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runEdadPromedio(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("edad-promedio", request, hadoopJobService::runEdadPromedio);
     }
 
     @PostMapping("/pacientes-depto-sexo")
     @Operation(summary = "Run patients count by department and sex job")
     public ResponseEntity<HadoopJobResponse> runPacientesPorDeptoSexo(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runPacientesPorDeptoSexo(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("pacientes-depto-sexo", request, hadoopJobService::runPacientesPorDeptoSexo);
     }
 
     @PostMapping("/procedimientos-area-servicio")
     @Operation(summary = "Run procedures count by area and service job")
     public ResponseEntity<HadoopJobResponse> runProcedimientosPorAreaServicio(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runProcedimientosPorAreaServicio(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("procedimientos-area-servicio", request, hadoopJobService::runProcedimientosPorAreaServicio);
     }
 
     @PostMapping("/estadisticas-colesterol")
     @Operation(summary = "Run cholesterol descriptive statistics job")
     public ResponseEntity<HadoopJobResponse> runEstadisticasColesterol(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runEstadisticasColesterol(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("estadisticas-colesterol", request, hadoopJobService::runEstadisticasColesterol);
     }
 
     @PostMapping("/busqueda-subtexto")
     @Operation(summary = "Run substring search job")
     public ResponseEntity<HadoopJobResponse> runBusquedaSubtexto(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runBusquedaSubtexto(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("busqueda-subtexto", request, hadoopJobService::runBusquedaSubtexto);
     }
 
     @PostMapping("/busqueda-fechas")
     @Operation(summary = "Run date range search job")
     public ResponseEntity<HadoopJobResponse> runBusquedaPorFechas(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runBusquedaPorFechas(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("busqueda-fechas", request, hadoopJobService::runBusquedaPorFechas);
     }
 
     @PostMapping("/min-max-colesterol")
     @Operation(summary = "Run min-max cholesterol by department job")
     public ResponseEntity<HadoopJobResponse> runMinMaxColesterol(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runMinMaxColesterol(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("min-max-colesterol", request, hadoopJobService::runMinMaxColesterol);
     }
 
     @PostMapping("/glucosa-sobre-promedio")
     @Operation(summary = "Run glucose above national average job")
     public ResponseEntity<HadoopJobResponse> runGlucosaSobrePromedio(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runGlucosaSobrePromedio(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("glucosa-sobre-promedio", request, hadoopJobService::runGlucosaSobrePromedio);
     }
 
     @PostMapping("/clasificacion-riesgo")
     @Operation(summary = "Run cardiovascular risk classification job")
     public ResponseEntity<HadoopJobResponse> runClasificacionRiesgo(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runClasificacionRiesgo(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("clasificacion-riesgo", request, hadoopJobService::runClasificacionRiesgo);
     }
 
     @PostMapping("/prediccion-reingreso")
     @Operation(summary = "Run simple readmission prediction job")
     public ResponseEntity<HadoopJobResponse> runPrediccionReingreso(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runPrediccionReingreso(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("prediccion-reingreso", request, hadoopJobService::runPrediccionReingreso);
     }
 
     @PostMapping("/normalizacion-minmax-colesterol")
     @Operation(summary = "Run min-max normalization of cholesterol by province job")
     public ResponseEntity<HadoopJobResponse> runNormalizacionMinMax(@Valid @RequestBody HadoopJobRequest request) {
-        String runId = UUID.randomUUID().toString();
-        request.setRunId(runId);
-        HadoopJobResponse response = hadoopJobService.runNormalizacionMinMax(request);
-        response.setRunId(runId);
-        return ResponseEntity.ok(response);
+        return submit("normalizacion-minmax-colesterol", request, hadoopJobService::runNormalizacionMinMax);
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Run several queries over a single scan of the dataset")
+    public ResponseEntity<HadoopJobResponse> runBatch(@Valid @RequestBody HadoopJobRequest request) {
+        // every query writes to its own output/<runId>/<query> directory
+        return submit("batch", request, hadoopJobService::runBatch);
     }
 }
@@ -0,0 +1,23 @@
+package com.github.owamns.diabetesanalyticsapi.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class BatchJobResponse extends HadoopJobResponse {
+    // Per-query results, keyed by endpoint name, in the order they were requested
+    private Map<String, HadoopJobResponse> queries = new LinkedHashMap<>();
+
+    public BatchJobResponse() {}
+
+    public BatchJobResponse(boolean success, String outputPath, String message) {
+        super(success, outputPath, message);
+    }
+
+    public Map<String, HadoopJobResponse> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(Map<String, HadoopJobResponse> queries) {
+        this.queries = queries;
+    }
+}
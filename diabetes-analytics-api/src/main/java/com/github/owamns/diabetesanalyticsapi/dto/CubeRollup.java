@@ -0,0 +1,28 @@
+package com.github.owamns.diabetesanalyticsapi.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A roll-up of the in-memory cube: grouped dimensions first, then the measures, one array per group
+public class CubeRollup {
+    private String[] columns;
+    private List<Object[]> rows = new ArrayList<>();
+
+    public CubeRollup() {}
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public void setColumns(String[] columns) {
+        this.columns = columns;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Object[]> rows) {
+        this.rows = rows;
+    }
+}
@@ -2,12 +2,22 @@ package com.github.owamns.diabetesanalyticsapi.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.List;
+
 @JsonIgnoreProperties({"runId"})
 public class HadoopJobRequest {
     private String runId;
     private String searchTerm;
     private String startDate;
     private String endDate;
+    private boolean exactMedian;
+    private boolean reduceSideJoin;
+    private Integer reducers;
+    private String mapOutputCodec;
+    private String outputCodec;
+    private Integer topK;
+    private String orderBy;
+    private List<String> queries;
 
     public HadoopJobRequest() {}
 
@@ -46,4 +56,68 @@ public class HadoopJobRequest {
     public void setEndDate(String endDate) {
         this.endDate = endDate;
     }
+
+    public boolean isExactMedian() {
+        return exactMedian;
+    }
+
+    public void setExactMedian(boolean exactMedian) {
+        this.exactMedian = exactMedian;
+    }
+
+    public boolean isReduceSideJoin() {
+        return reduceSideJoin;
+    }
+
+    public void setReduceSideJoin(boolean reduceSideJoin) {
+        this.reduceSideJoin = reduceSideJoin;
+    }
+
+    public Integer getReducers() {
+        return reducers;
+    }
+
+    public void setReducers(Integer reducers) {
+        this.reducers = reducers;
+    }
+
+    public String getMapOutputCodec() {
+        return mapOutputCodec;
+    }
+
+    public void setMapOutputCodec(String mapOutputCodec) {
+        this.mapOutputCodec = mapOutputCodec;
+    }
+
+    public String getOutputCodec() {
+        return outputCodec;
+    }
+
+    public void setOutputCodec(String outputCodec) {
+        this.outputCodec = outputCodec;
+    }
+
+    public Integer getTopK() {
+        return topK;
+    }
+
+    public void setTopK(Integer topK) {
+        this.topK = topK;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public void setOrderBy(String orderBy) {
+        this.orderBy = orderBy;
+    }
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<String> queries) {
+        this.queries = queries;
+    }
 }
@@ -10,6 +10,7 @@ public class HadoopJobResponse {
     private List<Object> results = new ArrayList<>();
     private String downloadUrl;
     private String runId;
+    private List<JobMetrics> metrics = new ArrayList<>();
 
     public HadoopJobResponse() {}
 
@@ -66,4 +67,12 @@ public class HadoopJobResponse {
     public void setRunId(String runId) {
         this.runId = runId;
     }
+
+    public List<JobMetrics> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(List<JobMetrics> metrics) {
+        this.metrics = metrics;
+    }
 }
@@ -0,0 +1,129 @@
+package com.github.owamns.diabetesanalyticsapi.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Counters and timings of one Hadoop job of a run; phase times are null when the engine does not report them
+public class JobMetrics {
+    private String job;
+    private String engine;
+    private boolean success;
+    private long durationMs;
+    private Long mapMs;
+    private Long reduceMs;
+    private long rowsRead;
+    private long rowsEmitted;
+    private long rowsMalformed;
+    private long shuffleBytes;
+    // Batch runs only: rows emitted and malformed per query
+    private Map<String, Long> emittedByQuery = new LinkedHashMap<>();
+    private Map<String, Long> malformedByQuery = new LinkedHashMap<>();
+    // Every counter of the job, by group and name
+    private Map<String, Map<String, Long>> counters = new LinkedHashMap<>();
+
+    public JobMetrics() {}
+
+    public String getJob() {
+        return job;
+    }
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public Long getMapMs() {
+        return mapMs;
+    }
+
+    public void setMapMs(Long mapMs) {
+        this.mapMs = mapMs;
+    }
+
+    public Long getReduceMs() {
+        return reduceMs;
+    }
+
+    public void setReduceMs(Long reduceMs) {
+        this.reduceMs = reduceMs;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getRowsEmitted() {
+        return rowsEmitted;
+    }
+
+    public void setRowsEmitted(long rowsEmitted) {
+        this.rowsEmitted = rowsEmitted;
+    }
+
+    public long getRowsMalformed() {
+        return rowsMalformed;
+    }
+
+    public void setRowsMalformed(long rowsMalformed) {
+        this.rowsMalformed = rowsMalformed;
+    }
+
+    public long getShuffleBytes() {
+        return shuffleBytes;
+    }
+
+    public void setShuffleBytes(long shuffleBytes) {
+        this.shuffleBytes = shuffleBytes;
+    }
+
+    public Map<String, Long> getEmittedByQuery() {
+        return emittedByQuery;
+    }
+
+    public void setEmittedByQuery(Map<String, Long> emittedByQuery) {
+        this.emittedByQuery = emittedByQuery;
+    }
+
+    public Map<String, Long> getMalformedByQuery() {
+        return malformedByQuery;
+    }
+
+    public void setMalformedByQuery(Map<String, Long> malformedByQuery) {
+        this.malformedByQuery = malformedByQuery;
+    }
+
+    public Map<String, Map<String, Long>> getCounters() {
+        return counters;
+    }
+
+    public void setCounters(Map<String, Map<String, Long>> counters) {
+        this.counters = counters;
+    }
+}
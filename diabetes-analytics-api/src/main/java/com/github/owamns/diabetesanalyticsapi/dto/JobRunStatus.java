@@ -0,0 +1,105 @@
+package com.github.owamns.diabetesanalyticsapi.dto;
+
+public class JobRunStatus {
+    private String runId;
+    private String jobName;
+    private String status;
+    private String priority;
+    private int stage;
+    private float mapProgress;
+    private float reduceProgress;
+    private long submittedAt;
+    private Long startedAt;
+    private Long finishedAt;
+    private HadoopJobResponse response;
+
+    public JobRunStatus() {}
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    public int getStage() {
+        return stage;
+    }
+
+    public void setStage(int stage) {
+        this.stage = stage;
+    }
+
+    public float getMapProgress() {
+        return mapProgress;
+    }
+
+    public void setMapProgress(float mapProgress) {
+        this.mapProgress = mapProgress;
+    }
+
+    public float getReduceProgress() {
+        return reduceProgress;
+    }
+
+    public void setReduceProgress(float reduceProgress) {
+        this.reduceProgress = reduceProgress;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(long submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public HadoopJobResponse getResponse() {
+        return response;
+    }
+
+    public void setResponse(HadoopJobResponse response) {
+        this.response = response;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.owamns.diabetesanalyticsapi.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One page of a run's output: column names once, then each row as an array of values in that order
+public class ResultPage {
+    private String runId;
+    private String jobName;
+    private long offset;
+    private int limit;
+    private boolean hasMore;
+    private String[] columns;
+    private List<Object[]> rows = new ArrayList<>();
+
+    public ResultPage() {}
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public void setColumns(String[] columns) {
+        this.columns = columns;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Object[]> rows) {
+        this.rows = rows;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import com.github.owamns.diabetesanalyticsapi.dto.CubeRollup;
+import hadoop.comun.Compresion;
+import hadoop.comun.MejoresK;
+import hadoop.cubo.CeldaCubo;
+import hadoop.cubo.Cubo;
+import hadoop.cubo.MaterializacionCubo;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the OLAP cube of the dataset in memory, materialized with
+ * MaterializacionCubo (see DerivedDatasetService for when it is rebuilt).
+ */
+@Service
+public class CubeService extends DerivedDatasetService<Cubo> {
+
+    private static final String[] MEASURES = {
+            "patients", "procedures", "averageAge", "ageCount", "minResult", "maxResult", "resultCount"
+    };
+
+    private final DatasetSnapshotService datasetSnapshotService;
+
+    public CubeService(DatasetSnapshotService datasetSnapshotService) {
+        super(AppConstants.CUBE_PATH, "cube-refresh-");
+        this.datasetSnapshotService = datasetSnapshotService;
+    }
+
+    @Override
+    protected boolean build(String outputPath) throws Exception {
+        return MaterializacionCubo.runJob(datasetSnapshotService.inputPath(), outputPath);
+    }
+
+    @Override
+    protected Cubo load(String path) throws IOException {
+        return Cubo.cargar(new Configuration(), new org.apache.hadoop.fs.Path(path));
+    }
+
+    /**
+     * Writes the output of a hadoop.q* job answered from the cube into
+     * outputPath, laid out like the job's own (part-r-00000 with the
+     * extension of outputCodec, and _SUCCESS). With a ranking, only the
+     * groups it selects are written, in its order. Returns false when the
+     * job is not covered or the cube is not ready.
+     */
+    public boolean writeJobOutput(String jobName, String outputPath, MejoresK ranking, String outputCodec)
+            throws IOException {
+        if (!Cubo.responde(jobName)) {
+            return false;
+        }
+        Optional<Cubo> cube = current();
+        if (!cube.isPresent()) {
+            return false;
+        }
+        Path dir = Paths.get(outputPath);
+        Files.createDirectories(dir);
+        CompressionCodec codec = Compresion.crear(outputCodec);
+        OutputStream file = new BufferedOutputStream(Files.newOutputStream(
+                dir.resolve(codec == null ? "part-r-00000" : "part-r-00000" + codec.getDefaultExtension())));
+        if (codec != null) {
+            file = codec.createOutputStream(file);
+        }
+        try (OutputStream out = ranking == null ? file : ranking.filtrar(file)) {
+            cube.get().escribirSalida(jobName, out);
+        }
+        Files.createFile(dir.resolve("_SUCCESS"));
+        return true;
+    }
+
+    /**
+     * Roll-up of the cube by the given dimensions, restricted to the cells
+     * whose dimensions equal the filters. Empty when the cube is not ready;
+     * IllegalArgumentException for unknown dimensions.
+     */
+    public Optional<CubeRollup> rollup(List<String> groupBy, Map<String, String> filters) {
+        int[] dimensions = new int[groupBy.size()];
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = dimensionIndex(groupBy.get(i));
+        }
+        Map<Integer, String> filterCodes = new HashMap<>();
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            filterCodes.put(dimensionIndex(filter.getKey()), filter.getValue());
+        }
+        Optional<Cubo> cube = current();
+        if (!cube.isPresent()) {
+            return Optional.empty();
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Cubo.Grupo group : cube.get().agrupar(dimensions, filterCodes)) {
+            Object[] row = new Object[dimensions.length + MEASURES.length];
+            for (int i = 0; i < dimensions.length; i++) {
+                row[i] = group.valor(i);
+            }
+            CeldaCubo m = group.getMedidas();
+            int i = dimensions.length;
+            row[i++] = m.getFilas();
+            row[i++] = m.getProcedimientos();
+            row[i++] = m.getCantidadEdad() > 0 ? m.promedioEdad() : null;
+            row[i++] = m.getCantidadEdad();
+            row[i++] = m.getCantidadResultado() > 0 ? m.getMinResultado() : null;
+            row[i++] = m.getCantidadResultado() > 0 ? m.getMaxResultado() : null;
+            row[i] = m.getCantidadResultado();
+            rows.add(row);
+        }
+        String[] columns = new String[dimensions.length + MEASURES.length];
+        for (int i = 0; i < dimensions.length; i++) {
+            columns[i] = groupBy.get(i);
+        }
+        System.arraycopy(MEASURES, 0, columns, dimensions.length, MEASURES.length);
+        CubeRollup rollup = new CubeRollup();
+        rollup.setColumns(columns);
+        rollup.setRows(rows);
+        return Optional.of(rollup);
+    }
+
+    private static int dimensionIndex(String name) {
+        int index = Cubo.dimension(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown cube dimension: " + name);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import hadoop.columnar.ConversionColumnar;
+import org.springframework.stereotype.Service;
+
+/**
+ * Columnar copy of the dataset written by ConversionColumnar (see
+ * DerivedDatasetService for when it is converted again).
+ */
+@Service
+public class DatasetSnapshotService extends DerivedDatasetService<String> {
+
+    public DatasetSnapshotService() {
+        super(AppConstants.COLUMNAR_SNAPSHOT_PATH, "columnar-snapshot-refresh-");
+    }
+
+    @Override
+    protected boolean enabled() {
+        return AppConstants.USE_COLUMNAR_SNAPSHOT;
+    }
+
+    @Override
+    protected boolean build(String outputPath) throws Exception {
+        return ConversionColumnar.runJob(AppConstants.DATASET_PATH, outputPath);
+    }
+
+    @Override
+    protected String load(String path) {
+        return path;
+    }
+
+    /**
+     * Input path for the jobs: the columnar snapshot of the dataset when it is
+     * up to date with the CSV, otherwise the CSV itself while the snapshot is
+     * converted in the background.
+     */
+    public String inputPath() {
+        if (!AppConstants.USE_COLUMNAR_SNAPSHOT) {
+            return AppConstants.DATASET_PATH;
+        }
+        return current().orElse(AppConstants.DATASET_PATH);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import hadoop.q4_busqueda_rango_fechas.BusquedaPorFechas;
+import hadoop.q4_busqueda_rango_fechas.ParticionPorMes;
+import hadoop.q4_busqueda_rango_fechas.Particiones;
+import org.apache.hadoop.conf.Configuration;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Copy of the dataset split by sample month with ParticionPorMes, so date
+ * searches only read the months they overlap (see DerivedDatasetService for
+ * when it is rebuilt).
+ */
+@Service
+public class DatePartitionService extends DerivedDatasetService<Particiones> {
+
+    public DatePartitionService() {
+        super(AppConstants.DATE_PARTITIONS_PATH, "date-partitions-refresh-");
+    }
+
+    @Override
+    protected boolean build(String outputPath) throws Exception {
+        return ParticionPorMes.runJob(AppConstants.DATASET_PATH, outputPath);
+    }
+
+    @Override
+    protected Particiones load(String path) throws IOException {
+        return Particiones.cargar(new Configuration(), new org.apache.hadoop.fs.Path(path));
+    }
+
+    // The partitions when they let a search over [startDate, endDate] skip part of the dataset
+    public Optional<Particiones> forRange(String startDate, String endDate) {
+        Optional<Particiones> partitions = current();
+        if (!partitions.isPresent()) {
+            return Optional.empty();
+        }
+        int overlapping = partitions.get().solapadas(BusquedaPorFechas.fechaNumerica(startDate),
+                BusquedaPorFechas.fechaNumerica(endDate)).size();
+        return overlapping < partitions.get().cantidad() ? partitions : Optional.empty();
+    }
+}
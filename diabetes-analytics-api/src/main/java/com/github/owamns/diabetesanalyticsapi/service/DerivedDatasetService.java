@@ -0,0 +1,209 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import hadoop.comun.EjecutorJobs;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A structure derived from the dataset by a job (the columnar snapshot, the
+ * cube, the search index, the date partitions) and kept next to it on disk.
+ * It is loaded (or built first) when the application starts and rebuilt in the
+ * background once the CSV's size or modification time differs from the ones
+ * recorded before the build started (rows appended while a build runs leave it
+ * stale); until then callers get nothing and fall back to MapReduce. Each build is published as a new version directory
+ * (path/v<millis>) by an atomic rename, and the version before it is kept, so
+ * jobs still reading the previous one are not left without their files.
+ */
+public abstract class DerivedDatasetService<T> {
+
+    private static final String VERSION_PREFIX = "v";
+    private static final String BUILD_PREFIX = "_build-";
+    // Stamp of the CSV a version was built from; the leading _ keeps it out of the jobs' input
+    private static final String DATASET_STAMP = "_DATASET";
+
+    private final String path;
+    private final ExecutorService refresher;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Loaded<T> loaded;
+
+    protected DerivedDatasetService(String path, String threadNamePrefix) {
+        this.path = path;
+        this.refresher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(threadNamePrefix));
+    }
+
+    private static final class Loaded<T> {
+        private final T value;
+        private final String builtFrom;
+
+        Loaded(T value, String builtFrom) {
+            this.value = value;
+            this.builtFrom = builtFrom;
+        }
+    }
+
+    // Runs the job that writes the structure into outputPath
+    protected abstract boolean build(String outputPath) throws Exception;
+
+    // Reads the structure written by build()
+    protected abstract T load(String path) throws IOException;
+
+    // False turns the structure off: nothing is built and current() stays empty
+    protected boolean enabled() {
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        refreshInBackground();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // The structure when it is up to date with the dataset; otherwise a refresh is started and nothing is returned
+    public Optional<T> current() {
+        Loaded<T> current = loaded;
+        if (current != null && !isStale(current.builtFrom)) {
+            return Optional.of(current.value);
+        }
+        refreshInBackground();
+        return Optional.empty();
+    }
+
+    private void refreshInBackground() {
+        if (!enabled() || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    // keep answering through MapReduce
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+        }
+    }
+
+    // Loads the latest version on disk, building a new one first when it is missing or stale
+    private void refresh() throws Exception {
+        if (!Files.exists(Paths.get(AppConstants.DATASET_PATH))) {
+            return;
+        }
+        List<Path> versions = versions();
+        Path latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        String builtFrom = latest == null ? null : readStamp(latest);
+        if (isStale(builtFrom)) {
+            builtFrom = datasetStamp();
+            latest = rebuild(builtFrom);
+            if (latest == null) {
+                return;
+            }
+        }
+        loaded = new Loaded<>(load(latest.toString()), builtFrom);
+    }
+
+    // Builds into a private directory and renames it into place, so a failed run leaves the published versions alone
+    private Path rebuild(String builtFrom) throws Exception {
+        String version = String.valueOf(System.currentTimeMillis());
+        Path root = Paths.get(path);
+        Path tmp = root.resolve(BUILD_PREFIX + version);
+        Path target = root.resolve(VERSION_PREFIX + version);
+        FileSystemUtils.deleteRecursively(tmp);
+        Files.createDirectories(root);
+        // The structure is shared by every request: build it with the default job options
+        EjecutorJobs.limpiarObservador();
+        EjecutorJobs.limpiarReductores();
+        EjecutorJobs.limpiarCompresion();
+        if (!build(tmp.toString())) {
+            FileSystemUtils.deleteRecursively(tmp);
+            return null;
+        }
+        Files.write(tmp.resolve(DATASET_STAMP), builtFrom.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        deleteOldVersions(target);
+        return target;
+    }
+
+    // Complete versions, oldest first
+    private List<Path> versions() throws IOException {
+        Path root = Paths.get(path);
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> children = Files.list(root)) {
+            return children
+                    .filter(child -> isVersion(child) && Files.exists(child.resolve("_SUCCESS")))
+                    .sorted((a, b) -> Long.compare(versionNumber(a), versionNumber(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Keeps the new version and the one before it; the rest (older builds, leftovers of failed ones) goes
+    private void deleteOldVersions(Path published) throws IOException {
+        List<Path> versions = versions();
+        int keepFrom = Math.max(0, versions.indexOf(published) - 1);
+        List<Path> keep = versions.subList(keepFrom, versions.size());
+        List<Path> stale;
+        try (Stream<Path> children = Files.list(Paths.get(path))) {
+            stale = children.filter(child -> !keep.contains(child)).collect(Collectors.toList());
+        }
+        for (Path child : stale) {
+            FileSystemUtils.deleteRecursively(child);
+        }
+    }
+
+    private static boolean isVersion(Path child) {
+        String name = child.getFileName().toString();
+        return name.startsWith(VERSION_PREFIX) && name.substring(VERSION_PREFIX.length()).matches("\\d+");
+    }
+
+    private static long versionNumber(Path version) {
+        return Long.parseLong(version.getFileName().toString().substring(VERSION_PREFIX.length()));
+    }
+
+    // Size and modification time of the CSV; any change, including an append within the same tick, makes a version stale
+    private static String datasetStamp() throws IOException {
+        Path dataset = Paths.get(AppConstants.DATASET_PATH);
+        return Files.size(dataset) + " " + Files.getLastModifiedTime(dataset);
+    }
+
+    // Null for versions written before stamps were recorded, which are rebuilt
+    private static String readStamp(Path version) throws IOException {
+        Path stamp = version.resolve(DATASET_STAMP);
+        return Files.exists(stamp) ? new String(Files.readAllBytes(stamp), StandardCharsets.UTF_8) : null;
+    }
+
+    private static boolean isStale(String builtFrom) {
+        try {
+            return builtFrom == null || !builtFrom.equals(datasetStamp());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.github.owamns.diabetesanalyticsapi.service;
 
+import com.github.owamns.diabetesanalyticsapi.dto.BatchJobResponse;
 import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobRequest;
 import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobResponse;
+import com.github.owamns.diabetesanalyticsapi.dto.ResultPage;
+import hadoop.comun.Compresion;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.MejoresK;
+import hadoop.multiconsulta.EscaneoMultiConsulta;
 import hadoop.q1_consultas_multiples_campos.EdadPromedioPorDiagnostico;
 import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
 import hadoop.q1_consultas_multiples_campos.ProcedimientosPorAreaServicio;
 import hadoop.q2_estadisticas_descriptivas.EstadisticasColesterol;
 import hadoop.q3_busqueda_subtexto.BusquedaSubtexto;
 import hadoop.q4_busqueda_rango_fechas.BusquedaPorFechas;
+import hadoop.q4_busqueda_rango_fechas.Particiones;
 import hadoop.q5_valores_extremos.MinMaxColesterolPorDepto;
 import hadoop.q6_jobs_encadenados.GlucosaSobrePromedioNacional;
 import hadoop.q6_jobs_encadenados.NormalizacionMinMaxColesterol;
@@ -17,27 +24,131 @@ import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import com.github.owamns.diabetesanalyticsapi.service.ResultParser;
 
 @Service
 public class HadoopJobService {
 
-    // Helper to read output files (part-*) and collect lines
-    private List<String> readJobOutput(String outputPath) throws IOException {
-        List<String> results = new ArrayList<>();
-        Path dir = Paths.get(outputPath);
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "part-*") ) {
-            for (Path file : stream) {
-                results.addAll(Files.readAllLines(file));
-            }
+    private static final String CUBE_MESSAGE = "Served from cube.";
+    private static final String SEARCH_INDEX_MESSAGE = "Served from search index.";
+    private static final String INCREMENTAL_MESSAGE = "Served from incremental state.";
+
+    // orderBy values of the aggregation endpoints: largest value first, or ascending key
+    private static final String ORDER_BY_VALUE = "value";
+    private static final String ORDER_BY_KEY = "key";
+
+    private final DatasetSnapshotService datasetSnapshotService;
+    private final ResultCache resultCache;
+    private final CubeService cubeService;
+    private final SearchIndexService searchIndexService;
+    private final DatePartitionService datePartitionService;
+    private final IncrementalAggregationService incrementalAggregationService;
+
+    public HadoopJobService(DatasetSnapshotService datasetSnapshotService, ResultCache resultCache,
+                            CubeService cubeService, SearchIndexService searchIndexService,
+                            DatePartitionService datePartitionService,
+                            IncrementalAggregationService incrementalAggregationService) {
+        this.datasetSnapshotService = datasetSnapshotService;
+        this.resultCache = resultCache;
+        this.cubeService = cubeService;
+        this.searchIndexService = searchIndexService;
+        this.datePartitionService = datePartitionService;
+        this.incrementalAggregationService = incrementalAggregationService;
+    }
+
+    // Parses the first MAX_INLINE_RESULTS rows of the job output inline, with a download link when there are more
+    private void attachResults(HadoopJobResponse response, String outputPath, String jobName) throws IOException {
+        ResultParser.RowFormat format = ResultParser.forJob(jobName);
+        JobOutputReader.Window window = JobOutputReader.read(Paths.get(outputPath), format, 0, AppConstants.MAX_INLINE_RESULTS);
+        List<Object> results = new ArrayList<>(window.getRows().size());
+        for (Object[] row : window.getRows()) {
+            results.add(format.toMap(row));
         }
-        return results;
+        response.setResults(results);
+        if (window.hasMore()) {
+            response.setDownloadUrl(buildDownloadUrl(outputPath));
+        }
+    }
+
+    /**
+     * One page of a finished job's output, read straight from its part files.
+     * Only the rows up to offset + limit are read.
+     */
+    public ResultPage readResults(String outputPath, String jobName, long offset, int limit) throws IOException {
+        ResultParser.RowFormat format = ResultParser.forJob(jobName);
+        JobOutputReader.Window window = JobOutputReader.read(Paths.get(outputPath), format, offset, limit);
+        ResultPage page = new ResultPage();
+        page.setJobName(jobName);
+        page.setOffset(offset);
+        page.setLimit(limit);
+        page.setColumns(format.getColumns());
+        page.setRows(window.getRows());
+        page.setHasMore(window.hasMore());
+        return page;
+    }
+
+    /**
+     * Why the request's job options (reducers, topK, orderBy and codecs) cannot
+     * be used, or empty when they can. Checked before the run is queued.
+     */
+    public Optional<String> invalidJobOptions(HadoopJobRequest request) {
+        Integer reducers = request.getReducers();
+        if (reducers != null && (reducers < 1 || reducers > AppConstants.MAX_REDUCERS)) {
+            return Optional.of("reducers must be between 1 and " + AppConstants.MAX_REDUCERS + ".");
+        }
+        Integer topK = request.getTopK();
+        if (topK != null && (topK < 1 || topK > AppConstants.MAX_TOP_K)) {
+            return Optional.of("topK must be between 1 and " + AppConstants.MAX_TOP_K + ".");
+        }
+        if (request.getOrderBy() != null && !ORDER_BY_VALUE.equals(request.getOrderBy())
+                && !ORDER_BY_KEY.equals(request.getOrderBy())) {
+            return Optional.of("orderBy must be " + ORDER_BY_VALUE + " or " + ORDER_BY_KEY + ".");
+        }
+        try {
+            compression(request);
+        } catch (IllegalArgumentException e) {
+            return Optional.of("mapOutputCodec and outputCodec must be one of "
+                    + Compresion.nombres() + "; lz4 and snappy, and gzip as mapOutputCodec, need the native Hadoop library.");
+        }
+        return Optional.empty();
+    }
+
+    private static Compresion compression(HadoopJobRequest request) {
+        return new Compresion(
+                Optional.ofNullable(request.getMapOutputCodec()).orElse(AppConstants.DEFAULT_MAP_OUTPUT_CODEC),
+                outputCodec(request));
+    }
+
+    // The cube and the search index write their part file themselves, compressed with this codec like a job's
+    private static String outputCodec(HadoopJobRequest request) {
+        return Optional.ofNullable(request.getOutputCodec()).orElse(AppConstants.DEFAULT_OUTPUT_CODEC);
+    }
+
+    // Applies the request's reducer count and codecs, already checked by invalidJobOptions, to the jobs submitted while running it (see EjecutorJobs)
+    private HadoopJobResponse withJobOptions(HadoopJobRequest request, Supplier<HadoopJobResponse> job) {
+        if (request.getReducers() != null) {
+            EjecutorJobs.setReductores(request.getReducers());
+        }
+        EjecutorJobs.setCompresion(compression(request));
+        try {
+            return job.get();
+        } finally {
+            EjecutorJobs.limpiarReductores();
+            EjecutorJobs.limpiarCompresion();
+        }
+    }
+
+    // Groups kept and their order for the aggregation endpoints; null keeps the job's own output
+    private static MejoresK ranking(HadoopJobRequest request) {
+        if (request.getTopK() == null && request.getOrderBy() == null) {
+            return null;
+        }
+        return new MejoresK(Optional.ofNullable(request.getTopK()).orElse(0), ORDER_BY_KEY.equals(request.getOrderBy()));
     }
 
     // add helper
@@ -50,21 +161,21 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runEdadPromedio(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("edad-promedio", request, () -> executeEdadPromedio(request)));
+    }
+
+    private HadoopJobResponse executeEdadPromedio(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/edad-promedio";
-            boolean success = EdadPromedioPorDiagnostico.runJob(inputPath, outputPath);
-            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            MejoresK ranking = ranking(request);
+            boolean fromCube = cubeService.writeJobOutput("edad-promedio", outputPath, ranking, outputCodec(request));
+            boolean fromState = !fromCube && incrementalAggregationService.writeJobOutput("edad-promedio", outputPath, ranking);
+            boolean success = fromCube || fromState || EdadPromedioPorDiagnostico.runJob(datasetSnapshotService.inputPath(), outputPath, ranking);
+            String msg = !success ? "Job failed to complete."
+                    : fromCube ? CUBE_MESSAGE : fromState ? INCREMENTAL_MESSAGE : "Job completed successfully.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseEdadPromedio(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "edad-promedio");
             }
             return response;
         } catch (Exception e) {
@@ -74,21 +185,21 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runPacientesPorDeptoSexo(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("pacientes-depto-sexo", request, () -> executePacientesPorDeptoSexo(request)));
+    }
+
+    private HadoopJobResponse executePacientesPorDeptoSexo(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/pacientes-depto-sexo";
-            boolean success = PacientesPorDeptoSexo.runJob(inputPath, outputPath);
-            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            MejoresK ranking = ranking(request);
+            boolean fromCube = cubeService.writeJobOutput("pacientes-depto-sexo", outputPath, ranking, outputCodec(request));
+            boolean fromState = !fromCube && incrementalAggregationService.writeJobOutput("pacientes-depto-sexo", outputPath, ranking);
+            boolean success = fromCube || fromState || PacientesPorDeptoSexo.runJob(datasetSnapshotService.inputPath(), outputPath, ranking);
+            String msg = !success ? "Job failed to complete."
+                    : fromCube ? CUBE_MESSAGE : fromState ? INCREMENTAL_MESSAGE : "Job completed successfully.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parsePacientesPorDeptoSexo(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "pacientes-depto-sexo");
             }
             return response;
         } catch (Exception e) {
@@ -98,21 +209,22 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runProcedimientosPorAreaServicio(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("procedimientos-area-servicio", request, () -> executeProcedimientosPorAreaServicio(request)));
+    }
+
+    private HadoopJobResponse executeProcedimientosPorAreaServicio(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/procedimientos-area-servicio";
-            boolean success = ProcedimientosPorAreaServicio.runJob(inputPath, outputPath);
-            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            MejoresK ranking = ranking(request);
+            boolean fromCube = cubeService.writeJobOutput("procedimientos-area-servicio", outputPath, ranking,
+                    outputCodec(request));
+            boolean fromState = !fromCube && incrementalAggregationService.writeJobOutput("procedimientos-area-servicio", outputPath, ranking);
+            boolean success = fromCube || fromState || ProcedimientosPorAreaServicio.runJob(datasetSnapshotService.inputPath(), outputPath, ranking);
+            String msg = !success ? "Job failed to complete."
+                    : fromCube ? CUBE_MESSAGE : fromState ? INCREMENTAL_MESSAGE : "Job completed successfully.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseProcedimientosAreaServicio(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "procedimientos-area-servicio");
             }
             return response;
         } catch (Exception e) {
@@ -122,21 +234,19 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runEstadisticasColesterol(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("estadisticas-colesterol", request, () -> executeEstadisticasColesterol(request)));
+    }
+
+    private HadoopJobResponse executeEstadisticasColesterol(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
+            String inputPath = datasetSnapshotService.inputPath();
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/estadisticas-colesterol";
-            boolean success = EstadisticasColesterol.runJob(inputPath, outputPath);
+            boolean success = EstadisticasColesterol.runJob(inputPath, outputPath,
+                    request.isExactMedian(), AppConstants.QUANTILE_SKETCH_K);
             String msg = success ? "Job completed successfully." : "Job failed to complete.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseEstadisticasColesterol(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "estadisticas-colesterol");
             }
             return response;
         } catch (Exception e) {
@@ -146,21 +256,19 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runBusquedaSubtexto(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("busqueda-subtexto", request, () -> executeBusquedaSubtexto(request)));
+    }
+
+    private HadoopJobResponse executeBusquedaSubtexto(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/busqueda-subtexto";
-            boolean success = BusquedaSubtexto.runJob(inputPath, outputPath, request.getSearchTerm());
-            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            boolean fromIndex = searchIndexService.writeSearchOutput(request.getSearchTerm(), outputPath, outputCodec(request));
+            boolean success = fromIndex
+                    || BusquedaSubtexto.runJob(datasetSnapshotService.inputPath(), outputPath, request.getSearchTerm());
+            String msg = !success ? "Job failed to complete." : fromIndex ? SEARCH_INDEX_MESSAGE : "Job completed successfully.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseRegistroFull(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "busqueda-subtexto");
             }
             return response;
         } catch (Exception e) {
@@ -170,21 +278,21 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runBusquedaPorFechas(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("busqueda-fechas", request, () -> executeBusquedaPorFechas(request)));
+    }
+
+    private HadoopJobResponse executeBusquedaPorFechas(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/busqueda-fechas";
-            boolean success = BusquedaPorFechas.runJob(inputPath, outputPath, request.getStartDate(), request.getEndDate());
+            Optional<Particiones> partitions = datePartitionService.forRange(request.getStartDate(), request.getEndDate());
+            boolean success = partitions.isPresent()
+                    ? BusquedaPorFechas.runJob(partitions.get(), outputPath, request.getStartDate(), request.getEndDate())
+                    : BusquedaPorFechas.runJob(datasetSnapshotService.inputPath(), outputPath,
+                            request.getStartDate(), request.getEndDate());
             String msg = success ? "Job completed successfully." : "Job failed to complete.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseRegistroFull(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "busqueda-fechas");
             }
             return response;
         } catch (Exception e) {
@@ -194,21 +302,20 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runMinMaxColesterol(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("min-max-colesterol", request, () -> executeMinMaxColesterol(request)));
+    }
+
+    private HadoopJobResponse executeMinMaxColesterol(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/min-max-colesterol";
-            boolean success = MinMaxColesterolPorDepto.runJob(inputPath, outputPath);
-            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            boolean fromCube = cubeService.writeJobOutput("min-max-colesterol", outputPath, null, outputCodec(request));
+            boolean fromState = !fromCube && incrementalAggregationService.writeJobOutput("min-max-colesterol", outputPath);
+            boolean success = fromCube || fromState || MinMaxColesterolPorDepto.runJob(datasetSnapshotService.inputPath(), outputPath);
+            String msg = !success ? "Job failed to complete."
+                    : fromCube ? CUBE_MESSAGE : fromState ? INCREMENTAL_MESSAGE : "Job completed successfully.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseMinMaxColesterol(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "min-max-colesterol");
             }
             return response;
         } catch (Exception e) {
@@ -218,21 +325,18 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runGlucosaSobrePromedio(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("glucosa-sobre-promedio", request, () -> executeGlucosaSobrePromedio(request)));
+    }
+
+    private HadoopJobResponse executeGlucosaSobrePromedio(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
+            String inputPath = datasetSnapshotService.inputPath();
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/glucosa-sobre-promedio";
             boolean success = GlucosaSobrePromedioNacional.runJob(inputPath, outputPath);
             String msg = success ? "Job completed successfully." : "Job failed to complete.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseGlucosaSobrePromedio(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "glucosa-sobre-promedio");
             }
             return response;
         } catch (Exception e) {
@@ -242,21 +346,19 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runClasificacionRiesgo(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("clasificacion-riesgo", request, () -> executeClasificacionRiesgo(request)));
+    }
+
+    private HadoopJobResponse executeClasificacionRiesgo(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/clasificacion-riesgo";
-            boolean success = ClasificacionRiesgoCardiovascular.runJob(inputPath, outputPath);
-            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            boolean fromState = incrementalAggregationService.writeJobOutput("clasificacion-riesgo", outputPath);
+            boolean success = fromState
+                    || ClasificacionRiesgoCardiovascular.runJob(datasetSnapshotService.inputPath(), outputPath);
+            String msg = !success ? "Job failed to complete." : fromState ? INCREMENTAL_MESSAGE : "Job completed successfully.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseClasificacionRiesgo(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "clasificacion-riesgo");
             }
             return response;
         } catch (Exception e) {
@@ -266,21 +368,18 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runPrediccionReingreso(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("prediccion-reingreso", request, () -> executePrediccionReingreso(request)));
+    }
+
+    private HadoopJobResponse executePrediccionReingreso(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
+            String inputPath = datasetSnapshotService.inputPath();
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/prediccion-reingreso";
             boolean success = PrediccionReingresoSimple.runJob(inputPath, outputPath);
             String msg = success ? "Job completed successfully." : "Job failed to complete.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parsePrediccionReingreso(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "prediccion-reingreso");
             }
             return response;
         } catch (Exception e) {
@@ -290,21 +389,22 @@ public class HadoopJobService {
     }
 
     public HadoopJobResponse runNormalizacionMinMax(HadoopJobRequest request) {
+        return withJobOptions(request, () -> resultCache.getOrRun("normalizacion-minmax-colesterol", request, () -> executeNormalizacionMinMax(request)));
+    }
+
+    private HadoopJobResponse executeNormalizacionMinMax(HadoopJobRequest request) {
         try {
-            String inputPath = AppConstants.DATASET_PATH;
+            String inputPath = datasetSnapshotService.inputPath();
             String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId() + "/normalizacion-minmax-colesterol";
-            boolean success = NormalizacionMinMaxColesterol.runJob(inputPath, outputPath);
+            boolean success = request.isReduceSideJoin()
+                    ? NormalizacionMinMaxColesterol.runJobJoinReduce(inputPath, outputPath,
+                            request.getReducers() != null ? request.getReducers() : AppConstants.NORMALIZATION_JOIN_REDUCERS,
+                            AppConstants.NORMALIZATION_JOIN_SPILL_BYTES)
+                    : NormalizacionMinMaxColesterol.runJob(inputPath, outputPath);
             String msg = success ? "Job completed successfully." : "Job failed to complete.";
             HadoopJobResponse response = new HadoopJobResponse(success, outputPath, msg);
             if (success) {
-                List<String> all = readJobOutput(outputPath);
-                List<Object> parsed = ResultParser.parseNormalizacionMinMax(all);
-                if (parsed.size() <= AppConstants.MAX_INLINE_RESULTS) {
-                    response.setResults(parsed);
-                } else {
-                    response.setResults(parsed.subList(0, AppConstants.MAX_INLINE_RESULTS));
-                    response.setDownloadUrl(buildDownloadUrl(outputPath));
-                }
+                attachResults(response, outputPath, "normalizacion-minmax-colesterol");
             }
             return response;
         } catch (Exception e) {
@@ -312,4 +412,42 @@ public class HadoopJobService {
             return new HadoopJobResponse(false, outputPath, e.getMessage());
         }
     }
+
+    // Runs several queries over a single scan of the dataset; each query's output lands in output/<runId>/<query>
+    public HadoopJobResponse runBatch(HadoopJobRequest request) {
+        return withJobOptions(request, () -> executeBatch(request));
+    }
+
+    private HadoopJobResponse executeBatch(HadoopJobRequest request) {
+        String outputPath = AppConstants.HADOOP_OUTPUT_BASE + "/" + request.getRunId();
+        try {
+            List<String> queries = request.getQueries();
+            if (queries == null || queries.isEmpty()) {
+                return new BatchJobResponse(false, outputPath, "No queries requested.");
+            }
+            if (queries.contains("busqueda-subtexto") && request.getSearchTerm() == null) {
+                return new BatchJobResponse(false, outputPath, "busqueda-subtexto requires searchTerm.");
+            }
+            if (queries.contains("busqueda-fechas") && (request.getStartDate() == null || request.getEndDate() == null)) {
+                return new BatchJobResponse(false, outputPath, "busqueda-fechas requires startDate and endDate.");
+            }
+            String inputPath = datasetSnapshotService.inputPath();
+            boolean success = EscaneoMultiConsulta.runJob(inputPath, outputPath, queries,
+                    request.getSearchTerm(), request.getStartDate(), request.getEndDate());
+            String msg = success ? "Job completed successfully." : "Job failed to complete.";
+            BatchJobResponse response = new BatchJobResponse(success, outputPath, msg);
+            if (success) {
+                for (String query : queries) {
+                    String queryPath = outputPath + "/" + query;
+                    HadoopJobResponse queryResponse = new HadoopJobResponse(true, queryPath, msg);
+                    queryResponse.setRunId(request.getRunId());
+                    attachResults(queryResponse, queryPath, query);
+                    response.getQueries().put(query, queryResponse);
+                }
+            }
+            return response;
+        } catch (Exception e) {
+            return new BatchJobResponse(false, outputPath, e.getMessage());
+        }
+    }
 }
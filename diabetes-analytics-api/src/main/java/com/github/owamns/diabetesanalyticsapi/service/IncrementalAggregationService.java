@@ -0,0 +1,283 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import hadoop.comun.Compresion;
+import hadoop.comun.MejoresK;
+import hadoop.incremental.AgregacionIncremental;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Partial state of the aggregation queries (AgregacionIncremental) kept per
+ * delivery appended to the CSV, so that after a new monthly extract only the
+ * appended bytes are read. Each query has a directory under
+ * INCREMENTAL_STATE_PATH with one state per delivery and a manifest of their
+ * byte ranges. A delivery ends at the last complete line, so a line still
+ * being appended is left for the next one. When the CSV no longer starts with
+ * what was processed (it shrank or its last processed bytes changed) the
+ * state is dropped and rebuilt from the whole file.
+ */
+@Service
+public class IncrementalAggregationService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalAggregationService.class);
+
+    private static final String MANIFEST = "deliveries";
+
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+
+    // Bytes before the end of the last delivery whose checksum tells an append from a rewrite
+    private static final int CHECKSUM_TAIL_BYTES = 4096;
+
+    private final String datasetPath;
+    private final String statePath;
+    private final int maxDeliveries;
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final ExecutorService refresher =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("incremental-refresh-"));
+
+    private static final class Delivery {
+        private final long from;
+        private final long to;
+        private final long checksum;
+
+        Delivery(long from, long to, long checksum) {
+            this.from = from;
+            this.to = to;
+            this.checksum = checksum;
+        }
+
+        String directory() {
+            return from + "-" + to;
+        }
+    }
+
+    public IncrementalAggregationService() {
+        this(AppConstants.DATASET_PATH, AppConstants.INCREMENTAL_STATE_PATH, AppConstants.INCREMENTAL_MAX_DELIVERIES);
+    }
+
+    IncrementalAggregationService(String datasetPath, String statePath, int maxDeliveries) {
+        this.datasetPath = datasetPath;
+        this.statePath = statePath;
+        this.maxDeliveries = maxDeliveries;
+    }
+
+    // Catches up with the CSV at startup, so the first query after the next delivery only reads that delivery
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!AppConstants.USE_INCREMENTAL_AGGREGATION) {
+            return;
+        }
+        for (String query : AgregacionIncremental.consultas()) {
+            refresher.execute(() -> {
+                synchronized (lockFor(query)) {
+                    try {
+                        refresh(query);
+                    } catch (Exception e) {
+                        // the query catches up when it is next requested
+                        LOG.warn("Could not bring the incremental state of {} up to date", query, e);
+                    }
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Writes the output of an aggregation job into outputPath from the stored
+     * delivery states, after processing whatever was appended to the CSV
+     * since the last call. Returns false when the job is not covered, the
+     * state could not be brought up to date or the CSV ends in an incomplete
+     * line; outputPath is then left free for the full job.
+     */
+    public boolean writeJobOutput(String jobName, String outputPath) {
+        return writeJobOutput(jobName, outputPath, null);
+    }
+
+    // With a ranking, only the groups it selects are written, in its order
+    public boolean writeJobOutput(String jobName, String outputPath, MejoresK ranking) {
+        if (!AppConstants.USE_INCREMENTAL_AGGREGATION || !AgregacionIncremental.soporta(jobName)) {
+            return false;
+        }
+        synchronized (lockFor(jobName)) {
+            try {
+                List<Delivery> deliveries = refresh(jobName);
+                // a line still being written is in the full job's input but not in the states
+                if (!deliveries.isEmpty()
+                        && deliveries.get(deliveries.size() - 1).to == Files.size(Paths.get(datasetPath))
+                        && AgregacionIncremental.runJobCombinar(jobName, statePaths(jobName, deliveries), outputPath, ranking)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                // answered by the full job
+                LOG.warn("Could not answer {} from the incremental state, running the full job", jobName, e);
+            }
+        }
+        try {
+            FileSystemUtils.deleteRecursively(Paths.get(outputPath));
+        } catch (IOException e) {
+            // the full job reports the existing output directory
+        }
+        return false;
+    }
+
+    private Object lockFor(String jobName) {
+        return locks.computeIfAbsent(jobName, k -> new Object());
+    }
+
+    // Processes the lines appended since the last delivery and returns the deliveries covering the CSV up to its last newline
+    private List<Delivery> refresh(String jobName) throws Exception {
+        Path csv = Paths.get(datasetPath);
+        Path dir = Paths.get(statePath, jobName);
+        // byte ranges of a compressed CSV are not its lines
+        if (!Files.exists(csv) || Compresion.codecDeArchivo(csv.getFileName().toString()) != null) {
+            return new ArrayList<>();
+        }
+        long length = lastLineEnd(csv, Files.size(csv));
+        List<Delivery> deliveries = readManifest(dir);
+        if (!deliveries.isEmpty()) {
+            Delivery last = deliveries.get(deliveries.size() - 1);
+            if (length < last.to || tailChecksum(csv, last.to) != last.checksum) {
+                FileSystemUtils.deleteRecursively(dir);
+                deliveries.clear();
+            }
+        }
+        long from = deliveries.isEmpty() ? 0 : deliveries.get(deliveries.size() - 1).to;
+        if (length > from) {
+            Delivery delivery = new Delivery(from, length, tailChecksum(csv, length));
+            Path state = dir.resolve(delivery.directory());
+            FileSystemUtils.deleteRecursively(state);
+            if (!AgregacionIncremental.runJobEntrega(jobName, csv.toString(), from, length, state.toString())) {
+                FileSystemUtils.deleteRecursively(state);
+                throw new IOException("Could not process delivery " + delivery.directory() + " of " + jobName);
+            }
+            deliveries.add(delivery);
+            writeManifest(dir, deliveries);
+        }
+        if (deliveries.size() > maxDeliveries) {
+            deliveries = compact(jobName, dir, deliveries);
+        }
+        return deliveries;
+    }
+
+    // Replaces the delivery states with a single one covering them all
+    private List<Delivery> compact(String jobName, Path dir, List<Delivery> deliveries) throws Exception {
+        Delivery last = deliveries.get(deliveries.size() - 1);
+        Delivery compacted = new Delivery(deliveries.get(0).from, last.to, last.checksum);
+        Path state = dir.resolve(compacted.directory());
+        FileSystemUtils.deleteRecursively(state);
+        if (!AgregacionIncremental.runJobCompactar(jobName, statePaths(jobName, deliveries), state.toString())) {
+            FileSystemUtils.deleteRecursively(state);
+            return deliveries;
+        }
+        List<Delivery> remaining = new ArrayList<>();
+        remaining.add(compacted);
+        writeManifest(dir, remaining);
+        for (Delivery delivery : deliveries) {
+            FileSystemUtils.deleteRecursively(dir.resolve(delivery.directory()));
+        }
+        return remaining;
+    }
+
+    private List<String> statePaths(String jobName, List<Delivery> deliveries) {
+        List<String> paths = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            paths.add(Paths.get(statePath, jobName, delivery.directory()).toString());
+        }
+        return paths;
+    }
+
+    // One "from to checksum" line per delivery, in CSV order
+    private static List<Delivery> readManifest(Path dir) throws IOException {
+        List<Delivery> deliveries = new ArrayList<>();
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return deliveries;
+        }
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length == 3) {
+                deliveries.add(new Delivery(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2])));
+            }
+        }
+        return deliveries;
+    }
+
+    // Written aside and moved over the old one, so a crash leaves either manifest whole
+    private static void writeManifest(Path dir, List<Delivery> deliveries) throws IOException {
+        Files.createDirectories(dir);
+        StringBuilder content = new StringBuilder();
+        for (Delivery delivery : deliveries) {
+            content.append(delivery.from).append(' ').append(delivery.to).append(' ')
+                    .append(delivery.checksum).append('\n');
+        }
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Position just after the last '\n' in the first size bytes, 0 when there is none
+    private static long lastLineEnd(Path csv, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            long end = size;
+            while (end > 0) {
+                long start = Math.max(0, end - SCAN_BUFFER_BYTES);
+                buffer.clear();
+                buffer.limit((int) (end - start));
+                while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+                    // keep reading until the chunk is full
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+                end = start;
+            }
+        }
+        return 0;
+    }
+
+    private static long tailChecksum(Path csv, long end) throws IOException {
+        long start = Math.max(0, end - CHECKSUM_TAIL_BYTES);
+        ByteBuffer tail = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            while (tail.hasRemaining() && channel.read(tail, start + tail.position()) >= 0) {
+                // keep reading until the tail is full
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(tail.array(), 0, tail.position());
+        return crc.getValue();
+    }
+}
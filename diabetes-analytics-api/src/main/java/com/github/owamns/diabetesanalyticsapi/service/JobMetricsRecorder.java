@@ -0,0 +1,139 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.dto.JobMetrics;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.MetricasJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Publishes the counters and timings of each finished Hadoop job to the
+ * Micrometer registry (exposed at /actuator/prometheus) and converts them
+ * into the JobMetrics returned with the run's response.
+ */
+@Component
+public class JobMetricsRecorder {
+
+    private final MeterRegistry registry;
+
+    public JobMetricsRecorder(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records the job under the name of the query that submitted it; a batch
+     * run also records the emitted and malformed rows of each of its queries.
+     */
+    public JobMetrics record(String query, MetricasJob metricas) {
+        JobMetrics metrics = toDto(metricas);
+        String engine = metrics.getEngine();
+        Timer.builder("hadoop.job.duration")
+                .description("Wall-clock time of a Hadoop job")
+                .tags("query", query, "engine", engine, "outcome", metrics.isSuccess() ? "success" : "failure")
+                .register(registry)
+                .record(metrics.getDurationMs(), TimeUnit.MILLISECONDS);
+        recordPhase(query, engine, "map", metrics.getMapMs());
+        recordPhase(query, engine, "reduce", metrics.getReduceMs());
+        rows(query, "read").increment(metrics.getRowsRead());
+        if (metrics.getEmittedByQuery().isEmpty()) {
+            rows(query, "emitted").increment(metrics.getRowsEmitted());
+            rows(query, "malformed").increment(metrics.getRowsMalformed());
+        } else {
+            metrics.getEmittedByQuery().forEach((q, n) -> rows(q, "emitted").increment(n));
+            metrics.getMalformedByQuery().forEach((q, n) -> rows(q, "malformed").increment(n));
+        }
+        Counter.builder("hadoop.job.shuffle")
+                .description("Map output bytes shuffled to the reducers")
+                .baseUnit("bytes")
+                .tags("query", query, "engine", engine)
+                .register(registry)
+                .increment(metrics.getShuffleBytes());
+        return metrics;
+    }
+
+    /** Publishes the runs waiting for a job slot, per priority, and the runs holding one. */
+    public void registerQueue(ToIntFunction<JobRun.Priority> queued, IntSupplier running) {
+        for (JobRun.Priority priority : JobRun.Priority.values()) {
+            Gauge.builder("hadoop.jobs.queued", () -> queued.applyAsInt(priority))
+                    .description("Runs waiting for a free job slot")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Gauge.builder("hadoop.jobs.running", running::getAsInt)
+                .description("Runs holding a job slot")
+                .register(registry);
+    }
+
+    public void recordQueueWait(String query, JobRun.Priority priority, long millis) {
+        Timer.builder("hadoop.job.queue.wait")
+                .description("Time a run waited in the queue before it got a job slot")
+                .tags("query", query, "priority", priority.name().toLowerCase(Locale.ROOT))
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    // outcome: queued, joined (an identical run was in flight) or rejected (queue full)
+    public void recordAdmission(String query, String outcome) {
+        Counter.builder("hadoop.jobs.admissions")
+                .description("Job submissions by admission outcome")
+                .tags("query", query, "outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    private void recordPhase(String query, String engine, String phase, Long millis) {
+        if (millis == null) {
+            return;
+        }
+        Timer.builder("hadoop.job.phase.duration")
+                .description("Time from the first task start to the last task end of a job phase")
+                .tags("query", query, "engine", engine, "phase", phase)
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private Counter rows(String query, String kind) {
+        return Counter.builder("hadoop.job.rows")
+                .description("Rows read, emitted by the mappers and discarded as malformed")
+                .tags("query", query, "kind", kind)
+                .register(registry);
+    }
+
+    private static JobMetrics toDto(MetricasJob metricas) {
+        JobMetrics metrics = new JobMetrics();
+        metrics.setJob(metricas.getNombre());
+        metrics.setEngine(metricas.isEnMemoria() ? "memory" : "hadoop");
+        metrics.setSuccess(metricas.isExitoso());
+        metrics.setDurationMs(metricas.getDuracionMs());
+        metrics.setMapMs(metricas.getDuracionMapMs() < 0 ? null : metricas.getDuracionMapMs());
+        metrics.setReduceMs(metricas.getDuracionReduceMs() < 0 ? null : metricas.getDuracionReduceMs());
+        metrics.setRowsRead(metricas.filasLeidas());
+        metrics.setRowsEmitted(metricas.filasEmitidas());
+        metrics.setRowsMalformed(metricas.filasMalformadas());
+        metrics.setShuffleBytes(metricas.valor(TaskCounter.REDUCE_SHUFFLE_BYTES));
+        metrics.setEmittedByQuery(metricas.porConsulta(ContadorFilas.EMITIDAS));
+        metrics.setMalformedByQuery(metricas.porConsulta(ContadorFilas.MALFORMADAS));
+        Map<String, Map<String, Long>> counters = new LinkedHashMap<>();
+        for (CounterGroup group : metricas.getContadores()) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (org.apache.hadoop.mapreduce.Counter counter : group) {
+                values.put(counter.getName(), counter.getValue());
+            }
+            counters.put(group.getName(), values);
+        }
+        metrics.setCounters(counters);
+        return metrics;
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import hadoop.comun.Compresion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a window of rows from a job output directory (its part-* files in name
+ * order) without loading the rest. Rows before the window are skipped by
+ * counting newlines on the raw bytes when every line is a row, and reading
+ * stops at the first row past the window. Part files written with an output
+ * codec are decompressed on the fly.
+ */
+public final class JobOutputReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private JobOutputReader() { }
+
+    public static final class Window {
+        private final List<Object[]> rows;
+        private final boolean hasMore;
+
+        Window(List<Object[]> rows, boolean hasMore) {
+            this.rows = rows;
+            this.hasMore = hasMore;
+        }
+
+        public List<Object[]> getRows() {
+            return rows;
+        }
+
+        // Whether the output has rows after the window
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+
+    public static Window read(Path dir, ResultParser.RowFormat format, long offset, int limit) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            // lazily created outputs (batch runs) have no directory when nothing was written
+            return new Window(rows, false);
+        }
+        long toSkip = offset;
+        for (Path file : partFiles(dir)) {
+            String name = file.getFileName().toString();
+            boolean compressed = Compresion.codecDeArchivo(name) != null;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (toSkip > 0 && format.acceptsAll() && !compressed) {
+                    toSkip -= skipLines(channel, toSkip);
+                    if (toSkip > 0) {
+                        continue;
+                    }
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        Compresion.abrir(name, Channels.newInputStream(channel)), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!format.accepts(line)) {
+                        continue;
+                    }
+                    if (toSkip > 0) {
+                        toSkip--;
+                        continue;
+                    }
+                    if (rows.size() == limit) {
+                        return new Window(rows, true);
+                    }
+                    rows.add(format.parse(line));
+                }
+            }
+        }
+        return new Window(rows, false);
+    }
+
+    private static List<Path> partFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "part-*")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    // Skips up to max lines, leaving the channel at the start of the next one; returns the lines skipped
+    private static long skipLines(FileChannel channel, long max) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long skipped = 0;
+        long position = channel.position();
+        boolean pendingLine = false;
+        int n;
+        while ((n = channel.read(buffer)) > 0) {
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] == '\n') {
+                    pendingLine = false;
+                    if (++skipped == max) {
+                        channel.position(position + i + 1);
+                        return skipped;
+                    }
+                } else {
+                    pendingLine = true;
+                }
+            }
+            position += n;
+            buffer.clear();
+        }
+        // a last line without a trailing newline still counts
+        return pendingLine ? skipped + 1 : skipped;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobResponse;
+import com.github.owamns.diabetesanalyticsapi.dto.JobMetrics;
+import com.github.owamns.diabetesanalyticsapi.dto.JobRunStatus;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Mutable state of one submitted run; updated by the worker thread, read by status polls
+public class JobRun {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    // Queue order, highest first
+    public enum Priority { INTERACTIVE, STANDARD, BATCH }
+
+    private final String runId;
+    private final String jobName;
+    private final Priority priority;
+    private final long submittedAt = System.currentTimeMillis();
+    // Hadoop jobs submitted so far by this run (chained queries submit more than one)
+    private final List<Job> jobs = new CopyOnWriteArrayList<>();
+    // Counters and timings of the jobs that finished, in completion order
+    private final List<JobMetrics> metrics = new CopyOnWriteArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile Long startedAt;
+    private volatile Long finishedAt;
+    private volatile HadoopJobResponse response;
+
+    public JobRun(String runId, String jobName, Priority priority) {
+        this.runId = runId;
+        this.jobName = jobName;
+        this.priority = priority;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Long getStartedAt() {
+        return startedAt;
+    }
+
+    public HadoopJobResponse getResponse() {
+        return response;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    void addJob(Job job) {
+        jobs.add(job);
+    }
+
+    void addMetrics(JobMetrics jobMetrics) {
+        metrics.add(jobMetrics);
+    }
+
+    List<JobMetrics> getMetrics() {
+        return new ArrayList<>(metrics);
+    }
+
+    void markRunning() {
+        startedAt = System.currentTimeMillis();
+        status = Status.RUNNING;
+    }
+
+    void complete(HadoopJobResponse response) {
+        this.response = response;
+        finishedAt = System.currentTimeMillis();
+        status = response.isSuccess() ? Status.SUCCEEDED : Status.FAILED;
+    }
+
+    public JobRunStatus toStatus() {
+        JobRunStatus dto = new JobRunStatus();
+        dto.setRunId(runId);
+        dto.setJobName(jobName);
+        dto.setStatus(status.name());
+        dto.setPriority(priority.name());
+        dto.setStage(jobs.size());
+        dto.setSubmittedAt(submittedAt);
+        dto.setStartedAt(startedAt);
+        dto.setFinishedAt(finishedAt);
+        dto.setResponse(response);
+        if (status == Status.SUCCEEDED) {
+            dto.setMapProgress(1f);
+            dto.setReduceProgress(1f);
+        } else if (!jobs.isEmpty()) {
+            Job current = jobs.get(jobs.size() - 1);
+            try {
+                dto.setMapProgress(current.mapProgress());
+                dto.setReduceProgress(current.reduceProgress());
+            } catch (IOException | IllegalStateException e) {
+                // progress not available yet, report zero
+            }
+        }
+        return dto;
+    }
+}
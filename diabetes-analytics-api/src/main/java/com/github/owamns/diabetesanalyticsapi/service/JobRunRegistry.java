@@ -0,0 +1,165 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobRequest;
+import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobResponse;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.MetricasJob;
+import org.apache.hadoop.mapreduce.Job;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Service
+public class JobRunRegistry {
+
+    private final ThreadPoolExecutor executor;
+    private final JobMetricsRecorder metricsRecorder;
+    private final int maxQueued;
+    private final Map<String, JobRun> runs = new ConcurrentHashMap<>();
+    // Queued and running runs by query, parameters and dataset; guarded by itself
+    private final Map<String, JobRun> inFlight = new HashMap<>();
+    private final AtomicLong submissions = new AtomicLong();
+
+    public JobRunRegistry(ThreadPoolExecutor hadoopJobExecutor, JobMetricsRecorder metricsRecorder,
+                          @Value("${hadoop.jobs.max-queued:" + AppConstants.MAX_QUEUED_JOBS + "}") int maxQueued) {
+        this.executor = hadoopJobExecutor;
+        this.metricsRecorder = metricsRecorder;
+        this.maxQueued = maxQueued;
+        metricsRecorder.registerQueue(this::queued, executor::getActiveCount);
+    }
+
+    /**
+     * Queues the job on the bounded executor and returns immediately. Waiting
+     * jobs start by priority (see AppConstants.INTERACTIVE_JOBS and BATCH_JOBS),
+     * then in submission order. When an identical request on the same dataset is
+     * still queued or running, that run is returned and the task is dropped.
+     * Throws RejectedExecutionException when the queue is full.
+     */
+    public JobRun submit(String runId, String jobName, HadoopJobRequest request, Supplier<HadoopJobResponse> task) {
+        evictExpired();
+        String key = ResultCache.requestKey(jobName, request) + '\u0000' + ResultCache.datasetFingerprint();
+        synchronized (inFlight) {
+            JobRun existing = inFlight.get(key);
+            if (existing != null) {
+                metricsRecorder.recordAdmission(jobName, "joined");
+                return existing;
+            }
+            if (executor.getQueue().size() >= maxQueued) {
+                metricsRecorder.recordAdmission(jobName, "rejected");
+                throw new RejectedExecutionException("Job queue is full");
+            }
+            JobRun run = new JobRun(runId, jobName, priorityOf(jobName));
+            runs.put(runId, run);
+            inFlight.put(key, run);
+            try {
+                executor.execute(new QueuedRun(run.getPriority(), submissions.getAndIncrement(),
+                        () -> execute(run, key, task)));
+            } catch (RejectedExecutionException e) {
+                runs.remove(runId);
+                inFlight.remove(key);
+                throw e;
+            }
+            metricsRecorder.recordAdmission(jobName, "queued");
+            return run;
+        }
+    }
+
+    public Optional<JobRun> find(String runId) {
+        return Optional.ofNullable(runs.get(runId));
+    }
+
+    private void execute(JobRun run, String key, Supplier<HadoopJobResponse> task) {
+        run.markRunning();
+        metricsRecorder.recordQueueWait(run.getJobName(), run.getPriority(), run.getStartedAt() - run.getSubmittedAt());
+        EjecutorJobs.setObservador(new EjecutorJobs.Observador() {
+            @Override
+            public void alEnviar(Job job) {
+                run.addJob(job);
+            }
+
+            @Override
+            public void alTerminar(Job job, MetricasJob metricas) {
+                run.addMetrics(metricsRecorder.record(run.getJobName(), metricas));
+            }
+        });
+        HadoopJobResponse response;
+        Error error = null;
+        try {
+            response = task.get();
+        } catch (RuntimeException e) {
+            response = new HadoopJobResponse(false, null, e.getMessage());
+        } catch (Error e) {
+            // the run still fails and frees its key; the worker thread gets the Error afterwards
+            response = new HadoopJobResponse(false, null, e.toString());
+            error = e;
+        } finally {
+            EjecutorJobs.limpiarObservador();
+            synchronized (inFlight) {
+                inFlight.remove(key, run);
+            }
+        }
+        response.setRunId(run.getRunId());
+        // empty when the response came from the cache or a derived structure
+        response.setMetrics(run.getMetrics());
+        run.complete(response);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static JobRun.Priority priorityOf(String jobName) {
+        if (AppConstants.INTERACTIVE_JOBS.contains(jobName)) {
+            return JobRun.Priority.INTERACTIVE;
+        }
+        return AppConstants.BATCH_JOBS.contains(jobName) ? JobRun.Priority.BATCH : JobRun.Priority.STANDARD;
+    }
+
+    private int queued(JobRun.Priority priority) {
+        int count = 0;
+        for (Runnable queued : executor.getQueue()) {
+            if (queued instanceof QueuedRun && ((QueuedRun) queued).priority == priority) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(AppConstants.RUN_RETENTION_MINUTES);
+        runs.values().removeIf(run -> run.getFinishedAt() != null && run.getFinishedAt() < cutoff);
+    }
+
+    // Entry of the executor's priority queue: higher priority first, then submission order
+    private static final class QueuedRun implements Runnable, Comparable<QueuedRun> {
+        private final JobRun.Priority priority;
+        private final long sequence;
+        private final Runnable body;
+
+        QueuedRun(JobRun.Priority priority, long sequence, Runnable body) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        @Override
+        public int compareTo(QueuedRun other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
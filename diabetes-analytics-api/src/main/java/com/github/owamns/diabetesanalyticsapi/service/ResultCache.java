@@ -0,0 +1,203 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobRequest;
+import com.github.owamns.diabetesanalyticsapi.dto.HadoopJobResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of successful job responses, keyed by query name, request
+ * parameters and the dataset fingerprint (size and modification time of the
+ * CSV). A change to the dataset drops every entry; an entry whose output
+ * directory was removed is discarded and the job runs again. The cache also
+ * decides when an output directory can go: a cached one stays while hits
+ * serve it, and once its entry is evicted or invalidated it is deleted,
+ * or, while a download is reading it, when that download ends.
+ */
+@Component
+public class ResultCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResultCache.class);
+
+    private final Map<String, HadoopJobResponse> entries =
+            new LinkedHashMap<String, HadoopJobResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, HadoopJobResponse> eldest) {
+                    if (size() > AppConstants.RESULT_CACHE_MAX_ENTRIES) {
+                        dropped.add(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    // Downloads in progress by output directory
+    private final Map<Path, Integer> downloads = new HashMap<>();
+    // Entries removed under the lock, whose directories are deleted once it is released
+    private final List<HadoopJobResponse> dropped = new ArrayList<>();
+
+    private String currentFingerprint;
+
+    /**
+     * Returns the cached response for this query and parameters, or runs the
+     * job and caches its response when it succeeded.
+     */
+    public HadoopJobResponse getOrRun(String query, HadoopJobRequest request, Supplier<HadoopJobResponse> job) {
+        String fingerprint = datasetFingerprint();
+        if (fingerprint == null) {
+            return job.get();
+        }
+        String key = requestKey(query, request) + '\u0000' + fingerprint;
+        HadoopJobResponse cached = lookup(key, fingerprint);
+        if (cached != null) {
+            return copyOf(cached, "Served from cache.");
+        }
+        HadoopJobResponse response = job.get();
+        if (response.isSuccess()) {
+            store(key, fingerprint, copyOf(response, response.getMessage()));
+        }
+        deleteDropped();
+        return response;
+    }
+
+    private synchronized HadoopJobResponse lookup(String key, String fingerprint) {
+        if (!fingerprint.equals(currentFingerprint)) {
+            dropAll();
+            currentFingerprint = fingerprint;
+            return null;
+        }
+        HadoopJobResponse cached = entries.get(key);
+        if (cached != null && !Files.isDirectory(Paths.get(cached.getOutputPath()))) {
+            entries.remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized void store(String key, String fingerprint, HadoopJobResponse response) {
+        // the dataset may have changed while the job ran; its result belongs to the old fingerprint
+        if (fingerprint.equals(currentFingerprint)) {
+            entries.put(key, response);
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            dropAll();
+        }
+        deleteDropped();
+    }
+
+    /** Marks a download of outputDir as started; it is not deleted until downloadFinished. */
+    public synchronized void downloadStarted(Path outputDir) {
+        downloads.merge(outputDir.normalize(), 1, Integer::sum);
+    }
+
+    /**
+     * Ends a download started with downloadStarted. After a complete download
+     * the directory is deleted, together with its runId directory when that is
+     * left empty, unless a cached response still serves it or another download
+     * is reading it. An interrupted download keeps it so the client can resume.
+     */
+    public void downloadFinished(Path outputDir, boolean complete) {
+        Path dir = outputDir.normalize();
+        synchronized (this) {
+            downloads.computeIfPresent(dir, (d, n) -> n > 1 ? n - 1 : null);
+            if (!complete || downloads.containsKey(dir) || references(dir)) {
+                return;
+            }
+        }
+        deleteOutput(dir);
+    }
+
+    private boolean references(Path dir) {
+        for (HadoopJobResponse cached : entries.values()) {
+            if (Paths.get(cached.getOutputPath()).normalize().equals(dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dropAll() {
+        dropped.addAll(entries.values());
+        entries.clear();
+    }
+
+    // Deletes the directories of dropped entries that no download is reading; those are deleted when it completes
+    private void deleteDropped() {
+        List<Path> unused = new ArrayList<>();
+        synchronized (this) {
+            for (HadoopJobResponse response : dropped) {
+                Path dir = Paths.get(response.getOutputPath()).normalize();
+                if (!downloads.containsKey(dir) && !references(dir)) {
+                    unused.add(dir);
+                }
+            }
+            dropped.clear();
+        }
+        for (Path dir : unused) {
+            deleteOutput(dir);
+        }
+    }
+
+    private static void deleteOutput(Path dir) {
+        try {
+            FileSystemUtils.deleteRecursively(dir);
+            Files.deleteIfExists(dir.getParent());
+        } catch (DirectoryNotEmptyException e) {
+            // the runId directory still holds other outputs of the run
+        } catch (IOException e) {
+            LOG.warn("Could not delete job output {}", dir, e);
+        }
+    }
+
+    // Query and every request parameter that changes the output
+    static String requestKey(String query, HadoopJobRequest request) {
+        return query
+                + '\u0000' + Objects.toString(request.getSearchTerm(), "")
+                + '\u0000' + Objects.toString(request.getStartDate(), "")
+                + '\u0000' + Objects.toString(request.getEndDate(), "")
+                + '\u0000' + request.isExactMedian()
+                + '\u0000' + request.isReduceSideJoin()
+                + '\u0000' + Objects.toString(request.getReducers(), "")
+                + '\u0000' + Objects.toString(request.getMapOutputCodec(), "")
+                + '\u0000' + Objects.toString(request.getOutputCodec(), "")
+                + '\u0000' + Objects.toString(request.getTopK(), "")
+                + '\u0000' + Objects.toString(request.getOrderBy(), "")
+                + '\u0000' + Objects.toString(request.getQueries(), "");
+    }
+
+    // null when the dataset cannot be read, in which case nothing is cached
+    static String datasetFingerprint() {
+        Path csv = Paths.get(AppConstants.DATASET_PATH);
+        try {
+            return Files.size(csv) + ":" + Files.getLastModifiedTime(csv).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Each run gets its own copy since the registry stamps the runId on the response
+    private static HadoopJobResponse copyOf(HadoopJobResponse source, String message) {
+        HadoopJobResponse copy = new HadoopJobResponse(source.isSuccess(), source.getOutputPath(), message);
+        copy.setResults(new ArrayList<>(source.getResults()));
+        copy.setDownloadUrl(source.getDownloadUrl());
+        return copy;
+    }
+}
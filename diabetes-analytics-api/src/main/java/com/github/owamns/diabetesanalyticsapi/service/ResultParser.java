@@ -1,7 +1,8 @@
 package com.github.owamns.diabetesanalyticsapi.service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class ResultParser {
     private static final String[] RECORD_HEADERS = {
@@ -13,130 +14,150 @@ public class ResultParser {
         "RESULTADO_2","UNIDADES_2"
     };
 
-    public static List<Object> parseEdadPromedio(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] parts = line.split("\t");
-            Map<String, Object> m = new HashMap<>();
-            m.put("diagnostico", parts[0]);
-            m.put("averageAge", Double.parseDouble(parts[1]));
+    private static final String[] NORMALIZED_HEADERS = withColumn(RECORD_HEADERS, "COLESTEROL_NORMALIZADO");
+
+    /**
+     * Column names of a job's output and how to turn one output line into a row
+     * of values in that column order. A null value means the line has no such
+     * field; inline results leave it out of the row's map.
+     */
+    public static final class RowFormat {
+        private final String[] columns;
+        private final Predicate<String> filter;
+        private final Function<String, Object[]> parser;
+
+        RowFormat(String[] columns, Function<String, Object[]> parser) {
+            this(columns, null, parser);
+        }
+
+        RowFormat(String[] columns, Predicate<String> filter, Function<String, Object[]> parser) {
+            this.columns = columns;
+            this.filter = filter;
+            this.parser = parser;
+        }
+
+        public String[] getColumns() {
+            return columns;
+        }
+
+        // Whether every line of the output is a row; when false, accepts() decides
+        public boolean acceptsAll() {
+            return filter == null;
+        }
+
+        public boolean accepts(String line) {
+            return filter == null || filter.test(line);
+        }
+
+        public Object[] parse(String line) {
+            return parser.apply(line);
+        }
+
+        public Map<String, Object> toMap(Object[] row) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                if (row[i] != null) {
+                    m.put(columns[i], row[i]);
+                }
+            }
             return m;
-        }).collect(Collectors.toList());
+        }
     }
 
-    public static List<Object> parsePacientesPorDeptoSexo(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t");
-            String[] key = kv[0].split(";");
-            Map<String, Object> m = new HashMap<>();
-            m.put("departamento", key[0]);
-            m.put("sexo", key[1]);
-            m.put("count", Long.parseLong(kv[1]));
-            return m;
-        }).collect(Collectors.toList());
+    // Row format of the output of each job, by endpoint name
+    public static RowFormat forJob(String jobName) {
+        switch (jobName) {
+            case "edad-promedio":
+                return new RowFormat(new String[] {"diagnostico", "averageAge"}, ResultParser::parseEdadPromedio);
+            case "pacientes-depto-sexo":
+                return new RowFormat(new String[] {"departamento", "sexo", "count"}, ResultParser::parseKeyPairCount);
+            case "procedimientos-area-servicio":
+                return new RowFormat(new String[] {"area", "servicio", "count"}, ResultParser::parseKeyPairCount);
+            case "estadisticas-colesterol":
+                return new RowFormat(new String[] {"metric", "description"}, ResultParser::parseKeyDescription);
+            case "busqueda-subtexto":
+            case "busqueda-fechas":
+                return new RowFormat(RECORD_HEADERS, ResultParser::parseRegistroFull);
+            case "min-max-colesterol":
+            case "glucosa-sobre-promedio":
+                return new RowFormat(new String[] {"departamento", "description"}, ResultParser::parseKeyTrimmedDescription);
+            case "clasificacion-riesgo":
+                return new RowFormat(new String[] {"category", "avgAge", "description"}, ResultParser::parseClasificacionRiesgo);
+            case "prediccion-reingreso":
+                return new RowFormat(new String[] {"key", "count"}, ResultParser::parsePrediccionReingreso);
+            case "normalizacion-minmax-colesterol":
+                // Parse full semicolon-separated records with normalized cholesterol at end
+                return new RowFormat(NORMALIZED_HEADERS, line -> line.contains(";"), ResultParser::parseNormalizacionMinMax);
+            default: throw new IllegalArgumentException("Unknown job: " + jobName);
+        }
     }
 
-    public static List<Object> parseProcedimientosAreaServicio(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t");
-            String[] key = kv[0].split(";");
-            Map<String, Object> m = new HashMap<>();
-            m.put("area", key[0]);
-            m.put("servicio", key[1]);
-            m.put("count", Long.parseLong(kv[1]));
-            return m;
-        }).collect(Collectors.toList());
+    private static Object[] parseEdadPromedio(String line) {
+        String[] parts = line.split("\t");
+        return new Object[] {parts[0], Double.parseDouble(parts[1])};
     }
 
-    public static List<Object> parseEstadisticasColesterol(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t", 2);
-            Map<String, Object> m = new HashMap<>();
-            m.put("metric", kv[0]);
-            m.put("description", kv.length > 1 ? kv[1] : "");
-            return m;
-        }).collect(Collectors.toList());
+    // KEY1;KEY2\tCOUNT
+    private static Object[] parseKeyPairCount(String line) {
+        String[] kv = line.split("\t");
+        String[] key = kv[0].split(";");
+        return new Object[] {key[0], key[1], Long.parseLong(kv[1])};
     }
 
-    public static List<Object> parseRegistroFull(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] cols = line.split(";");
-            Map<String, Object> m = new HashMap<>();
-            for (int i = 0; i < Math.min(cols.length, RECORD_HEADERS.length); i++) {
-                m.put(RECORD_HEADERS[i], cols[i]);
-            }
-            return m;
-        }).collect(Collectors.toList());
+    private static Object[] parseKeyDescription(String line) {
+        String[] kv = line.split("\t", 2);
+        return new Object[] {kv[0], kv.length > 1 ? kv[1] : ""};
     }
 
-    public static List<Object> parseMinMaxColesterol(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t", 2);
-            Map<String, Object> m = new HashMap<>();
-            m.put("departamento", kv[0]);
-            // full description "Min: x, Max: y"
-            String desc = kv.length > 1 ? kv[1] : "";
-            m.put("description", desc.trim());
-            return m;
-        }).collect(Collectors.toList());
+    // full description such as "Min: x, Max: y"
+    private static Object[] parseKeyTrimmedDescription(String line) {
+        String[] kv = line.split("\t", 2);
+        String desc = kv.length > 1 ? kv[1] : "";
+        return new Object[] {kv[0], desc.trim()};
     }
-    
-    public static List<Object> parseGlucosaSobrePromedio(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t", 2);
-            Map<String, Object> m = new HashMap<>();
-            m.put("departamento", kv[0]);
-            String desc = kv.length > 1 ? kv[1] : "";
-            m.put("description", desc.trim());
-            return m;
-        }).collect(Collectors.toList());
+
+    private static Object[] parseRegistroFull(String line) {
+        String[] cols = line.split(";");
+        Object[] row = new Object[RECORD_HEADERS.length];
+        System.arraycopy(cols, 0, row, 0, Math.min(cols.length, RECORD_HEADERS.length));
+        return row;
     }
 
-    public static List<Object> parseClasificacionRiesgo(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t", 2);
-            Map<String, Object> m = new HashMap<>();
-            m.put("category", kv[0]);
-            // parse average age as double
-            if (kv.length > 1) {
-                try {
-                    double avg = Double.parseDouble(kv[1]);
-                    m.put("avgAge", avg);
-                } catch (NumberFormatException e) {
-                    // fallback: include raw description
-                    m.put("description", kv[1]);
-                }
+    private static Object[] parseClasificacionRiesgo(String line) {
+        String[] kv = line.split("\t", 2);
+        Object[] row = {kv[0], null, null};
+        // parse average age as double
+        if (kv.length > 1) {
+            try {
+                row[1] = Double.parseDouble(kv[1]);
+            } catch (NumberFormatException e) {
+                // fallback: include raw description
+                row[2] = kv[1];
             }
-            return m;
-        }).collect(Collectors.toList());
+        }
+        return row;
     }
 
-    public static List<Object> parsePrediccionReingreso(List<String> lines) {
-        return lines.stream().map(line -> {
-            String[] kv = line.split("\t");
-            Map<String, Object> m = new HashMap<>();
-            m.put("key", kv[0]);
-            m.put("count", Long.parseLong(kv[1]));
-            return m;
-        }).collect(Collectors.toList());
+    private static Object[] parsePrediccionReingreso(String line) {
+        String[] kv = line.split("\t");
+        return new Object[] {kv[0], Long.parseLong(kv[1])};
+    }
+
+    private static Object[] parseNormalizacionMinMax(String line) {
+        String[] cols = line.split(";");
+        Object[] row = new Object[NORMALIZED_HEADERS.length];
+        // map each original field
+        System.arraycopy(cols, 0, row, 0, Math.min(cols.length, RECORD_HEADERS.length));
+        // add normalized cholesterol value if present
+        if (cols.length > RECORD_HEADERS.length) {
+            row[RECORD_HEADERS.length] = cols[cols.length - 1];
+        }
+        return row;
     }
 
-    public static List<Object> parseNormalizacionMinMax(List<String> lines) {
-        // Parse full semicolon-separated records with normalized cholesterol at end
-        return lines.stream()
-                .filter(line -> line.contains(";"))
-                .map(line -> {
-                    String[] cols = line.split(";");
-                    Map<String, Object> m = new HashMap<>();
-                    // map each original field
-                    for (int i = 0; i < RECORD_HEADERS.length && i < cols.length; i++) {
-                        m.put(RECORD_HEADERS[i], cols[i]);
-                    }
-                    // add normalized cholesterol value if present
-                    if (cols.length > RECORD_HEADERS.length) {
-                        m.put("COLESTEROL_NORMALIZADO", cols[cols.length - 1]);
-                    }
-                    return m;
-                })
-                .collect(Collectors.toList());
+    private static String[] withColumn(String[] columns, String extra) {
+        String[] all = Arrays.copyOf(columns, columns.length + 1);
+        all[columns.length] = extra;
+        return all;
     }
 }
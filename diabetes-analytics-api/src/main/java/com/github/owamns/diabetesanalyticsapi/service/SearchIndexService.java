@@ -0,0 +1,71 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import com.github.owamns.diabetesanalyticsapi.config.AppConstants;
+import hadoop.comun.Compresion;
+import hadoop.q3_busqueda_subtexto.IndexacionTrigramas;
+import hadoop.q3_busqueda_subtexto.IndiceTrigramas;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Trigram index of the text columns busqueda-subtexto searches, built with
+ * IndexacionTrigramas next to the CSV (see DerivedDatasetService for when it
+ * is rebuilt).
+ */
+@Service
+public class SearchIndexService extends DerivedDatasetService<IndiceTrigramas> {
+
+    public SearchIndexService() {
+        super(AppConstants.SEARCH_INDEX_PATH, "search-index-refresh-");
+    }
+
+    @Override
+    protected boolean build(String outputPath) throws Exception {
+        // the index points at byte offsets of the CSV, which a compressed file cannot seek to
+        if (Compresion.codecDeArchivo(AppConstants.DATASET_PATH) != null) {
+            return false;
+        }
+        return IndexacionTrigramas.runJob(AppConstants.DATASET_PATH, outputPath);
+    }
+
+    @Override
+    protected IndiceTrigramas load(String path) {
+        return new IndiceTrigramas(new Configuration(), new org.apache.hadoop.fs.Path(path),
+                new org.apache.hadoop.fs.Path(AppConstants.DATASET_PATH));
+    }
+
+    /**
+     * Writes the output of busqueda-subtexto for searchTerm into outputPath
+     * from the index, laid out like the job's own (part-m-00000 with the
+     * extension of outputCodec, and _SUCCESS). Returns false when the index is not ready or the term is
+     * too short to have trigrams.
+     */
+    public boolean writeSearchOutput(String searchTerm, String outputPath, String outputCodec) throws IOException {
+        if (!IndiceTrigramas.aplicable(searchTerm)) {
+            return false;
+        }
+        Optional<IndiceTrigramas> index = current();
+        if (!index.isPresent()) {
+            return false;
+        }
+        Path dir = Paths.get(outputPath);
+        Files.createDirectories(dir);
+        CompressionCodec codec = Compresion.crear(outputCodec);
+        OutputStream file = new BufferedOutputStream(Files.newOutputStream(
+                dir.resolve(codec == null ? "part-m-00000" : "part-m-00000" + codec.getDefaultExtension())));
+        try (OutputStream out = codec == null ? file : codec.createOutputStream(file)) {
+            index.get().buscar(searchTerm, out);
+        }
+        Files.createFile(dir.resolve("_SUCCESS"));
+        return true;
+    }
+}
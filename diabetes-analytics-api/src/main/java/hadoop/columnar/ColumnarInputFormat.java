@@ -0,0 +1,271 @@
+package hadoop.columnar;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lee archivos de ColumnarOutputFormat y entrega las mismas claves y líneas que
+ * TextInputFormat sobre el CSV original. Con setColumnas solo se leen y
+ * descomprimen esas columnas; el resto llega vacío, con la misma cantidad de
+ * campos que la línea original para que split(";") devuelva el mismo largo.
+ * Con condiciones de FiltroZonas no se leen los grupos que no pueden tener
+ * filas que las cumplan.
+ */
+public class ColumnarInputFormat extends FileInputFormat<LongWritable, Text> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarInputFormat.class);
+
+    public static final String CONF_COLUMNAS = "columnar.columnas";
+
+    // Marca el último campo no vacío cuando no fue pedido, para que split(";") no lo descarte
+    private static final String RELLENO = "0";
+
+    // Sin columnas se leen todas y la línea sale idéntica al CSV
+    public static void setColumnas(Job job, int... columnas) {
+        Configuration conf = job.getConfiguration();
+        if (columnas == null || columnas.length == 0) {
+            conf.unset(CONF_COLUMNAS);
+            return;
+        }
+        String[] valores = new String[columnas.length];
+        for (int i = 0; i < columnas.length; i++) {
+            valores[i] = Integer.toString(columnas[i]);
+        }
+        conf.setStrings(CONF_COLUMNAS, valores);
+    }
+
+    // Un archivo .dcol o un directorio con archivos .dcol (salida de ConversionColumnar)
+    public static boolean esColumnar(Configuration conf, Path ruta) throws IOException {
+        FileSystem fs = ruta.getFileSystem(conf);
+        if (!fs.exists(ruta)) return false;
+        if (!fs.getFileStatus(ruta).isDirectory()) {
+            return ruta.getName().endsWith(ColumnarOutputFormat.EXTENSION);
+        }
+        for (FileStatus st : fs.listStatus(ruta)) {
+            if (st.isFile() && st.getPath().getName().endsWith(ColumnarOutputFormat.EXTENSION)) return true;
+        }
+        return false;
+    }
+
+    // Los splits se cortan en límites de grupo, juntando grupos hasta el tamaño de split habitual
+    // y saltando los grupos que el filtro de zonas descarta
+    @Override
+    public List<InputSplit> getSplits(JobContext job) throws IOException {
+        long tamMinimo = Math.max(getFormatMinSplitSize(), getMinSplitSize(job));
+        long tamMaximo = getMaxSplitSize(job);
+        List<List<FiltroZonas.Condicion>> filtro = FiltroZonas.leer(job.getConfiguration());
+        List<InputSplit> splits = new ArrayList<>();
+        FileSplit vacio = null;
+        int total = 0, descartados = 0;
+        for (FileStatus archivo : listStatus(job)) {
+            Path ruta = archivo.getPath();
+            FileSystem fs = ruta.getFileSystem(job.getConfiguration());
+            FormatoColumnar.Pie pie = FormatoColumnar.leerPie(fs, ruta, archivo.getLen());
+            List<ZonaGrupo> zonas = filtro.isEmpty() ? null : ZonaGrupo.leer(fs, ruta);
+            if (zonas != null && zonas.size() != pie.grupos.size()) zonas = null;
+            long tamSplit = computeSplitSize(archivo.getBlockSize(), tamMinimo, tamMaximo);
+            long inicio = FormatoColumnar.MAGIA.length;
+            if (vacio == null) vacio = new FileSplit(ruta, inicio, 0, new String[0]);
+            for (int i = 0; i < pie.grupos.size(); i++) {
+                long fin = pie.finGrupo(i);
+                total++;
+                if (zonas != null && !FiltroZonas.puedeCumplirse(filtro, zonas.get(i))) {
+                    long posicion = pie.grupos.get(i).posicion;
+                    if (posicion > inicio) {
+                        splits.add(new FileSplit(ruta, inicio, posicion - inicio, new String[0]));
+                    }
+                    inicio = fin;
+                    descartados++;
+                } else if (fin - inicio >= tamSplit || i == pie.grupos.size() - 1) {
+                    splits.add(new FileSplit(ruta, inicio, fin - inicio, new String[0]));
+                    inicio = fin;
+                }
+            }
+            if (pie.grupos.isEmpty() && pie.lineaInicial != null) {
+                splits.add(new FileSplit(ruta, inicio, 0, new String[0]));
+            }
+        }
+        // Con todo descartado queda un split vacío, para que la salida tenga sus archivos como sin filtro
+        if (splits.isEmpty() && descartados > 0) {
+            splits.add(vacio);
+        }
+        if (!filtro.isEmpty()) {
+            LOG.info("Filtro de zonas: {} de {} grupos descartados", descartados, total);
+        }
+        return splits;
+    }
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new LectorColumnar();
+    }
+
+    static class LectorColumnar extends RecordReader<LongWritable, Text> {
+        private FSDataInputStream entrada;
+        private FormatoColumnar.Pie pie;
+        private final List<FormatoColumnar.Grupo> grupos = new ArrayList<>();
+        private boolean todas;
+        private boolean[] pedidas;
+        private boolean cabeceraPendiente;
+        private int siguienteGrupo;
+        private int filasGrupo;
+        private int fila;
+        private long[] desplazamientos;
+        private long[] campos;
+        private long[] ultimos;
+        private String[] restos;
+        private String[][] valores;
+        private final LongWritable clave = new LongWritable();
+        private final Text valor = new Text();
+        private final StringBuilder linea = new StringBuilder();
+
+        @Override
+        public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException {
+            FileSplit split = (FileSplit) genericSplit;
+            Configuration conf = context.getConfiguration();
+            Path ruta = split.getPath();
+            FileSystem fs = ruta.getFileSystem(conf);
+            entrada = fs.open(ruta);
+            pie = FormatoColumnar.leerPie(entrada, ruta, fs.getFileStatus(ruta).getLen());
+            long fin = split.getStart() + split.getLength();
+            for (FormatoColumnar.Grupo g : pie.grupos) {
+                if (g.posicion >= split.getStart() && g.posicion < fin) grupos.add(g);
+            }
+            cabeceraPendiente = pie.lineaInicial != null && split.getStart() == FormatoColumnar.MAGIA.length;
+
+            String[] columnas = conf.getTrimmedStrings(CONF_COLUMNAS);
+            todas = columnas.length == 0;
+            pedidas = new boolean[pie.columnas];
+            for (String c : columnas) {
+                int i = Integer.parseInt(c);
+                if (i < 0 || i >= pie.columnas) {
+                    throw new IOException("Columna " + i + " fuera de rango en " + ruta);
+                }
+                pedidas[i] = true;
+            }
+            valores = new String[pie.columnas][];
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            if (cabeceraPendiente) {
+                cabeceraPendiente = false;
+                clave.set(0);
+                valor.set(pie.lineaInicial);
+                return true;
+            }
+            while (fila >= filasGrupo) {
+                if (siguienteGrupo >= grupos.size()) return false;
+                cargarGrupo(grupos.get(siguienteGrupo++));
+            }
+            clave.set(desplazamientos[fila]);
+            valor.set(armarLinea(fila));
+            fila++;
+            return true;
+        }
+
+        private String armarLinea(int f) {
+            linea.setLength(0);
+            int n = (int) campos[f];
+            if (todas) {
+                for (int i = 0; i < Math.min(n, pie.columnas); i++) {
+                    if (i > 0) linea.append(';');
+                    linea.append(valores[i][f]);
+                }
+                if (n > pie.columnas) linea.append(';').append(restos[f]);
+                return linea.toString();
+            }
+            int ultimo = (int) ultimos[f];
+            for (int i = 0; i < n; i++) {
+                if (i > 0) linea.append(';');
+                if (i < pie.columnas && pedidas[i]) {
+                    linea.append(valores[i][f]);
+                } else if (i == ultimo - 1) {
+                    linea.append(RELLENO);
+                }
+            }
+            return linea.toString();
+        }
+
+        // Lee solo los bloques necesarios del grupo; los demás se saltan sin leerlos
+        private void cargarGrupo(FormatoColumnar.Grupo grupo) throws IOException {
+            entrada.seek(grupo.posicion);
+            int filas = WritableUtils.readVInt(entrada);
+            int[] longitudes = new int[WritableUtils.readVInt(entrada)];
+            for (int i = 0; i < longitudes.length; i++) {
+                longitudes[i] = WritableUtils.readVInt(entrada);
+            }
+            long posicion = entrada.getPos();
+            for (int b = 0; b < longitudes.length; b++) {
+                int columna = b - FormatoColumnar.PRIMERA_COLUMNA;
+                boolean leer = b < FormatoColumnar.RESTO
+                        || (b == FormatoColumnar.RESTO && todas)
+                        || (columna >= 0 && (todas || pedidas[columna]));
+                if (leer) {
+                    byte[] bloque = new byte[longitudes[b]];
+                    entrada.readFully(posicion, bloque, 0, bloque.length);
+                    switch (b) {
+                        case FormatoColumnar.DESPLAZAMIENTO:
+                            desplazamientos = FormatoColumnar.decodificarEnteros(bloque, filas);
+                            break;
+                        case FormatoColumnar.CAMPOS:
+                            campos = FormatoColumnar.decodificarEnteros(bloque, filas);
+                            break;
+                        case FormatoColumnar.ULTIMO:
+                            ultimos = FormatoColumnar.decodificarEnteros(bloque, filas);
+                            break;
+                        case FormatoColumnar.RESTO:
+                            restos = FormatoColumnar.decodificarTextos(bloque, filas);
+                            break;
+                        default:
+                            valores[columna] = FormatoColumnar.decodificarTextos(bloque, filas);
+                    }
+                }
+                posicion += longitudes[b];
+            }
+            filasGrupo = filas;
+            fila = 0;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return clave;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return valor;
+        }
+
+        @Override
+        public float getProgress() {
+            if (grupos.isEmpty()) return 1f;
+            float enGrupo = filasGrupo == 0 ? 0f : (float) fila / filasGrupo;
+            return Math.min(1f, (Math.max(0, siguienteGrupo - 1) + enGrupo) / grupos.size());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (entrada != null) entrada.close();
+        }
+    }
+}
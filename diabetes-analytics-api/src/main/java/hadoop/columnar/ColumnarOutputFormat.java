@@ -0,0 +1,150 @@
+package hadoop.columnar;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Escribe las líneas del CSV (clave = desplazamiento, como las entrega TextInputFormat)
+ * en el formato de FormatoColumnar, en grupos de CONF_FILAS_POR_GRUPO filas.
+ * Junto a cada archivo deja los resúmenes de sus grupos (ZonaGrupo).
+ */
+public class ColumnarOutputFormat extends FileOutputFormat<LongWritable, Text> {
+
+    public static final String EXTENSION = ".dcol";
+    public static final String CONF_CABECERA = "columnar.cabecera";
+    public static final String CONF_FILAS_POR_GRUPO = "columnar.filas.por.grupo";
+    public static final int FILAS_POR_GRUPO = 32768;
+
+    @Override
+    public RecordWriter<LongWritable, Text> getRecordWriter(TaskAttemptContext context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        String cabecera = conf.get(CONF_CABECERA);
+        if (cabecera == null) {
+            throw new IOException("Falta " + CONF_CABECERA + " para definir las columnas");
+        }
+        Path archivo = getDefaultWorkFile(context, EXTENSION);
+        FileSystem fs = archivo.getFileSystem(conf);
+        return new EscritorColumnar(fs, archivo, cabecera, conf.getInt(CONF_FILAS_POR_GRUPO, FILAS_POR_GRUPO));
+    }
+
+    static class EscritorColumnar extends RecordWriter<LongWritable, Text> {
+        private final FileSystem fs;
+        private final Path archivo;
+        private final FSDataOutputStream salida;
+        private final String cabecera;
+        private final int columnas;
+        private final int filasPorGrupo;
+        private final String[][] valores;
+        private final long[] desplazamientos;
+        private final long[] campos;
+        private final long[] ultimos;
+        private final String[] restos;
+        private final List<FormatoColumnar.Grupo> grupos = new ArrayList<>();
+        private final ZonaGrupo.Acumulador zona = new ZonaGrupo.Acumulador();
+        private final List<ZonaGrupo> zonas = new ArrayList<>();
+        private String lineaInicial;
+        private int filas;
+
+        EscritorColumnar(FileSystem fs, Path archivo, String cabecera, int filasPorGrupo) throws IOException {
+            this.fs = fs;
+            this.archivo = archivo;
+            this.salida = fs.create(archivo, false);
+            this.cabecera = cabecera;
+            this.columnas = cabecera.split(";", -1).length;
+            this.filasPorGrupo = filasPorGrupo;
+            this.valores = new String[columnas][filasPorGrupo];
+            this.desplazamientos = new long[filasPorGrupo];
+            this.campos = new long[filasPorGrupo];
+            this.ultimos = new long[filasPorGrupo];
+            this.restos = new String[filasPorGrupo];
+            salida.write(FormatoColumnar.MAGIA);
+        }
+
+        @Override
+        public void write(LongWritable key, Text value) throws IOException {
+            String linea = value.toString();
+            if (key.get() == 0) {
+                lineaInicial = linea;
+                return;
+            }
+            desplazamientos[filas] = key.get();
+            zona.agregar(value);
+            // Separar como split(";", -1); los campos de más se guardan juntos en el resto
+            String resto = "";
+            int campo = 0, inicio = 0, ultimo = 0;
+            while (true) {
+                int fin = linea.indexOf(';', inicio);
+                int hasta = fin < 0 ? linea.length() : fin;
+                if (campo < columnas) {
+                    valores[campo][filas] = linea.substring(inicio, hasta);
+                } else if (campo == columnas) {
+                    resto = linea.substring(inicio);
+                }
+                if (hasta > inicio) ultimo = campo + 1;
+                campo++;
+                if (fin < 0) break;
+                inicio = fin + 1;
+            }
+            for (int c = campo; c < columnas; c++) {
+                valores[c][filas] = "";
+            }
+            campos[filas] = campo;
+            ultimos[filas] = ultimo;
+            restos[filas] = resto;
+            if (++filas == filasPorGrupo) {
+                escribirGrupo();
+            }
+        }
+
+        private void escribirGrupo() throws IOException {
+            List<byte[]> bloques = new ArrayList<>(FormatoColumnar.PRIMERA_COLUMNA + columnas);
+            bloques.add(FormatoColumnar.codificarEnteros(desplazamientos, filas));
+            bloques.add(FormatoColumnar.codificarEnteros(campos, filas));
+            bloques.add(FormatoColumnar.codificarEnteros(ultimos, filas));
+            bloques.add(FormatoColumnar.codificarTextos(restos, filas));
+            for (int c = 0; c < columnas; c++) {
+                bloques.add(FormatoColumnar.codificarTextos(valores[c], filas));
+            }
+            grupos.add(new FormatoColumnar.Grupo(salida.getPos(), filas));
+            zonas.add(zona.cerrar(salida.getPos()));
+            WritableUtils.writeVInt(salida, filas);
+            WritableUtils.writeVInt(salida, bloques.size());
+            for (byte[] b : bloques) {
+                WritableUtils.writeVInt(salida, b.length);
+            }
+            for (byte[] b : bloques) {
+                salida.write(b);
+            }
+            filas = 0;
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            try {
+                if (filas > 0) {
+                    escribirGrupo();
+                }
+                long posicionPie = salida.getPos();
+                FormatoColumnar.escribirPie(salida,
+                        new FormatoColumnar.Pie(cabecera, lineaInicial, columnas, grupos, posicionPie));
+                salida.writeLong(posicionPie);
+                salida.write(FormatoColumnar.MAGIA);
+            } finally {
+                salida.close();
+            }
+            ZonaGrupo.escribir(fs, archivo, zonas);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package hadoop.columnar;
+
+import hadoop.comun.Compresion;
+import hadoop.comun.EjecutorJobs;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Job de solo map que convierte el CSV al formato por columnas. Cada tarea
+ * escribe un archivo .dcol con las líneas de su split; la salida se usa como
+ * entrada de los jobs de hadoop.q* a través de EntradaDatos.
+ */
+public class ConversionColumnar {
+
+    public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        Configuration conf = new Configuration();
+        String cabecera = leerCabecera(conf, new Path(inputPath));
+        if (cabecera == null) {
+            return false;
+        }
+        conf.set(ColumnarOutputFormat.CONF_CABECERA, cabecera);
+        Job job = Job.getInstance(conf, "Conversion a Formato Columnar");
+        job.setJarByClass(ConversionColumnar.class);
+        job.setMapperClass(Mapper.class);
+        job.setNumReduceTasks(0);
+        job.setOutputKeyClass(LongWritable.class);
+        job.setOutputValueClass(Text.class);
+        job.setOutputFormatClass(ColumnarOutputFormat.class);
+        FileInputFormat.addInputPath(job, new Path(inputPath));
+        FileOutputFormat.setOutputPath(job, new Path(outputPath));
+        return EjecutorJobs.ejecutar(job);
+    }
+
+    // La primera línea define las columnas de todos los archivos generados
+    private static String leerCabecera(Configuration conf, Path entrada) throws IOException {
+        FileSystem fs = entrada.getFileSystem(conf);
+        Path archivo = entrada;
+        if (fs.getFileStatus(entrada).isDirectory()) {
+            archivo = null;
+            for (FileStatus st : fs.listStatus(entrada)) {
+                String nombre = st.getPath().getName();
+                if (st.isFile() && !nombre.startsWith("_") && !nombre.startsWith(".")) {
+                    archivo = st.getPath();
+                    break;
+                }
+            }
+            if (archivo == null) return null;
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                Compresion.abrir(archivo.getName(), fs.open(archivo)), StandardCharsets.UTF_8))) {
+            return br.readLine();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package hadoop.columnar;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Condiciones que una fila tiene que poder cumplir para que el mapper de un
+ * job la use. ColumnarInputFormat.getSplits las compara con los resúmenes de
+ * ZonaGrupo y no arma splits para los grupos donde ninguna fila las cumple.
+ * Cada llamada a exigir agrega una cláusula (se cumple alguna de sus
+ * condiciones) y todas las cláusulas tienen que cumplirse. Sin resumen de la
+ * columna, con un texto de menos de tres bytes o sobre el CSV original no se
+ * descarta nada.
+ */
+public final class FiltroZonas {
+
+    public static final String CONF_FILTRO = "columnar.zonas.filtro";
+
+    private static final char ENTRE = 'r';
+    private static final char CONTIENE = 'c';
+    private static final char IGUAL = 'i';
+
+    private FiltroZonas() { }
+
+    public static final class Condicion {
+        private final char tipo;
+        private final int columna;
+        private final double minimo;
+        private final double maximo;
+        private final byte[] texto;
+
+        private Condicion(char tipo, int columna, double minimo, double maximo, byte[] texto) {
+            this.tipo = tipo;
+            this.columna = columna;
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.texto = texto;
+        }
+
+        private String codificar() {
+            if (tipo == ENTRE) return tipo + ":" + columna + ":" + minimo + ":" + maximo;
+            return tipo + ":" + columna + ":" + Base64.getEncoder().encodeToString(texto);
+        }
+
+        private static Condicion decodificar(String codificada) {
+            String[] partes = codificada.split(":");
+            char tipo = partes[0].charAt(0);
+            int columna = Integer.parseInt(partes[1]);
+            if (tipo == ENTRE) {
+                return new Condicion(tipo, columna, Double.parseDouble(partes[2]), Double.parseDouble(partes[3]), null);
+            }
+            byte[] texto = partes.length > 2 ? Base64.getDecoder().decode(partes[2]) : new byte[0];
+            return new Condicion(tipo, columna, 0, 0, texto);
+        }
+
+        boolean puedeCumplirse(ZonaGrupo zona) {
+            switch (tipo) {
+                case ENTRE: {
+                    int i = ZonaGrupo.indice(ZonaGrupo.COLUMNAS_RANGO, columna);
+                    return i < 0 || (zona.minimos[i] <= maximo && zona.maximos[i] >= minimo);
+                }
+                case IGUAL: {
+                    int i = ZonaGrupo.indice(ZonaGrupo.COLUMNAS_VALORES, columna);
+                    return i < 0 || zona.valores[i].membershipTest(ZonaGrupo.clave(texto, 0, texto.length));
+                }
+                default: {
+                    int i = ZonaGrupo.indice(ZonaGrupo.COLUMNAS_TEXTO, columna);
+                    if (i < 0) return true;
+                    for (int j = 0; j + ZonaGrupo.LARGO_TRIGRAMA <= texto.length; j++) {
+                        if (!zona.trigramas[i].membershipTest(ZonaGrupo.clave(texto, j, ZonaGrupo.LARGO_TRIGRAMA))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }
+        }
+    }
+
+    // Valor de la columna entre minimo y maximo (inclusive); la fecha como yyyyMMdd
+    public static Condicion entre(int columna, double minimo, double maximo) {
+        return new Condicion(ENTRE, columna, minimo, maximo, null);
+    }
+
+    // El campo en mayúsculas contiene el texto, como RegistroCsv.contieneMayusculas
+    public static Condicion contiene(int columna, String textoEnMayusculas) {
+        return new Condicion(CONTIENE, columna, 0, 0, textoEnMayusculas.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // El campo recortado es igual al valor, como RegistroCsv.copiarRecortado
+    public static Condicion igual(int columna, String valor) {
+        return new Condicion(IGUAL, columna, 0, 0, valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void exigir(Job job, Condicion... alguna) {
+        StringBuilder clausula = new StringBuilder();
+        for (Condicion condicion : alguna) {
+            if (clausula.length() > 0) clausula.append(' ');
+            clausula.append(condicion.codificar());
+        }
+        Configuration conf = job.getConfiguration();
+        String[] previas = conf.getTrimmedStrings(CONF_FILTRO);
+        String[] clausulas = new String[previas.length + 1];
+        System.arraycopy(previas, 0, clausulas, 0, previas.length);
+        clausulas[previas.length] = clausula.toString();
+        conf.setStrings(CONF_FILTRO, clausulas);
+    }
+
+    static List<List<Condicion>> leer(Configuration conf) {
+        List<List<Condicion>> clausulas = new ArrayList<>();
+        for (String clausula : conf.getTrimmedStrings(CONF_FILTRO)) {
+            List<Condicion> condiciones = new ArrayList<>();
+            for (String codificada : clausula.split(" ")) {
+                condiciones.add(Condicion.decodificar(codificada));
+            }
+            clausulas.add(condiciones);
+        }
+        return clausulas;
+    }
+
+    static boolean puedeCumplirse(List<List<Condicion>> clausulas, ZonaGrupo zona) {
+        for (List<Condicion> clausula : clausulas) {
+            boolean alguna = false;
+            for (Condicion condicion : clausula) {
+                if (condicion.puedeCumplirse(zona)) {
+                    alguna = true;
+                    break;
+                }
+            }
+            if (!alguna) return false;
+        }
+        return true;
+    }
+}
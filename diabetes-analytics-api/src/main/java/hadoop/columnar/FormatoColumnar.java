@@ -0,0 +1,399 @@
+package hadoop.columnar;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Formato binario por columnas para datos.csv.
+ *
+ * Archivo: MAGIA, grupos de filas, pie, posición del pie (long) y MAGIA.
+ * Grupo: filas, número de bloques, longitud de cada bloque y los bloques.
+ * Cada bloque guarda una columna del grupo comprimida con Deflate; su primer
+ * byte es la codificación elegida para esos valores. Los primeros bloques son
+ * internos (desplazamiento de la línea en el CSV, número de campos, último
+ * campo no vacío y texto sobrante tras la última columna) y permiten devolver
+ * al mapper la misma línea que leería del CSV.
+ */
+final class FormatoColumnar {
+
+    static final byte[] MAGIA = {'D', 'C', 'O', 'L'};
+
+    // Codificaciones de bloque
+    static final byte PLANO = 0;
+    static final byte DICCIONARIO = 1;
+    static final byte ENTERO = 2;
+    static final byte FECHA = 3;
+    static final byte DECIMAL = 4;
+    static final byte DELTA = 5;
+
+    // Bloques internos de cada grupo; las columnas del CSV empiezan en PRIMERA_COLUMNA
+    static final int DESPLAZAMIENTO = 0;
+    static final int CAMPOS = 1;
+    static final int ULTIMO = 2;
+    static final int RESTO = 3;
+    static final int PRIMERA_COLUMNA = 4;
+
+    private FormatoColumnar() { }
+
+    static final class Grupo {
+        final long posicion;
+        final int filas;
+
+        Grupo(long posicion, int filas) {
+            this.posicion = posicion;
+            this.filas = filas;
+        }
+    }
+
+    static final class Pie {
+        final String cabecera;
+        // Línea de desplazamiento 0 del CSV (la cabecera), solo en el archivo que la contiene
+        final String lineaInicial;
+        final int columnas;
+        final List<Grupo> grupos;
+        final long posicion;
+
+        Pie(String cabecera, String lineaInicial, int columnas, List<Grupo> grupos, long posicion) {
+            this.cabecera = cabecera;
+            this.lineaInicial = lineaInicial;
+            this.columnas = columnas;
+            this.grupos = grupos;
+            this.posicion = posicion;
+        }
+
+        // Fin del grupo i: inicio del siguiente o del pie
+        long finGrupo(int i) {
+            return i + 1 < grupos.size() ? grupos.get(i + 1).posicion : posicion;
+        }
+    }
+
+    static void escribirPie(DataOutput out, Pie pie) throws IOException {
+        Text.writeString(out, pie.cabecera);
+        out.writeBoolean(pie.lineaInicial != null);
+        if (pie.lineaInicial != null) {
+            Text.writeString(out, pie.lineaInicial);
+        }
+        WritableUtils.writeVInt(out, pie.columnas);
+        WritableUtils.writeVInt(out, pie.grupos.size());
+        for (Grupo g : pie.grupos) {
+            WritableUtils.writeVLong(out, g.posicion);
+            WritableUtils.writeVInt(out, g.filas);
+        }
+    }
+
+    static Pie leerPie(FileSystem fs, Path archivo, long longitud) throws IOException {
+        try (FSDataInputStream in = fs.open(archivo)) {
+            return leerPie(in, archivo, longitud);
+        }
+    }
+
+    static Pie leerPie(FSDataInputStream in, Path archivo, long longitud) throws IOException {
+        if (longitud < MAGIA.length * 2 + 8) {
+            throw new IOException("Archivo columnar incompleto: " + archivo);
+        }
+        in.seek(longitud - 8 - MAGIA.length);
+        long posicion = in.readLong();
+        byte[] magia = new byte[MAGIA.length];
+        in.readFully(magia);
+        if (!Arrays.equals(magia, MAGIA)) {
+            throw new IOException("No es un archivo columnar: " + archivo);
+        }
+        in.seek(posicion);
+        String cabecera = Text.readString(in);
+        String lineaInicial = in.readBoolean() ? Text.readString(in) : null;
+        int columnas = WritableUtils.readVInt(in);
+        int n = WritableUtils.readVInt(in);
+        List<Grupo> grupos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            grupos.add(new Grupo(WritableUtils.readVLong(in), WritableUtils.readVInt(in)));
+        }
+        return new Pie(cabecera, lineaInicial, columnas, grupos, posicion);
+    }
+
+    // ---- Codificación de bloques ----
+
+    static byte[] codificarTextos(String[] valores, int filas) throws IOException {
+        byte tipo = elegirCodificacion(valores, filas);
+        DataOutputBuffer buf = new DataOutputBuffer();
+        switch (tipo) {
+            case ENTERO:
+                for (int i = 0; i < filas; i++) {
+                    escribirOpcional(buf, valores[i].isEmpty() ? null : Long.parseLong(valores[i]));
+                }
+                break;
+            case FECHA:
+                for (int i = 0; i < filas; i++) {
+                    escribirOpcional(buf, valores[i].isEmpty() ? null : LocalDate.parse(valores[i]).toEpochDay());
+                }
+                break;
+            case DECIMAL:
+                for (int i = 0; i < filas; i++) {
+                    String v = valores[i];
+                    if (v.isEmpty()) {
+                        WritableUtils.writeVInt(buf, 0);
+                        continue;
+                    }
+                    int punto = v.indexOf('.');
+                    int escala = punto < 0 ? 0 : v.length() - punto - 1;
+                    String digitos = punto < 0 ? v : v.substring(0, punto) + v.substring(punto + 1);
+                    WritableUtils.writeVInt(buf, escala + 1);
+                    WritableUtils.writeVLong(buf, Long.parseLong(digitos));
+                }
+                break;
+            case DICCIONARIO:
+                Map<String, Integer> ids = new HashMap<>();
+                List<String> entradas = new ArrayList<>();
+                int[] filasId = new int[filas];
+                for (int i = 0; i < filas; i++) {
+                    Integer id = ids.get(valores[i]);
+                    if (id == null) {
+                        id = entradas.size();
+                        ids.put(valores[i], id);
+                        entradas.add(valores[i]);
+                    }
+                    filasId[i] = id;
+                }
+                WritableUtils.writeVInt(buf, entradas.size());
+                for (String e : entradas) {
+                    Text.writeString(buf, e);
+                }
+                for (int i = 0; i < filas; i++) {
+                    WritableUtils.writeVInt(buf, filasId[i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < filas; i++) {
+                    Text.writeString(buf, valores[i]);
+                }
+        }
+        return comprimir(tipo, buf);
+    }
+
+    static byte[] codificarEnteros(long[] valores, int filas) throws IOException {
+        DataOutputBuffer buf = new DataOutputBuffer();
+        long anterior = 0;
+        for (int i = 0; i < filas; i++) {
+            WritableUtils.writeVLong(buf, valores[i] - anterior);
+            anterior = valores[i];
+        }
+        return comprimir(DELTA, buf);
+    }
+
+    static String[] decodificarTextos(byte[] bloque, int filas) throws IOException {
+        DataInputBuffer in = descomprimir(bloque);
+        String[] valores = new String[filas];
+        switch (bloque[0]) {
+            case ENTERO:
+                for (int i = 0; i < filas; i++) {
+                    Long v = leerOpcional(in);
+                    valores[i] = v == null ? "" : Long.toString(v);
+                }
+                break;
+            case FECHA:
+                for (int i = 0; i < filas; i++) {
+                    Long v = leerOpcional(in);
+                    valores[i] = v == null ? "" : LocalDate.ofEpochDay(v).toString();
+                }
+                break;
+            case DECIMAL:
+                for (int i = 0; i < filas; i++) {
+                    int escala = WritableUtils.readVInt(in) - 1;
+                    valores[i] = escala < 0 ? "" : formatearDecimal(WritableUtils.readVLong(in), escala);
+                }
+                break;
+            case DICCIONARIO:
+                String[] entradas = new String[WritableUtils.readVInt(in)];
+                for (int i = 0; i < entradas.length; i++) {
+                    entradas[i] = Text.readString(in);
+                }
+                for (int i = 0; i < filas; i++) {
+                    valores[i] = entradas[WritableUtils.readVInt(in)];
+                }
+                break;
+            case PLANO:
+                for (int i = 0; i < filas; i++) {
+                    valores[i] = Text.readString(in);
+                }
+                break;
+            default:
+                throw new IOException("Codificación de bloque desconocida: " + bloque[0]);
+        }
+        return valores;
+    }
+
+    static long[] decodificarEnteros(byte[] bloque, int filas) throws IOException {
+        if (bloque[0] != DELTA) {
+            throw new IOException("Se esperaba un bloque DELTA: " + bloque[0]);
+        }
+        DataInputBuffer in = descomprimir(bloque);
+        long[] valores = new long[filas];
+        long anterior = 0;
+        for (int i = 0; i < filas; i++) {
+            anterior += WritableUtils.readVLong(in);
+            valores[i] = anterior;
+        }
+        return valores;
+    }
+
+    // Tipos numéricos solo si todos los valores no vacíos vuelven a dar el mismo texto
+    static byte elegirCodificacion(String[] valores, int filas) {
+        boolean entero = true, fecha = true, decimal = true, conValores = false;
+        for (int i = 0; i < filas && (entero || fecha || decimal); i++) {
+            String v = valores[i];
+            if (v.isEmpty()) continue;
+            conValores = true;
+            if (entero && !esEntero(v)) entero = false;
+            if (fecha && !esFecha(v)) fecha = false;
+            if (decimal && !esDecimal(v)) decimal = false;
+        }
+        if (conValores) {
+            if (entero) return ENTERO;
+            if (fecha) return FECHA;
+            if (decimal) return DECIMAL;
+        }
+        Map<String, Boolean> distintos = new HashMap<>();
+        for (int i = 0; i < filas && distintos.size() * 2 <= filas; i++) {
+            distintos.put(valores[i], Boolean.TRUE);
+        }
+        return distintos.size() * 2 <= filas ? DICCIONARIO : PLANO;
+    }
+
+    static boolean esEntero(String v) {
+        return esNumero(v, false);
+    }
+
+    static boolean esDecimal(String v) {
+        return esNumero(v, true);
+    }
+
+    // Forma canónica: signo opcional, sin ceros a la izquierda, sin "-0", a lo sumo 18 dígitos
+    private static boolean esNumero(String v, boolean conPunto) {
+        int i = v.startsWith("-") ? 1 : 0;
+        int inicioEntero = i;
+        while (i < v.length() && Character.isDigit(v.charAt(i)) && v.charAt(i) < 128) i++;
+        int digitosEnteros = i - inicioEntero;
+        if (digitosEnteros == 0) return false;
+        if (digitosEnteros > 1 && v.charAt(inicioEntero) == '0') return false;
+        int digitosDecimales = 0;
+        if (i < v.length()) {
+            if (!conPunto || v.charAt(i) != '.') return false;
+            i++;
+            int inicioDecimal = i;
+            while (i < v.length() && Character.isDigit(v.charAt(i)) && v.charAt(i) < 128) i++;
+            digitosDecimales = i - inicioDecimal;
+            if (digitosDecimales == 0 || digitosDecimales > 9 || i < v.length()) return false;
+        }
+        if (digitosEnteros + digitosDecimales > 18) return false;
+        if (inicioEntero == 1) {
+            for (int j = 1; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c != '0' && c != '.') return true;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    static boolean esFecha(String v) {
+        if (v.length() != 10 || v.charAt(4) != '-' || v.charAt(7) != '-') return false;
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && (v.charAt(i) < '0' || v.charAt(i) > '9')) return false;
+        }
+        try {
+            return LocalDate.of(Integer.parseInt(v.substring(0, 4)), Integer.parseInt(v.substring(5, 7)),
+                    Integer.parseInt(v.substring(8, 10))).toString().equals(v);
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    static String formatearDecimal(long sinEscala, int escala) {
+        if (escala == 0) return Long.toString(sinEscala);
+        StringBuilder sb = new StringBuilder(Long.toString(Math.abs(sinEscala)));
+        while (sb.length() <= escala) sb.insert(0, '0');
+        sb.insert(sb.length() - escala, '.');
+        if (sinEscala < 0) sb.insert(0, '-');
+        return sb.toString();
+    }
+
+    // El 0 marca un valor vacío; los no negativos se desplazan en uno
+    private static void escribirOpcional(DataOutput out, Long valor) throws IOException {
+        if (valor == null) {
+            WritableUtils.writeVLong(out, 0);
+        } else {
+            WritableUtils.writeVLong(out, valor >= 0 ? valor + 1 : valor);
+        }
+    }
+
+    private static Long leerOpcional(DataInput in) throws IOException {
+        long v = WritableUtils.readVLong(in);
+        if (v == 0) return null;
+        return v > 0 ? v - 1 : v;
+    }
+
+    // Bloque: tipo, tamaño sin comprimir (vint) y datos Deflate
+    private static byte[] comprimir(byte tipo, DataOutputBuffer datos) throws IOException {
+        DataOutputBuffer salida = new DataOutputBuffer();
+        salida.writeByte(tipo);
+        WritableUtils.writeVInt(salida, datos.getLength());
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(datos.getData(), 0, datos.getLength());
+            deflater.finish();
+            byte[] trozo = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(trozo);
+                salida.write(trozo, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        return Arrays.copyOf(salida.getData(), salida.getLength());
+    }
+
+    private static DataInputBuffer descomprimir(byte[] bloque) throws IOException {
+        DataInputBuffer cabecera = new DataInputBuffer();
+        cabecera.reset(bloque, 1, bloque.length - 1);
+        int tamano = WritableUtils.readVInt(cabecera);
+        int inicio = cabecera.getPosition();
+        byte[] datos = new byte[tamano];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bloque, inicio, bloque.length - inicio);
+            int leidos = 0;
+            while (leidos < tamano) {
+                int n = inflater.inflate(datos, leidos, tamano - leidos);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Bloque columnar truncado");
+                }
+                leidos += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque columnar corrupto", e);
+        } finally {
+            inflater.end();
+        }
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(datos, tamano);
+        return in;
+    }
+}
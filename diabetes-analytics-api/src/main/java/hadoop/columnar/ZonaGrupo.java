@@ -0,0 +1,221 @@
+package hadoop.columnar;
+
+import hadoop.comun.RegistroCsv;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resumen de un grupo de filas de un archivo .dcol (zone map): mínimo y máximo
+ * de las columnas de COLUMNAS_RANGO y filtros de Bloom de los valores
+ * recortados de COLUMNAS_VALORES y de los trigramas del texto en mayúsculas
+ * de COLUMNAS_TEXTO. Toda fila en la que el campo existe deja su rastro en el
+ * resumen, así que si el resumen descarta una condición de FiltroZonas
+ * ninguna fila del grupo la cumple. Los resúmenes de un archivo se guardan
+ * aparte, en _<archivo>.zonas, que listStatus no entrega como entrada.
+ */
+final class ZonaGrupo implements Writable {
+
+    static final byte[] MAGIA = {'D', 'Z', 'O', 'N'};
+
+    // FECHA_MUESTRA (como yyyyMMdd de fechaNumerica), RESULTADO_1 y RESULTADO_2
+    static final int COLUMNA_FECHA = 17;
+    static final int[] COLUMNAS_RANGO = {COLUMNA_FECHA, 20, 24};
+    // DEPARTAMENTO, COD_DIAG, PROCEDIMIENTO_1 y PROCEDIMIENTO_2
+    static final int[] COLUMNAS_VALORES = {1, 12, 19, 23};
+    // DIAGNOSTICO y los dos procedimientos, donde buscan contieneMayusculas las consultas
+    static final int[] COLUMNAS_TEXTO = {13, 19, 23};
+
+    static final int LARGO_TRIGRAMA = 3;
+
+    // Unos 10 bits por valor distinto con 7 funciones de hash: ~1% de falsos positivos
+    private static final int BITS_POR_VALOR = 10;
+    private static final int BITS_MINIMOS = 64;
+    private static final int FUNCIONES_HASH = 7;
+
+    long posicion;
+    final double[] minimos = new double[COLUMNAS_RANGO.length];
+    final double[] maximos = new double[COLUMNAS_RANGO.length];
+    final BloomFilter[] valores = new BloomFilter[COLUMNAS_VALORES.length];
+    final BloomFilter[] trigramas = new BloomFilter[COLUMNAS_TEXTO.length];
+
+    static int indice(int[] columnas, int columna) {
+        for (int i = 0; i < columnas.length; i++) {
+            if (columnas[i] == columna) return i;
+        }
+        return -1;
+    }
+
+    static Path ruta(Path archivo) {
+        return new Path(archivo.getParent(), "_" + archivo.getName() + ".zonas");
+    }
+
+    // Key no acepta bytes vacíos y el campo vacío también es un valor: todas llevan un byte delante
+    static Key clave(byte[] bytes, int inicio, int largo) {
+        byte[] copia = new byte[largo + 1];
+        System.arraycopy(bytes, inicio, copia, 1, largo);
+        return new Key(copia);
+    }
+
+    private static int trigrama(byte[] bytes, int i) {
+        return (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, posicion);
+        for (int i = 0; i < COLUMNAS_RANGO.length; i++) {
+            out.writeDouble(minimos[i]);
+            out.writeDouble(maximos[i]);
+        }
+        for (BloomFilter filtro : valores) filtro.write(out);
+        for (BloomFilter filtro : trigramas) filtro.write(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        posicion = WritableUtils.readVLong(in);
+        for (int i = 0; i < COLUMNAS_RANGO.length; i++) {
+            minimos[i] = in.readDouble();
+            maximos[i] = in.readDouble();
+        }
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = new BloomFilter();
+            valores[i].readFields(in);
+        }
+        for (int i = 0; i < trigramas.length; i++) {
+            trigramas[i] = new BloomFilter();
+            trigramas[i].readFields(in);
+        }
+    }
+
+    static void escribir(FileSystem fs, Path archivo, List<ZonaGrupo> zonas) throws IOException {
+        try (FSDataOutputStream out = fs.create(ruta(archivo), false)) {
+            out.write(MAGIA);
+            WritableUtils.writeVInt(out, zonas.size());
+            for (ZonaGrupo zona : zonas) zona.write(out);
+        }
+    }
+
+    // null si el archivo no tiene resúmenes (escrito antes de que existieran): no se descarta nada
+    static List<ZonaGrupo> leer(FileSystem fs, Path archivo) throws IOException {
+        Path ruta = ruta(archivo);
+        if (!fs.exists(ruta)) return null;
+        try (FSDataInputStream in = fs.open(ruta)) {
+            byte[] magia = new byte[MAGIA.length];
+            in.readFully(magia);
+            if (!Arrays.equals(magia, MAGIA)) return null;
+            int n = WritableUtils.readVInt(in);
+            List<ZonaGrupo> zonas = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                ZonaGrupo zona = new ZonaGrupo();
+                zona.readFields(in);
+                zonas.add(zona);
+            }
+            return zonas;
+        }
+    }
+
+    /** Junta los valores de las filas de un grupo mientras se escribe y arma su ZonaGrupo. */
+    static final class Acumulador {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text campo = new Text();
+        private final double[] minimos = new double[COLUMNAS_RANGO.length];
+        private final double[] maximos = new double[COLUMNAS_RANGO.length];
+        private final List<Set<Text>> distintos = new ArrayList<>();
+        // Un bit por trigrama posible (24 bits): sin objetos por fila
+        private final BitSet[] trigramas = new BitSet[COLUMNAS_TEXTO.length];
+
+        Acumulador() {
+            for (int i = 0; i < COLUMNAS_VALORES.length; i++) distintos.add(new HashSet<>());
+            for (int i = 0; i < trigramas.length; i++) trigramas[i] = new BitSet(1 << 24);
+            reiniciar();
+        }
+
+        private void reiniciar() {
+            Arrays.fill(minimos, Double.POSITIVE_INFINITY);
+            Arrays.fill(maximos, Double.NEGATIVE_INFINITY);
+            for (Set<Text> s : distintos) s.clear();
+            for (BitSet b : trigramas) b.clear();
+        }
+
+        void agregar(Text linea) {
+            registro.set(linea);
+            int campos = registro.campos();
+            for (int i = 0; i < COLUMNAS_RANGO.length; i++) {
+                int c = COLUMNAS_RANGO[i];
+                if (campos <= c) continue;
+                try {
+                    double v = c == COLUMNA_FECHA ? registro.fechaNumerica(c) : registro.decimal(c);
+                    if (v < minimos[i]) minimos[i] = v;
+                    if (v > maximos[i]) maximos[i] = v;
+                } catch (NumberFormatException e) {
+                    // sin valor en esta fila
+                }
+            }
+            for (int i = 0; i < COLUMNAS_VALORES.length; i++) {
+                if (campos <= COLUMNAS_VALORES[i]) continue;
+                registro.copiarRecortado(COLUMNAS_VALORES[i], campo);
+                if (!distintos.get(i).contains(campo)) distintos.get(i).add(new Text(campo));
+            }
+            for (int i = 0; i < COLUMNAS_TEXTO.length; i++) {
+                if (campos <= COLUMNAS_TEXTO[i]) continue;
+                registro.copiarMayusculas(COLUMNAS_TEXTO[i], campo);
+                byte[] bytes = campo.getBytes();
+                for (int j = 0; j + LARGO_TRIGRAMA <= campo.getLength(); j++) {
+                    trigramas[i].set(trigrama(bytes, j));
+                }
+            }
+        }
+
+        ZonaGrupo cerrar(long posicion) {
+            ZonaGrupo zona = new ZonaGrupo();
+            zona.posicion = posicion;
+            System.arraycopy(minimos, 0, zona.minimos, 0, minimos.length);
+            System.arraycopy(maximos, 0, zona.maximos, 0, maximos.length);
+            for (int i = 0; i < COLUMNAS_VALORES.length; i++) {
+                BloomFilter filtro = nuevoFiltro(distintos.get(i).size());
+                for (Text valor : distintos.get(i)) {
+                    filtro.add(clave(valor.getBytes(), 0, valor.getLength()));
+                }
+                zona.valores[i] = filtro;
+            }
+            byte[] bytes = new byte[LARGO_TRIGRAMA];
+            for (int i = 0; i < COLUMNAS_TEXTO.length; i++) {
+                BitSet vistos = trigramas[i];
+                BloomFilter filtro = nuevoFiltro(vistos.cardinality());
+                for (int t = vistos.nextSetBit(0); t >= 0; t = vistos.nextSetBit(t + 1)) {
+                    bytes[0] = (byte) (t >>> 16);
+                    bytes[1] = (byte) (t >>> 8);
+                    bytes[2] = (byte) t;
+                    filtro.add(clave(bytes, 0, LARGO_TRIGRAMA));
+                }
+                zona.trigramas[i] = filtro;
+            }
+            reiniciar();
+            return zona;
+        }
+
+        private static BloomFilter nuevoFiltro(int distintos) {
+            int bits = Math.max(BITS_MINIMOS, distintos * BITS_POR_VALOR);
+            return new BloomFilter(bits, FUNCIONES_HASH, Hash.MURMUR_HASH);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.io.compress.zlib.ZlibFactory;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Códecs de un job: el de la salida del map (lo que se escribe a disco y viaja
+ * en el shuffle) y el de la salida final (los part-*, que quedan con la
+ * extensión del códec). Se eligen por nombre: none, deflate, gzip, bzip2, lz4
+ * o snappy; lz4 y snappy necesitan la biblioteca nativa de Hadoop, y gzip
+ * también para la salida del map. Leer una
+ * entrada comprimida no necesita nada: TextInputFormat reconoce el códec por
+ * la extensión y bzip2 además se puede partir en splits.
+ */
+public final class Compresion {
+
+    public static final String NINGUNO = "none";
+
+    private static final Map<String, Class<? extends CompressionCodec>> CODECS = new LinkedHashMap<>();
+
+    static {
+        CODECS.put(NINGUNO, null);
+        CODECS.put("deflate", DefaultCodec.class);
+        CODECS.put("gzip", GzipCodec.class);
+        CODECS.put("bzip2", BZip2Codec.class);
+        CODECS.put("lz4", Lz4Codec.class);
+        CODECS.put("snappy", SnappyCodec.class);
+    }
+
+    private static final CompressionCodecFactory POR_EXTENSION = new CompressionCodecFactory(new Configuration());
+
+    private final Class<? extends CompressionCodec> intermedio;
+    private final Class<? extends CompressionCodec> salida;
+
+    /** Nombres de códec (null = none); IllegalArgumentException si no existe o no se puede usar aquí. */
+    public Compresion(String intermedio, String salida) {
+        this.intermedio = codec(intermedio);
+        this.salida = codec(salida);
+        // Sin zlib nativo el compresor Java de gzip no se puede reutilizar entre segmentos del
+        // archivo intermedio y el shuffle no los puede leer ("not a gzip file")
+        if (this.intermedio == GzipCodec.class && !ZlibFactory.isNativeZlibLoaded(new Configuration())) {
+            throw new IllegalArgumentException("gzip como códec intermedio necesita zlib nativo; deflate es el mismo formato sin encabezado");
+        }
+    }
+
+    public static List<String> nombres() {
+        return new ArrayList<>(CODECS.keySet());
+    }
+
+    private static Class<? extends CompressionCodec> codec(String nombre) {
+        if (nombre == null) return null;
+        if (!CODECS.containsKey(nombre)) {
+            throw new IllegalArgumentException("Códec desconocido: " + nombre + " (disponibles: " + nombres() + ")");
+        }
+        Class<? extends CompressionCodec> codec = CODECS.get(nombre);
+        if ((codec == Lz4Codec.class && !Lz4Codec.isNativeCodeLoaded())
+                || (codec == SnappyCodec.class && !SnappyCodec.isNativeCodeLoaded())) {
+            throw new IllegalArgumentException("El códec " + nombre + " necesita la biblioteca nativa de Hadoop, que no está cargada");
+        }
+        return codec;
+    }
+
+    /** Una instancia del códec de nombre dado, o null para none. */
+    public static CompressionCodec crear(String nombre) {
+        Class<? extends CompressionCodec> codec = codec(nombre);
+        return codec == null ? null : ReflectionUtils.newInstance(codec, new Configuration());
+    }
+
+    // MotorEnMemoria no serializa la salida del map: solo la salida final queda comprimida
+    public void aplicar(Job job) {
+        Configuration conf = job.getConfiguration();
+        if (intermedio != null) {
+            conf.setBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, true);
+            conf.setClass(MRJobConfig.MAP_OUTPUT_COMPRESS_CODEC, intermedio, CompressionCodec.class);
+        }
+        if (salida != null) {
+            FileOutputFormat.setCompressOutput(job, true);
+            FileOutputFormat.setOutputCompressorClass(job, salida);
+            SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+        }
+    }
+
+    /** Códec de un archivo según su extensión, o null si no está comprimido. */
+    public static CompressionCodec codecDeArchivo(String nombre) {
+        return POR_EXTENSION.getCodec(new Path(nombre));
+    }
+
+    public static String sinExtension(String nombre) {
+        CompressionCodec codec = codecDeArchivo(nombre);
+        return codec == null ? nombre : CompressionCodecFactory.removeSuffix(nombre, codec.getDefaultExtension());
+    }
+
+    /** El contenido de un archivo de nombre dado, descomprimido si su extensión es la de un códec. */
+    public static InputStream abrir(String nombre, InputStream entrada) throws IOException {
+        CompressionCodec codec = codecDeArchivo(nombre);
+        return codec == null ? entrada : codec.createInputStream(entrada);
+    }
+}
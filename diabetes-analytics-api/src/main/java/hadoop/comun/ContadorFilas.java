@@ -0,0 +1,17 @@
+package hadoop.comun;
+
+/**
+ * Contadores propios de los jobs de hadoop.q*. MALFORMADAS cuenta las filas
+ * descartadas porque un campo numérico no se pudo leer. Las filas leídas y
+ * emitidas de un job ya son MAP_INPUT_RECORDS y MAP_OUTPUT_RECORDS; la
+ * multiconsulta cuenta EMITIDAS y MALFORMADAS de cada consulta en su propio
+ * grupo, grupo(consulta).
+ */
+public enum ContadorFilas {
+    MALFORMADAS,
+    EMITIDAS;
+
+    public static String grupo(String consulta) {
+        return ContadorFilas.class.getName() + ":" + consulta;
+    }
+}
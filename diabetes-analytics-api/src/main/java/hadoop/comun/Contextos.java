@@ -0,0 +1,197 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.util.Progress;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Construye contextos de Mapper/Reducer fuera del ciclo normal de una tarea,
+ * para ejecutar las clases de hadoop.q* como delegadas (varias consultas en un
+ * solo job, ejecución en memoria, benchmarks).
+ */
+public final class Contextos {
+
+    private static final Method SETUP_MAPPER = metodo(Mapper.class, "setup", Mapper.Context.class);
+    private static final Method MAP = metodo(Mapper.class, "map", Object.class, Object.class, Mapper.Context.class);
+    private static final Method CLEANUP_MAPPER = metodo(Mapper.class, "cleanup", Mapper.Context.class);
+    private static final Method SETUP_REDUCER = metodo(Reducer.class, "setup", Reducer.Context.class);
+    private static final Method REDUCE = metodo(Reducer.class, "reduce", Object.class, Iterable.class, Reducer.Context.class);
+    private static final Method CLEANUP_REDUCER = metodo(Reducer.class, "cleanup", Reducer.Context.class);
+
+    private Contextos() { }
+
+    public static <KI, VI, KO, VO> Mapper<KI, VI, KO, VO>.Context mapContext(
+            Configuration conf, TaskAttemptID tarea, RecordReader<KI, VI> reader,
+            RecordWriter<KO, VO> writer, StatusReporter reporter, InputSplit split) {
+        MapContextImpl<KI, VI, KO, VO> ctx = new MapContextImpl<>(conf, tarea, reader, writer, null, reporter, split);
+        return new WrappedMapper<KI, VI, KO, VO>().getMapContext(ctx);
+    }
+
+    public static <KI, VI, KO, VO> Reducer<KI, VI, KO, VO>.Context reduceContext(
+            Configuration conf, TaskAttemptID tarea, RawKeyValueIterator entrada,
+            RecordWriter<KO, VO> writer, StatusReporter reporter,
+            RawComparator<KI> comparador, Class<KI> claseClave, Class<VI> claseValor)
+            throws IOException, InterruptedException {
+        return reduceContext(conf, tarea, entrada, new GenericCounter(), new GenericCounter(), writer, reporter,
+                comparador, claseClave, claseValor);
+    }
+
+    // Con los contadores que cuentan las claves y los valores leídos de la entrada
+    public static <KI, VI, KO, VO> Reducer<KI, VI, KO, VO>.Context reduceContext(
+            Configuration conf, TaskAttemptID tarea, RawKeyValueIterator entrada,
+            Counter clavesLeidas, Counter valoresLeidos, RecordWriter<KO, VO> writer, StatusReporter reporter,
+            RawComparator<KI> comparador, Class<KI> claseClave, Class<VI> claseValor)
+            throws IOException, InterruptedException {
+        ReduceContextImpl<KI, VI, KO, VO> ctx = new ReduceContextImpl<>(conf, tarea, entrada,
+                clavesLeidas, valoresLeidos, writer, null, reporter,
+                comparador, claseClave, claseValor);
+        return new WrappedReducer<KI, VI, KO, VO>().getReducerContext(ctx);
+    }
+
+    // Contexto de reduce que solo sirve para escribir: las llamadas a reduce() reciben sus valores aparte
+    public static <KI, VI, KO, VO> Reducer<KI, VI, KO, VO>.Context reduceContextSoloEscritura(
+            Configuration conf, TaskAttemptID tarea, RecordWriter<KO, VO> writer, StatusReporter reporter,
+            RawComparator<KI> comparador, Class<KI> claseClave, Class<VI> claseValor)
+            throws IOException, InterruptedException {
+        return reduceContext(conf, tarea, SIN_ENTRADA, writer, reporter, comparador, claseClave, claseValor);
+    }
+
+    // Reporter que redirige contadores y progreso al contexto de la tarea real
+    public static StatusReporter reporterDe(TaskInputOutputContext<?, ?, ?, ?> ctx) {
+        return reporterDe(ctx, null);
+    }
+
+    // Igual, pero los contadores de ContadorFilas van al grupo de la consulta (si no es null)
+    public static StatusReporter reporterDe(TaskInputOutputContext<?, ?, ?, ?> ctx, String consulta) {
+        return new StatusReporter() {
+            @Override
+            public Counter getCounter(Enum<?> name) {
+                if (consulta != null && name instanceof ContadorFilas) {
+                    return ctx.getCounter(ContadorFilas.grupo(consulta), name.name());
+                }
+                return ctx.getCounter(name);
+            }
+
+            @Override
+            public Counter getCounter(String group, String name) {
+                return ctx.getCounter(group, name);
+            }
+
+            @Override
+            public void progress() {
+                ctx.progress();
+            }
+
+            @Override
+            public float getProgress() {
+                return ctx.getProgress();
+            }
+
+            @Override
+            public void setStatus(String status) {
+                ctx.setStatus(status);
+            }
+        };
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void setup(Mapper mapper, Mapper.Context ctx) throws IOException, InterruptedException {
+        invocar(SETUP_MAPPER, mapper, ctx);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void map(Mapper mapper, Object clave, Object valor, Mapper.Context ctx) throws IOException, InterruptedException {
+        invocar(MAP, mapper, clave, valor, ctx);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void cleanup(Mapper mapper, Mapper.Context ctx) throws IOException, InterruptedException {
+        invocar(CLEANUP_MAPPER, mapper, ctx);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void setup(Reducer reducer, Reducer.Context ctx) throws IOException, InterruptedException {
+        invocar(SETUP_REDUCER, reducer, ctx);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void reduce(Reducer reducer, Object clave, Iterable<?> valores, Reducer.Context ctx) throws IOException, InterruptedException {
+        invocar(REDUCE, reducer, clave, valores, ctx);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void cleanup(Reducer reducer, Reducer.Context ctx) throws IOException, InterruptedException {
+        invocar(CLEANUP_REDUCER, reducer, ctx);
+    }
+
+    private static final RawKeyValueIterator SIN_ENTRADA = new RawKeyValueIterator() {
+        @Override
+        public DataInputBuffer getKey() {
+            return null;
+        }
+
+        @Override
+        public DataInputBuffer getValue() {
+            return null;
+        }
+
+        @Override
+        public boolean next() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Progress getProgress() {
+            return new Progress();
+        }
+    };
+
+    private static Method metodo(Class<?> clase, String nombre, Class<?>... parametros) {
+        try {
+            Method m = clase.getDeclaredMethod(nombre, parametros);
+            m.setAccessible(true);
+            return m;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void invocar(Method metodo, Object destino, Object... args) throws IOException, InterruptedException {
+        try {
+            metodo.invoke(destino, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) throw (IOException) causa;
+            if (causa instanceof InterruptedException) throw (InterruptedException) causa;
+            if (causa instanceof RuntimeException) throw (RuntimeException) causa;
+            if (causa instanceof Error) throw (Error) causa;
+            throw new IOException(causa);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sketch de cuantiles KLL (Karnin, Lang y Liberty): guarda O(k) valores en
+ * niveles donde cada valor del nivel h pesa 2^h. Cuando un nivel se llena se
+ * ordena y pasa al siguiente uno de cada dos valores, así que el peso total
+ * sigue siendo la cantidad de valores vistos. Dos sketches se combinan
+ * juntando sus niveles, por lo que sirve para mapper, combiner y reducer.
+ *
+ * El error de rango queda por debajo de ~1.7/k (k = 200: menos de 1%); con pocos
+ * valores no se compacta nada y los cuantiles son exactos. La elección del
+ * valor que sobrevive alterna por nivel en vez de ser aleatoria, de modo que
+ * la misma entrada da siempre el mismo resultado.
+ */
+public class CuantilesKll implements Writable {
+
+    public static final int K_POR_DEFECTO = 200;
+    private static final double FACTOR_CAPACIDAD = 2.0 / 3.0;
+
+    private int k;
+    private long cantidad;
+    private final List<Nivel> niveles = new ArrayList<>();
+    private int tamano;
+    private int tamanoMaximo;
+
+    public CuantilesKll() {
+        this(K_POR_DEFECTO);
+    }
+
+    public CuantilesKll(int k) {
+        if (k < 2) throw new IllegalArgumentException("k debe ser al menos 2: " + k);
+        this.k = k;
+        crecer();
+    }
+
+    public void vaciar() {
+        cantidad = 0;
+        tamano = 0;
+        niveles.clear();
+        crecer();
+    }
+
+    public long getCantidad() {
+        return cantidad;
+    }
+
+    public void agregar(double valor) {
+        niveles.get(0).agregar(valor);
+        cantidad++;
+        if (++tamano >= tamanoMaximo) {
+            comprimir();
+        }
+    }
+
+    public void combinar(CuantilesKll otro) {
+        while (niveles.size() < otro.niveles.size()) {
+            crecer();
+        }
+        for (int h = 0; h < otro.niveles.size(); h++) {
+            Nivel suyo = otro.niveles.get(h);
+            niveles.get(h).agregar(suyo.valores, suyo.largo);
+        }
+        cantidad += otro.cantidad;
+        recontar();
+        while (tamano >= tamanoMaximo) {
+            comprimir();
+        }
+    }
+
+    /**
+     * Valor de rango más cercano al cuantil q (0 < q <= 1): el menor valor
+     * cuyo peso acumulado llega a ceil(q * n). NaN si el sketch está vacío.
+     */
+    public double cuantil(double q) {
+        if (cantidad == 0) return Double.NaN;
+        double[] valores = new double[tamano];
+        long[] pesos = new long[tamano];
+        int i = 0;
+        for (int h = 0; h < niveles.size(); h++) {
+            Nivel nivel = niveles.get(h);
+            for (int j = 0; j < nivel.largo; j++) {
+                valores[i] = nivel.valores[j];
+                pesos[i++] = 1L << h;
+            }
+        }
+        Integer[] orden = new Integer[tamano];
+        for (int j = 0; j < tamano; j++) orden[j] = j;
+        Arrays.sort(orden, (a, b) -> Double.compare(valores[a], valores[b]));
+        long rango = Math.max(1, (long) Math.ceil(q * cantidad));
+        long acumulado = 0;
+        for (int j : orden) {
+            acumulado += pesos[j];
+            if (acumulado >= rango) return valores[j];
+        }
+        return valores[orden[tamano - 1]];
+    }
+
+    private void crecer() {
+        niveles.add(new Nivel());
+        tamanoMaximo = 0;
+        for (int h = 0; h < niveles.size(); h++) {
+            tamanoMaximo += capacidad(h);
+        }
+    }
+
+    // Los niveles altos guardan k valores y cada nivel inferior 2/3 de eso (mínimo 2)
+    private int capacidad(int h) {
+        int profundidad = niveles.size() - h - 1;
+        return (int) Math.ceil(Math.pow(FACTOR_CAPACIDAD, profundidad) * k) + 1;
+    }
+
+    private void comprimir() {
+        for (int h = 0; h < niveles.size(); h++) {
+            if (niveles.get(h).largo >= capacidad(h)) {
+                if (h + 1 == niveles.size()) {
+                    crecer();
+                }
+                niveles.get(h).compactarEn(niveles.get(h + 1));
+                recontar();
+                if (tamano < tamanoMaximo) break;
+            }
+        }
+    }
+
+    private void recontar() {
+        tamano = 0;
+        for (Nivel nivel : niveles) tamano += nivel.largo;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, k);
+        WritableUtils.writeVLong(out, cantidad);
+        WritableUtils.writeVInt(out, niveles.size());
+        for (Nivel nivel : niveles) {
+            // Sin impar, un sketch deserializado elegiría distinto en su próxima compactación
+            out.writeBoolean(nivel.impar);
+            WritableUtils.writeVInt(out, nivel.largo);
+            for (int j = 0; j < nivel.largo; j++) {
+                out.writeDouble(nivel.valores[j]);
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        k = WritableUtils.readVInt(in);
+        cantidad = WritableUtils.readVLong(in);
+        int cantidadNiveles = WritableUtils.readVInt(in);
+        niveles.clear();
+        for (int h = 0; h < cantidadNiveles; h++) {
+            crecer();
+            Nivel nivel = niveles.get(h);
+            nivel.impar = in.readBoolean();
+            int largo = WritableUtils.readVInt(in);
+            for (int j = 0; j < largo; j++) {
+                nivel.agregar(in.readDouble());
+            }
+        }
+        recontar();
+    }
+
+    private static final class Nivel {
+        private double[] valores = new double[8];
+        private int largo;
+        private boolean impar;
+
+        void agregar(double valor) {
+            if (largo == valores.length) {
+                valores = Arrays.copyOf(valores, largo * 2);
+            }
+            valores[largo++] = valor;
+        }
+
+        void agregar(double[] otros, int cantidad) {
+            if (largo + cantidad > valores.length) {
+                valores = Arrays.copyOf(valores, Math.max(largo + cantidad, largo * 2));
+            }
+            System.arraycopy(otros, 0, valores, largo, cantidad);
+            largo += cantidad;
+        }
+
+        // Pasa uno de cada par de valores ordenados al nivel siguiente; con largo impar el menor se queda
+        void compactarEn(Nivel siguiente) {
+            Arrays.sort(valores, 0, largo);
+            int desde = largo % 2;
+            int elegido = impar ? 1 : 0;
+            impar = !impar;
+            for (int j = desde; j + 1 < largo; j += 2) {
+                siguiente.agregar(valores[j + elegido]);
+            }
+            largo = desde;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+
+import java.util.Map;
+
+/**
+ * Punto único por el que los runJob de hadoop.q* lanzan sus jobs.
+ * Permite que quien invoca (por ejemplo el servicio REST) observe los
+ * jobs enviados desde su hilo para consultar su progreso y sus métricas, elegir la cantidad
+ * de reducers de esos jobs (repartiendo las claves dominantes con
+ * ReduccionConSal) y sus códecs de compresión, y ejecuta en MotorEnMemoria los jobs cuya entrada no pasa
+ * del umbral configurado. Si la salida del map de uno de ellos pasa del límite de memoria, se repite en Hadoop.
+ */
+public final class EjecutorJobs {
+
+    public interface Observador {
+        void alEnviar(Job job);
+
+        // Contadores y tiempos del job al terminar, haya salido bien o no
+        default void alTerminar(Job job, MetricasJob metricas) { }
+    }
+
+    private static final ThreadLocal<Observador> OBSERVADOR = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> REDUCTORES = new ThreadLocal<>();
+    private static final ThreadLocal<Compresion> COMPRESION = new ThreadLocal<>();
+
+    // Bytes de entrada hasta los que un job corre en memoria; 0 = siempre en Hadoop
+    private static volatile long umbralEnMemoria;
+    // Bytes de salida del map que un job en memoria puede retener; 0 = sin límite
+    private static volatile long limiteSalidaMapEnMemoria;
+
+    private EjecutorJobs() { }
+
+    public static void setObservador(Observador observador) {
+        OBSERVADOR.set(observador);
+    }
+
+    public static void limpiarObservador() {
+        OBSERVADOR.remove();
+    }
+
+    /**
+     * Cantidad de reducers de los jobs que se envíen desde este hilo, salvo
+     * los que la fijan en su runJob (solo map, un único reducer).
+     */
+    public static void setReductores(int reductores) {
+        if (reductores < 1) {
+            throw new IllegalArgumentException("La cantidad de reducers debe ser al menos 1: " + reductores);
+        }
+        REDUCTORES.set(reductores);
+    }
+
+    public static void limpiarReductores() {
+        REDUCTORES.remove();
+    }
+
+    // Códecs de los jobs que se envíen desde este hilo
+    public static void setCompresion(Compresion compresion) {
+        COMPRESION.set(compresion);
+    }
+
+    public static void limpiarCompresion() {
+        COMPRESION.remove();
+    }
+
+    public static void setUmbralEnMemoria(long bytes) {
+        umbralEnMemoria = bytes;
+    }
+
+    public static void setLimiteSalidaMapEnMemoria(long bytes) {
+        limiteSalidaMapEnMemoria = bytes;
+    }
+
+    public static boolean ejecutar(Job job) throws Exception {
+        Compresion compresion = COMPRESION.get();
+        if (compresion != null) {
+            compresion.aplicar(job);
+        }
+        Integer reductores = REDUCTORES.get();
+        if (reductores != null && !reductoresFijados(job)) {
+            job.setNumReduceTasks(reductores);
+            if (ReduccionConSal.aplicable(job)) {
+                Map<Text, Integer> calientes = ReduccionConSal.clavesCalientes(job);
+                if (!calientes.isEmpty()) {
+                    return ReduccionConSal.ejecutar(job, calientes);
+                }
+            }
+        }
+        return lanzar(job);
+    }
+
+    // Sin fijar, el valor viene de un XML de configuración (mapred-default.xml o el del sitio)
+    private static boolean reductoresFijados(Job job) {
+        String[] fuentes = job.getConfiguration().getPropertySources(MRJobConfig.NUM_REDUCES);
+        return fuentes != null && !fuentes[fuentes.length - 1].endsWith(".xml");
+    }
+
+    private static boolean lanzar(Job job) throws Exception {
+        long inicio = System.nanoTime();
+        MetricasJob metricas = null;
+        boolean exitoso = false;
+        boolean avisado = false;
+        if (MotorEnMemoria.admite(job, umbralEnMemoria)) {
+            avisar(job);
+            avisado = true;
+            metricas = new MetricasJob(job.getJobName(), true, new Counters());
+            try {
+                exitoso = MotorEnMemoria.ejecutar(job, metricas, limiteSalidaMapEnMemoria);
+            } catch (MotorEnMemoria.SalidaMapExcedida e) {
+                // el job no se envió: se repite entero en Hadoop
+                metricas = null;
+            }
+        }
+        if (metricas == null) {
+            job.submit();
+            if (!avisado) {
+                avisar(job);
+            }
+            exitoso = job.waitForCompletion(true);
+            metricas = MetricasJob.deHadoop(job);
+        }
+        metricas.terminar(exitoso, (System.nanoTime() - inicio) / 1_000_000);
+        Observador observador = OBSERVADOR.get();
+        if (observador != null) {
+            observador.alTerminar(job, metricas);
+        }
+        return exitoso;
+    }
+
+    private static void avisar(Job job) {
+        Observador observador = OBSERVADOR.get();
+        if (observador != null) {
+            observador.alEnviar(job);
+        }
+    }
+}
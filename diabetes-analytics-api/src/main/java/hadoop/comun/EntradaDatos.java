@@ -0,0 +1,26 @@
+package hadoop.comun;
+
+import hadoop.columnar.ColumnarInputFormat;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+import java.io.IOException;
+
+/**
+ * Agrega la entrada de un job de hadoop.q*: el CSV original con TextInputFormat
+ * o la copia por columnas de ConversionColumnar, de la que solo se leen las
+ * columnas indicadas (ninguna = la línea completa).
+ */
+public final class EntradaDatos {
+
+    private EntradaDatos() { }
+
+    public static void configurar(Job job, Path entrada, int... columnas) throws IOException {
+        FileInputFormat.addInputPath(job, entrada);
+        if (ColumnarInputFormat.esColumnar(job.getConfiguration(), entrada)) {
+            job.setInputFormatClass(ColumnarInputFormat.class);
+            ColumnarInputFormat.setColumnas(job, columnas);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package hadoop.comun;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+
+// Cuenta en un contador los registros que pasan al escritor envuelto
+public final class EscritorContado<K, V> extends RecordWriter<K, V> {
+    private final RecordWriter<K, V> escritor;
+    private final Counter contador;
+
+    public EscritorContado(RecordWriter<K, V> escritor, Counter contador) {
+        this.escritor = escritor;
+        this.contador = contador;
+    }
+
+    @Override
+    public void write(K key, V value) throws IOException, InterruptedException {
+        contador.increment(1);
+        escritor.write(key, value);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+        escritor.close(context);
+    }
+}
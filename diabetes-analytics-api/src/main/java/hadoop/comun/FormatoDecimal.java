@@ -0,0 +1,80 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Agrega un double con una cantidad fija de decimales al final de un Text,
+ * igual que String.format("%.Nf", valor) con el locale por defecto, sin pasar
+ * por Formatter ni String.
+ */
+public final class FormatoDecimal {
+
+    private static final long[] POTENCIAS_10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    // Bajo 2^31 el ulp del valor escalado es 2^-21 (~4.8e-7), por debajo del margen de empate;
+    // cuantos más decimales, menor el valor que entra por la vía rápida
+    private static final double MAXIMO_ESCALADO = 0x1p31;
+    private static final double MARGEN_EMPATE = 1e-6;
+
+    private final int decimales;
+    private final String formato;
+    private final byte separador;
+    private final boolean rapido;
+    private final byte[] digitos = new byte[32];
+
+    public FormatoDecimal(int decimales) {
+        if (decimales < 1 || decimales >= POTENCIAS_10.length) {
+            throw new IllegalArgumentException("Decimales fuera de rango: " + decimales);
+        }
+        this.decimales = decimales;
+        this.formato = "%." + decimales + "f";
+        DecimalFormatSymbols simbolos = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        this.separador = (byte) simbolos.getDecimalSeparator();
+        // Con dígitos o separador fuera de ASCII (p. ej. árabe) se deja todo a String.format
+        this.rapido = simbolos.getZeroDigit() == '0' && simbolos.getDecimalSeparator() < 0x80;
+    }
+
+    public void agregar(double valor, Text destino) {
+        long escalado = rapido ? redondeado(valor) : -1;
+        if (escalado < 0) {
+            byte[] texto = String.format(formato, valor).getBytes(StandardCharsets.UTF_8);
+            destino.append(texto, 0, texto.length);
+            return;
+        }
+        long entera = escalado / POTENCIAS_10[decimales];
+        long fraccion = escalado % POTENCIAS_10[decimales];
+        int p = digitos.length;
+        for (int i = 0; i < decimales; i++) {
+            digitos[--p] = (byte) ('0' + fraccion % 10);
+            fraccion /= 10;
+        }
+        digitos[--p] = separador;
+        do {
+            digitos[--p] = (byte) ('0' + entera % 10);
+            entera /= 10;
+        } while (entera > 0);
+        destino.append(digitos, p, digitos.length - p);
+    }
+
+    /*
+     * valor * 10^decimales redondeado como lo hace Formatter (mitad hacia
+     * arriba sobre los dígitos de Double.toString), o -1 si el valor es
+     * negativo, no finito, si escalado no cabe bajo MAXIMO_ESCALADO o está tan cerca de un empate que
+     * ese redondeo y el del valor binario podrían diferir.
+     */
+    private long redondeado(double valor) {
+        if (!(valor >= 0) || Double.doubleToRawLongBits(valor) < 0) return -1;
+        double escalado = valor * POTENCIAS_10[decimales];
+        if (escalado >= MAXIMO_ESCALADO) return -1;
+        double piso = Math.floor(escalado);
+        double resto = escalado - piso;
+        if (Math.abs(resto - 0.5) < MARGEN_EMPATE) return -1;
+        return (long) piso + (resto > 0.5 ? 1 : 0);
+    }
+}
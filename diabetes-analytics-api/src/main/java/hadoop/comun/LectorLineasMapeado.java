@@ -0,0 +1,128 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lee las líneas de un tramo de un archivo mapeado en memoria con las mismas
+ * claves y valores que LineRecordReader: desplazamiento de la línea en el
+ * archivo y su contenido sin '\n', '\r' ni "\r\n" (y sin la marca UTF-8 al
+ * inicio del archivo). Un tramo entrega las líneas que empiezan dentro de él,
+ * de modo que tramos contiguos cubren cada línea una sola vez.
+ */
+final class LectorLineasMapeado extends RecordReader<LongWritable, Text> {
+
+    private static final byte[] MARCA_UTF8 = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final ByteBuffer datos;
+    private final int largo;
+    private final int inicio;
+    private final int fin;
+    private int posicion;
+    private byte[] linea = new byte[1024];
+    private final LongWritable clave = new LongWritable();
+    private final Text valor = new Text();
+
+    LectorLineasMapeado(ByteBuffer archivo, long inicio, long fin) {
+        this.datos = archivo.duplicate();
+        this.largo = archivo.limit();
+        this.inicio = (int) inicio;
+        this.fin = (int) fin;
+    }
+
+    static MappedByteBuffer mapear(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) {
+        posicion = inicio == 0 || empiezaLinea(inicio) ? inicio : finDeLinea(inicio);
+    }
+
+    @Override
+    public boolean nextKeyValue() {
+        if (posicion >= fin || posicion >= largo) {
+            return false;
+        }
+        int desde = posicion;
+        int hasta = desde;
+        while (hasta < largo) {
+            byte b = datos.get(hasta);
+            if (b == '\n' || b == '\r') break;
+            hasta++;
+        }
+        clave.set(desde);
+        if (desde == 0 && tieneMarcaUtf8(hasta)) {
+            desde = MARCA_UTF8.length;
+        }
+        int n = hasta - desde;
+        if (n > linea.length) {
+            linea = new byte[Math.max(n, linea.length * 2)];
+        }
+        datos.position(desde);
+        datos.get(linea, 0, n);
+        valor.set(linea, 0, n);
+        posicion = saltarTerminador(hasta);
+        return true;
+    }
+
+    // La posición sigue a un terminador (un '\r' seguido de '\n' todavía no terminó la línea)
+    private boolean empiezaLinea(int p) {
+        byte anterior = datos.get(p - 1);
+        return anterior == '\n' || (anterior == '\r' && (p >= largo || datos.get(p) != '\n'));
+    }
+
+    private int finDeLinea(int p) {
+        while (p < largo) {
+            byte b = datos.get(p);
+            if (b == '\n' || b == '\r') return saltarTerminador(p);
+            p++;
+        }
+        return largo;
+    }
+
+    private int saltarTerminador(int p) {
+        if (p >= largo) return largo;
+        if (datos.get(p) == '\r' && p + 1 < largo && datos.get(p + 1) == '\n') return p + 2;
+        return p + 1;
+    }
+
+    private boolean tieneMarcaUtf8(int hasta) {
+        if (hasta < MARCA_UTF8.length) return false;
+        for (int i = 0; i < MARCA_UTF8.length; i++) {
+            if (datos.get(i) != MARCA_UTF8[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public LongWritable getCurrentKey() {
+        return clave;
+    }
+
+    @Override
+    public Text getCurrentValue() {
+        return valor;
+    }
+
+    @Override
+    public float getProgress() {
+        return fin == inicio ? 1f : Math.min(1f, (posicion - inicio) / (float) (fin - inicio));
+    }
+
+    @Override
+    public void close() {
+    }
+}
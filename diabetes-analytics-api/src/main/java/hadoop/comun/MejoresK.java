@@ -0,0 +1,420 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Salida ordenada de una agregación: los k grupos de mayor valor (o los k
+ * primeros por clave), o todos ordenados con k = 0. Cada reducer escribe sus
+ * grupos ya completos, después del shuffle, a un montículo acotado a k que se
+ * vuelca ordenado al cerrar; al terminar el job, el committer mezcla los
+ * part-r-* ordenados en un único part-r-00000 con los k primeros del total.
+ * Un topK por mapper no sería exacto: un grupo mediano en todos los splits
+ * puede estar entre los k mayores del total sin estarlo en ninguno. Sin k no
+ * hace falta montículo: por clave, el shuffle ya entrega los grupos en orden;
+ * por valor, un segundo job los ordena en su shuffle con la clave compuesta
+ * ClaveOrden (valor y, para los empates, clave).
+ */
+public final class MejoresK {
+
+    public static final String CONF_K = "salida.mejores.k";
+    public static final String CONF_POR_CLAVE = "salida.mejores.porClave";
+
+    private static final byte SEPARADOR = '\t';
+
+    private final int k;
+    private final boolean porClave;
+
+    /** k = 0 ordena todos los grupos; porClave ordena por clave ascendente en vez de por valor descendente. */
+    public MejoresK(int k, boolean porClave) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k no puede ser negativo: " + k);
+        }
+        this.k = k;
+        this.porClave = porClave;
+    }
+
+    /**
+     * Corre el job con EjecutorJobs y deja en su salida solo los grupos
+     * elegidos, en su orden. Ordenar todos por valor agrega un segundo job
+     * sobre la salida del primero.
+     */
+    public boolean ejecutar(Job job) throws Exception {
+        if (k > 0 || porClave) {
+            aplicar(job);
+            return EjecutorJobs.ejecutar(job);
+        }
+        Path salida = FileOutputFormat.getOutputPath(job);
+        Path agregados = new Path(salida + "_agregados");
+        FileOutputFormat.setOutputPath(job, agregados);
+        FileSystem fs = agregados.getFileSystem(job.getConfiguration());
+        try {
+            if (!EjecutorJobs.ejecutar(job)) {
+                return false;
+            }
+            Job orden = Job.getInstance(new Configuration(), job.getJobName() + " (orden)");
+            orden.setJarByClass(MejoresK.class);
+            orden.setMapperClass(MapperOrden.class);
+            orden.setReducerClass(ReducerOrden.class);
+            orden.setMapOutputKeyClass(ClaveOrden.class);
+            orden.setMapOutputValueClass(Text.class);
+            orden.setOutputKeyClass(Text.class);
+            orden.setOutputValueClass(NullWritable.class);
+            orden.setInputFormatClass(TextInputFormat.class);
+            FileInputFormat.setInputPaths(orden, agregados);
+            FileOutputFormat.setOutputPath(orden, salida);
+            aplicar(orden);
+            return EjecutorJobs.ejecutar(orden);
+        } finally {
+            fs.delete(agregados, true);
+        }
+    }
+
+    // Reemplaza TextOutputFormat, el formato de salida de las consultas que lo usan
+    private void aplicar(Job job) {
+        Configuration conf = job.getConfiguration();
+        conf.setInt(CONF_K, k);
+        conf.setBoolean(CONF_POR_CLAVE, porClave);
+        job.setOutputFormatClass(Salida.class);
+    }
+
+    /**
+     * Para salidas escritas sin Hadoop (el cubo, que ya tiene todos sus grupos
+     * en memoria): las líneas clave\tvalor que se escriban al flujo devuelto
+     * llegan a salida al cerrarlo, seleccionadas y ordenadas igual que en un
+     * job. Una línea sin tabulador es una clave sin valor.
+     */
+    public OutputStream filtrar(OutputStream salida) {
+        Seleccion seleccion = new Seleccion(k, porClave);
+        ByteArrayOutputStream linea = new ByteArrayOutputStream();
+        return new FilterOutputStream(salida) {
+            @Override
+            public void write(int b) {
+                if (b == '\n') {
+                    terminarLinea();
+                } else {
+                    linea.write(b);
+                }
+            }
+
+            private void terminarLinea() {
+                seleccion.ofrecer(Seleccion.leer(new String(linea.toByteArray(), StandardCharsets.UTF_8)));
+                linea.reset();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    write(b[i]);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (linea.size() > 0) {
+                    terminarLinea();
+                }
+                for (Seleccion.Grupo grupo : seleccion.ordenados()) {
+                    grupo.escribir(out);
+                }
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * TextOutputFormat que solo escribe los grupos que elige CONF_K y
+     * CONF_POR_CLAVE, y cuyo committer deja un único part-r-00000.
+     */
+    public static class Salida<K, V> extends TextOutputFormat<K, V> {
+        private FileOutputCommitter committer;
+
+        @Override
+        public RecordWriter<K, V> getRecordWriter(TaskAttemptContext tarea) throws IOException, InterruptedException {
+            RecordWriter<K, V> escritor = super.getRecordWriter(tarea);
+            Configuration conf = tarea.getConfiguration();
+            int k = conf.getInt(CONF_K, 0);
+            if (k == 0) {
+                // Los grupos ya llegan en orden: por clave desde el shuffle, o por ClaveOrden
+                return escritor;
+            }
+            Seleccion seleccion = new Seleccion(k, conf.getBoolean(CONF_POR_CLAVE, false));
+            return new RecordWriter<K, V>() {
+                @Override
+                public void write(K key, V value) {
+                    // Hadoop reutiliza clave y valor entre llamadas: se guardan copias
+                    seleccion.ofrecer(new Text(key.toString()),
+                            value == null || value instanceof NullWritable ? null : new Text(value.toString()));
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+                    // TextOutputFormat escribe el toString de clave y valor, así que los Text sirven
+                    for (Seleccion.Grupo grupo : seleccion.ordenados()) {
+                        escritor.write((K) grupo.clave, (V) grupo.valor);
+                    }
+                    escritor.close(context);
+                }
+            };
+        }
+
+        @Override
+        public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext tarea) throws IOException {
+            if (committer == null) {
+                committer = new CommitterMezcla(getOutputPath(tarea), tarea);
+            }
+            return committer;
+        }
+    }
+
+    /** FileOutputCommitter que, al confirmar el job, mezcla los part-r-* ordenados en part-r-00000. */
+    private static final class CommitterMezcla extends FileOutputCommitter {
+        private final Path salida;
+
+        CommitterMezcla(Path salida, TaskAttemptContext tarea) throws IOException {
+            super(salida, tarea);
+            this.salida = salida;
+        }
+
+        @Override
+        public void commitJob(JobContext contexto) throws IOException {
+            super.commitJob(contexto);
+            Configuration conf = contexto.getConfiguration();
+            FileSystem fs = salida.getFileSystem(conf);
+            FileStatus[] partes = fs.listStatus(salida, p -> p.getName().startsWith("part-r-"));
+            if (partes.length < 2) {
+                return;
+            }
+            Arrays.sort(partes);
+            Seleccion seleccion = new Seleccion(conf.getInt(CONF_K, 0), conf.getBoolean(CONF_POR_CLAVE, false));
+            // Todas las partes tienen el códec de salida del job, o ninguno
+            String nombre = partes[0].getPath().getName();
+            CompressionCodec codec = Compresion.codecDeArchivo(nombre);
+            Path mezcla = new Path(salida, "_mezcla-" + nombre);
+            List<BufferedReader> lectores = new ArrayList<>();
+            try {
+                for (FileStatus parte : partes) {
+                    lectores.add(new BufferedReader(new InputStreamReader(
+                            Compresion.abrir(parte.getPath().getName(), fs.open(parte.getPath())), StandardCharsets.UTF_8)));
+                }
+                try (OutputStream out = codec == null ? fs.create(mezcla)
+                        : codec.createOutputStream(fs.create(mezcla))) {
+                    seleccion.mezclar(lectores, out);
+                }
+            } finally {
+                for (BufferedReader lector : lectores) {
+                    lector.close();
+                }
+            }
+            for (FileStatus parte : partes) {
+                fs.delete(parte.getPath(), false);
+            }
+            fs.rename(mezcla, new Path(salida, nombre));
+        }
+    }
+
+    /** Clave del job que ordena todos los grupos por valor: mayor valor primero, los empates por clave. */
+    public static class ClaveOrden implements WritableComparable<ClaveOrden> {
+        private double puntaje;
+        private final Text clave = new Text();
+
+        public void set(double puntaje, Text clave) {
+            this.puntaje = puntaje;
+            this.clave.set(clave);
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeDouble(puntaje);
+            clave.write(out);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            puntaje = in.readDouble();
+            clave.readFields(in);
+        }
+
+        @Override
+        public int compareTo(ClaveOrden otra) {
+            int c = Double.compare(otra.puntaje, puntaje);
+            return c != 0 ? c : clave.compareTo(otra.clave);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClaveOrden && compareTo((ClaveOrden) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return clave.hashCode();
+        }
+    }
+
+    // Cada línea de la salida del primer job, con su ClaveOrden
+    public static class MapperOrden extends Mapper<LongWritable, Text, ClaveOrden, Text> {
+        private final ClaveOrden orden = new ClaveOrden();
+
+        @Override
+        protected void map(LongWritable offset, Text linea, Context context) throws IOException, InterruptedException {
+            Seleccion.Grupo grupo = Seleccion.leer(linea.toString());
+            orden.set(grupo.puntaje, grupo.clave);
+            context.write(orden, linea);
+        }
+    }
+
+    // Las líneas tal cual, en el orden del shuffle
+    public static class ReducerOrden extends Reducer<ClaveOrden, Text, Text, NullWritable> {
+        @Override
+        protected void reduce(ClaveOrden orden, Iterable<Text> lineas, Context context) throws IOException, InterruptedException {
+            for (Text linea : lineas) {
+                context.write(linea, NullWritable.get());
+            }
+        }
+    }
+
+    static final class Seleccion {
+        static final class Grupo {
+            final Text clave;
+            // null cuando la línea no tenía tabulador
+            final Text valor;
+            final double puntaje;
+
+            Grupo(Text clave, Text valor) {
+                this.clave = clave;
+                this.valor = valor;
+                this.puntaje = puntaje(valor);
+            }
+
+            void escribir(OutputStream out) throws IOException {
+                out.write(clave.getBytes(), 0, clave.getLength());
+                if (valor != null) {
+                    out.write(SEPARADOR);
+                    out.write(valor.getBytes(), 0, valor.getLength());
+                }
+                out.write('\n');
+            }
+
+            private static double puntaje(Text valor) {
+                if (valor == null) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+                try {
+                    return Double.parseDouble(valor.toString());
+                } catch (NumberFormatException e) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+
+        private final int k;
+        private final Comparator<Grupo> orden;
+        // La cabeza es el peor de los elegidos, el que sale cuando llega uno mejor
+        private final PriorityQueue<Grupo> elegidos;
+
+        Seleccion(int k, boolean porClave) {
+            this.k = k;
+            Comparator<Grupo> porClaves = (a, b) -> a.clave.compareTo(b.clave);
+            // Mayor valor primero; los empates, por clave, para que el resultado no dependa del reparto
+            this.orden = porClave ? porClaves
+                    : Comparator.<Grupo>comparingDouble(g -> -g.puntaje).thenComparing(porClaves);
+            this.elegidos = new PriorityQueue<>(orden.reversed());
+        }
+
+        // Una línea clave\tvalor de la salida de TextOutputFormat
+        static Grupo leer(String linea) {
+            int tab = linea.indexOf(SEPARADOR);
+            if (tab < 0) {
+                return new Grupo(new Text(linea), null);
+            }
+            return new Grupo(new Text(linea.substring(0, tab)), new Text(linea.substring(tab + 1)));
+        }
+
+        void ofrecer(Text clave, Text valor) {
+            ofrecer(new Grupo(clave, valor));
+        }
+
+        void ofrecer(Grupo grupo) {
+            elegidos.add(grupo);
+            if (k > 0 && elegidos.size() > k) {
+                elegidos.poll();
+            }
+        }
+
+        List<Grupo> ordenados() {
+            List<Grupo> grupos = new ArrayList<>(elegidos);
+            grupos.sort(orden);
+            return grupos;
+        }
+
+        /**
+         * Escribe en out la mezcla de las salidas ya ordenadas de cada reducer,
+         * hasta k líneas, leyendo una línea de cada una a la vez.
+         */
+        void mezclar(List<BufferedReader> partes, OutputStream out) throws IOException {
+            PriorityQueue<Cabeza> cabezas = new PriorityQueue<>((a, b) -> orden.compare(a.grupo, b.grupo));
+            for (BufferedReader parte : partes) {
+                Cabeza.avanzar(parte, cabezas);
+            }
+            for (int escritos = 0; !cabezas.isEmpty() && (k == 0 || escritos < k); escritos++) {
+                Cabeza cabeza = cabezas.poll();
+                cabeza.grupo.escribir(out);
+                Cabeza.avanzar(cabeza.parte, cabezas);
+            }
+        }
+
+        // La siguiente línea de una de las partes que se mezclan
+        private static final class Cabeza {
+            final Grupo grupo;
+            final BufferedReader parte;
+
+            private Cabeza(Grupo grupo, BufferedReader parte) {
+                this.grupo = grupo;
+                this.parte = parte;
+            }
+
+            static void avanzar(BufferedReader parte, PriorityQueue<Cabeza> cabezas) throws IOException {
+                String linea = parte.readLine();
+                if (linea != null) {
+                    cabezas.add(new Cabeza(leer(linea), parte));
+                }
+            }
+        }
+    }
+}
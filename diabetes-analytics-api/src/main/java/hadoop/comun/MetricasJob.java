@@ -0,0 +1,134 @@
+package hadoop.comun;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskReport;
+import org.apache.hadoop.mapreduce.TaskType;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lo que deja una ejecución de EjecutorJobs: los contadores del job (los de
+ * Hadoop y los propios, como ContadorFilas) y su duración total y por fase.
+ * Una fase sin tiempo queda en -1: el runner local de Hadoop no informa los
+ * tiempos de sus tareas, y un job solo map no tiene reduce.
+ */
+public final class MetricasJob {
+
+    private final String nombre;
+    private final boolean enMemoria;
+    private final Counters contadores;
+    private boolean exitoso;
+    private long duracionMs;
+    private long duracionMapMs = -1;
+    private long duracionReduceMs = -1;
+
+    MetricasJob(String nombre, boolean enMemoria, Counters contadores) {
+        this.nombre = nombre;
+        this.enMemoria = enMemoria;
+        this.contadores = contadores;
+    }
+
+    // Contadores y tiempos por fase de un job que terminó en Hadoop
+    static MetricasJob deHadoop(Job job) throws IOException, InterruptedException {
+        Counters contadores = job.getCounters();
+        MetricasJob metricas = new MetricasJob(job.getJobName(), false, contadores != null ? contadores : new Counters());
+        metricas.duracionMapMs = duracion(job.getTaskReports(TaskType.MAP));
+        metricas.duracionReduceMs = duracion(job.getTaskReports(TaskType.REDUCE));
+        return metricas;
+    }
+
+    // Desde el inicio de la primera tarea hasta el fin de la última
+    private static long duracion(TaskReport[] tareas) {
+        long inicio = Long.MAX_VALUE;
+        long fin = Long.MIN_VALUE;
+        for (TaskReport tarea : tareas) {
+            if (tarea.getStartTime() <= 0 || tarea.getFinishTime() <= 0) continue;
+            inicio = Math.min(inicio, tarea.getStartTime());
+            fin = Math.max(fin, tarea.getFinishTime());
+        }
+        return fin >= inicio ? fin - inicio : -1;
+    }
+
+    void terminar(boolean exitoso, long duracionMs) {
+        this.exitoso = exitoso;
+        this.duracionMs = duracionMs;
+    }
+
+    void setDuracionMapMs(long duracionMapMs) {
+        this.duracionMapMs = duracionMapMs;
+    }
+
+    void setDuracionReduceMs(long duracionReduceMs) {
+        this.duracionReduceMs = duracionReduceMs;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public boolean isEnMemoria() {
+        return enMemoria;
+    }
+
+    public boolean isExitoso() {
+        return exitoso;
+    }
+
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+
+    public long getDuracionMapMs() {
+        return duracionMapMs;
+    }
+
+    public long getDuracionReduceMs() {
+        return duracionReduceMs;
+    }
+
+    public Counters getContadores() {
+        return contadores;
+    }
+
+    public long valor(Enum<?> contador) {
+        Counter c = contadores.findCounter(contador);
+        return c == null ? 0 : c.getValue();
+    }
+
+    public long filasLeidas() {
+        return valor(TaskCounter.MAP_INPUT_RECORDS);
+    }
+
+    public long filasEmitidas() {
+        return valor(TaskCounter.MAP_OUTPUT_RECORDS);
+    }
+
+    // Las del job más las que la multiconsulta cuenta por consulta
+    public long filasMalformadas() {
+        long total = valor(ContadorFilas.MALFORMADAS);
+        for (long porConsulta : porConsulta(ContadorFilas.MALFORMADAS).values()) {
+            total += porConsulta;
+        }
+        return total;
+    }
+
+    // Valor del contador en el grupo de cada consulta de una multiconsulta; vacío en los demás jobs
+    public Map<String, Long> porConsulta(ContadorFilas contador) {
+        String prefijo = ContadorFilas.grupo("");
+        Map<String, Long> valores = new LinkedHashMap<>();
+        for (CounterGroup grupo : contadores) {
+            if (!grupo.getName().startsWith(prefijo)) continue;
+            Counter c = grupo.findCounter(contador.name(), false);
+            if (c != null) {
+                valores.put(grupo.getName().substring(prefijo.length()), c.getValue());
+            }
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,75 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Mínimo y máximo parciales de una clave. El mapper emite (valor, valor) y
+ * Combinador los junta antes del shuffle. Sin valores queda en (+inf, -inf);
+ * un NaN nunca reemplaza al mínimo ni al máximo.
+ */
+public class MinMaxWritable implements Writable {
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public MinMaxWritable() { }
+
+    public void set(double valor) {
+        min = valor;
+        max = valor;
+    }
+
+    public void vaciar() {
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    public void agregar(MinMaxWritable otro) {
+        if (otro.min < min) min = otro.min;
+        if (otro.max > max) max = otro.max;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeDouble(min);
+        out.writeDouble(max);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        min = in.readDouble();
+        max = in.readDouble();
+    }
+
+    @Override
+    public String toString() {
+        return min + ";" + max;
+    }
+
+    public static class Combinador extends Reducer<Text, MinMaxWritable, Text, MinMaxWritable> {
+        private final MinMaxWritable total = new MinMaxWritable();
+
+        @Override
+        public void reduce(Text key, Iterable<MinMaxWritable> values, Context context) throws IOException, InterruptedException {
+            total.vaciar();
+            for (MinMaxWritable val : values) {
+                total.agregar(val);
+            }
+            context.write(key, total);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Cantidad, suma y suma de cuadrados parciales: alcanzan para el promedio y
+ * la desviación estándar, y dos parciales se combinan sumándolos.
+ */
+public class MomentosWritable implements Writable {
+
+    private long cantidad;
+    private double suma;
+    private double sumaCuadrados;
+
+    public void vaciar() {
+        cantidad = 0;
+        suma = 0;
+        sumaCuadrados = 0;
+    }
+
+    public void agregar(double valor) {
+        cantidad++;
+        suma += valor;
+        sumaCuadrados += valor * valor;
+    }
+
+    public void agregar(MomentosWritable otro) {
+        cantidad += otro.cantidad;
+        suma += otro.suma;
+        sumaCuadrados += otro.sumaCuadrados;
+    }
+
+    public long getCantidad() {
+        return cantidad;
+    }
+
+    public double promedio() {
+        return suma / cantidad;
+    }
+
+    // Desviación estándar poblacional
+    public double desviacionEstandar() {
+        double promedio = promedio();
+        return Math.sqrt((sumaCuadrados / cantidad) - (promedio * promedio));
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, cantidad);
+        out.writeDouble(suma);
+        out.writeDouble(sumaCuadrados);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        cantidad = WritableUtils.readVLong(in);
+        suma = in.readDouble();
+        sumaCuadrados = in.readDouble();
+    }
+}
@@ -0,0 +1,567 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ejecuta un job de MapReduce dentro de la JVM, sin el envío ni el staging del
+ * LocalJobRunner, usando las mismas clases que configura el job: InputFormat,
+ * Mapper, Combiner, Partitioner, comparadores, Reducer y OutputFormat con su
+ * protocolo de commit. Las tareas map corren en paralelo en todos los núcleos
+ * y sus salidas parciales (ya combinadas) se unen en memoria para el reduce.
+ *
+ * La salida es la misma que la del job en Hadoop:
+ * - en jobs de solo map cada split del InputFormat es una tarea, en el mismo
+ *   orden que les da JobSubmitter (de mayor a menor), así cada part-m-* tiene
+ *   el mismo contenido;
+ * - en jobs con reduce la entrada se corta en más tramos para repartirla entre
+ *   los núcleos (el CSV se lee mapeado en memoria). Los valores de cada clave
+ *   llegan al reduce en el orden de la entrada y no en el del sort de Hadoop,
+ *   lo que no cambia el resultado de los reducers de hadoop.q*.
+ *
+ * Toda la salida del map queda en el heap hasta el reduce. Si sus bytes
+ * serializados pasan del límite que recibe ejecutar(), el job se deshace y
+ * ejecutar() lanza SalidaMapExcedida para que corra en Hadoop.
+ */
+public final class MotorEnMemoria {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MotorEnMemoria.class);
+
+    // Tramo mínimo al repartir la entrada de un job con reduce
+    private static final long TAM_MINIMO_TRAMO = 4L * 1024 * 1024;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private static final AtomicInteger SECUENCIA = new AtomicInteger();
+    private static final String IDENTIFICADOR = "memoria" + System.currentTimeMillis();
+
+    private MotorEnMemoria() { }
+
+    /**
+     * El job puede correr en memoria: entrada de archivos que en total no pasan
+     * del umbral y sin archivos de caché distribuida (que el LocalJobRunner enlaza
+     * en el directorio de trabajo de la tarea).
+     */
+    public static boolean admite(Job job, long umbral) throws IOException {
+        if (umbral <= 0 || (job.getCacheFiles() != null && job.getCacheFiles().length > 0)) {
+            return false;
+        }
+        try {
+            if (!FileInputFormat.class.isAssignableFrom(job.getInputFormatClass())) {
+                return false;
+            }
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        long total = 0;
+        try {
+            for (FileStatus archivo : ListadoEntrada.archivos(job)) {
+                total += bytesEntrada(job, archivo);
+                if (total > umbral) return false;
+            }
+        } catch (IOException e) {
+            // entrada inexistente o ilegible: el envío normal reporta el error
+            return false;
+        }
+        return true;
+    }
+
+    /** La salida del map pasó del límite: el job se deshizo, sin dejar su directorio de salida. */
+    public static final class SalidaMapExcedida extends IOException {
+        SalidaMapExcedida(long limite) {
+            super("La salida del map pasa de " + limite + " bytes");
+        }
+    }
+
+    // Bytes de salida del map que el job tiene en memoria, sumados entre todas sus tareas
+    static final class LimiteSalidaMap {
+        private final long limite;
+        private final AtomicLong enUso = new AtomicLong();
+
+        LimiteSalidaMap(long limite) {
+            this.limite = limite;
+        }
+
+        void consumir(long bytes) throws SalidaMapExcedida {
+            if (enUso.addAndGet(bytes) > limite) {
+                throw new SalidaMapExcedida(limite);
+            }
+        }
+
+        void devolver(long bytes) {
+            enUso.addAndGet(-bytes);
+        }
+    }
+
+    /**
+     * Corre el job y deja en metricas los contadores de sus tareas (los
+     * propios y los de TaskCounter que lleva MapTask/ReduceTask) y el tiempo
+     * de las fases map y reduce. Con limiteSalidaMap > 0, lanza
+     * SalidaMapExcedida si la salida del map retenida pasa de esos bytes.
+     */
+    public static boolean ejecutar(Job job, MetricasJob metricas, long limiteSalidaMap) throws Exception {
+        Configuration conf = job.getConfiguration();
+        JobID id = new JobID(IDENTIFICADOR, SECUENCIA.incrementAndGet());
+        JobContext contexto = new JobContextImpl(conf, id);
+        // Cada tarea usa su propia instancia del OutputFormat, como en Hadoop: FileOutputFormat
+        // guarda el committer de la primera tarea que lo pide y escribiría en su directorio
+        OutputFormat<?, ?> salida = ReflectionUtils.newInstance(contexto.getOutputFormatClass(), conf);
+        // Mismas validaciones que en el envío (p. ej. que el directorio de salida no exista)
+        salida.checkOutputSpecs(contexto);
+        OutputCommitter committer = salida.getOutputCommitter(
+                new TaskAttemptContextImpl(conf, intento(id, TaskType.MAP, 0)));
+        committer.setupJob(contexto);
+        try {
+            if (contexto.getNumReduceTasks() == 0) {
+                ejecutarSoloMap(contexto, metricas);
+            } else {
+                ejecutarMapReduce(contexto, metricas,
+                        limiteSalidaMap > 0 ? new LimiteSalidaMap(limiteSalidaMap) : null);
+            }
+            committer.commitJob(contexto);
+            return true;
+        } catch (SalidaMapExcedida e) {
+            LOG.info("El job '{}' sale de memoria: {}", job.getJobName(), e.getMessage());
+            committer.abortJob(contexto, JobStatus.State.KILLED);
+            // setupJob creó el directorio (checkOutputSpecs comprobó que no existía) y Hadoop debe poder crearlo
+            Path directorio = FileOutputFormat.getOutputPath(job);
+            if (directorio != null) {
+                directorio.getFileSystem(conf).delete(directorio, true);
+            }
+            throw e;
+        } catch (Exception e) {
+            LOG.warn("Falló el job '{}' en memoria", job.getJobName(), e);
+            committer.abortJob(contexto, JobStatus.State.FAILED);
+            return false;
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void ejecutarSoloMap(JobContext contexto, MetricasJob metricas) throws Exception {
+        Configuration conf = contexto.getConfiguration();
+        InputFormat entrada = ReflectionUtils.newInstance(contexto.getInputFormatClass(), conf);
+        List<InputSplit> splits = new ArrayList<>(entrada.getSplits(contexto));
+        // JobSubmitter numera las tareas map con los splits de mayor a menor
+        splits.sort((a, b) -> Long.compare(largo(b), largo(a)));
+        List<Callable<Void>> tareas = new ArrayList<>();
+        for (int i = 0; i < splits.size(); i++) {
+            InputSplit split = splits.get(i);
+            TaskAttemptID intento = intento(contexto.getJobID(), TaskType.MAP, i);
+            tareas.add(() -> {
+                Reporte reporte = new Reporte();
+                TaskAttemptContext tarea = new TaskAttemptContextImpl(confDeTarea(conf), intento, reporte);
+                RecordReader lector = entrada.createRecordReader(split, tarea);
+                lector.initialize(split, tarea);
+                conCommit(contexto, tarea, salida -> {
+                    RecordWriter escritor = new EscritorContado(salida.getRecordWriter(tarea),
+                            reporte.getCounter(TaskCounter.MAP_OUTPUT_RECORDS));
+                    ejecutarMapper(contexto, tarea, reporte, lector, escritor, split);
+                    escritor.close(tarea);
+                });
+                reporte.sumarEn(metricas.getContadores());
+                return null;
+            });
+        }
+        long inicio = System.nanoTime();
+        enParalelo(tareas);
+        metricas.setDuracionMapMs(milisDesde(inicio));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void ejecutarMapReduce(JobContext contexto, MetricasJob metricas, LimiteSalidaMap limite) throws Exception {
+        Configuration conf = contexto.getConfiguration();
+        int reduces = contexto.getNumReduceTasks();
+        List<Tramo> tramos = tramos(contexto);
+        List<Callable<SalidaMapEnMemoria>> tareasMap = new ArrayList<>();
+        for (int i = 0; i < tramos.size(); i++) {
+            Tramo tramo = tramos.get(i);
+            TaskAttemptID intento = intento(contexto.getJobID(), TaskType.MAP, i);
+            tareasMap.add(() -> {
+                Reporte reporte = new Reporte();
+                TaskAttemptContext tarea = new TaskAttemptContextImpl(confDeTarea(conf), intento, reporte);
+                RecordReader lector = tramo.lector(tarea);
+                SalidaMapEnMemoria parcial = new SalidaMapEnMemoria(conf, contexto.getMapOutputKeyClass(),
+                        contexto.getMapOutputValueClass(),
+                        ReflectionUtils.newInstance(contexto.getPartitionerClass(), conf), reduces, limite);
+                // Un mapper puede escribir archivos propios (MultipleOutputs) además de la salida al reduce
+                conCommit(contexto, tarea, salida -> ejecutarMapper(contexto, tarea, reporte, lector, parcial.escritor(), tramo.split));
+                reporte.getCounter(TaskCounter.MAP_OUTPUT_RECORDS).increment(parcial.registros());
+                reporte.getCounter(TaskCounter.MAP_OUTPUT_BYTES).increment(parcial.bytes());
+                SalidaMapEnMemoria combinada = combinar(contexto, intento, reporte, parcial, limite);
+                if (combinada != parcial) {
+                    parcial.liberar();
+                }
+                reporte.getCounter(TaskCounter.REDUCE_SHUFFLE_BYTES).increment(combinada.bytes());
+                reporte.sumarEn(metricas.getContadores());
+                return combinada;
+            });
+        }
+        long inicio = System.nanoTime();
+        List<SalidaMapEnMemoria> parciales = enParalelo(tareasMap);
+        metricas.setDuracionMapMs(milisDesde(inicio));
+
+        List<Callable<Void>> tareasReduce = new ArrayList<>();
+        for (int p = 0; p < reduces; p++) {
+            int particion = p;
+            TaskAttemptID intento = intento(contexto.getJobID(), TaskType.REDUCE, p);
+            tareasReduce.add(() -> {
+                Reporte reporte = new Reporte();
+                TaskAttemptContext tarea = new TaskAttemptContextImpl(confDeTarea(conf), intento, reporte);
+                RawKeyValueIterator entrada = SalidaMapEnMemoria.iterador(parciales, particion,
+                        contexto.getSortComparator());
+                conCommit(contexto, tarea, salida -> {
+                    RecordWriter escritor = new EscritorContado(salida.getRecordWriter(tarea),
+                            reporte.getCounter(TaskCounter.REDUCE_OUTPUT_RECORDS));
+                    Reducer reducer = ReflectionUtils.newInstance(contexto.getReducerClass(), tarea.getConfiguration());
+                    reducer.run(Contextos.reduceContext(tarea.getConfiguration(), intento, entrada,
+                            reporte.getCounter(TaskCounter.REDUCE_INPUT_GROUPS),
+                            reporte.getCounter(TaskCounter.REDUCE_INPUT_RECORDS), escritor, reporte,
+                            (RawComparator) contexto.getGroupingComparator(), (Class) contexto.getMapOutputKeyClass(),
+                            (Class) contexto.getMapOutputValueClass()));
+                    escritor.close(tarea);
+                });
+                reporte.sumarEn(metricas.getContadores());
+                return null;
+            });
+        }
+        inicio = System.nanoTime();
+        enParalelo(tareasReduce);
+        metricas.setDuracionReduceMs(milisDesde(inicio));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void ejecutarMapper(JobContext contexto, TaskAttemptContext tarea, StatusReporter reporte,
+                                       RecordReader lector, RecordWriter escritor, InputSplit split) throws Exception {
+        Mapper mapper = ReflectionUtils.newInstance(contexto.getMapperClass(), tarea.getConfiguration());
+        try {
+            mapper.run(Contextos.mapContext(tarea.getConfiguration(), tarea.getTaskAttemptID(),
+                    new LectorContado(lector, reporte.getCounter(TaskCounter.MAP_INPUT_RECORDS)), escritor, reporte, split));
+        } finally {
+            lector.close();
+        }
+    }
+
+    // Pasa la salida de la tarea por el combiner del job, partición por partición, como al volcar en MapTask
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static SalidaMapEnMemoria combinar(JobContext contexto, TaskAttemptID intento, StatusReporter reporte,
+                                               SalidaMapEnMemoria parcial, LimiteSalidaMap limite) throws Exception {
+        Class<? extends Reducer> claseCombiner = contexto.getCombinerClass();
+        if (claseCombiner == null) {
+            return parcial;
+        }
+        Configuration conf = contexto.getConfiguration();
+        SalidaMapEnMemoria combinada = new SalidaMapEnMemoria(conf, contexto.getMapOutputKeyClass(),
+                contexto.getMapOutputValueClass(), null, parcial.cantidadParticiones(), limite);
+        for (int p = 0; p < parcial.cantidadParticiones(); p++) {
+            if (parcial.particion(p).isEmpty()) continue;
+            Reducer combiner = ReflectionUtils.newInstance(claseCombiner, conf);
+            combiner.run(Contextos.reduceContext(conf, intento,
+                    SalidaMapEnMemoria.iterador(Collections.singletonList(parcial), p, contexto.getSortComparator()),
+                    new GenericCounter(), reporte.getCounter(TaskCounter.COMBINE_INPUT_RECORDS),
+                    new EscritorContado(combinada.escritor(p), reporte.getCounter(TaskCounter.COMBINE_OUTPUT_RECORDS)), reporte,
+                    (RawComparator) contexto.getCombinerKeyGroupingComparator(), (Class) contexto.getMapOutputKeyClass(),
+                    (Class) contexto.getMapOutputValueClass()));
+        }
+        return combinada;
+    }
+
+    // Cada tarea tiene su copia de la configuración, como su JobConf en Hadoop: MultipleOutputs
+    // cambia el nombre base de la salida en la de la tarea y no debe llegar a las demás
+    private static Configuration confDeTarea(Configuration conf) {
+        return new Configuration(conf);
+    }
+
+    private interface Trabajo {
+        void ejecutar(OutputFormat salida) throws Exception;
+    }
+
+    // setupTask/commitTask de la tarea con el committer del OutputFormat, como en Task.done()
+    private static void conCommit(JobContext contexto, TaskAttemptContext tarea, Trabajo trabajo) throws Exception {
+        OutputFormat<?, ?> salida = ReflectionUtils.newInstance(contexto.getOutputFormatClass(),
+                contexto.getConfiguration());
+        OutputCommitter committer = salida.getOutputCommitter(tarea);
+        committer.setupTask(tarea);
+        try {
+            trabajo.ejecutar(salida);
+        } catch (Exception e) {
+            committer.abortTask(tarea);
+            throw e;
+        }
+        if (committer.needsTaskCommit(tarea)) {
+            committer.commitTask(tarea);
+        }
+    }
+
+    /**
+     * Tramos de entrada de un job con reduce. Los archivos de texto locales sin
+     * comprimir se mapean en memoria y se cortan en tramos de bytes; el resto de
+     * la entrada usa los splits del InputFormat con un tamaño máximo menor.
+     * Con LazyOutputFormat el mapper puede escribir part-m-* propios
+     * (EscaneoMultiConsulta), así que se respetan los splits del InputFormat.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static List<Tramo> tramos(JobContext contexto) throws Exception {
+        Configuration conf = contexto.getConfiguration();
+        List<FileStatus> archivos = ListadoEntrada.archivos(contexto);
+        long total = 0;
+        for (FileStatus archivo : archivos) total += bytesEntrada(contexto, archivo);
+        int hilos = POOL.getParallelism();
+        long tamTramo = Math.max(TAM_MINIMO_TRAMO, (total + hilos - 1) / hilos);
+        boolean libre = !LazyOutputFormat.class.isAssignableFrom(contexto.getOutputFormatClass());
+
+        List<Tramo> tramos = new ArrayList<>();
+        if (libre && contexto.getInputFormatClass() == TextInputFormat.class && mapeables(conf, archivos)) {
+            for (FileStatus archivo : archivos) {
+                FileSystem fs = archivo.getPath().getFileSystem(conf);
+                ByteBuffer datos = LectorLineasMapeado.mapear(
+                        Paths.get(fs.makeQualified(archivo.getPath()).toUri()));
+                long largo = archivo.getLen();
+                // Un archivo vacío también es una tarea, como su split vacío en FileInputFormat
+                long inicio = 0;
+                do {
+                    long fin = Math.min(largo, inicio + tamTramo);
+                    FileSplit split = new FileSplit(archivo.getPath(), inicio, fin - inicio, new String[0]);
+                    tramos.add(new Tramo(split, tarea -> {
+                        LectorLineasMapeado lector = new LectorLineasMapeado(datos, split.getStart(),
+                                split.getStart() + split.getLength());
+                        lector.initialize(split, tarea);
+                        return lector;
+                    }));
+                    inicio = fin;
+                } while (inicio < largo);
+            }
+            return tramos;
+        }
+
+        Configuration confSplits = new Configuration(conf);
+        if (libre) {
+            confSplits.setLong(FileInputFormat.SPLIT_MAXSIZE, tamTramo);
+        }
+        JobContext contextoSplits = new JobContextImpl(confSplits, contexto.getJobID());
+        InputFormat entrada = ReflectionUtils.newInstance(contexto.getInputFormatClass(), conf);
+        List<InputSplit> splits = new ArrayList<>(entrada.getSplits(contextoSplits));
+        splits.sort((a, b) -> Long.compare(largo(b), largo(a)));
+        for (InputSplit split : splits) {
+            tramos.add(new Tramo(split, tarea -> {
+                RecordReader lector = entrada.createRecordReader(split, tarea);
+                lector.initialize(split, tarea);
+                return lector;
+            }));
+        }
+        return tramos;
+    }
+
+    // Bytes del archivo que lee el job: con RangoBytesInputFormat, solo los de su rango
+    private static long bytesEntrada(JobContext contexto, FileStatus archivo) {
+        try {
+            if (contexto.getInputFormatClass() == RangoBytesInputFormat.class) {
+                return RangoBytesInputFormat.bytesEnRango(contexto.getConfiguration(), archivo.getLen());
+            }
+        } catch (ClassNotFoundException e) {
+            // sin InputFormat cargable el job no llega a leer nada
+        }
+        return archivo.getLen();
+    }
+
+    // Archivos locales, sin códec y de hasta 2 GB (lo que entra en un MappedByteBuffer)
+    private static boolean mapeables(Configuration conf, List<FileStatus> archivos) throws IOException {
+        if (conf.get("textinputformat.record.delimiter") != null) return false;
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        for (FileStatus archivo : archivos) {
+            Path ruta = archivo.getPath();
+            if (!"file".equals(ruta.getFileSystem(conf).getUri().getScheme())
+                    || codecs.getCodec(ruta) != null
+                    || archivo.getLen() > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private interface FabricaLector {
+        RecordReader<?, ?> crear(TaskAttemptContext tarea) throws IOException, InterruptedException;
+    }
+
+    private static final class Tramo {
+        private final InputSplit split;
+        private final FabricaLector fabrica;
+
+        Tramo(InputSplit split, FabricaLector fabrica) {
+            this.split = split;
+            this.fabrica = fabrica;
+        }
+
+        RecordReader<?, ?> lector(TaskAttemptContext tarea) throws IOException, InterruptedException {
+            return fabrica.crear(tarea);
+        }
+    }
+
+    private static <T> List<T> enParalelo(List<Callable<T>> tareas) throws Exception {
+        List<T> resultados = new ArrayList<>(tareas.size());
+        for (Future<T> futuro : POOL.invokeAll(tareas)) {
+            try {
+                resultados.add(futuro.get());
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause();
+                // ForkJoinPool envuelve las excepciones comprobadas de la tarea en RuntimeException simples
+                while (causa.getClass() == RuntimeException.class && causa.getCause() != null) {
+                    causa = causa.getCause();
+                }
+                if (causa instanceof Exception) throw (Exception) causa;
+                if (causa instanceof Error) throw (Error) causa;
+                throw e;
+            }
+        }
+        return resultados;
+    }
+
+    private static long largo(InputSplit split) {
+        try {
+            return split.getLength();
+        } catch (IOException | InterruptedException e) {
+            return 0;
+        }
+    }
+
+    private static TaskAttemptID intento(JobID id, TaskType tipo, int numero) {
+        return new TaskAttemptID(new TaskID(id, tipo, numero), 0);
+    }
+
+    private static long milisDesde(long inicioNanos) {
+        return (System.nanoTime() - inicioNanos) / 1_000_000;
+    }
+
+    // Contadores y estado de una tarea; al terminar se suman a los del job
+    static final class Reporte extends StatusReporter {
+        private final Counters contadores = new Counters();
+
+        void sumarEn(Counters total) {
+            synchronized (total) {
+                total.incrAllCounters(contadores);
+            }
+        }
+
+        @Override
+        public Counter getCounter(Enum<?> name) {
+            return contadores.findCounter(name);
+        }
+
+        @Override
+        public Counter getCounter(String group, String name) {
+            return contadores.findCounter(group, name);
+        }
+
+        @Override
+        public void progress() {
+        }
+
+        @Override
+        public float getProgress() {
+            return 0;
+        }
+
+        @Override
+        public void setStatus(String status) {
+        }
+    }
+
+    // Cuenta los registros leídos por el mapper, como el lector que MapTask le da a la tarea
+    private static final class LectorContado<K, V> extends RecordReader<K, V> {
+        private final RecordReader<K, V> lector;
+        private final Counter contador;
+
+        LectorContado(RecordReader<K, V> lector, Counter contador) {
+            this.lector = lector;
+            this.contador = contador;
+        }
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+            lector.initialize(split, context);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            if (!lector.nextKeyValue()) return false;
+            contador.increment(1);
+            return true;
+        }
+
+        @Override
+        public K getCurrentKey() throws IOException, InterruptedException {
+            return lector.getCurrentKey();
+        }
+
+        @Override
+        public V getCurrentValue() throws IOException, InterruptedException {
+            return lector.getCurrentValue();
+        }
+
+        @Override
+        public float getProgress() throws IOException, InterruptedException {
+            return lector.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            lector.close();
+        }
+    }
+
+    // Expone listStatus de FileInputFormat: los archivos de entrada con los filtros del job
+    private static final class ListadoEntrada extends TextInputFormat {
+        static List<FileStatus> archivos(JobContext contexto) throws IOException {
+            return new ListadoEntrada().listStatus(contexto);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TextInputFormat que solo entrega las líneas que empiezan en [desde, hasta)
+ * del archivo de entrada: lo agregado a un CSV entre dos lecturas, con desde y
+ * hasta el largo del archivo en cada una. Las claves siguen siendo la posición
+ * en el archivo completo, así que la cabecera (clave 0) solo aparece en el
+ * rango que empieza en 0.
+ */
+public class RangoBytesInputFormat extends TextInputFormat {
+
+    private static final String CONF_DESDE = "rangobytes.desde";
+    private static final String CONF_HASTA = "rangobytes.hasta";
+
+    public static void configurar(Job job, Path entrada, long desde, long hasta) throws IOException {
+        FileInputFormat.addInputPath(job, entrada);
+        job.setInputFormatClass(RangoBytesInputFormat.class);
+        job.getConfiguration().setLong(CONF_DESDE, desde);
+        job.getConfiguration().setLong(CONF_HASTA, hasta);
+    }
+
+    // Bytes del rango dentro de un archivo de ese largo
+    public static long bytesEnRango(Configuration conf, long largoArchivo) {
+        long desde = Math.min(largoArchivo, conf.getLong(CONF_DESDE, 0));
+        long hasta = Math.min(largoArchivo, conf.getLong(CONF_HASTA, Long.MAX_VALUE));
+        return Math.max(0, hasta - desde);
+    }
+
+    @Override
+    public List<InputSplit> getSplits(JobContext job) throws IOException {
+        Configuration conf = job.getConfiguration();
+        // LineRecordReader descarta la primera línea de un split que no empieza en 0;
+        // empezando en el salto de línea anterior a desde, lo descartado es solo ese salto
+        long desde = Math.max(0, conf.getLong(CONF_DESDE, 0) - 1);
+        long hasta = conf.getLong(CONF_HASTA, Long.MAX_VALUE);
+        List<InputSplit> splits = new ArrayList<>();
+        for (InputSplit split : super.getSplits(job)) {
+            FileSplit archivo = (FileSplit) split;
+            long inicio = Math.max(archivo.getStart(), desde);
+            long fin = Math.min(archivo.getStart() + archivo.getLength(), hasta);
+            if (inicio < fin) {
+                splits.add(new FileSplit(archivo.getPath(), inicio, fin - inicio, archivo.getLocations()));
+            }
+        }
+        return splits;
+    }
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new LectorHasta(super.createRecordReader(split, context),
+                context.getConfiguration().getLong(CONF_HASTA, Long.MAX_VALUE));
+    }
+
+    // El último split sigue leyendo la línea que empieza justo en su fin: si el archivo creció, ya no es del rango
+    private static final class LectorHasta extends RecordReader<LongWritable, Text> {
+        private final RecordReader<LongWritable, Text> lector;
+        private final long hasta;
+
+        LectorHasta(RecordReader<LongWritable, Text> lector, long hasta) {
+            this.lector = lector;
+            this.hasta = hasta;
+        }
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+            lector.initialize(split, context);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            return lector.nextKeyValue() && lector.getCurrentKey().get() < hasta;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() throws IOException, InterruptedException {
+            return lector.getCurrentKey();
+        }
+
+        @Override
+        public Text getCurrentValue() throws IOException, InterruptedException {
+            return lector.getCurrentValue();
+        }
+
+        @Override
+        public float getProgress() throws IOException, InterruptedException {
+            return lector.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            lector.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reparte entre varios reducers las claves más frecuentes de un job con
+ * combiner. Una muestra de la entrada pasa por el mapper del job para estimar
+ * qué parte de la salida del map lleva cada clave; la que supera lo que le
+ * toca a un reducer se "sala": sus registros se reparten en rueda entre tantas
+ * particiones como hagan falta. Como una clave salada llega a más de un
+ * reducer, el job corre en dos pasos: el primero reduce con el combiner y
+ * deja resultados parciales en SequenceFiles, el segundo los junta con el
+ * reducer original, con una entrada de unos pocos registros por clave.
+ */
+public final class ReduccionConSal {
+
+    // Claves saladas: "base64(bytes de la clave)=particiones", separadas por coma
+    static final String CONF_CLAVES = "sal.claves";
+
+    // La muestra lee los primeros registros de hasta SPLITS_MUESTRA trozos repartidos por la entrada
+    private static final int SPLITS_MUESTRA = 64;
+    private static final int REGISTROS_POR_SPLIT = 500;
+
+    private ReduccionConSal() { }
+
+    /**
+     * Jobs que se pueden correr en dos pasos: con varios reducers, combiner
+     * (que sirve de reducer parcial), claves Text y el particionador y el
+     * agrupamiento por defecto.
+     */
+    public static boolean aplicable(Job job) throws ClassNotFoundException {
+        return job.getNumReduceTasks() > 1
+                && job.getCombinerClass() != null
+                && job.getMapOutputKeyClass() == Text.class
+                && HashPartitioner.class.equals(job.getPartitionerClass())
+                && job.getConfiguration().get(MRJobConfig.GROUP_COMPARATOR_CLASS) == null;
+    }
+
+    /**
+     * Claves de la muestra que necesitan más de un reducer, con la cantidad de
+     * particiones entre las que se reparten: su fracción de la salida del map
+     * por la cantidad de reducers, redondeada hacia arriba.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Map<Text, Integer> clavesCalientes(Job job) throws Exception {
+        Configuration conf = new Configuration(job.getConfiguration());
+        Job muestra = Job.getInstance(conf);
+        long total = 0;
+        for (Path ruta : FileInputFormat.getInputPaths(muestra)) {
+            total += ruta.getFileSystem(conf).getContentSummary(ruta).getLength();
+        }
+        FileInputFormat.setMaxInputSplitSize(muestra, Math.max(1, total / SPLITS_MUESTRA));
+        InputFormat entrada = ReflectionUtils.newInstance(muestra.getInputFormatClass(), conf);
+        List<InputSplit> splits = entrada.getSplits(muestra);
+
+        Map<Text, long[]> conteos = new HashMap<>();
+        long[] registros = {0};
+        RecordWriter<Text, Object> contador = new RecordWriter<Text, Object>() {
+            @Override
+            public void write(Text key, Object value) {
+                long[] c = conteos.get(key);
+                if (c == null) {
+                    c = new long[1];
+                    conteos.put(new Text(key), c);
+                }
+                c[0]++;
+                registros[0]++;
+            }
+
+            @Override
+            public void close(TaskAttemptContext context) {
+            }
+        };
+        int paso = Math.max(1, splits.size() / SPLITS_MUESTRA);
+        for (int i = 0; i < splits.size(); i += paso) {
+            InputSplit split = splits.get(i);
+            TaskAttemptContext tarea = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+            RecordReader lector = new Limitado(entrada.createRecordReader(split, tarea), REGISTROS_POR_SPLIT);
+            lector.initialize(split, tarea);
+            Mapper mapper = ReflectionUtils.newInstance(muestra.getMapperClass(), conf);
+            try {
+                mapper.run(Contextos.mapContext(conf, tarea.getTaskAttemptID(), lector, contador,
+                        new MotorEnMemoria.Reporte(), split));
+            } finally {
+                lector.close();
+            }
+        }
+
+        int reductores = job.getNumReduceTasks();
+        Map<Text, Integer> calientes = new HashMap<>();
+        for (Map.Entry<Text, long[]> e : conteos.entrySet()) {
+            long particiones = (e.getValue()[0] * reductores + registros[0] - 1) / registros[0];
+            if (particiones > 1) {
+                calientes.put(e.getKey(), (int) Math.min(particiones, reductores));
+            }
+        }
+        return calientes;
+    }
+
+    /**
+     * Corre el job en dos pasos con las claves saladas: el primero con el
+     * combiner como reducer y ParticionadorConSal, el segundo con el reducer
+     * original sobre los parciales. La salida queda donde la dejaría el job.
+     */
+    public static boolean ejecutar(Job job, Map<Text, Integer> calientes) throws Exception {
+        Configuration conf = job.getConfiguration();
+        Path salida = FileOutputFormat.getOutputPath(job);
+        Path parciales = new Path(salida + "_parciales");
+        int reductores = job.getNumReduceTasks();
+
+        Configuration confParcial = new Configuration(conf);
+        confParcial.setStrings(CONF_CLAVES, codificar(calientes));
+        Job paso1 = Job.getInstance(confParcial, job.getJobName() + " (parciales)");
+        paso1.setReducerClass(job.getCombinerClass());
+        paso1.setPartitionerClass(ParticionadorConSal.class);
+        paso1.setNumReduceTasks(reductores);
+        paso1.setOutputKeyClass(job.getMapOutputKeyClass());
+        paso1.setOutputValueClass(job.getMapOutputValueClass());
+        paso1.setOutputFormatClass(SequenceFileOutputFormat.class);
+        FileOutputFormat.setOutputPath(paso1, parciales);
+
+        FileSystem fs = parciales.getFileSystem(conf);
+        try {
+            if (!EjecutorJobs.ejecutar(paso1)) {
+                return false;
+            }
+            Job paso2 = Job.getInstance(new Configuration(conf), job.getJobName());
+            paso2.getConfiguration().unset(MRJobConfig.COMBINE_CLASS_ATTR);
+            paso2.setMapperClass(Mapper.class);
+            paso2.setNumReduceTasks(reductores);
+            paso2.setInputFormatClass(SequenceFileInputFormat.class);
+            FileInputFormat.setInputPaths(paso2, parciales);
+            return EjecutorJobs.ejecutar(paso2);
+        } finally {
+            fs.delete(parciales, true);
+        }
+    }
+
+    private static String[] codificar(Map<Text, Integer> claves) {
+        List<String> codificadas = new ArrayList<>();
+        for (Map.Entry<Text, Integer> e : claves.entrySet()) {
+            byte[] bytes = new byte[e.getKey().getLength()];
+            System.arraycopy(e.getKey().getBytes(), 0, bytes, 0, bytes.length);
+            codificadas.add(Base64.getEncoder().encodeToString(bytes) + "=" + e.getValue());
+        }
+        return codificadas.toArray(new String[0]);
+    }
+
+    /**
+     * Como HashPartitioner, salvo las claves de CONF_CLAVES: cada registro de
+     * una de ellas va a la siguiente de sus particiones consecutivas, a partir
+     * de la de HashPartitioner y empezando en una al azar en cada tarea.
+     */
+    public static class ParticionadorConSal extends Partitioner<Text, Object> implements Configurable {
+        private Configuration conf;
+        private final Map<Text, int[]> saladas = new HashMap<>();
+
+        @Override
+        public void setConf(Configuration conf) {
+            this.conf = conf;
+            saladas.clear();
+            for (String codificada : conf.getTrimmedStrings(CONF_CLAVES)) {
+                int igual = codificada.lastIndexOf('=');
+                int particiones = Integer.parseInt(codificada.substring(igual + 1));
+                Text clave = new Text(Base64.getDecoder().decode(codificada.substring(0, igual)));
+                // {particiones, siguiente}
+                saladas.put(clave, new int[] {particiones, ThreadLocalRandom.current().nextInt(particiones)});
+            }
+        }
+
+        @Override
+        public Configuration getConf() {
+            return conf;
+        }
+
+        @Override
+        public int getPartition(Text key, Object value, int numPartitions) {
+            int base = (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+            int[] sal = saladas.get(key);
+            if (sal == null) return base;
+            int desplazamiento = sal[1];
+            sal[1] = (sal[1] + 1) % sal[0];
+            return (base + desplazamiento) % numPartitions;
+        }
+    }
+
+    // Corta la lectura de un split después de cierta cantidad de registros
+    private static final class Limitado<K, V> extends RecordReader<K, V> {
+        private final RecordReader<K, V> lector;
+        private final int limite;
+        private int leidos;
+
+        Limitado(RecordReader<K, V> lector, int limite) {
+            this.lector = lector;
+            this.limite = limite;
+        }
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+            lector.initialize(split, context);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            return leidos++ < limite && lector.nextKeyValue();
+        }
+
+        @Override
+        public K getCurrentKey() throws IOException, InterruptedException {
+            return lector.getCurrentKey();
+        }
+
+        @Override
+        public V getCurrentValue() throws IOException, InterruptedException {
+            return lector.getCurrentValue();
+        }
+
+        @Override
+        public float getProgress() throws IOException, InterruptedException {
+            return lector.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            lector.close();
+        }
+    }
+}
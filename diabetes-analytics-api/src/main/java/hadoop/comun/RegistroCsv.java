@@ -0,0 +1,280 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Vista de una línea del CSV (separador ';') sobre los bytes del Text que
+ * recibe el mapper, sin copiarla ni partirla en Strings. Los separadores se
+ * ubican a medida que se piden campos y cada consulta devuelve lo mismo que
+ * la versión con value.toString().split(";") a la que reemplaza; si un campo
+ * tiene bytes fuera de ASCII se usa ese mismo camino con String.
+ *
+ * Se reutiliza entre llamadas a map(): set() apunta la vista a la nueva línea.
+ */
+public final class RegistroCsv {
+
+    private static final byte SEPARADOR = ';';
+
+    // toUpperCase() con el locale por defecto coincide con el de ASCII salvo en turco/azerí
+    private static final boolean MAYUSCULAS_ASCII = "i".toUpperCase().equals("I");
+
+    private static final double[] POTENCIAS_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private byte[] datos;
+    private int longitud;
+    // separadores[k] = posición del k-ésimo ';' encontrado hasta ahora
+    private int[] separadores = new int[32];
+    private int encontrados;
+    private int escaneado;
+    private boolean completo;
+
+    /** Texto en mayúsculas a buscar con contieneMayusculas, codificado una sola vez. */
+    public static final class Patron {
+        private final String texto;
+        private final byte[] bytes;
+        private final boolean ascii;
+
+        public Patron(String textoEnMayusculas) {
+            this.texto = textoEnMayusculas;
+            this.bytes = textoEnMayusculas.getBytes(StandardCharsets.UTF_8);
+            this.ascii = esAscii(bytes, 0, bytes.length);
+        }
+
+        public String getTexto() {
+            return texto;
+        }
+    }
+
+    public RegistroCsv set(Text linea) {
+        return set(linea.getBytes(), linea.getLength());
+    }
+
+    public RegistroCsv set(byte[] bytes, int longitud) {
+        this.datos = bytes;
+        this.longitud = longitud;
+        encontrados = 0;
+        escaneado = 0;
+        completo = false;
+        return this;
+    }
+
+    public byte[] getBytes() {
+        return datos;
+    }
+
+    /** Cantidad de campos, como split(";", -1).length. */
+    public int campos() {
+        escanearHasta(Integer.MAX_VALUE);
+        return encontrados + 1;
+    }
+
+    /** Cantidad de campos como split(";").length: sin los vacíos del final (una línea sin ';' cuenta 1). */
+    public int camposSinVaciosFinales() {
+        int total = campos();
+        if (total == 1) return 1;
+        int n = total;
+        while (n > 0 && inicio(n - 1) == fin(n - 1)) n--;
+        return n;
+    }
+
+    /** Posición del primer byte del campo i. Solo válido para i < campos(). */
+    public int inicio(int i) {
+        if (i == 0) return 0;
+        escanearHasta(i);
+        return separadores[i - 1] + 1;
+    }
+
+    /** Posición siguiente al último byte del campo i. */
+    public int fin(int i) {
+        escanearHasta(i + 1);
+        return i < encontrados ? separadores[i] : longitud;
+    }
+
+    // Límites del campo sin los caracteres <= ' ' de los extremos, como String.trim()
+    public int inicioRecortado(int i) {
+        int a = inicio(i), b = fin(i);
+        while (a < b && (datos[a] & 0xff) <= ' ') a++;
+        return a;
+    }
+
+    /** Nunca queda antes de inicioRecortado, así un campo solo de blancos es vacio. */
+    public int finRecortado(int i) {
+        int a = inicioRecortado(i), b = fin(i);
+        while (b > a && (datos[b - 1] & 0xff) <= ' ') b--;
+        return b;
+    }
+
+    /** Equivale a campo.trim().isEmpty(). */
+    public boolean vacioRecortado(int i) {
+        return inicioRecortado(i) == finRecortado(i);
+    }
+
+    public String texto(int i) {
+        int a = inicio(i);
+        return new String(datos, a, fin(i) - a, StandardCharsets.UTF_8);
+    }
+
+    public String textoRecortado(int i) {
+        return texto(i).trim();
+    }
+
+    /** Copia el campo recortado a destino sin pasar por String. */
+    public void copiarRecortado(int i, Text destino) {
+        int a = inicioRecortado(i);
+        destino.set(datos, a, finRecortado(i) - a);
+    }
+
+    /** Agrega el campo recortado al final de destino. */
+    public void agregarRecortado(int i, Text destino) {
+        int a = inicioRecortado(i);
+        destino.append(datos, a, finRecortado(i) - a);
+    }
+
+    /** Equivale a campo.toUpperCase().contains(patron.getTexto()). */
+    public boolean contieneMayusculas(int i, Patron patron) {
+        int a = inicio(i), b = fin(i);
+        if (!MAYUSCULAS_ASCII || !esAscii(datos, a, b)) {
+            return texto(i).toUpperCase().contains(patron.texto);
+        }
+        // Un campo ASCII en mayúsculas sigue siendo ASCII: no puede contener un patrón que no lo es
+        if (!patron.ascii) return false;
+        byte[] p = patron.bytes;
+        if (p.length == 0) return true;
+        int ultimo = b - p.length;
+        for (int j = a; j <= ultimo; j++) {
+            int k = 0;
+            while (k < p.length && mayuscula(datos[j + k]) == p[k]) k++;
+            if (k == p.length) return true;
+        }
+        return false;
+    }
+
+    /** Deja en destino los bytes UTF-8 de campo.toUpperCase(), el texto en el que busca contieneMayusculas. */
+    public void copiarMayusculas(int i, Text destino) {
+        int a = inicio(i), b = fin(i);
+        if (!MAYUSCULAS_ASCII || !esAscii(datos, a, b)) {
+            destino.set(texto(i).toUpperCase());
+            return;
+        }
+        destino.set(datos, a, b - a);
+        byte[] copia = destino.getBytes();
+        for (int j = 0; j < b - a; j++) copia[j] = mayuscula(copia[j]);
+    }
+
+    /** Equivale a Integer.parseInt(campo). */
+    public int entero(int i) {
+        int a = inicio(i), b = fin(i);
+        long v = enteroAscii(a, b);
+        return v != Long.MIN_VALUE ? (int) v : Integer.parseInt(texto(i));
+    }
+
+    /** Equivale a Integer.parseInt(campo.trim()). */
+    public int enteroRecortado(int i) {
+        int a = inicioRecortado(i), b = finRecortado(i);
+        long v = enteroAscii(a, b);
+        return v != Long.MIN_VALUE ? (int) v : Integer.parseInt(textoRecortado(i));
+    }
+
+    /** Equivale a Double.parseDouble(campo) (que ya ignora espacios en los extremos). */
+    public double decimal(int i) {
+        int a = inicioRecortado(i), b = finRecortado(i);
+        int j = a;
+        boolean negativo = false;
+        if (j < b && (datos[j] == '-' || datos[j] == '+')) {
+            negativo = datos[j] == '-';
+            j++;
+        }
+        long mantisa = 0;
+        int digitos = 0, decimales = 0;
+        boolean punto = false, conDigitos = false;
+        for (; j < b; j++) {
+            byte c = datos[j];
+            if (c >= '0' && c <= '9') {
+                conDigitos = true;
+                if (mantisa != 0 || c != '0') digitos++;
+                mantisa = mantisa * 10 + (c - '0');
+                if (punto) decimales++;
+            } else if (c == '.' && !punto) {
+                punto = true;
+            } else {
+                break;
+            }
+        }
+        // Camino exacto: mantisa < 2^53 y potencia de 10 exacta; lo demás (exponentes, sufijos, NaN...) con Double
+        if (j == b && conDigitos && digitos <= 15 && decimales < POTENCIAS_10.length) {
+            double v = mantisa / POTENCIAS_10[decimales];
+            return negativo ? -v : v;
+        }
+        return Double.parseDouble(texto(i));
+    }
+
+    /** Fecha yyyy-MM-dd como entero yyyyMMdd: Integer.parseInt(campo.trim().replaceAll("-", "")). */
+    public int fechaNumerica(int i) {
+        int a = inicioRecortado(i), b = finRecortado(i);
+        int v = 0, digitos = 0;
+        for (int j = a; j < b; j++) {
+            byte c = datos[j];
+            if (c == '-') continue;
+            if (c < '0' || c > '9' || ++digitos > 9) {
+                return Integer.parseInt(textoRecortado(i).replaceAll("-", ""));
+            }
+            v = v * 10 + (c - '0');
+        }
+        if (digitos == 0) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        return v;
+    }
+
+    // Signo opcional y hasta 9 dígitos ASCII; Long.MIN_VALUE si hay que delegar en Integer.parseInt
+    private long enteroAscii(int a, int b) {
+        int j = a;
+        boolean negativo = false;
+        if (j < b && (datos[j] == '-' || datos[j] == '+')) {
+            negativo = datos[j] == '-';
+            j++;
+        }
+        if (j == b || b - j > 9) return Long.MIN_VALUE;
+        long v = 0;
+        for (; j < b; j++) {
+            byte c = datos[j];
+            if (c < '0' || c > '9') return Long.MIN_VALUE;
+            v = v * 10 + (c - '0');
+        }
+        return negativo ? -v : v;
+    }
+
+    private void escanearHasta(int separadoresNecesarios) {
+        while (!completo && encontrados < separadoresNecesarios) {
+            int j = escaneado;
+            while (j < longitud && datos[j] != SEPARADOR) j++;
+            if (j >= longitud) {
+                completo = true;
+                escaneado = longitud;
+                return;
+            }
+            if (encontrados == separadores.length) {
+                separadores = Arrays.copyOf(separadores, encontrados * 2);
+            }
+            separadores[encontrados++] = j;
+            escaneado = j + 1;
+        }
+    }
+
+    private static byte mayuscula(byte c) {
+        return c >= 'a' && c <= 'z' ? (byte) (c - 32) : c;
+    }
+
+    private static boolean esAscii(byte[] bytes, int a, int b) {
+        for (int j = a; j < b; j++) {
+            if (bytes[j] < 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,258 @@
+package hadoop.comun;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.util.Progress;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Salida de una tarea map del motor en memoria: cada par se serializa y se
+ * agrupa por partición y por clave, con los valores de cada clave en el orden
+ * en que se escribieron. iterador() recorre las claves de una o varias salidas
+ * ordenadas con el comparador del job, como la entrada de un reduce. Los
+ * bytes serializados se cuentan en el LimiteSalidaMap del job, si tiene uno.
+ */
+final class SalidaMapEnMemoria<K, V> {
+
+    private final Serializer<K> serializadorClave;
+    private final Serializer<V> serializadorValor;
+    private final DataOutputBuffer bufferClave = new DataOutputBuffer();
+    private final DataOutputBuffer bufferValor = new DataOutputBuffer();
+    private final Partitioner<K, V> particionador;
+    private final List<Map<Clave, Valores>> particiones = new ArrayList<>();
+    private final Clave sonda = new Clave();
+    private final MotorEnMemoria.LimiteSalidaMap limite;
+    // Registros agregados y sus bytes serializados (clave y valor)
+    private long registros;
+    private long bytes;
+
+    SalidaMapEnMemoria(Configuration conf, Class<K> claseClave, Class<V> claseValor,
+                       Partitioner<K, V> particionador, int cantidadParticiones,
+                       MotorEnMemoria.LimiteSalidaMap limite) throws IOException {
+        SerializationFactory fabrica = new SerializationFactory(conf);
+        this.serializadorClave = fabrica.getSerializer(claseClave);
+        this.serializadorValor = fabrica.getSerializer(claseValor);
+        serializadorClave.open(bufferClave);
+        serializadorValor.open(bufferValor);
+        this.particionador = particionador;
+        this.limite = limite;
+        for (int i = 0; i < cantidadParticiones; i++) {
+            particiones.add(new HashMap<>());
+        }
+    }
+
+    int cantidadParticiones() {
+        return particiones.size();
+    }
+
+    Map<Clave, Valores> particion(int p) {
+        return particiones.get(p);
+    }
+
+    long registros() {
+        return registros;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    // Descarta los pares (ya pasados por el combiner) y devuelve sus bytes al límite
+    void liberar() {
+        for (Map<Clave, Valores> particion : particiones) {
+            particion.clear();
+        }
+        if (limite != null) {
+            limite.devolver(bytes);
+        }
+    }
+
+    // Escritor que reparte con el particionador del job (con un solo reduce todo va a la 0, como en MapTask)
+    RecordWriter<K, V> escritor() {
+        return new RecordWriter<K, V>() {
+            @Override
+            public void write(K clave, V valor) throws IOException {
+                int p = particiones.size() == 1 ? 0 : particionador.getPartition(clave, valor, particiones.size());
+                agregar(p, clave, valor);
+            }
+
+            @Override
+            public void close(TaskAttemptContext context) {
+            }
+        };
+    }
+
+    // Escritor de la salida del combiner, que se queda en la partición que combinó
+    RecordWriter<K, V> escritor(int particion) {
+        return new RecordWriter<K, V>() {
+            @Override
+            public void write(K clave, V valor) throws IOException {
+                agregar(particion, clave, valor);
+            }
+
+            @Override
+            public void close(TaskAttemptContext context) {
+            }
+        };
+    }
+
+    private void agregar(int p, K clave, V valor) throws IOException {
+        bufferClave.reset();
+        serializadorClave.serialize(clave);
+        bufferValor.reset();
+        serializadorValor.serialize(valor);
+        int largo = bufferClave.getLength() + bufferValor.getLength();
+        if (limite != null) {
+            limite.consumir(largo);
+        }
+        Map<Clave, Valores> mapa = particiones.get(p);
+        sonda.apuntar(bufferClave.getData(), bufferClave.getLength());
+        Valores valores = mapa.get(sonda);
+        if (valores == null) {
+            valores = new Valores();
+            mapa.put(sonda.copia(), valores);
+        }
+        valores.agregar(bufferValor.getData(), bufferValor.getLength());
+        registros++;
+        bytes += largo;
+    }
+
+    /**
+     * Recorre las claves de la partición p de todas las salidas, ordenadas con el
+     * comparador dado; los valores de una clave salen en el orden de las salidas.
+     */
+    @SuppressWarnings("rawtypes")
+    static RawKeyValueIterator iterador(List<SalidaMapEnMemoria> salidas, int p, RawComparator<?> comparador) {
+        Map<Clave, List<Valores>> unidas = new HashMap<>();
+        for (SalidaMapEnMemoria<?, ?> salida : salidas) {
+            for (Map.Entry<Clave, Valores> e : salida.particion(p).entrySet()) {
+                unidas.computeIfAbsent(e.getKey(), k -> new ArrayList<>(1)).add(e.getValue());
+            }
+        }
+        List<Clave> claves = new ArrayList<>(unidas.keySet());
+        claves.sort((a, b) -> comparador.compare(a.datos, 0, a.largo, b.datos, 0, b.largo));
+        return new Iterador(claves, unidas);
+    }
+
+    static final class Clave {
+        private byte[] datos;
+        private int largo;
+        private int hash;
+
+        void apuntar(byte[] datos, int largo) {
+            this.datos = datos;
+            this.largo = largo;
+            this.hash = WritableComparator.hashBytes(datos, largo);
+        }
+
+        Clave copia() {
+            Clave c = new Clave();
+            c.datos = Arrays.copyOf(datos, largo);
+            c.largo = largo;
+            c.hash = hash;
+            return c;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Clave)) return false;
+            Clave otra = (Clave) o;
+            return hash == otra.hash
+                    && WritableComparator.compareBytes(datos, 0, largo, otra.datos, 0, otra.largo) == 0;
+        }
+    }
+
+    // Valores serializados de una clave, uno detrás de otro
+    static final class Valores {
+        private final DataOutputBuffer datos = new DataOutputBuffer(64);
+        private int[] fines = new int[4];
+        private int cantidad;
+
+        void agregar(byte[] bytes, int largo) throws IOException {
+            datos.write(bytes, 0, largo);
+            if (cantidad == fines.length) {
+                fines = Arrays.copyOf(fines, cantidad * 2);
+            }
+            fines[cantidad++] = datos.getLength();
+        }
+    }
+
+    private static final class Iterador implements RawKeyValueIterator {
+        private final List<Clave> claves;
+        private final Map<Clave, List<Valores>> valores;
+        private final DataInputBuffer clave = new DataInputBuffer();
+        private final DataInputBuffer valor = new DataInputBuffer();
+        private final Progress progreso = new Progress();
+        private int indiceClave = -1;
+        private List<Valores> segmentos;
+        private int indiceSegmento;
+        private int indiceValor = -1;
+
+        Iterador(List<Clave> claves, Map<Clave, List<Valores>> valores) {
+            this.claves = claves;
+            this.valores = valores;
+        }
+
+        @Override
+        public boolean next() {
+            indiceValor++;
+            while (segmentos == null || indiceValor >= segmentos.get(indiceSegmento).cantidad) {
+                if (segmentos != null && indiceSegmento + 1 < segmentos.size()) {
+                    indiceSegmento++;
+                } else if (indiceClave + 1 < claves.size()) {
+                    segmentos = valores.get(claves.get(++indiceClave));
+                    indiceSegmento = 0;
+                } else {
+                    return false;
+                }
+                indiceValor = 0;
+            }
+            Valores v = segmentos.get(indiceSegmento);
+            int desde = indiceValor == 0 ? 0 : v.fines[indiceValor - 1];
+            valor.reset(v.datos.getData(), desde, v.fines[indiceValor] - desde);
+            // se reposiciona en cada valor porque el contexto de reduce lee la clave hasta el final
+            Clave c = claves.get(indiceClave);
+            clave.reset(c.datos, 0, c.largo);
+            return true;
+        }
+
+        @Override
+        public DataInputBuffer getKey() {
+            return clave;
+        }
+
+        @Override
+        public DataInputBuffer getValue() {
+            return valor;
+        }
+
+        @Override
+        public Progress getProgress() {
+            return progreso;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
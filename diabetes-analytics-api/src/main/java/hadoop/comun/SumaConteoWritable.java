@@ -0,0 +1,79 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Suma y cantidad parciales para calcular un promedio: el mapper emite
+ * (valor, 1) y Combinador las junta antes del shuffle, de modo que por cada
+ * clave viaja un solo par por tarea en lugar de una fila por registro.
+ */
+public class SumaConteoWritable implements Writable {
+
+    private double suma;
+    private long conteo;
+
+    public SumaConteoWritable() { }
+
+    public SumaConteoWritable(double suma, long conteo) {
+        set(suma, conteo);
+    }
+
+    public void set(double suma, long conteo) {
+        this.suma = suma;
+        this.conteo = conteo;
+    }
+
+    public void agregar(SumaConteoWritable otro) {
+        suma += otro.suma;
+        conteo += otro.conteo;
+    }
+
+    public double getSuma() {
+        return suma;
+    }
+
+    public long getConteo() {
+        return conteo;
+    }
+
+    public double promedio() {
+        return suma / conteo;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeDouble(suma);
+        WritableUtils.writeVLong(out, conteo);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        suma = in.readDouble();
+        conteo = WritableUtils.readVLong(in);
+    }
+
+    @Override
+    public String toString() {
+        return suma + "," + conteo;
+    }
+
+    public static class Combinador extends Reducer<Text, SumaConteoWritable, Text, SumaConteoWritable> {
+        private final SumaConteoWritable total = new SumaConteoWritable();
+
+        @Override
+        public void reduce(Text key, Iterable<SumaConteoWritable> values, Context context) throws IOException, InterruptedException {
+            total.set(0, 0);
+            for (SumaConteoWritable val : values) {
+                total.agregar(val);
+            }
+            context.write(key, total);
+        }
+    }
+}
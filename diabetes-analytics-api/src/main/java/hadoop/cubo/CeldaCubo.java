@@ -0,0 +1,119 @@
+package hadoop.cubo;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Medidas de una celda del cubo, cada una con el mismo filtro de registros que
+ * la consulta de hadoop.q* que reemplaza: filas (PacientesPorDeptoSexo),
+ * procedimientos (ProcedimientosPorAreaServicio), suma y cantidad de edades
+ * (EdadPromedioPorDiagnostico) y mínimo/máximo de RESULTADO_1
+ * (MinMaxColesterolPorDepto). Las celdas se combinan sumando y comparando.
+ */
+public class CeldaCubo implements Writable {
+
+    long filas;
+    long procedimientos;
+    long sumaEdad;
+    long cantidadEdad;
+    long cantidadResultado;
+    double minResultado = Double.POSITIVE_INFINITY;
+    double maxResultado = Double.NEGATIVE_INFINITY;
+
+    public void vaciar() {
+        filas = 0;
+        procedimientos = 0;
+        sumaEdad = 0;
+        cantidadEdad = 0;
+        cantidadResultado = 0;
+        minResultado = Double.POSITIVE_INFINITY;
+        maxResultado = Double.NEGATIVE_INFINITY;
+    }
+
+    public boolean vacia() {
+        return filas == 0 && procedimientos == 0 && cantidadEdad == 0 && cantidadResultado == 0;
+    }
+
+    void agregarEdad(int edad) {
+        sumaEdad += edad;
+        cantidadEdad++;
+    }
+
+    // Como en MinMaxReducer, un NaN no reemplaza al mínimo ni al máximo
+    void agregarResultado(double valor) {
+        if (valor < minResultado) minResultado = valor;
+        if (valor > maxResultado) maxResultado = valor;
+        cantidadResultado++;
+    }
+
+    public void agregar(CeldaCubo otra) {
+        filas += otra.filas;
+        procedimientos += otra.procedimientos;
+        sumaEdad += otra.sumaEdad;
+        cantidadEdad += otra.cantidadEdad;
+        cantidadResultado += otra.cantidadResultado;
+        if (otra.minResultado < minResultado) minResultado = otra.minResultado;
+        if (otra.maxResultado > maxResultado) maxResultado = otra.maxResultado;
+    }
+
+    public long getFilas() {
+        return filas;
+    }
+
+    public long getProcedimientos() {
+        return procedimientos;
+    }
+
+    public long getCantidadEdad() {
+        return cantidadEdad;
+    }
+
+    public double promedioEdad() {
+        return (double) sumaEdad / cantidadEdad;
+    }
+
+    public long getCantidadResultado() {
+        return cantidadResultado;
+    }
+
+    public double getMinResultado() {
+        return minResultado;
+    }
+
+    public double getMaxResultado() {
+        return maxResultado;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, filas);
+        WritableUtils.writeVLong(out, procedimientos);
+        WritableUtils.writeVLong(out, sumaEdad);
+        WritableUtils.writeVLong(out, cantidadEdad);
+        WritableUtils.writeVLong(out, cantidadResultado);
+        if (cantidadResultado > 0) {
+            out.writeDouble(minResultado);
+            out.writeDouble(maxResultado);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        filas = WritableUtils.readVLong(in);
+        procedimientos = WritableUtils.readVLong(in);
+        sumaEdad = WritableUtils.readVLong(in);
+        cantidadEdad = WritableUtils.readVLong(in);
+        cantidadResultado = WritableUtils.readVLong(in);
+        if (cantidadResultado > 0) {
+            minResultado = in.readDouble();
+            maxResultado = in.readDouble();
+        } else {
+            minResultado = Double.POSITIVE_INFINITY;
+            maxResultado = Double.NEGATIVE_INFINITY;
+        }
+    }
+}
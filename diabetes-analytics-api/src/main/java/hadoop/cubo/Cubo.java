@@ -0,0 +1,268 @@
+package hadoop.cubo;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cubo en memoria leído de la salida de MaterializacionCubo. Cada dimensión
+ * guarda sus valores una sola vez (diccionario) y las celdas solo el código
+ * del valor (un arreglo de int por dimensión) y su CeldaCubo. agrupar() hace
+ * el roll-up sobre cualquier subconjunto de dimensiones recorriendo las
+ * celdas, sin lanzar MapReduce.
+ */
+public final class Cubo {
+
+    // Código de una dimensión que el registro no alcanza (campos insuficientes)
+    public static final int AUSENTE = 0;
+
+    private static final byte[] SEPARADOR = {';'};
+
+    private final byte[][][] valores;
+    private final Map<String, Integer>[] codigosPorValor;
+    private final int[][] codigos;
+    private final CeldaCubo[] celdas;
+
+    @SuppressWarnings("unchecked")
+    private Cubo(List<byte[]>[] diccionarios, List<int[]> claves, List<CeldaCubo> medidas) {
+        int dimensiones = diccionarios.length;
+        valores = new byte[dimensiones][][];
+        codigosPorValor = new Map[dimensiones];
+        for (int d = 0; d < dimensiones; d++) {
+            valores[d] = diccionarios[d].toArray(new byte[0][]);
+            codigosPorValor[d] = new HashMap<>();
+            for (int c = AUSENTE + 1; c < valores[d].length; c++) {
+                codigosPorValor[d].put(new String(valores[d][c], StandardCharsets.UTF_8), c);
+            }
+        }
+        codigos = new int[dimensiones][claves.size()];
+        for (int i = 0; i < claves.size(); i++) {
+            for (int d = 0; d < dimensiones; d++) {
+                codigos[d][i] = claves.get(i)[d];
+            }
+        }
+        celdas = medidas.toArray(new CeldaCubo[0]);
+    }
+
+    public static Cubo cargar(Configuration conf, Path directorio) throws IOException {
+        int dimensiones = MaterializacionCubo.DIMENSIONES.length;
+        @SuppressWarnings("unchecked")
+        List<byte[]>[] diccionarios = new List[dimensiones];
+        List<Map<ByteBuffer, Integer>> indices = new ArrayList<>();
+        for (int d = 0; d < dimensiones; d++) {
+            diccionarios[d] = new ArrayList<>();
+            diccionarios[d].add(null);
+            indices.add(new HashMap<>());
+        }
+        List<int[]> claves = new ArrayList<>();
+        List<CeldaCubo> medidas = new ArrayList<>();
+
+        FileSystem fs = directorio.getFileSystem(conf);
+        FileStatus[] partes = fs.listStatus(directorio, p -> p.getName().startsWith("part-"));
+        Arrays.sort(partes);
+        BytesWritable clave = new BytesWritable();
+        DataInputBuffer entrada = new DataInputBuffer();
+        for (FileStatus parte : partes) {
+            try (SequenceFile.Reader lector = new SequenceFile.Reader(conf, SequenceFile.Reader.file(parte.getPath()))) {
+                CeldaCubo celda = new CeldaCubo();
+                while (lector.next(clave, celda)) {
+                    entrada.reset(clave.getBytes(), clave.getLength());
+                    int[] codigosCelda = new int[dimensiones];
+                    for (int d = 0; d < dimensiones; d++) {
+                        int largo = WritableUtils.readVInt(entrada) - 1;
+                        if (largo < 0) {
+                            codigosCelda[d] = AUSENTE;
+                            continue;
+                        }
+                        byte[] valor = new byte[largo];
+                        entrada.readFully(valor);
+                        Integer codigo = indices.get(d).get(ByteBuffer.wrap(valor));
+                        if (codigo == null) {
+                            codigo = diccionarios[d].size();
+                            diccionarios[d].add(valor);
+                            indices.get(d).put(ByteBuffer.wrap(valor), codigo);
+                        }
+                        codigosCelda[d] = codigo;
+                    }
+                    claves.add(codigosCelda);
+                    medidas.add(celda);
+                    celda = new CeldaCubo();
+                }
+            }
+        }
+        return new Cubo(diccionarios, claves, medidas);
+    }
+
+    public int cantidadCeldas() {
+        return celdas.length;
+    }
+
+    // Índice de la dimensión por nombre (MaterializacionCubo.NOMBRES_DIMENSIONES), -1 si no existe
+    public static int dimension(String nombre) {
+        for (int d = 0; d < MaterializacionCubo.NOMBRES_DIMENSIONES.length; d++) {
+            if (MaterializacionCubo.NOMBRES_DIMENSIONES[d].equals(nombre)) return d;
+        }
+        return -1;
+    }
+
+    /** Un grupo del roll-up: el valor de cada dimensión agrupada (null si ausente) y sus medidas. */
+    public static final class Grupo {
+        private final byte[][] valores;
+        private final CeldaCubo medidas = new CeldaCubo();
+
+        Grupo(byte[][] valores) {
+            this.valores = valores;
+        }
+
+        public String valor(int i) {
+            return valores[i] == null ? null : new String(valores[i], StandardCharsets.UTF_8);
+        }
+
+        public CeldaCubo getMedidas() {
+            return medidas;
+        }
+
+        // Valores unidos con ';', la clave de texto de las consultas originales
+        byte[] clave() {
+            int largo = Math.max(0, valores.length - 1);
+            for (byte[] v : valores) largo += v == null ? 0 : v.length;
+            byte[] clave = new byte[largo];
+            int p = 0;
+            for (int i = 0; i < valores.length; i++) {
+                if (i > 0) clave[p++] = SEPARADOR[0];
+                if (valores[i] != null) {
+                    System.arraycopy(valores[i], 0, clave, p, valores[i].length);
+                    p += valores[i].length;
+                }
+            }
+            return clave;
+        }
+    }
+
+    /**
+     * Roll-up por las dimensiones indicadas, con las celdas cuyas dimensiones
+     * coinciden con los filtros (índice de dimensión → valor). Los grupos
+     * salen ordenados por sus valores unidos con ';', como las claves Text
+     * de las consultas originales.
+     */
+    public List<Grupo> agrupar(int[] dimensiones, Map<Integer, String> filtros) {
+        int[] filtro = new int[codigos.length];
+        Arrays.fill(filtro, -1);
+        for (Map.Entry<Integer, String> f : filtros.entrySet()) {
+            Integer codigo = codigosPorValor[f.getKey()].get(f.getValue());
+            if (codigo == null) return new ArrayList<>();
+            filtro[f.getKey()] = codigo;
+        }
+        Map<Long, Grupo> grupos = new HashMap<>();
+        for (int i = 0; i < celdas.length; i++) {
+            if (!coincide(i, filtro)) continue;
+            long id = 0;
+            for (int d : dimensiones) {
+                id = Math.addExact(Math.multiplyExact(id, valores[d].length), codigos[d][i]);
+            }
+            Grupo grupo = grupos.get(id);
+            if (grupo == null) {
+                byte[][] valoresGrupo = new byte[dimensiones.length][];
+                for (int j = 0; j < dimensiones.length; j++) {
+                    valoresGrupo[j] = valores[dimensiones[j]][codigos[dimensiones[j]][i]];
+                }
+                grupo = new Grupo(valoresGrupo);
+                grupos.put(id, grupo);
+            }
+            grupo.medidas.agregar(celdas[i]);
+        }
+        List<Grupo> ordenados = new ArrayList<>(grupos.values());
+        List<byte[]> clavesOrden = new ArrayList<>(ordenados.size());
+        for (Grupo g : ordenados) clavesOrden.add(g.clave());
+        Integer[] orden = new Integer[ordenados.size()];
+        for (int i = 0; i < orden.length; i++) orden[i] = i;
+        Arrays.sort(orden, (a, b) -> {
+            byte[] x = clavesOrden.get(a), y = clavesOrden.get(b);
+            return WritableComparator.compareBytes(x, 0, x.length, y, 0, y.length);
+        });
+        List<Grupo> resultado = new ArrayList<>(orden.length);
+        for (int i : orden) resultado.add(ordenados.get(i));
+        return resultado;
+    }
+
+    private boolean coincide(int celda, int[] filtro) {
+        for (int d = 0; d < filtro.length; d++) {
+            if (filtro[d] >= 0 && codigos[d][celda] != filtro[d]) return false;
+        }
+        return true;
+    }
+
+    // Consultas de hadoop.q* que el cubo responde con la misma salida, por nombre de consulta
+    public static boolean responde(String consulta) {
+        switch (consulta) {
+            case "pacientes-depto-sexo":
+            case "procedimientos-area-servicio":
+            case "edad-promedio":
+            case "min-max-colesterol":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Escribe lo mismo que el part-r-00000 de la consulta (clave, tabulador,
+     * valor por línea) a partir del roll-up correspondiente.
+     */
+    public void escribirSalida(String consulta, OutputStream salida) throws IOException {
+        Map<Integer, String> sinFiltros = new HashMap<>();
+        switch (consulta) {
+            case "pacientes-depto-sexo":
+                for (Grupo g : agrupar(new int[] {0, 2}, sinFiltros)) {
+                    if (g.medidas.filas > 0) escribirLinea(salida, g, String.valueOf(g.medidas.filas));
+                }
+                break;
+            case "procedimientos-area-servicio":
+                for (Grupo g : agrupar(new int[] {4, 5}, sinFiltros)) {
+                    if (g.medidas.procedimientos > 0) escribirLinea(salida, g, String.valueOf(g.medidas.procedimientos));
+                }
+                break;
+            case "edad-promedio":
+                for (Grupo g : agrupar(new int[] {3}, sinFiltros)) {
+                    if (g.medidas.cantidadEdad > 0) escribirLinea(salida, g, String.valueOf(g.medidas.promedioEdad()));
+                }
+                break;
+            case "min-max-colesterol":
+                for (Grupo g : agrupar(new int[] {0}, sinFiltros)) {
+                    if (g.medidas.cantidadResultado == 0) continue;
+                    // Mismos valores iniciales que MinMaxColesterolPorDepto.MinMaxReducer
+                    double min = Double.MAX_VALUE;
+                    double max = Double.MIN_VALUE;
+                    if (g.medidas.minResultado < min) min = g.medidas.minResultado;
+                    if (g.medidas.maxResultado > max) max = g.medidas.maxResultado;
+                    escribirLinea(salida, g, "Min: " + min + ", Max: " + max);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Consulta no soportada por el cubo: " + consulta);
+        }
+    }
+
+    private static void escribirLinea(OutputStream salida, Grupo grupo, String valor) throws IOException {
+        salida.write(grupo.clave());
+        salida.write('\t');
+        salida.write(valor.getBytes(StandardCharsets.UTF_8));
+        salida.write('\n');
+    }
+}
@@ -0,0 +1,123 @@
+package hadoop.cubo;
+
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.RegistroCsv;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Job que materializa el cubo: agrupa el dataset por todas las dimensiones a
+ * la vez y guarda una celda de medidas por combinación presente, en
+ * SequenceFiles que Cubo.cargar lee a memoria. Cada medida aplica el filtro
+ * de la consulta original, así que los roll-ups de Cubo reproducen su salida.
+ */
+public class MaterializacionCubo {
+
+    // Campos del CSV que son dimensiones, en el orden de la clave
+    public static final int[] DIMENSIONES = {1, 2, 9, 13, 14, 15};
+    public static final String[] NOMBRES_DIMENSIONES = {
+            "departamento", "provincia", "sexo", "diagnostico", "area", "servicio"
+    };
+
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {1, 2, 8, 9, 13, 14, 15, 19, 20, 23};
+
+    public static class CeldaMapper extends Mapper<LongWritable, Text, BytesWritable, CeldaCubo> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final CeldaCubo celda = new CeldaCubo();
+        private final DataOutputBuffer buffer = new DataOutputBuffer();
+        private final BytesWritable clave = new BytesWritable();
+
+        @Override
+        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            if (key.get() == 0) return;
+
+            registro.set(value);
+            int campos = registro.camposSinVaciosFinales();
+            celda.vaciar();
+            if (campos > 9) {
+                celda.filas = 1;
+            }
+            if (campos > 15) {
+                if (campos > 19 && !registro.vacioRecortado(19)) celda.procedimientos++;
+                if (campos > 23 && !registro.vacioRecortado(23)) celda.procedimientos++;
+            }
+            boolean malformada = false;
+            if (campos > 13) {
+                try {
+                    celda.agregarEdad(registro.enteroRecortado(8));
+                } catch (NumberFormatException e) {
+                    malformada = true;
+                }
+            }
+            if (campos > 20) {
+                try {
+                    celda.agregarResultado(registro.decimal(20));
+                } catch (NumberFormatException e) {
+                    malformada = true;
+                }
+            }
+            if (malformada) {
+                context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+            }
+            if (celda.vacia()) return;
+
+            // Clave: por dimensión, largo + 1 y bytes del campo recortado (0 = el registro no llega a ese campo)
+            buffer.reset();
+            for (int campo : DIMENSIONES) {
+                if (campos > campo) {
+                    int a = registro.inicioRecortado(campo);
+                    int largo = registro.finRecortado(campo) - a;
+                    WritableUtils.writeVInt(buffer, largo + 1);
+                    buffer.write(registro.getBytes(), a, largo);
+                } else {
+                    WritableUtils.writeVInt(buffer, 0);
+                }
+            }
+            clave.set(buffer.getData(), 0, buffer.getLength());
+            context.write(clave, celda);
+        }
+    }
+
+    public static class CeldaReducer extends Reducer<BytesWritable, CeldaCubo, BytesWritable, CeldaCubo> {
+        private final CeldaCubo total = new CeldaCubo();
+
+        @Override
+        public void reduce(BytesWritable key, Iterable<CeldaCubo> values, Context context) throws IOException, InterruptedException {
+            total.vaciar();
+            for (CeldaCubo val : values) {
+                total.agregar(val);
+            }
+            context.write(key, total);
+        }
+    }
+
+    public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        Configuration conf = new Configuration();
+        Job job = Job.getInstance(conf, "Materializacion del Cubo");
+        job.setJarByClass(MaterializacionCubo.class);
+        job.setMapperClass(CeldaMapper.class);
+        job.setCombinerClass(CeldaReducer.class);
+        job.setReducerClass(CeldaReducer.class);
+        job.setOutputKeyClass(BytesWritable.class);
+        job.setOutputValueClass(CeldaCubo.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
+        FileOutputFormat.setOutputPath(job, new Path(outputPath));
+        return EjecutorJobs.ejecutar(job);
+    }
+}
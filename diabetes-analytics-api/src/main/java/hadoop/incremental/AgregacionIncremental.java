@@ -0,0 +1,162 @@
+package hadoop.incremental;
+
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.MejoresK;
+import hadoop.comun.MinMaxWritable;
+import hadoop.comun.RangoBytesInputFormat;
+import hadoop.comun.SumaConteoWritable;
+import hadoop.q1_consultas_multiples_campos.EdadPromedioPorDiagnostico;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import hadoop.q1_consultas_multiples_campos.ProcedimientosPorAreaServicio;
+import hadoop.q5_valores_extremos.MinMaxColesterolPorDepto;
+import hadoop.q7_modelos_clasificacion.ClasificacionRiesgoCardiovascular;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Consultas de agregación de hadoop.q* cuyo resultado se puede mantener por
+ * entregas: el estado parcial de una entrega (lo agregado al CSV entre dos
+ * lecturas) es la salida del mapper de la consulta pasada por su combiner,
+ * guardada en SequenceFiles. Como el combiner es asociativo, combinar los
+ * estados de todas las entregas y aplicar el reducer de la consulta da la
+ * misma salida que el job sobre el CSV completo, sin volver a leerlo.
+ */
+public final class AgregacionIncremental {
+
+    /** Piezas de una consulta: mapper, combiner que une estados y reducer final, con sus tipos. */
+    @SuppressWarnings("rawtypes")
+    private static final class Agregacion {
+        final String nombreJob;
+        final Class<? extends Mapper> mapper;
+        final Class<? extends Reducer> combinador;
+        final Class<? extends Reducer> reducer;
+        final Class<? extends Writable> valorParcial;
+        final Class<? extends Writable> valorFinal;
+
+        Agregacion(String nombreJob, Class<? extends Mapper> mapper, Class<? extends Reducer> combinador,
+                   Class<? extends Reducer> reducer, Class<? extends Writable> valorParcial,
+                   Class<? extends Writable> valorFinal) {
+            this.nombreJob = nombreJob;
+            this.mapper = mapper;
+            this.combinador = combinador;
+            this.reducer = reducer;
+            this.valorParcial = valorParcial;
+            this.valorFinal = valorFinal;
+        }
+    }
+
+    private static final Map<String, Agregacion> AGREGACIONES = new HashMap<>();
+
+    static {
+        AGREGACIONES.put("pacientes-depto-sexo", new Agregacion("Pacientes por Departamento y Sexo",
+                PacientesPorDeptoSexo.PacientesMapper.class, PacientesPorDeptoSexo.SumReducer.class,
+                PacientesPorDeptoSexo.SumReducer.class, IntWritable.class, IntWritable.class));
+        AGREGACIONES.put("edad-promedio", new Agregacion("Edad Promedio por Diagnostico",
+                EdadPromedioPorDiagnostico.EdadMapper.class, SumaConteoWritable.Combinador.class,
+                EdadPromedioPorDiagnostico.AvgReducer.class, SumaConteoWritable.class, DoubleWritable.class));
+        AGREGACIONES.put("min-max-colesterol", new Agregacion("Min-Max Colesterol por Departamento",
+                MinMaxColesterolPorDepto.MinMaxMapper.class, MinMaxWritable.Combinador.class,
+                MinMaxColesterolPorDepto.MinMaxReducer.class, MinMaxWritable.class, Text.class));
+        AGREGACIONES.put("procedimientos-area-servicio", new Agregacion("Procedimientos por Area y Servicio",
+                ProcedimientosPorAreaServicio.ProcedimientoMapper.class, ProcedimientosPorAreaServicio.SumReducer.class,
+                ProcedimientosPorAreaServicio.SumReducer.class, IntWritable.class, IntWritable.class));
+        AGREGACIONES.put("clasificacion-riesgo", new Agregacion("Clasificación de Riesgo y Edad Promedio",
+                ClasificacionRiesgoCardiovascular.RiesgoMapper.class, SumaConteoWritable.Combinador.class,
+                ClasificacionRiesgoCardiovascular.AvgReducer.class, SumaConteoWritable.class, DoubleWritable.class));
+    }
+
+    private AgregacionIncremental() { }
+
+    public static boolean soporta(String consulta) {
+        return AGREGACIONES.containsKey(consulta);
+    }
+
+    public static Set<String> consultas() {
+        return Collections.unmodifiableSet(AGREGACIONES.keySet());
+    }
+
+    private static Agregacion agregacion(String consulta) {
+        Agregacion agregacion = AGREGACIONES.get(consulta);
+        if (agregacion == null) {
+            throw new IllegalArgumentException("Consulta sin estado incremental: " + consulta);
+        }
+        return agregacion;
+    }
+
+    /**
+     * Estado parcial de la entrega: las líneas del CSV que empiezan en
+     * [desde, hasta) por el mapper y el combiner de la consulta.
+     */
+    public static boolean runJobEntrega(String consulta, String csv, long desde, long hasta, String salida) throws Exception {
+        Agregacion a = agregacion(consulta);
+        Job job = Job.getInstance(new Configuration(), a.nombreJob + " (entrega " + desde + "-" + hasta + ")");
+        job.setJarByClass(AgregacionIncremental.class);
+        job.setMapperClass(a.mapper);
+        job.setCombinerClass(a.combinador);
+        job.setReducerClass(a.combinador);
+        job.setNumReduceTasks(1);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(a.valorParcial);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        RangoBytesInputFormat.configurar(job, new Path(csv), desde, hasta);
+        FileOutputFormat.setOutputPath(job, new Path(salida));
+        return EjecutorJobs.ejecutar(job);
+    }
+
+    // Une los estados de varias entregas en uno solo, que los reemplaza
+    public static boolean runJobCompactar(String consulta, List<String> estados, String salida) throws Exception {
+        Agregacion a = agregacion(consulta);
+        Job job = trabajoSobreEstados(a, a.nombreJob + " (compactación)", estados, salida);
+        job.setReducerClass(a.combinador);
+        job.setOutputValueClass(a.valorParcial);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        return EjecutorJobs.ejecutar(job);
+    }
+
+    // Salida de la consulta (el mismo part-r-00000 que su runJob) a partir de los estados de las entregas
+    public static boolean runJobCombinar(String consulta, List<String> estados, String salida) throws Exception {
+        return runJobCombinar(consulta, estados, salida, null);
+    }
+
+    public static boolean runJobCombinar(String consulta, List<String> estados, String salida, MejoresK mejores) throws Exception {
+        Agregacion a = agregacion(consulta);
+        Job job = trabajoSobreEstados(a, a.nombreJob, estados, salida);
+        job.setReducerClass(a.reducer);
+        job.setOutputValueClass(a.valorFinal);
+        return mejores != null ? mejores.ejecutar(job) : EjecutorJobs.ejecutar(job);
+    }
+
+    private static Job trabajoSobreEstados(Agregacion a, String nombre, List<String> estados, String salida) throws Exception {
+        Job job = Job.getInstance(new Configuration(), nombre);
+        job.setJarByClass(AgregacionIncremental.class);
+        job.setMapperClass(Mapper.class);
+        job.setCombinerClass(a.combinador);
+        job.setNumReduceTasks(1);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(a.valorParcial);
+        job.setOutputKeyClass(Text.class);
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+        for (String estado : estados) {
+            FileInputFormat.addInputPath(job, new Path(estado));
+        }
+        FileOutputFormat.setOutputPath(job, new Path(salida));
+        return job;
+    }
+}
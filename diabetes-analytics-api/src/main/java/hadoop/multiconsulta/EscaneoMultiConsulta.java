@@ -0,0 +1,407 @@
+package hadoop.multiconsulta;
+
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.Contextos;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.EscritorContado;
+import hadoop.comun.MinMaxWritable;
+import hadoop.comun.SumaConteoWritable;
+import hadoop.q1_consultas_multiples_campos.EdadPromedioPorDiagnostico;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import hadoop.q1_consultas_multiples_campos.ProcedimientosPorAreaServicio;
+import hadoop.q2_estadisticas_descriptivas.EstadisticasColesterol;
+import hadoop.q3_busqueda_subtexto.BusquedaSubtexto;
+import hadoop.q4_busqueda_rango_fechas.BusquedaPorFechas;
+import hadoop.q5_valores_extremos.MinMaxColesterolPorDepto;
+import hadoop.q6_jobs_encadenados.GlucosaSobrePromedioNacional;
+import hadoop.q7_modelos_clasificacion.ClasificacionRiesgoCardiovascular;
+import hadoop.q7_modelos_clasificacion.PrediccionReingresoSimple;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.GenericWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Ejecuta varias consultas de hadoop.q* en un solo recorrido del dataset.
+ * El mapper compartido llama a los mappers originales y etiqueta su salida con
+ * la consulta; combiner y reducer devuelven cada grupo a la clase original.
+ * La salida de cada consulta queda en salida/nombre-consulta/part-*, igual que
+ * si se hubiera ejecutado sola.
+ */
+public class EscaneoMultiConsulta {
+
+    public static final String CONF_CONSULTAS = "multiconsulta.consultas";
+
+    @SuppressWarnings("rawtypes")
+    public enum Consulta {
+        EDAD_PROMEDIO("edad-promedio", EdadPromedioPorDiagnostico.COLUMNAS, EdadPromedioPorDiagnostico.EdadMapper.class,
+                SumaConteoWritable.Combinador.class, EdadPromedioPorDiagnostico.AvgReducer.class),
+        PACIENTES_DEPTO_SEXO("pacientes-depto-sexo", PacientesPorDeptoSexo.COLUMNAS, PacientesPorDeptoSexo.PacientesMapper.class,
+                PacientesPorDeptoSexo.SumReducer.class, PacientesPorDeptoSexo.SumReducer.class),
+        PROCEDIMIENTOS_AREA_SERVICIO("procedimientos-area-servicio", ProcedimientosPorAreaServicio.COLUMNAS,
+                ProcedimientosPorAreaServicio.ProcedimientoMapper.class,
+                ProcedimientosPorAreaServicio.SumReducer.class, ProcedimientosPorAreaServicio.SumReducer.class),
+        ESTADISTICAS_COLESTEROL("estadisticas-colesterol", EstadisticasColesterol.COLUMNAS, EstadisticasColesterol.ResumenMapper.class,
+                EstadisticasColesterol.ResumenCombiner.class, EstadisticasColesterol.ResumenReducer.class),
+        BUSQUEDA_SUBTEXTO("busqueda-subtexto", BusquedaSubtexto.COLUMNAS, BusquedaSubtexto.SearchMapper.class, null, null),
+        BUSQUEDA_FECHAS("busqueda-fechas", BusquedaPorFechas.COLUMNAS, BusquedaPorFechas.DateRangeMapper.class, null, null),
+        GLUCOSA_SOBRE_PROMEDIO("glucosa-sobre-promedio", GlucosaSobrePromedioNacional.COLUMNAS,
+                GlucosaSobrePromedioNacional.DeptoAvgMapper.class,
+                SumaConteoWritable.Combinador.class, GlucosaSobrePromedioNacional.DeptoFilterReducer.class),
+        MIN_MAX_COLESTEROL("min-max-colesterol", MinMaxColesterolPorDepto.COLUMNAS, MinMaxColesterolPorDepto.MinMaxMapper.class,
+                MinMaxWritable.Combinador.class, MinMaxColesterolPorDepto.MinMaxReducer.class),
+        CLASIFICACION_RIESGO("clasificacion-riesgo", ClasificacionRiesgoCardiovascular.COLUMNAS,
+                ClasificacionRiesgoCardiovascular.RiesgoMapper.class,
+                SumaConteoWritable.Combinador.class, ClasificacionRiesgoCardiovascular.AvgReducer.class),
+        PREDICCION_REINGRESO("prediccion-reingreso", PrediccionReingresoSimple.COLUMNAS, PrediccionReingresoSimple.PredictionMapper.class,
+                PrediccionReingresoSimple.CountReducer.class, PrediccionReingresoSimple.CountReducer.class);
+
+        private final String nombre;
+        private final int[] columnas;
+        private final Class<? extends Mapper> mapper;
+        private final Class<? extends Reducer> combiner;
+        private final Class<? extends Reducer> reducer;
+
+        Consulta(String nombre, int[] columnas, Class<? extends Mapper> mapper,
+                 Class<? extends Reducer> combiner, Class<? extends Reducer> reducer) {
+            this.nombre = nombre;
+            this.columnas = columnas;
+            this.mapper = mapper;
+            this.combiner = combiner;
+            this.reducer = reducer;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        // Las búsquedas no agregan: su salida se escribe directamente desde el mapper
+        public boolean soloMap() {
+            return reducer == null;
+        }
+
+        String rutaSalida() {
+            return nombre + "/part";
+        }
+
+        // Consultas cuyo reducer necesita todas sus claves juntas (calcula sobre el total en cleanup)
+        boolean reducerUnico() {
+            return this == GLUCOSA_SOBRE_PROMEDIO;
+        }
+
+        public static Consulta porNombre(String nombre) {
+            for (Consulta c : values()) {
+                if (c.nombre.equals(nombre)) return c;
+            }
+            throw new IllegalArgumentException("Consulta no soportada en modo multiconsulta: " + nombre);
+        }
+    }
+
+    // Valor intermedio: cualquiera de los tipos que emiten los mappers originales
+    public static class ValorEtiquetado extends GenericWritable {
+        @SuppressWarnings("unchecked")
+        private static final Class<? extends Writable>[] TIPOS = new Class[] {
+                IntWritable.class, DoubleWritable.class, Text.class, SumaConteoWritable.class, MinMaxWritable.class,
+                EstadisticasColesterol.Resumen.class
+        };
+
+        @Override
+        protected Class<? extends Writable>[] getTypes() {
+            return TIPOS;
+        }
+    }
+
+    // Clave intermedia: primer byte = ordinal de la consulta, resto = clave original
+    static void etiquetar(Consulta consulta, Text clave, Text destino) {
+        destino.clear();
+        destino.append(new byte[] {(byte) consulta.ordinal()}, 0, 1);
+        destino.append(clave.getBytes(), 0, clave.getLength());
+    }
+
+    static Consulta consultaDe(Text etiquetada) {
+        return Consulta.values()[etiquetada.getBytes()[0]];
+    }
+
+    static void claveOriginal(Text etiquetada, Text destino) {
+        destino.set(etiquetada.getBytes(), 1, etiquetada.getLength() - 1);
+    }
+
+    // Unión de las columnas que leen las consultas; vacío si alguna necesita la línea completa
+    static int[] columnasDe(List<String> consultas) {
+        SortedSet<Integer> union = new TreeSet<>();
+        for (String nombre : consultas) {
+            int[] columnas = Consulta.porNombre(nombre).columnas;
+            if (columnas.length == 0) return columnas;
+            for (int c : columnas) union.add(c);
+        }
+        int[] resultado = new int[union.size()];
+        int i = 0;
+        for (int c : union) resultado[i++] = c;
+        return resultado;
+    }
+
+    static List<Consulta> consultasDe(Configuration conf) {
+        List<Consulta> consultas = new ArrayList<>();
+        for (String nombre : conf.getTrimmedStrings(CONF_CONSULTAS)) {
+            consultas.add(Consulta.porNombre(nombre));
+        }
+        return consultas;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static class MultiMapper extends Mapper<LongWritable, Text, Text, ValorEtiquetado> {
+        private final List<Mapper> delegados = new ArrayList<>();
+        private final List<Mapper.Context> contextos = new ArrayList<>();
+        private MultipleOutputs<Text, Writable> salidas;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            salidas = new MultipleOutputs(context);
+            for (Consulta consulta : consultasDe(context.getConfiguration())) {
+                // Filas malformadas y emitidas de cada consulta, en su propio grupo de contadores
+                StatusReporter reporter = Contextos.reporterDe(context, consulta.nombre);
+                RecordWriter writer = new EscritorContado(consulta.soloMap()
+                        ? new EscritorMultiple(salidas, consulta.rutaSalida())
+                        : new EscritorEtiquetado(consulta, context), reporter.getCounter(ContadorFilas.EMITIDAS));
+                Mapper delegado = ReflectionUtils.newInstance(consulta.mapper, context.getConfiguration());
+                Mapper.Context ctx = Contextos.mapContext(context.getConfiguration(), context.getTaskAttemptID(),
+                        null, writer, reporter, context.getInputSplit());
+                Contextos.setup(delegado, ctx);
+                delegados.add(delegado);
+                contextos.add(ctx);
+            }
+        }
+
+        @Override
+        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            for (int i = 0; i < delegados.size(); i++) {
+                Contextos.map(delegados.get(i), key, value, contextos.get(i));
+            }
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            for (int i = 0; i < delegados.size(); i++) {
+                Contextos.cleanup(delegados.get(i), contextos.get(i));
+            }
+            salidas.close();
+        }
+    }
+
+    /**
+     * Base de combiner y reducer: agrupa por consulta y entrega cada grupo a
+     * una instancia de la clase original, creada la primera vez que aparece.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    abstract static class ReducerDelegado<KO, VO> extends Reducer<Text, ValorEtiquetado, KO, VO> {
+        private final Reducer[] delegados = new Reducer[Consulta.values().length];
+        private final Reducer.Context[] contextos = new Reducer.Context[Consulta.values().length];
+        private final Text claveOriginal = new Text();
+
+        protected abstract Class<? extends Reducer> claseDelegada(Consulta consulta);
+
+        protected abstract RecordWriter escritor(Consulta consulta, Context context);
+
+        @Override
+        public void reduce(Text key, Iterable<ValorEtiquetado> values, Context context) throws IOException, InterruptedException {
+            Consulta consulta = consultaDe(key);
+            int i = consulta.ordinal();
+            if (delegados[i] == null) {
+                delegados[i] = ReflectionUtils.newInstance(claseDelegada(consulta), context.getConfiguration());
+                contextos[i] = Contextos.reduceContextSoloEscritura(context.getConfiguration(), context.getTaskAttemptID(),
+                        escritor(consulta, context), Contextos.reporterDe(context, consulta.nombre),
+                        WritableComparator.get(Text.class), Text.class, Writable.class);
+                Contextos.setup(delegados[i], contextos[i]);
+            }
+            claveOriginal(key, claveOriginal);
+            Contextos.reduce(delegados[i], claveOriginal, desenvolver(values), contextos[i]);
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            for (int i = 0; i < delegados.length; i++) {
+                if (delegados[i] != null) {
+                    Contextos.cleanup(delegados[i], contextos[i]);
+                }
+            }
+        }
+
+        private static Iterable<Writable> desenvolver(Iterable<ValorEtiquetado> valores) {
+            return () -> {
+                Iterator<ValorEtiquetado> it = valores.iterator();
+                return new Iterator<Writable>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Writable next() {
+                        return it.next().get();
+                    }
+                };
+            };
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static class MultiCombiner extends ReducerDelegado<Text, ValorEtiquetado> {
+        @Override
+        protected Class<? extends Reducer> claseDelegada(Consulta consulta) {
+            return consulta.combiner != null ? consulta.combiner : IdentidadReducer.class;
+        }
+
+        @Override
+        protected RecordWriter escritor(Consulta consulta, Context context) {
+            return new EscritorEtiquetado(consulta, context);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static class MultiReducer extends ReducerDelegado<Text, Writable> {
+        private MultipleOutputs<Text, Writable> salidas;
+
+        @Override
+        protected void setup(Context context) {
+            salidas = new MultipleOutputs(context);
+        }
+
+        @Override
+        protected Class<? extends Reducer> claseDelegada(Consulta consulta) {
+            return consulta.reducer;
+        }
+
+        @Override
+        protected RecordWriter escritor(Consulta consulta, Context context) {
+            return new EscritorMultiple(salidas, consulta.rutaSalida());
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            super.cleanup(context);
+            salidas.close();
+        }
+    }
+
+    // Como HashPartitioner, salvo las consultas de reducer único, que van enteras a una partición
+    public static class ConsultaPartitioner extends Partitioner<Text, ValorEtiquetado> {
+        @Override
+        public int getPartition(Text key, ValorEtiquetado value, int numPartitions) {
+            Consulta consulta = consultaDe(key);
+            if (consulta.reducerUnico()) return consulta.ordinal() % numPartitions;
+            return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    // Combiner neutro para consultas que no declaran uno
+    public static class IdentidadReducer extends Reducer<Text, Writable, Text, Writable> {
+        @Override
+        public void reduce(Text key, Iterable<Writable> values, Context context) throws IOException, InterruptedException {
+            for (Writable val : values) {
+                context.write(key, val);
+            }
+        }
+    }
+
+    // Reenvía la salida de un delegado al contexto real con la clave etiquetada
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static class EscritorEtiquetado extends RecordWriter<Text, Writable> {
+        private final Consulta consulta;
+        private final org.apache.hadoop.mapreduce.TaskInputOutputContext destino;
+        private final Text clave = new Text();
+        private final ValorEtiquetado valor = new ValorEtiquetado();
+
+        EscritorEtiquetado(Consulta consulta, org.apache.hadoop.mapreduce.TaskInputOutputContext destino) {
+            this.consulta = consulta;
+            this.destino = destino;
+        }
+
+        @Override
+        public void write(Text key, Writable value) throws IOException, InterruptedException {
+            etiquetar(consulta, key, clave);
+            valor.set(value);
+            destino.write(clave, valor);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+        }
+    }
+
+    // Escribe la salida final de un delegado en el subdirectorio de su consulta
+    static class EscritorMultiple extends RecordWriter<Writable, Writable> {
+        private final MultipleOutputs<Writable, Writable> salidas;
+        private final String ruta;
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        EscritorMultiple(MultipleOutputs salidas, String ruta) {
+            this.salidas = salidas;
+            this.ruta = ruta;
+        }
+
+        @Override
+        public void write(Writable key, Writable value) throws IOException, InterruptedException {
+            salidas.write(key, value, ruta);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+        }
+    }
+
+    public static boolean runJob(String inputPath, String outputPath, List<String> consultas,
+                                 String searchTerm, String startDate, String endDate) throws Exception {
+        Configuration conf = new Configuration();
+        for (String nombre : consultas) {
+            Consulta.porNombre(nombre);
+        }
+        conf.setStrings(CONF_CONSULTAS, consultas.toArray(new String[0]));
+        if (consultas.contains(Consulta.PREDICCION_REINGRESO.getNombre())) {
+            PrediccionReingresoSimple.configurarModelo(conf);
+        }
+        if (searchTerm != null) conf.set("searchTerm", searchTerm);
+        if (startDate != null) conf.set("startDate", startDate);
+        if (endDate != null) conf.set("endDate", endDate);
+
+        Job job = Job.getInstance(conf, "Multiconsulta en un solo recorrido");
+        job.setJarByClass(EscaneoMultiConsulta.class);
+        job.setMapperClass(MultiMapper.class);
+        job.setCombinerClass(MultiCombiner.class);
+        job.setReducerClass(MultiReducer.class);
+        job.setPartitionerClass(ConsultaPartitioner.class);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(ValorEtiquetado.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(Writable.class);
+        // Solo se crean los part-* de cada subdirectorio, no uno vacío en la raíz
+        LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+        EntradaDatos.configurar(job, new Path(inputPath), columnasDe(consultas));
+        FileOutputFormat.setOutputPath(job, new Path(outputPath));
+        return EjecutorJobs.ejecutar(job);
+    }
+}
@@ -1,74 +1,86 @@
 package hadoop.q1_consultas_multiples_campos;
 
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.MejoresK;
+import hadoop.comun.RegistroCsv;
+import hadoop.comun.SumaConteoWritable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
-import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class EdadPromedioPorDiagnostico {
 
-    public static class EdadMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {8, 13};
+
+    public static class EdadMapper extends Mapper<LongWritable, Text, Text, SumaConteoWritable> {
+        private final RegistroCsv registro = new RegistroCsv();
         private Text diagnostico = new Text();
-        private IntWritable edad = new IntWritable();
+        private SumaConteoWritable edad = new SumaConteoWritable();
 
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 13) {
+            registro.set(value);
+            if (registro.camposSinVaciosFinales() > 13) {
                 try {
-                    String diag = fields[13].trim();
-                    int edadPaciente = Integer.parseInt(fields[8].trim());
+                    int edadPaciente = registro.enteroRecortado(8);
 
-                    diagnostico.set(diag);
-                    edad.set(edadPaciente);
+                    registro.copiarRecortado(13, diagnostico);
+                    edad.set(edadPaciente, 1);
                     context.write(diagnostico, edad);
                 } catch (NumberFormatException e) {
-                    // Ignorar registros con edad inválida
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
                 }
             }
         }
     }
 
-    public static class AvgReducer extends Reducer<Text, IntWritable, Text, DoubleWritable> {
+    public static class AvgReducer extends Reducer<Text, SumaConteoWritable, Text, DoubleWritable> {
+        private final SumaConteoWritable total = new SumaConteoWritable();
         private DoubleWritable result = new DoubleWritable();
 
         @Override
-        public void reduce(Text key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
-            int sum = 0;
-            int count = 0;
-            for (IntWritable val : values) {
-                sum += val.get();
-                count++;
+        public void reduce(Text key, Iterable<SumaConteoWritable> values, Context context) throws IOException, InterruptedException {
+            total.set(0, 0);
+            for (SumaConteoWritable val : values) {
+                total.agregar(val);
             }
-            double avg = (double) sum / count;
+            double avg = total.promedio();
             result.set(avg);
             context.write(key, result);
         }
     }
 
     public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        return runJob(inputPath, outputPath, null);
+    }
+
+    // Con mejores, la salida tiene solo los grupos que elige y en su orden
+    public static boolean runJob(String inputPath, String outputPath, MejoresK mejores) throws Exception {
         Configuration conf = new Configuration();
         Job job = Job.getInstance(conf, "Edad Promedio por Diagnostico");
         job.setJarByClass(EdadPromedioPorDiagnostico.class);
         job.setMapperClass(EdadMapper.class);
+        job.setCombinerClass(SumaConteoWritable.Combinador.class);
         job.setReducerClass(AvgReducer.class);
         job.setMapOutputKeyClass(Text.class);
-        job.setMapOutputValueClass(IntWritable.class);
+        job.setMapOutputValueClass(SumaConteoWritable.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(DoubleWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return mejores != null ? mejores.ejecutar(job) : EjecutorJobs.ejecutar(job);
     }
 }
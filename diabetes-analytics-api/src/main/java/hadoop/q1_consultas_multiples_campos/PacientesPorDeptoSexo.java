@@ -1,5 +1,9 @@
 package hadoop.q1_consultas_multiples_campos;
 
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.MejoresK;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
@@ -8,15 +12,20 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class PacientesPorDeptoSexo {
 
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {1, 9};
+
+    private static final byte[] SEPARADOR = {';'};
+
     public static class PacientesMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
         private final static IntWritable one = new IntWritable(1);
+        private final RegistroCsv registro = new RegistroCsv();
         private Text outKey = new Text();
 
         @Override
@@ -26,13 +35,12 @@ public class PacientesPorDeptoSexo {
                 return;
             }
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 9) {
-                String departamento = fields[1].trim();
-                String sexo = fields[9].trim();
-
+            registro.set(value);
+            if (registro.camposSinVaciosFinales() > 9) {
                 // Clave compuesta: "DEPARTAMENTO;SEXO"
-                outKey.set(departamento + ";" + sexo);
+                registro.copiarRecortado(1, outKey);
+                outKey.append(SEPARADOR, 0, 1);
+                registro.agregarRecortado(9, outKey);
                 context.write(outKey, one);
             }
         }
@@ -53,6 +61,11 @@ public class PacientesPorDeptoSexo {
     }
 
     public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        return runJob(inputPath, outputPath, null);
+    }
+
+    // Con mejores, la salida tiene solo los grupos que elige y en su orden
+    public static boolean runJob(String inputPath, String outputPath, MejoresK mejores) throws Exception {
         Configuration conf = new Configuration();
         Job job = Job.getInstance(conf, "Pacientes por Departamento y Sexo");
         job.setJarByClass(PacientesPorDeptoSexo.class);
@@ -61,8 +74,8 @@ public class PacientesPorDeptoSexo {
         job.setReducerClass(SumReducer.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(IntWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return mejores != null ? mejores.ejecutar(job) : EjecutorJobs.ejecutar(job);
     }
 }
\ No newline at end of file
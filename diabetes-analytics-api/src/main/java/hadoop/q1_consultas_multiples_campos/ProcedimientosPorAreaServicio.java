@@ -1,5 +1,9 @@
 package hadoop.q1_consultas_multiples_campos;
 
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.MejoresK;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
@@ -8,32 +12,37 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class ProcedimientosPorAreaServicio {
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {14, 15, 19, 23};
+
+    private static final byte[] SEPARADOR = {';'};
+
     public static class ProcedimientoMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
         private final static IntWritable one = new IntWritable(1);
+        private final RegistroCsv registro = new RegistroCsv();
         private Text outKey = new Text();
 
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 15) {
-                String area = fields[14].trim();
-                String servicio = fields[15].trim();
-
-                outKey.set(area + ";" + servicio);
+            registro.set(value);
+            int campos = registro.camposSinVaciosFinales();
+            if (campos > 15) {
+                registro.copiarRecortado(14, outKey);
+                outKey.append(SEPARADOR, 0, 1);
+                registro.agregarRecortado(15, outKey);
                 // Cada registro con un procedimiento válido cuenta como uno.
                 // Si hay dos procedimientos por fila, los contamos ambos.
-                if (!fields[19].trim().isEmpty()) {
+                if (campos > 19 && !registro.vacioRecortado(19)) {
                     context.write(outKey, one);
                 }
-                if (fields.length > 23 && !fields[23].trim().isEmpty()) {
+                if (campos > 23 && !registro.vacioRecortado(23)) {
                     context.write(outKey, one);
                 }
             }
@@ -56,6 +65,11 @@ public class ProcedimientosPorAreaServicio {
     }
 
     public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        return runJob(inputPath, outputPath, null);
+    }
+
+    // Con mejores, la salida tiene solo los grupos que elige y en su orden
+    public static boolean runJob(String inputPath, String outputPath, MejoresK mejores) throws Exception {
         Configuration conf = new Configuration();
         Job job = Job.getInstance(conf, "Procedimientos por Area y Servicio");
         job.setJarByClass(ProcedimientosPorAreaServicio.class);
@@ -64,9 +78,9 @@ public class ProcedimientosPorAreaServicio {
         job.setReducerClass(SumReducer.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(IntWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return mejores != null ? mejores.ejecutar(job) : EjecutorJobs.ejecutar(job);
     }
 
 }
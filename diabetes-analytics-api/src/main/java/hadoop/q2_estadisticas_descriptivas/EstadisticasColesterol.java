@@ -1,55 +1,81 @@
 package hadoop.q2_estadisticas_descriptivas;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.CuantilesKll;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.MomentosWritable;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 
 public class EstadisticasColesterol {
 
-    // Mapper emite el valor del resultado del colesterol
-    public static class StatsMapper extends Mapper<LongWritable, Text, Text, DoubleWritable> {
-        private final static Text keyText = new Text("COLESTEROL_RESULTADO_1");
-        private DoubleWritable outValue = new DoubleWritable();
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {19, 20, 23, 24};
+
+    // Precisión del sketch de cuantiles (k de KLL); más alto = más exacto y más memoria
+    public static final String CONF_PRECISION = "estadisticas.cuantiles.k";
+
+    // Extrae el resultado del colesterol de cada registro; la subclase decide qué emitir
+    abstract static class ColesterolMapper<V> extends Mapper<LongWritable, Text, Text, V> {
+        protected final static Text keyText = new Text("COLESTEROL_RESULTADO_1");
+        private static final RegistroCsv.Patron COLESTEROL = new RegistroCsv.Patron("COLESTEROL");
+        private final RegistroCsv registro = new RegistroCsv();
 
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 20) {
+            registro.set(value);
+            int campos = registro.camposSinVaciosFinales();
+            if (campos > 20) {
                 try {
                     // Procedimiento 1 es Colesterol
-                    if(fields[19].toUpperCase().contains("COLESTEROL")){
-                        double resultado = Double.parseDouble(fields[20].trim());
-                        outValue.set(resultado);
-                        context.write(keyText, outValue);
+                    if(registro.contieneMayusculas(19, COLESTEROL)){
+                        emitir(registro.decimal(20), context);
                     }
                     // Procedimiento 2 es Colesterol
-                    else if (fields.length > 23 && fields[23].toUpperCase().contains("COLESTEROL")){
-                        double resultado = Double.parseDouble(fields[24].trim());
-                        outValue.set(resultado);
-                        context.write(keyText, outValue);
+                    else if (campos > 24 && registro.contieneMayusculas(23, COLESTEROL)){
+                        emitir(registro.decimal(24), context);
                     }
 
                 } catch (NumberFormatException e) {
-                    // Ignorar
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
                 }
             }
         }
+
+        protected abstract void emitir(double resultado, Context context) throws IOException, InterruptedException;
+    }
+
+    // Modo exacto: mapper emite el valor del resultado del colesterol
+    public static class StatsMapper extends ColesterolMapper<DoubleWritable> {
+        private DoubleWritable outValue = new DoubleWritable();
+
+        @Override
+        protected void emitir(double resultado, Context context) throws IOException, InterruptedException {
+            outValue.set(resultado);
+            context.write(keyText, outValue);
+        }
     }
 
-    // Reducer calcula promedio, mediana y desviación estándar
+    // Modo exacto: reducer ordena todos los valores para la mediana y los percentiles
     public static class StatsReducer extends Reducer<Text, DoubleWritable, Text, Text> {
         private Text result = new Text();
 
@@ -83,25 +109,164 @@ public class EstadisticasColesterol {
                 median = listaValores.get((int) (count / 2));
             }
 
-            String output = String.format("Promedio: %.2f, Mediana: %.2f, Desv. Estandar: %.2f, Registros: %d", mean, median, stdDev, count);
-            result.set(output);
+            // Percentiles por rango más cercano, igual que el sketch
+            double p90 = listaValores.get(rangoMasCercano(0.90, count));
+            double p99 = listaValores.get(rangoMasCercano(0.99, count));
+
+            result.set(formatear(mean, median, stdDev, count, p90, p99));
+            context.write(key, result);
+        }
+    }
+
+    // Valor intermedio del modo aproximado: momentos y sketch de cuantiles de una parte de los registros
+    public static class Resumen implements Writable {
+        private final MomentosWritable momentos = new MomentosWritable();
+        private final CuantilesKll cuantiles;
+
+        public Resumen() {
+            this(CuantilesKll.K_POR_DEFECTO);
+        }
+
+        Resumen(int k) {
+            cuantiles = new CuantilesKll(k);
+        }
+
+        CuantilesKll getCuantiles() {
+            return cuantiles;
+        }
+
+        void vaciar() {
+            momentos.vaciar();
+            cuantiles.vaciar();
+        }
+
+        void agregar(double valor) {
+            momentos.agregar(valor);
+            cuantiles.agregar(valor);
+        }
+
+        void combinar(Resumen otro) {
+            momentos.agregar(otro.momentos);
+            cuantiles.combinar(otro.cuantiles);
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            momentos.write(out);
+            cuantiles.write(out);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            momentos.readFields(in);
+            cuantiles.readFields(in);
+        }
+    }
+
+    // Modo aproximado: cada tarea map acumula un solo resumen y lo emite al terminar
+    public static class ResumenMapper extends ColesterolMapper<Resumen> {
+        private Resumen resumen;
+
+        @Override
+        protected void setup(Context context) {
+            resumen = new Resumen(context.getConfiguration().getInt(CONF_PRECISION, CuantilesKll.K_POR_DEFECTO));
+        }
+
+        @Override
+        protected void emitir(double resultado, Context context) {
+            resumen.agregar(resultado);
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            if (resumen.momentos.getCantidad() > 0) {
+                context.write(keyText, resumen);
+            }
+        }
+    }
+
+    public static class ResumenCombiner extends Reducer<Text, Resumen, Text, Resumen> {
+        private Resumen total;
+
+        @Override
+        protected void setup(Context context) {
+            total = new Resumen(context.getConfiguration().getInt(CONF_PRECISION, CuantilesKll.K_POR_DEFECTO));
+        }
+
+        @Override
+        public void reduce(Text key, Iterable<Resumen> values, Context context) throws IOException, InterruptedException {
+            total.vaciar();
+            for (Resumen val : values) {
+                total.combinar(val);
+            }
+            context.write(key, total);
+        }
+    }
+
+    public static class ResumenReducer extends Reducer<Text, Resumen, Text, Text> {
+        private Resumen total;
+        private Text result = new Text();
+
+        @Override
+        protected void setup(Context context) {
+            total = new Resumen(context.getConfiguration().getInt(CONF_PRECISION, CuantilesKll.K_POR_DEFECTO));
+        }
+
+        @Override
+        public void reduce(Text key, Iterable<Resumen> values, Context context) throws IOException, InterruptedException {
+            total.vaciar();
+            for (Resumen val : values) {
+                total.combinar(val);
+            }
+            MomentosWritable m = total.momentos;
+            CuantilesKll c = total.cuantiles;
+            result.set(formatear(m.promedio(), c.cuantil(0.50), m.desviacionEstandar(), m.getCantidad(),
+                    c.cuantil(0.90), c.cuantil(0.99)));
             context.write(key, result);
         }
     }
 
+    static int rangoMasCercano(double q, long count) {
+        return (int) Math.max(1, (long) Math.ceil(q * count)) - 1;
+    }
+
+    static String formatear(double mean, double median, double stdDev, long count, double p90, double p99) {
+        return String.format("Promedio: %.2f, Mediana: %.2f, Desv. Estandar: %.2f, Registros: %d, P90: %.2f, P99: %.2f",
+                mean, median, stdDev, count, p90, p99);
+    }
+
     public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        return runJob(inputPath, outputPath, false, CuantilesKll.K_POR_DEFECTO);
+    }
+
+    /**
+     * Con medianaExacta todos los valores van a un reducer que los ordena
+     * (memoria proporcional al dataset); si no, la mediana y los percentiles
+     * salen de un sketch KLL de precisión k que se arma en cada mapper.
+     */
+    public static boolean runJob(String inputPath, String outputPath, boolean medianaExacta, int k) throws Exception {
         Configuration conf = new Configuration();
+        conf.setInt(CONF_PRECISION, k);
         Job job = Job.getInstance(conf, "Estadisticas de Colesterol");
         job.setJarByClass(EstadisticasColesterol.class);
-        job.setMapperClass(StatsMapper.class);
-        job.setReducerClass(StatsReducer.class);
+        if (medianaExacta) {
+            job.setMapperClass(StatsMapper.class);
+            job.setReducerClass(StatsReducer.class);
+            job.setMapOutputValueClass(DoubleWritable.class);
+        } else {
+            job.setMapperClass(ResumenMapper.class);
+            job.setCombinerClass(ResumenCombiner.class);
+            job.setReducerClass(ResumenReducer.class);
+            job.setMapOutputValueClass(Resumen.class);
+        }
         job.setMapOutputKeyClass(Text.class);
-        job.setMapOutputValueClass(DoubleWritable.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(Text.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
+        String colesterol = ColesterolMapper.COLESTEROL.getTexto();
+        FiltroZonas.exigir(job, FiltroZonas.contiene(19, colesterol), FiltroZonas.contiene(23, colesterol));
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return EjecutorJobs.ejecutar(job);
     }
 
-}
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 package hadoop.q3_busqueda_subtexto;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
@@ -7,38 +11,42 @@ import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class BusquedaSubtexto {
 
+    // Columnas del CSV que lee el mapper (vacío: la línea completa se escribe en la salida)
+    public static final int[] COLUMNAS = {};
+
     public static class SearchMapper extends Mapper<LongWritable, Text, Text, NullWritable> {
-        private String searchTerm;
+        private final RegistroCsv registro = new RegistroCsv();
+        private RegistroCsv.Patron searchTerm;
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
             // Obtener el término de búsqueda de la configuración del job
-            searchTerm = context.getConfiguration().get("searchTerm").toUpperCase();
+            searchTerm = new RegistroCsv.Patron(context.getConfiguration().get("searchTerm").toUpperCase());
         }
 
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 19) {
-                String diagnostico = fields[13].toUpperCase();
-                String procedimiento1 = fields[19].toUpperCase();
-
-                if (diagnostico.contains(searchTerm) || procedimiento1.contains(searchTerm)) {
-                    context.write(value, NullWritable.get());
-                }
+            registro.set(value);
+            if (coincide(registro, searchTerm)) {
+                context.write(value, NullWritable.get());
             }
         }
     }
 
+    // Filtro de la búsqueda, compartido con la que usa IndiceTrigramas
+    public static boolean coincide(RegistroCsv registro, RegistroCsv.Patron searchTerm) {
+        return registro.camposSinVaciosFinales() > 19
+                && (registro.contieneMayusculas(13, searchTerm) || registro.contieneMayusculas(19, searchTerm));
+    }
+
     public static boolean runJob(String inputPath, String outputPath, String searchTerm) throws Exception {
         Configuration conf = new Configuration();
         conf.set("searchTerm", searchTerm);
@@ -48,9 +56,11 @@ public class BusquedaSubtexto {
         job.setNumReduceTasks(0);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(NullWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
+        String termino = searchTerm.toUpperCase();
+        FiltroZonas.exigir(job, FiltroZonas.contiene(13, termino), FiltroZonas.contiene(19, termino));
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return EjecutorJobs.ejecutar(job);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package hadoop.q3_busqueda_subtexto;
+
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.RegistroCsv;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Job que arma el índice invertido de IndiceTrigramas: para cada trigrama
+ * (3 bytes UTF-8 seguidos) de DIAGNOSTICO y PROCEDIMIENTO_1 en mayúsculas,
+ * la lista de desplazamientos de las líneas del CSV que lo contienen. Lee
+ * siempre el CSV original, porque las posiciones apuntan a sus líneas.
+ */
+public class IndexacionTrigramas {
+
+    // Campos en los que busca BusquedaSubtexto
+    public static final int[] CAMPOS = {13, 19};
+
+    public static final int LARGO_TRIGRAMA = 3;
+
+    // Los 3 bytes del trigrama en un int, el primero en el byte más alto
+    public static int trigrama(byte[] bytes, int i) {
+        return (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+    }
+
+    // Posiciones que el mapper acumula antes de emitir sus listas (8 bytes cada una)
+    public static final int POSICIONES_EN_MEMORIA = 1 << 20;
+
+    /**
+     * Acumula las posiciones de cada trigrama en memoria y emite una lista
+     * por trigrama al llenarse el buffer y en cleanup(), en vez de un
+     * registro por trigrama y línea.
+     */
+    public static class TrigramaMapper extends Mapper<LongWritable, Text, IntWritable, ListaPosiciones> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text mayusculas = new Text();
+        private final IntWritable clave = new IntWritable();
+        private final Map<Integer, ListaPosiciones> listas = new HashMap<>();
+        private int acumuladas;
+        private int[] trigramas = new int[256];
+
+        @Override
+        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            if (key.get() == 0) return;
+
+            registro.set(value);
+            // Las líneas con menos campos nunca coinciden con la búsqueda
+            if (registro.camposSinVaciosFinales() <= 19) return;
+
+            int cantidad = 0;
+            for (int campo : CAMPOS) {
+                registro.copiarMayusculas(campo, mayusculas);
+                int ultimo = mayusculas.getLength() - LARGO_TRIGRAMA;
+                if (cantidad + ultimo + 1 > trigramas.length) {
+                    trigramas = Arrays.copyOf(trigramas, Math.max(trigramas.length * 2, cantidad + ultimo + 1));
+                }
+                for (int i = 0; i <= ultimo; i++) {
+                    trigramas[cantidad++] = trigrama(mayusculas.getBytes(), i);
+                }
+            }
+
+            // Una sola posición por trigrama aunque se repita en la línea
+            Arrays.sort(trigramas, 0, cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                if (i > 0 && trigramas[i] == trigramas[i - 1]) continue;
+                ListaPosiciones lista = listas.get(trigramas[i]);
+                if (lista == null) {
+                    lista = new ListaPosiciones();
+                    listas.put(trigramas[i], lista);
+                }
+                lista.agregar(key.get());
+                acumuladas++;
+            }
+            if (acumuladas >= POSICIONES_EN_MEMORIA) {
+                emitir(context);
+            }
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            emitir(context);
+        }
+
+        private void emitir(Context context) throws IOException, InterruptedException {
+            for (Map.Entry<Integer, ListaPosiciones> lista : listas.entrySet()) {
+                clave.set(lista.getKey());
+                context.write(clave, lista.getValue());
+            }
+            listas.clear();
+            acumuladas = 0;
+        }
+    }
+
+    public static class TrigramaReducer extends Reducer<IntWritable, ListaPosiciones, IntWritable, ListaPosiciones> {
+        private final ListaPosiciones todas = new ListaPosiciones();
+
+        @Override
+        public void reduce(IntWritable key, Iterable<ListaPosiciones> values, Context context) throws IOException, InterruptedException {
+            todas.vaciar();
+            for (ListaPosiciones val : values) {
+                todas.agregar(val);
+            }
+            context.write(key, todas);
+        }
+    }
+
+    public static boolean runJob(String csvPath, String outputPath) throws Exception {
+        Configuration conf = new Configuration();
+        Job job = Job.getInstance(conf, "Indexacion de Trigramas");
+        job.setJarByClass(IndexacionTrigramas.class);
+        job.setMapperClass(TrigramaMapper.class);
+        job.setCombinerClass(TrigramaReducer.class);
+        job.setReducerClass(TrigramaReducer.class);
+        job.setOutputKeyClass(IntWritable.class);
+        job.setOutputValueClass(ListaPosiciones.class);
+        job.setOutputFormatClass(MapFileOutputFormat.class);
+        FileInputFormat.addInputPath(job, new Path(csvPath));
+        FileOutputFormat.setOutputPath(job, new Path(outputPath));
+        return EjecutorJobs.ejecutar(job);
+    }
+}
@@ -0,0 +1,164 @@
+package hadoop.q3_busqueda_subtexto;
+
+import hadoop.comun.RegistroCsv;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Búsqueda de subtexto con el índice de IndexacionTrigramas: las líneas que
+ * contienen el término tienen todos sus trigramas, así que se cruzan las
+ * listas de posiciones de esos trigramas y solo se leen del CSV las líneas
+ * candidatas, que se confirman con el mismo filtro de BusquedaSubtexto.
+ */
+public final class IndiceTrigramas {
+
+    private static final int BLOQUE = 64 * 1024;
+
+    private final Configuration conf;
+    private final Path indice;
+    private final Path csv;
+
+    public IndiceTrigramas(Configuration conf, Path indice, Path csv) {
+        this.conf = conf;
+        this.indice = indice;
+        this.csv = csv;
+    }
+
+    // Con menos de 3 bytes en mayúsculas el término no tiene trigramas y hay que recorrer el CSV
+    public static boolean aplicable(String termino) {
+        return termino.toUpperCase().getBytes(StandardCharsets.UTF_8).length >= IndexacionTrigramas.LARGO_TRIGRAMA;
+    }
+
+    /**
+     * Escribe en salida lo mismo que el part-m-* de BusquedaSubtexto para el
+     * término (las líneas que coinciden, en el orden del CSV) y devuelve
+     * cuántas líneas escribió.
+     */
+    public long buscar(String termino, OutputStream salida) throws IOException {
+        if (!aplicable(termino)) {
+            throw new IllegalArgumentException("Término demasiado corto para el índice: " + termino);
+        }
+        String mayusculas = termino.toUpperCase();
+        long[] candidatas = candidatas(mayusculas.getBytes(StandardCharsets.UTF_8));
+        if (candidatas.length == 0) return 0;
+
+        RegistroCsv.Patron patron = new RegistroCsv.Patron(mayusculas);
+        RegistroCsv registro = new RegistroCsv();
+        Text linea = new Text();
+        long escritas = 0;
+        FileSystem fs = csv.getFileSystem(conf);
+        long largoArchivo = fs.getFileStatus(csv).getLen();
+        byte[] bloque = new byte[BLOQUE];
+        long inicioBloque = 0;
+        int largoBloque = 0;
+        try (FSDataInputStream entrada = fs.open(csv)) {
+            for (long posicion : candidatas) {
+                // Las candidatas vienen ordenadas: se sigue en el bloque leído mientras la línea entera esté en él
+                int desde = (int) Math.min(Integer.MAX_VALUE, posicion - inicioBloque);
+                int fin = desde < largoBloque ? finDeLinea(bloque, desde, largoBloque) : -1;
+                if (fin < 0) {
+                    inicioBloque = posicion;
+                    largoBloque = leer(entrada, posicion, bloque, 0, largoArchivo);
+                    desde = 0;
+                    fin = finDeLinea(bloque, 0, largoBloque);
+                    while (fin < 0 && inicioBloque + largoBloque < largoArchivo) {
+                        bloque = Arrays.copyOf(bloque, bloque.length * 2);
+                        int antes = largoBloque;
+                        largoBloque += leer(entrada, inicioBloque + largoBloque, bloque, largoBloque, largoArchivo);
+                        fin = finDeLinea(bloque, antes, largoBloque);
+                    }
+                    if (fin < 0) fin = largoBloque;
+                }
+                linea.set(bloque, desde, fin - desde);
+                if (BusquedaSubtexto.coincide(registro.set(linea), patron)) {
+                    salida.write(linea.getBytes(), 0, linea.getLength());
+                    salida.write('\n');
+                    escritas++;
+                }
+            }
+        }
+        return escritas;
+    }
+
+    // Intersección de las listas de posiciones de todos los trigramas del patrón, ordenada
+    private long[] candidatas(byte[] patron) throws IOException {
+        int[] trigramas = new int[patron.length - IndexacionTrigramas.LARGO_TRIGRAMA + 1];
+        for (int i = 0; i < trigramas.length; i++) {
+            trigramas[i] = IndexacionTrigramas.trigrama(patron, i);
+        }
+        Arrays.sort(trigramas);
+
+        List<long[]> listas = new ArrayList<>();
+        MapFile.Reader[] lectores = MapFileOutputFormat.getReaders(indice, conf);
+        try {
+            HashPartitioner<IntWritable, ListaPosiciones> particionador = new HashPartitioner<>();
+            IntWritable clave = new IntWritable();
+            ListaPosiciones posiciones = new ListaPosiciones();
+            for (int i = 0; i < trigramas.length; i++) {
+                if (i > 0 && trigramas[i] == trigramas[i - 1]) continue;
+                clave.set(trigramas[i]);
+                if (MapFileOutputFormat.getEntry(lectores, particionador, clave, posiciones) == null) {
+                    return new long[0];
+                }
+                listas.add(posiciones.toArray());
+            }
+        } finally {
+            for (MapFile.Reader lector : lectores) {
+                lector.close();
+            }
+        }
+
+        // De la lista más corta a la más larga, para que el resultado parcial se achique cuanto antes
+        listas.sort((a, b) -> Integer.compare(a.length, b.length));
+        long[] resultado = listas.get(0);
+        for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+            resultado = interseccion(resultado, listas.get(i));
+        }
+        return resultado;
+    }
+
+    private static long[] interseccion(long[] a, long[] b) {
+        long[] comun = new long[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                comun[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(comun, n);
+    }
+
+    // Como LineRecordReader: la línea termina en '\n' o '\r'; -1 si no termina dentro del bloque
+    private static int finDeLinea(byte[] bloque, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            if (bloque[i] == '\n' || bloque[i] == '\r') return i;
+        }
+        return -1;
+    }
+
+    private static int leer(FSDataInputStream entrada, long posicion, byte[] destino, int desde, long largoArchivo) throws IOException {
+        int largo = (int) Math.min(destino.length - desde, largoArchivo - posicion);
+        entrada.readFully(posicion, destino, desde, largo);
+        return largo;
+    }
+}
@@ -0,0 +1,75 @@
+package hadoop.q3_busqueda_subtexto;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Posiciones (desplazamientos de línea en el CSV) en las que aparece un
+ * trigrama. Se escriben ordenadas y como diferencias entre vecinas, así que
+ * una lista de filas cercanas ocupa pocos bytes por posición.
+ */
+public class ListaPosiciones implements Writable {
+
+    private long[] posiciones = new long[8];
+    private int cantidad;
+
+    public void vaciar() {
+        cantidad = 0;
+    }
+
+    public void agregar(long posicion) {
+        if (cantidad == posiciones.length) {
+            posiciones = Arrays.copyOf(posiciones, cantidad * 2);
+        }
+        posiciones[cantidad++] = posicion;
+    }
+
+    public void agregar(ListaPosiciones otra) {
+        if (cantidad + otra.cantidad > posiciones.length) {
+            posiciones = Arrays.copyOf(posiciones, Math.max(cantidad + otra.cantidad, cantidad * 2));
+        }
+        System.arraycopy(otra.posiciones, 0, posiciones, cantidad, otra.cantidad);
+        cantidad += otra.cantidad;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    // Copia ordenada de las posiciones
+    public long[] toArray() {
+        long[] copia = Arrays.copyOf(posiciones, cantidad);
+        Arrays.sort(copia);
+        return copia;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        Arrays.sort(posiciones, 0, cantidad);
+        WritableUtils.writeVInt(out, cantidad);
+        long anterior = 0;
+        for (int i = 0; i < cantidad; i++) {
+            WritableUtils.writeVLong(out, posiciones[i] - anterior);
+            anterior = posiciones[i];
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        cantidad = 0;
+        int total = WritableUtils.readVInt(in);
+        if (posiciones.length < total) {
+            posiciones = new long[total];
+        }
+        long posicion = 0;
+        for (int i = 0; i < total; i++) {
+            posicion += WritableUtils.readVLong(in);
+            posiciones[cantidad++] = posicion;
+        }
+    }
+}
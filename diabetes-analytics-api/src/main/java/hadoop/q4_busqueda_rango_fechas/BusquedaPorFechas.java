@@ -1,28 +1,40 @@
 package hadoop.q4_busqueda_rango_fechas;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class BusquedaPorFechas {
 
+    // Columnas del CSV que lee el mapper (vacío: la línea completa se escribe en la salida)
+    public static final int[] COLUMNAS = {};
+
     public static class DateRangeMapper extends Mapper<LongWritable, Text, Text, NullWritable> {
+        private final RegistroCsv registro = new RegistroCsv();
         private int startDate;
         private int endDate;
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
             Configuration conf = context.getConfiguration();
-            startDate = Integer.parseInt(conf.get("startDate").replaceAll("-", ""));
-            endDate = Integer.parseInt(conf.get("endDate").replaceAll("-", ""));
+            startDate = fechaNumerica(conf.get("startDate"));
+            endDate = fechaNumerica(conf.get("endDate"));
             System.out.println("inicio:" + startDate + " fin:" + endDate);
         }
 
@@ -30,20 +42,48 @@ public class BusquedaPorFechas {
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 17) {
+            registro.set(value);
+            if (registro.camposSinVaciosFinales() > 17) {
                 try {
-                    int fechaMuestra = Integer.parseInt(fields[17].trim().replaceAll("-", ""));
+                    int fechaMuestra = registro.fechaNumerica(17);
                     if (fechaMuestra >= startDate && fechaMuestra <= endDate) {
                         context.write(value, NullWritable.get());
                     }
                 } catch (NumberFormatException e) {
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
                 }
             }
         }
     }
 
+    // Fecha yyyy-MM-dd del request como entero yyyyMMdd
+    public static int fechaNumerica(String fecha) {
+        return Integer.parseInt(fecha.replaceAll("-", ""));
+    }
+
     public static boolean runJob(String inputPath, String outputPath, String startDate, String endDate) throws Exception {
+        return runJob(Collections.singletonList(new Path(inputPath)), outputPath, startDate, endDate);
+    }
+
+    /**
+     * Igual que runJob, leyendo solo las particiones de ParticionPorMes que
+     * se cruzan con el rango. Las filas salen agrupadas por mes.
+     */
+    public static boolean runJob(Particiones particiones, String outputPath, String startDate, String endDate) throws Exception {
+        List<Path> entradas = particiones.solapadas(fechaNumerica(startDate), fechaNumerica(endDate));
+        if (entradas.isEmpty()) {
+            // Sin particiones no hay entrada para el job: la salida vacía es la misma que dejaría
+            Path salida = new Path(outputPath);
+            FileSystem fs = salida.getFileSystem(new Configuration());
+            if (!fs.mkdirs(salida)) return false;
+            fs.create(new Path(salida, "part-m-00000"), false).close();
+            fs.create(new Path(salida, FileOutputCommitter.SUCCEEDED_FILE_NAME), false).close();
+            return true;
+        }
+        return runJob(entradas, outputPath, startDate, endDate);
+    }
+
+    private static boolean runJob(List<Path> entradas, String outputPath, String startDate, String endDate) throws Exception {
         Configuration conf = new Configuration();
         conf.set("startDate", startDate);
         conf.set("endDate", endDate);
@@ -53,9 +93,12 @@ public class BusquedaPorFechas {
         job.setNumReduceTasks(0);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(NullWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        for (Path entrada : entradas) {
+            EntradaDatos.configurar(job, entrada, COLUMNAS);
+        }
+        FiltroZonas.exigir(job, FiltroZonas.entre(17, fechaNumerica(startDate), fechaNumerica(endDate)));
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return EjecutorJobs.ejecutar(job);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package hadoop.q4_busqueda_rango_fechas;
+
+import hadoop.comun.Compresion;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.RegistroCsv;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Job de ingesta que parte el CSV por mes de FECHA_MUESTRA: cada fila queda
+ * en mes=yyyyMM/part-m-*, con el encabezado del CSV al principio de cada
+ * archivo y en el orden del original. El reduce escribe el manifiesto
+ * (part-r-*): por partición, fecha mínima, fecha máxima y filas, que
+ * Particiones usa para elegir las que toca un rango. Las filas sin fecha
+ * válida no quedan en ninguna partición porque ningún rango las devuelve.
+ */
+public class ParticionPorMes {
+
+    public static final String PREFIJO = "mes=";
+
+    private static final String CONF_ENCABEZADO = "particiones.encabezado";
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static class ParticionMapper extends Mapper<LongWritable, Text, Text, RangoFechas> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text particion = new Text();
+        private final RangoFechas rango = new RangoFechas();
+        private final Set<String> conEncabezado = new HashSet<>();
+        private Text encabezado;
+        private MultipleOutputs<Text, NullWritable> salidas;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            encabezado = new Text(context.getConfiguration().get(CONF_ENCABEZADO, ""));
+            salidas = new MultipleOutputs(context);
+        }
+
+        @Override
+        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            if (key.get() == 0) return;
+
+            registro.set(value);
+            if (registro.camposSinVaciosFinales() > 17) {
+                int fechaMuestra;
+                try {
+                    fechaMuestra = registro.fechaNumerica(17);
+                } catch (NumberFormatException e) {
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+                    return;
+                }
+                String nombre = PREFIJO + fechaMuestra / 100;
+                String ruta = nombre + "/part";
+                // BusquedaPorFechas salta la primera línea de cada archivo
+                if (conEncabezado.add(nombre)) {
+                    salidas.write(encabezado, NullWritable.get(), ruta);
+                }
+                salidas.write(value, NullWritable.get(), ruta);
+                particion.set(nombre);
+                rango.set(fechaMuestra);
+                context.write(particion, rango);
+            }
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            salidas.close();
+        }
+    }
+
+    public static class ManifiestoReducer extends Reducer<Text, RangoFechas, Text, RangoFechas> {
+        private final RangoFechas total = new RangoFechas();
+
+        @Override
+        public void reduce(Text key, Iterable<RangoFechas> values, Context context) throws IOException, InterruptedException {
+            total.vaciar();
+            for (RangoFechas val : values) {
+                total.agregar(val);
+            }
+            context.write(key, total);
+        }
+    }
+
+    public static boolean runJob(String csvPath, String outputPath) throws Exception {
+        Configuration conf = new Configuration();
+        conf.set(CONF_ENCABEZADO, encabezado(conf, new Path(csvPath)));
+        Job job = Job.getInstance(conf, "Particion por Mes");
+        job.setJarByClass(ParticionPorMes.class);
+        job.setMapperClass(ParticionMapper.class);
+        job.setCombinerClass(ManifiestoReducer.class);
+        job.setReducerClass(ManifiestoReducer.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(RangoFechas.class);
+        FileInputFormat.addInputPath(job, new Path(csvPath));
+        FileOutputFormat.setOutputPath(job, new Path(outputPath));
+        return EjecutorJobs.ejecutar(job);
+    }
+
+    // Primera línea del CSV, la que el mapper no recibe
+    private static String encabezado(Configuration conf, Path csv) throws IOException {
+        FileSystem fs = csv.getFileSystem(conf);
+        try (InputStream entrada = Compresion.abrir(csv.getName(), fs.open(csv))) {
+            Text linea = new Text();
+            new LineReader(entrada, conf).readLine(linea);
+            return linea.toString();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package hadoop.q4_busqueda_rango_fechas;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Manifiesto de ParticionPorMes: las particiones con su rango de fechas, ordenadas por mes. */
+public final class Particiones {
+
+    private final List<Path> directorios;
+    private final int[] minimos;
+    private final int[] maximos;
+
+    private Particiones(List<Path> directorios, int[] minimos, int[] maximos) {
+        this.directorios = directorios;
+        this.minimos = minimos;
+        this.maximos = maximos;
+    }
+
+    public static Particiones cargar(Configuration conf, Path directorio) throws IOException {
+        FileSystem fs = directorio.getFileSystem(conf);
+        FileStatus[] partes = fs.listStatus(directorio, p -> p.getName().startsWith("part-r-"));
+        Arrays.sort(partes);
+        List<String[]> lineas = new ArrayList<>();
+        for (FileStatus parte : partes) {
+            try (BufferedReader lector = new BufferedReader(
+                    new InputStreamReader(fs.open(parte.getPath()), StandardCharsets.UTF_8))) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    lineas.add(linea.split("\t"));
+                }
+            }
+        }
+        // Los meses tienen el mismo largo, así que el orden de texto es el cronológico
+        lineas.sort((a, b) -> a[0].compareTo(b[0]));
+        List<Path> directorios = new ArrayList<>(lineas.size());
+        int[] minimos = new int[lineas.size()];
+        int[] maximos = new int[lineas.size()];
+        for (int i = 0; i < lineas.size(); i++) {
+            directorios.add(new Path(directorio, lineas.get(i)[0]));
+            minimos[i] = Integer.parseInt(lineas.get(i)[1]);
+            maximos[i] = Integer.parseInt(lineas.get(i)[2]);
+        }
+        return new Particiones(directorios, minimos, maximos);
+    }
+
+    public int cantidad() {
+        return directorios.size();
+    }
+
+    // Particiones con alguna fila entre inicio y fin (yyyyMMdd, inclusive)
+    public List<Path> solapadas(int inicio, int fin) {
+        List<Path> solapadas = new ArrayList<>();
+        for (int i = 0; i < directorios.size(); i++) {
+            if (minimos[i] <= fin && maximos[i] >= inicio) {
+                solapadas.add(directorios.get(i));
+            }
+        }
+        return solapadas;
+    }
+}
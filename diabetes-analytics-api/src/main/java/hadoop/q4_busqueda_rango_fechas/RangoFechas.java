@@ -0,0 +1,65 @@
+package hadoop.q4_busqueda_rango_fechas;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/** Fecha mínima y máxima (yyyyMMdd) y cantidad de filas de una partición. */
+public class RangoFechas implements Writable {
+
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private long filas;
+
+    public void set(int fecha) {
+        min = fecha;
+        max = fecha;
+        filas = 1;
+    }
+
+    public void vaciar() {
+        min = Integer.MAX_VALUE;
+        max = Integer.MIN_VALUE;
+        filas = 0;
+    }
+
+    public void agregar(RangoFechas otro) {
+        min = Math.min(min, otro.min);
+        max = Math.max(max, otro.max);
+        filas += otro.filas;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public long getFilas() {
+        return filas;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, min);
+        WritableUtils.writeVInt(out, max);
+        WritableUtils.writeVLong(out, filas);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        min = WritableUtils.readVInt(in);
+        max = WritableUtils.readVInt(in);
+        filas = WritableUtils.readVLong(in);
+    }
+
+    @Override
+    public String toString() {
+        return min + "\t" + max + "\t" + filas;
+    }
+}
@@ -1,60 +1,65 @@
 package hadoop.q5_valores_extremos;
 
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.MinMaxWritable;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class MinMaxColesterolPorDepto {
 
-    public static class MinMaxMapper extends Mapper<LongWritable, Text, Text, DoubleWritable> {
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {1, 20};
+
+    public static class MinMaxMapper extends Mapper<LongWritable, Text, Text, MinMaxWritable> {
+        private final RegistroCsv registro = new RegistroCsv();
         private Text departamento = new Text();
-        private DoubleWritable resultado = new DoubleWritable();
+        private MinMaxWritable resultado = new MinMaxWritable();
 
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
 
-            String[] fields = value.toString().split(";");
-            if (fields.length > 20) {
+            registro.set(value);
+            if (registro.camposSinVaciosFinales() > 20) {
                 try {
                     // Asumimos que RESULTADO_1 es colesterol
-                    double res1 = Double.parseDouble(fields[20].trim());
-                    String depto = fields[1].trim();
+                    double res1 = registro.decimal(20);
 
-                    departamento.set(depto);
+                    registro.copiarRecortado(1, departamento);
                     resultado.set(res1);
                     context.write(departamento, resultado);
                 } catch (NumberFormatException e) {
-                    // Ignorar
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
                 }
             }
         }
     }
 
-    public static class MinMaxReducer extends Reducer<Text, DoubleWritable, Text, Text> {
+    public static class MinMaxReducer extends Reducer<Text, MinMaxWritable, Text, Text> {
         private Text result = new Text();
 
         @Override
-        public void reduce(Text key, Iterable<DoubleWritable> values, Context context) throws IOException, InterruptedException {
+        public void reduce(Text key, Iterable<MinMaxWritable> values, Context context) throws IOException, InterruptedException {
             double min = Double.MAX_VALUE;
             double max = Double.MIN_VALUE;
 
-            for (DoubleWritable val : values) {
-                double v = val.get();
-                if (v < min) {
-                    min = v;
+            for (MinMaxWritable val : values) {
+                if (val.getMin() < min) {
+                    min = val.getMin();
                 }
-                if (v > max) {
-                    max = v;
+                if (val.getMax() > max) {
+                    max = val.getMax();
                 }
             }
             result.set("Min: " + min + ", Max: " + max);
@@ -67,14 +72,15 @@ public class MinMaxColesterolPorDepto {
         Job job = Job.getInstance(conf, "Min-Max Colesterol por Departamento");
         job.setJarByClass(MinMaxColesterolPorDepto.class);
         job.setMapperClass(MinMaxMapper.class);
+        job.setCombinerClass(MinMaxWritable.Combinador.class);
         job.setReducerClass(MinMaxReducer.class);
         job.setMapOutputKeyClass(Text.class);
-        job.setMapOutputValueClass(DoubleWritable.class);
+        job.setMapOutputValueClass(MinMaxWritable.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(Text.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return EjecutorJobs.ejecutar(job);
     }
 
 }
\ No newline at end of file
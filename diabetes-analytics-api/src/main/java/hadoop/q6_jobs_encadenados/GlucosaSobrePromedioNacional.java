@@ -1,122 +1,98 @@
 package hadoop.q6_jobs_encadenados;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.RegistroCsv;
+import hadoop.comun.SumaConteoWritable;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Departamentos con glucosa promedio sobre el promedio nacional, en un solo
+ * recorrido: el promedio nacional es la unión de los parciales por
+ * departamento, así que el reduce lo calcula al final con todos a la vista.
+ */
 public class GlucosaSobrePromedioNacional {
 
-    // ================= JOB 1: CALCULAR PROMEDIO GLOBAL =================
-    public static class GlobalAvgMapper extends Mapper<LongWritable, Text, Text, Text> {
-        private static final Text KEY_GLOBAL = new Text("GLOBAL");
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {1, 19, 20, 23, 24};
+
+    private static final RegistroCsv.Patron GLUCOSA = new RegistroCsv.Patron("GLUCOSA");
+
+    // Las filas sin departamento van con clave vacía: no se listan pero cuentan para el promedio nacional
+    public static class DeptoAvgMapper extends Mapper<LongWritable, Text, Text, SumaConteoWritable> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text depto = new Text();
+        private final SumaConteoWritable parcial = new SumaConteoWritable();
+
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
-            String[] fields = value.toString().split(";", -1);
-            if (fields.length > 24) {
+            registro.set(value);
+            if (registro.campos() > 24) {
                 try {
                     double glucosa = -1;
-                    if (fields[19].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[20]);
-                    else if (fields[23].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[24]);
+                    if (registro.contieneMayusculas(19, GLUCOSA)) glucosa = registro.decimal(20);
+                    else if (registro.contieneMayusculas(23, GLUCOSA)) glucosa = registro.decimal(24);
 
                     if (glucosa > 0) {
-                        context.write(KEY_GLOBAL, new Text(glucosa + ",1")); // Emitimos valor y contador
+                        registro.copiarRecortado(1, depto);
+                        parcial.set(glucosa, 1);
+                        context.write(depto, parcial);
                     }
                 } catch (NumberFormatException e) {
-                    // Ignorar errores de parseo
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
                 }
             }
         }
     }
 
-    public static class GlobalAvgCombiner extends Reducer<Text, Text, Text, Text> {
-        @Override
-        public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-            double sum = 0;
-            long count = 0;
-            for (Text val : values) {
-                String[] parts = val.toString().split(",");
-                sum += Double.parseDouble(parts[0]);
-                count += Long.parseLong(parts[1]);
-            }
-            if (count > 0) {
-                context.write(key, new Text(sum + "," + count));
-            }
-        }
-    }
-
-    public static class GlobalAvgReducer extends Reducer<Text, Text, Text, DoubleWritable> {
-        @Override
-        public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-            double sum = 0;
-            long count = 0;
-            for (Text val : values) {
-                String[] parts = val.toString().split(",");
-                sum += Double.parseDouble(parts[0]);
-                count += Long.parseLong(parts[1]);
-            }
-            if (count > 0) {
-                context.write(new Text(String.valueOf(sum / count)), null);
-            }
-        }
-    }
+    /**
+     * Guarda el total de cada departamento (son pocos) y en cleanup() suma
+     * todos para el promedio nacional y escribe, en el orden de las claves,
+     * los que lo superan. Todas las claves tienen que llegar al mismo reducer.
+     */
+    public static class DeptoFilterReducer extends Reducer<Text, SumaConteoWritable, Text, Text> {
+        private final List<Text> deptos = new ArrayList<>();
+        private final List<SumaConteoWritable> totales = new ArrayList<>();
+        private final Text salida = new Text();
 
-    // ================= JOB 2: FILTRAR DEPARTAMENTOS =================
-    public static class DeptoAvgMapper extends Mapper<LongWritable, Text, Text, Text> {
         @Override
-        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-            if (key.get() == 0) return;
-            String[] fields = value.toString().split(";", -1);
-            if (fields.length > 24) {
-                try {
-                    double glucosa = -1;
-                    String depto = fields[1].trim();
-                    if (fields[19].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[20]);
-                    else if (fields[23].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[24]);
-
-                    if (glucosa > 0 && !depto.isEmpty()) {
-                        context.write(new Text(depto), new Text(glucosa + ",1"));
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignorar errores de parseo
-                }
+        public void reduce(Text key, Iterable<SumaConteoWritable> values, Context context) throws IOException, InterruptedException {
+            SumaConteoWritable total = new SumaConteoWritable();
+            for (SumaConteoWritable val : values) {
+                total.agregar(val);
             }
+            deptos.add(new Text(key));
+            totales.add(total);
         }
-    }
 
-    public static class DeptoFilterReducer extends Reducer<Text, Text, Text, Text> {
-        private double globalAvg = 0.0;
-        @Override
-        protected void setup(Context context) throws IOException, InterruptedException {
-            // Leer el promedio global de la configuración
-            globalAvg = Double.parseDouble(context.getConfiguration().get("global.avg.glucose"));
-        }
         @Override
-        public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-            double sum = 0;
-            long count = 0;
-            for (Text val : values) {
-                String[] parts = val.toString().split(",");
-                sum += Double.parseDouble(parts[0]);
-                count += Long.parseLong(parts[1]);
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            SumaConteoWritable nacional = new SumaConteoWritable();
+            for (SumaConteoWritable total : totales) {
+                nacional.agregar(total);
             }
-            if (count > 0) {
-                double deptoAvg = sum / count;
+            if (nacional.getConteo() == 0) return;
+            double globalAvg = nacional.promedio();
+            for (int i = 0; i < deptos.size(); i++) {
+                if (deptos.get(i).getLength() == 0 || totales.get(i).getConteo() == 0) continue;
+                double deptoAvg = totales.get(i).promedio();
                 if (deptoAvg > globalAvg) {
-                    String output = String.format("Promedio: %.2f (Superior al nacional de %.2f)", deptoAvg, globalAvg);
-                    context.write(key, new Text(output));
+                    salida.set(String.format("Promedio: %.2f (Superior al nacional de %.2f)", deptoAvg, globalAvg));
+                    context.write(deptos.get(i), salida);
                 }
             }
         }
@@ -124,55 +100,20 @@ public class GlucosaSobrePromedioNacional {
 
     public static boolean runJob(String inputPathStr, String outputPathStr) throws Exception {
         Configuration conf = new Configuration();
-        Path inputPath = new Path(inputPathStr);
-        Path globalAvgPath = new Path(outputPathStr + "_temp_global_avg");
-        Path finalOutputPath = new Path(outputPathStr);
-
-        // Job 1: Calculate global average
-        Job job1 = Job.getInstance(conf, "Paso 1: Calcular Promedio Global de Glucosa");
-        job1.setJarByClass(GlucosaSobrePromedioNacional.class);
-        job1.setMapperClass(GlobalAvgMapper.class);
-        job1.setCombinerClass(GlobalAvgCombiner.class);
-        job1.setReducerClass(GlobalAvgReducer.class);
-        job1.setMapOutputKeyClass(Text.class);
-        job1.setMapOutputValueClass(Text.class);
-        job1.setOutputKeyClass(Text.class);
-        job1.setOutputValueClass(DoubleWritable.class);
-        FileInputFormat.addInputPath(job1, inputPath);
-        FileOutputFormat.setOutputPath(job1, globalAvgPath);
-        if (!job1.waitForCompletion(true)) {
-            return false;
-        }
-
-        // Read global average
-        FileSystem fs = FileSystem.get(conf);
-        Path resultFile = new Path(globalAvgPath, "part-r-00000");
-        String globalAvgStr;
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(resultFile)))) {
-            globalAvgStr = br.readLine();
-            if (globalAvgStr != null) globalAvgStr = globalAvgStr.trim();
-        }
-        if (globalAvgStr == null || globalAvgStr.isEmpty()) {
-            fs.delete(globalAvgPath, true);
-            return false;
-        }
-
-        // Job 2: Filter departments
-        conf.set("global.avg.glucose", globalAvgStr);
-        Job job2 = Job.getInstance(conf, "Paso 2: Filtrar Departamentos");
-        job2.setJarByClass(GlucosaSobrePromedioNacional.class);
-        job2.setMapperClass(DeptoAvgMapper.class);
-        job2.setReducerClass(DeptoFilterReducer.class);
-        job2.setMapOutputKeyClass(Text.class);
-        job2.setMapOutputValueClass(Text.class);
-        job2.setOutputKeyClass(Text.class);
-        job2.setOutputValueClass(Text.class);
-        FileInputFormat.addInputPath(job2, inputPath);
-        FileOutputFormat.setOutputPath(job2, finalOutputPath);
-        boolean success = job2.waitForCompletion(true);
-
-        // Cleanup
-        fs.delete(globalAvgPath, true);
-        return success;
+        Job job = Job.getInstance(conf, "Glucosa sobre el Promedio Nacional");
+        job.setJarByClass(GlucosaSobrePromedioNacional.class);
+        job.setMapperClass(DeptoAvgMapper.class);
+        job.setCombinerClass(SumaConteoWritable.Combinador.class);
+        job.setReducerClass(DeptoFilterReducer.class);
+        // El promedio nacional necesita los totales de todos los departamentos en el mismo reducer
+        job.setNumReduceTasks(1);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(SumaConteoWritable.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(Text.class);
+        EntradaDatos.configurar(job, new Path(inputPathStr), COLUMNAS);
+        FiltroZonas.exigir(job, FiltroZonas.contiene(19, GLUCOSA.getTexto()), FiltroZonas.contiene(23, GLUCOSA.getTexto()));
+        FileOutputFormat.setOutputPath(job, new Path(outputPathStr));
+        return EjecutorJobs.ejecutar(job);
     }
-}
\ No newline at end of file
+}
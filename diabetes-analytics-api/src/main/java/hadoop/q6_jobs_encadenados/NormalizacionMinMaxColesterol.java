@@ -1,62 +1,111 @@
 package hadoop.q6_jobs_encadenados;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.Compresion;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.FormatoDecimal;
+import hadoop.comun.MinMaxWritable;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.LineReader;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class NormalizacionMinMaxColesterol {
 
-    public static class MinMaxMapper extends Mapper<LongWritable, Text, Text, DoubleWritable> {
+    // Columnas del CSV que lee cada paso (vacío: la línea completa se escribe en la salida)
+    public static final int[] COLUMNAS_MIN_MAX = {2, 19, 20, 23, 24};
+    public static final int[] COLUMNAS_NORMALIZACION = {};
+
+    // Bytes de filas que el reducer del join guarda en memoria por provincia antes de pasarlas a disco
+    public static final String CONF_UMBRAL_DERRAME = "normalizacion.umbral.derrame";
+    public static final long UMBRAL_DERRAME_DEFECTO = 64L * 1024 * 1024;
+
+    private static final RegistroCsv.Patron COLESTEROL = new RegistroCsv.Patron("COLESTEROL");
+    private static final byte[] SEPARADOR = {';'};
+    private static final byte[] ENCABEZADO = ";COLESTEROL_NORMALIZADO".getBytes(StandardCharsets.UTF_8);
+
+    // Claves del join que no son provincias: el campo recortado nunca está vacío ni empieza con espacio
+    private static final Text CLAVE_ENCABEZADO = new Text("");
+    private static final Text CLAVE_SIN_PROVINCIA = new Text(" ");
+
+    public static class MinMaxMapper extends Mapper<LongWritable, Text, Text, MinMaxWritable> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text provincia = new Text();
+        private final MinMaxWritable valor = new MinMaxWritable();
+
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
-            String[] fields = value.toString().split(";", -1);
-            if (fields.length > 20) {
+            registro.set(value);
+            int campos = registro.campos();
+            if (campos > 20) {
                 try {
-                    String provincia = fields[2].trim();
                     double colesterol = -1;
-                    if (fields[19].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[20]);
-                    else if (fields.length > 23 && fields[23].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[24]);
+                    if (registro.contieneMayusculas(19, COLESTEROL)) colesterol = registro.decimal(20);
+                    else if (campos > 24 && registro.contieneMayusculas(23, COLESTEROL)) colesterol = registro.decimal(24);
 
-                    if (colesterol > 0 && !provincia.isEmpty()) {
-                        context.write(new Text(provincia), new DoubleWritable(colesterol));
+                    if (colesterol > 0 && !registro.vacioRecortado(2)) {
+                        registro.copiarRecortado(2, provincia);
+                        valor.set(colesterol);
+                        context.write(provincia, valor);
                     }
-                } catch (Exception e) {}
+                } catch (Exception e) {
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+                }
             }
         }
     }
 
-    public static class MinMaxReducer extends Reducer<Text, DoubleWritable, Text, Text> {
+    public static class MinMaxReducer extends Reducer<Text, MinMaxWritable, Text, Text> {
         @Override
-        public void reduce(Text key, Iterable<DoubleWritable> values, Context context) throws IOException, InterruptedException {
+        public void reduce(Text key, Iterable<MinMaxWritable> values, Context context) throws IOException, InterruptedException {
             double min = Double.MAX_VALUE;
             double max = Double.MIN_VALUE;
-            for (DoubleWritable val : values) {
-                min = Math.min(min, val.get());
-                max = Math.max(max, val.get());
+            for (MinMaxWritable val : values) {
+                min = Math.min(min, val.getMin());
+                max = Math.max(max, val.getMax());
             }
             context.write(key, new Text(min + ";" + max));
         }
     }
 
     public static class NormalizationMapper extends Mapper<LongWritable, Text, Text, NullWritable> {
-        private Map<String, String> provinciaMinMaxMap = new HashMap<>();
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text provincia = new Text();
+        private final Text salida = new Text();
+        private final FormatoDecimal formato = new FormatoDecimal(4);
+        // Provincia (bytes del campo recortado) → {min, max} ya convertidos
+        private final Map<Text, double[]> provinciaMinMax = new HashMap<>();
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
@@ -64,52 +113,257 @@ public class NormalizacionMinMaxColesterol {
             if (cacheFiles != null && cacheFiles.length > 0) {
                 for (URI file : cacheFiles) {
                     Path localPath = new Path(file.getPath());
-                    try (BufferedReader reader = new BufferedReader(new FileReader(localPath.getName()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            String[] parts = line.split("\t");
-                            if (parts.length == 2) {
-                                provinciaMinMaxMap.put(parts[0], parts[1]);
-                            }
-                        }
+                    // Con la salida del paso 1 comprimida el archivo lleva la extensión de su códec
+                    try (InputStream entrada = Compresion.abrir(localPath.getName(), new FileInputStream(localPath.getName()))) {
+                        cargarMinMax(new LineReader(entrada, context.getConfiguration()));
                     }
                 }
             }
         }
 
+        // Líneas "provincia<TAB>min;max" de MinMaxReducer; las que no tienen esa forma se ignoran
+        private void cargarMinMax(LineReader lector) throws IOException {
+            Text linea = new Text();
+            while (lector.readLine(linea) > 0) {
+                int tab = linea.find("\t");
+                if (tab < 0 || linea.find("\t", tab + 1) >= 0) continue;
+                String[] minMax = Text.decode(linea.getBytes(), tab + 1, linea.getLength() - tab - 1).split(";");
+                try {
+                    double[] valores = {Double.parseDouble(minMax[0]), Double.parseDouble(minMax[1])};
+                    Text clave = new Text();
+                    clave.set(linea.getBytes(), 0, tab);
+                    provinciaMinMax.put(clave, valores);
+                } catch (RuntimeException e) {
+                    // Valor ilegible: las filas de esa provincia salen sin normalizar
+                }
+            }
+        }
+
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            salida.set(value);
             if (key.get() == 0) {
-                context.write(new Text(value.toString() + ";COLESTEROL_NORMALIZADO"), NullWritable.get());
+                salida.append(ENCABEZADO, 0, ENCABEZADO.length);
+                context.write(salida, NullWritable.get());
                 return;
             }
-            String[] fields = value.toString().split(";", -1);
-            String originalLine = value.toString();
-            String provincia = fields[2].trim();
-            String minMaxStr = provinciaMinMaxMap.get(provincia);
+            salida.append(SEPARADOR, 0, 1);
+            registro.set(value);
+            int campos = registro.campos();
+            double[] minMax = null;
+            if (campos > 2) {
+                registro.copiarRecortado(2, provincia);
+                minMax = provinciaMinMax.get(provincia);
+            }
 
-            if (minMaxStr != null) {
+            if (minMax != null) {
                 try {
+                    // Sin los campos del resultado la fila se escribe sin normalizar
                     double colesterol = -1;
-                    if (fields[19].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[20]);
-                    else if (fields.length > 23 && fields[23].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[24]);
+                    if (campos > 20 && registro.contieneMayusculas(19, COLESTEROL)) colesterol = registro.decimal(20);
+                    else if (campos > 24 && registro.contieneMayusculas(23, COLESTEROL)) colesterol = registro.decimal(24);
 
                     if (colesterol > 0) {
-                        String[] minMaxParts = minMaxStr.split(";");
-                        double min = Double.parseDouble(minMaxParts[0]);
-                        double max = Double.parseDouble(minMaxParts[1]);
+                        double min = minMax[0];
+                        double max = minMax[1];
 
                         double normalizedValue = 0.0;
                         if (max - min != 0) {
                             normalizedValue = (colesterol - min) / (max - min);
                         }
+                        formato.agregar(normalizedValue, salida);
+                    }
+                } catch (NumberFormatException e) {
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+                }
+            }
+            context.write(salida, NullWritable.get());
+        }
+    }
+
+    // Colesterol de la fila con las reglas de MinMaxMapper, -1 si no tiene
+    private static double colesterol(RegistroCsv registro, int campos) {
+        if (campos > 20 && registro.contieneMayusculas(19, COLESTEROL)) return registro.decimal(20);
+        if (campos > 24 && registro.contieneMayusculas(23, COLESTEROL)) return registro.decimal(24);
+        return -1;
+    }
 
-                        context.write(new Text(originalLine + ";" + String.format("%.4f", normalizedValue)), NullWritable.get());
-                        return;
+    // Fila completa con clave provincia recortada; el encabezado y las filas sin provincia usan las claves reservadas
+    public static class ProvinciaMapper extends Mapper<LongWritable, Text, Text, Text> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text provincia = new Text();
+
+        @Override
+        public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            if (key.get() == 0) {
+                context.write(CLAVE_ENCABEZADO, value);
+                return;
+            }
+            registro.set(value);
+            if (registro.campos() > 2 && !registro.vacioRecortado(2)) {
+                registro.copiarRecortado(2, provincia);
+                context.write(provincia, value);
+            } else {
+                context.write(CLAVE_SIN_PROVINCIA, value);
+            }
+        }
+    }
+
+    // Como HashPartitioner, salvo el encabezado, que va al primer reducer para quedar al inicio de part-r-00000
+    public static class ProvinciaPartitioner extends Partitioner<Text, Text> {
+        @Override
+        public int getPartition(Text key, Text value, int numPartitions) {
+            if (key.getLength() == 0) return 0;
+            return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    /**
+     * Recorre las filas de una provincia guardándolas con su colesterol y
+     * calculando el mínimo y el máximo como MinMaxReducer; al terminar las
+     * escribe normalizadas como NormalizationMapper. Pasado el umbral de
+     * CONF_UMBRAL_DERRAME las filas de la provincia se guardan en un archivo
+     * temporal en lugar de memoria.
+     */
+    public static class JoinReducer extends Reducer<Text, Text, Text, NullWritable> {
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text salida = new Text();
+        private final FormatoDecimal formato = new FormatoDecimal(4);
+        private final List<byte[]> filas = new ArrayList<>();
+        private double[] valores = new double[1024];
+        private long umbralDerrame;
+        private long bytesEnMemoria;
+        private File derrame;
+        private DataOutputStream escritor;
+
+        @Override
+        protected void setup(Context context) {
+            umbralDerrame = context.getConfiguration().getLong(CONF_UMBRAL_DERRAME, UMBRAL_DERRAME_DEFECTO);
+        }
+
+        @Override
+        public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
+            if (key.getLength() == 0) {
+                for (Text val : values) {
+                    salida.set(val);
+                    salida.append(ENCABEZADO, 0, ENCABEZADO.length);
+                    context.write(salida, NullWritable.get());
+                }
+                return;
+            }
+            if (key.equals(CLAVE_SIN_PROVINCIA)) {
+                for (Text val : values) {
+                    escribir(val.getBytes(), val.getLength(), -1, null, context);
+                }
+                return;
+            }
+
+            double min = Double.MAX_VALUE;
+            double max = Double.MIN_VALUE;
+            boolean conMinMax = false;
+            try {
+                for (Text val : values) {
+                    registro.set(val);
+                    double valor;
+                    try {
+                        valor = colesterol(registro, registro.campos());
+                    } catch (NumberFormatException e) {
+                        context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+                        valor = -1;
+                    }
+                    if (valor > 0) {
+                        min = Math.min(min, valor);
+                        max = Math.max(max, valor);
+                        conMinMax = true;
+                    }
+                    guardar(val, valor);
+                }
+                double[] minMax = conMinMax ? new double[] {min, max} : null;
+                if (escritor != null) {
+                    escritor.close();
+                    escritor = null;
+                    releerDerrame(minMax, context);
+                } else {
+                    for (int i = 0; i < filas.size(); i++) {
+                        byte[] fila = filas.get(i);
+                        escribir(fila, fila.length, valores[i], minMax, context);
                     }
-                } catch (Exception e) {}
+                }
+            } finally {
+                filas.clear();
+                bytesEnMemoria = 0;
+                borrarDerrame();
+            }
+        }
+
+        private void guardar(Text fila, double valor) throws IOException {
+            if (escritor == null && bytesEnMemoria + fila.getLength() > umbralDerrame) {
+                derrame = File.createTempFile("normalizacion-", ".derrame");
+                escritor = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(derrame)));
+                for (int i = 0; i < filas.size(); i++) {
+                    escribirDerrame(filas.get(i), filas.get(i).length, valores[i]);
+                }
+                filas.clear();
+                bytesEnMemoria = 0;
+            }
+            if (escritor != null) {
+                escribirDerrame(fila.getBytes(), fila.getLength(), valor);
+                return;
             }
-            context.write(new Text(originalLine + ";"), NullWritable.get());
+            if (filas.size() == valores.length) valores = Arrays.copyOf(valores, valores.length * 2);
+            valores[filas.size()] = valor;
+            filas.add(Arrays.copyOf(fila.getBytes(), fila.getLength()));
+            bytesEnMemoria += fila.getLength();
+        }
+
+        private void escribirDerrame(byte[] fila, int largo, double valor) throws IOException {
+            escritor.writeInt(largo);
+            escritor.write(fila, 0, largo);
+            escritor.writeDouble(valor);
+        }
+
+        private void releerDerrame(double[] minMax, Context context) throws IOException, InterruptedException {
+            byte[] fila = new byte[1024];
+            try (DataInputStream lector = new DataInputStream(new BufferedInputStream(new FileInputStream(derrame)))) {
+                while (true) {
+                    int largo;
+                    try {
+                        largo = lector.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (largo > fila.length) fila = new byte[Math.max(largo, fila.length * 2)];
+                    lector.readFully(fila, 0, largo);
+                    escribir(fila, largo, lector.readDouble(), minMax, context);
+                }
+            }
+        }
+
+        private void borrarDerrame() throws IOException {
+            if (escritor != null) {
+                escritor.close();
+                escritor = null;
+            }
+            if (derrame != null) {
+                derrame.delete();
+                derrame = null;
+            }
+        }
+
+        // Fila + ';' + valor normalizado si la provincia tiene mínimo y máximo y la fila tiene colesterol
+        private void escribir(byte[] fila, int largo, double valor, double[] minMax, Context context) throws IOException, InterruptedException {
+            salida.set(fila, 0, largo);
+            salida.append(SEPARADOR, 0, 1);
+            if (minMax != null && valor > 0) {
+                double min = minMax[0];
+                double max = minMax[1];
+                double normalizedValue = 0.0;
+                if (max - min != 0) {
+                    normalizedValue = (valor - min) / (max - min);
+                }
+                formato.agregar(normalizedValue, salida);
+            }
+            context.write(salida, NullWritable.get());
         }
     }
 
@@ -122,32 +376,62 @@ public class NormalizacionMinMaxColesterol {
         Job job1 = Job.getInstance(conf, "Paso 1: Calcular Min-Max de Colesterol por Provincia");
         job1.setJarByClass(NormalizacionMinMaxColesterol.class);
         job1.setMapperClass(MinMaxMapper.class);
+        job1.setCombinerClass(MinMaxWritable.Combinador.class);
         job1.setReducerClass(MinMaxReducer.class);
         job1.setMapOutputKeyClass(Text.class);
-        job1.setMapOutputValueClass(DoubleWritable.class);
+        job1.setMapOutputValueClass(MinMaxWritable.class);
         job1.setOutputKeyClass(Text.class);
         job1.setOutputValueClass(Text.class);
-        FileInputFormat.addInputPath(job1, inputPath);
+        EntradaDatos.configurar(job1, inputPath, COLUMNAS_MIN_MAX);
+        // Solo el paso 1: el paso 2 escribe también las filas sin colesterol
+        FiltroZonas.exigir(job1, FiltroZonas.contiene(19, COLESTEROL.getTexto()), FiltroZonas.contiene(23, COLESTEROL.getTexto()));
         FileOutputFormat.setOutputPath(job1, minMaxPath);
 
-        if (!job1.waitForCompletion(true)) {
+        if (!EjecutorJobs.ejecutar(job1)) {
             return false;
         }
 
         Job job2 = Job.getInstance(conf, "Paso 2: Aplicar Normalización Min-Max");
         job2.setJarByClass(NormalizacionMinMaxColesterol.class);
-        job2.addCacheFile(new URI(minMaxPath.toString() + "/part-r-00000"));
+        FileSystem fs = FileSystem.get(conf);
+        for (FileStatus parte : fs.listStatus(minMaxPath, p -> p.getName().startsWith("part-"))) {
+            job2.addCacheFile(parte.getPath().toUri());
+        }
         job2.setMapperClass(NormalizationMapper.class);
         job2.setNumReduceTasks(0);
         job2.setOutputKeyClass(Text.class);
         job2.setOutputValueClass(NullWritable.class);
-        FileInputFormat.addInputPath(job2, inputPath);
+        EntradaDatos.configurar(job2, inputPath, COLUMNAS_NORMALIZACION);
         FileOutputFormat.setOutputPath(job2, finalOutputPath);
 
-        boolean success = job2.waitForCompletion(true);
+        boolean success = EjecutorJobs.ejecutar(job2);
 
-        FileSystem fs = FileSystem.get(conf);
         fs.delete(minMaxPath, true);
         return success;
     }
+
+    /**
+     * Variante en un solo job (join del lado del reduce): cada fila viaja al
+     * reducer de su provincia, que saca el mínimo y el máximo de sus filas y
+     * después las escribe normalizadas. La salida es la misma pero agrupada
+     * por provincia y repartida en tantos part-r-* como reductores.
+     */
+    public static boolean runJobJoinReduce(String inputPathStr, String outputPathStr,
+                                           int reductores, long umbralDerrame) throws Exception {
+        Configuration conf = new Configuration();
+        conf.setLong(CONF_UMBRAL_DERRAME, umbralDerrame);
+        Job job = Job.getInstance(conf, "Normalización Min-Max con Join en el Reduce");
+        job.setJarByClass(NormalizacionMinMaxColesterol.class);
+        job.setMapperClass(ProvinciaMapper.class);
+        job.setPartitionerClass(ProvinciaPartitioner.class);
+        job.setReducerClass(JoinReducer.class);
+        job.setNumReduceTasks(reductores);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(Text.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(NullWritable.class);
+        EntradaDatos.configurar(job, new Path(inputPathStr), COLUMNAS_NORMALIZACION);
+        FileOutputFormat.setOutputPath(job, new Path(outputPathStr));
+        return EjecutorJobs.ejecutar(job);
+    }
 }
@@ -1,22 +1,34 @@
 package hadoop.q7_modelos_clasificacion;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.RegistroCsv;
+import hadoop.comun.SumaConteoWritable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
-import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class ClasificacionRiesgoCardiovascular {
 
-    public static class RiesgoMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {8, 19, 20, 23, 24};
+
+    public static class RiesgoMapper extends Mapper<LongWritable, Text, Text, SumaConteoWritable> {
+        private static final RegistroCsv.Patron GLUCOSA = new RegistroCsv.Patron("GLUCOSA");
+        private static final RegistroCsv.Patron COLESTEROL = new RegistroCsv.Patron("COLESTEROL");
+        private final RegistroCsv registro = new RegistroCsv();
+        private final Text categoria = new Text();
+        private final SumaConteoWritable edadPaciente = new SumaConteoWritable();
 
         // Modelo de clasificación basado en reglas
         private String getRiskCategory(double glucosa, double colesterol) {
@@ -34,38 +46,41 @@ public class ClasificacionRiesgoCardiovascular {
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
-            String[] fields = value.toString().split(";", -1);
-            if (fields.length > 24) {
+            registro.set(value);
+            if (registro.campos() > 24) {
                 try {
                     double glucosa = -1, colesterol = -1;
-                    int edad = Integer.parseInt(fields[8]);
+                    int edad = registro.entero(8);
 
-                    if (fields[19].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[20]);
-                    else if (fields[19].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[20]);
+                    if (registro.contieneMayusculas(19, GLUCOSA)) glucosa = registro.decimal(20);
+                    else if (registro.contieneMayusculas(19, COLESTEROL)) colesterol = registro.decimal(20);
 
-                    if (fields[23].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[24]);
-                    else if (fields[23].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[24]);
+                    if (registro.contieneMayusculas(23, GLUCOSA)) glucosa = registro.decimal(24);
+                    else if (registro.contieneMayusculas(23, COLESTEROL)) colesterol = registro.decimal(24);
 
                     if (glucosa > 0 && colesterol > 0) {
-                        String categoria = getRiskCategory(glucosa, colesterol);
-                        context.write(new Text(categoria), new IntWritable(edad));
+                        categoria.set(getRiskCategory(glucosa, colesterol));
+                        edadPaciente.set(edad, 1);
+                        context.write(categoria, edadPaciente);
                     }
-                } catch (Exception e) {}
+                } catch (Exception e) {
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+                }
             }
         }
     }
 
-    public static class AvgReducer extends Reducer<Text, IntWritable, Text, DoubleWritable> {
+    public static class AvgReducer extends Reducer<Text, SumaConteoWritable, Text, DoubleWritable> {
+        private final SumaConteoWritable total = new SumaConteoWritable();
+
         @Override
-        public void reduce(Text key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
-            long sum = 0;
-            long count = 0;
-            for(IntWritable val : values) {
-                sum += val.get();
-                count++;
+        public void reduce(Text key, Iterable<SumaConteoWritable> values, Context context) throws IOException, InterruptedException {
+            total.set(0, 0);
+            for (SumaConteoWritable val : values) {
+                total.agregar(val);
             }
-            if (count > 0) {
-                context.write(key, new DoubleWritable((double)sum / count));
+            if (total.getConteo() > 0) {
+                context.write(key, new DoubleWritable(total.promedio()));
             }
         }
     }
@@ -75,13 +90,18 @@ public class ClasificacionRiesgoCardiovascular {
         Job job = Job.getInstance(conf, "Clasificación de Riesgo y Edad Promedio");
         job.setJarByClass(ClasificacionRiesgoCardiovascular.class);
         job.setMapperClass(RiesgoMapper.class);
+        job.setCombinerClass(SumaConteoWritable.Combinador.class);
         job.setReducerClass(AvgReducer.class);
         job.setMapOutputKeyClass(Text.class);
-        job.setMapOutputValueClass(IntWritable.class);
+        job.setMapOutputValueClass(SumaConteoWritable.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(DoubleWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
+        String glucosa = RiesgoMapper.GLUCOSA.getTexto();
+        String colesterol = RiesgoMapper.COLESTEROL.getTexto();
+        FiltroZonas.exigir(job, FiltroZonas.contiene(19, glucosa), FiltroZonas.contiene(23, glucosa));
+        FiltroZonas.exigir(job, FiltroZonas.contiene(19, colesterol), FiltroZonas.contiene(23, colesterol));
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return EjecutorJobs.ejecutar(job);
     }
 }
\ No newline at end of file
@@ -1,5 +1,10 @@
 package hadoop.q7_modelos_clasificacion;
 
+import hadoop.columnar.FiltroZonas;
+import hadoop.comun.ContadorFilas;
+import hadoop.comun.EjecutorJobs;
+import hadoop.comun.EntradaDatos;
+import hadoop.comun.RegistroCsv;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
@@ -8,14 +13,18 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import java.io.IOException;
 
 public class PrediccionReingresoSimple {
 
+    // Columnas del CSV que lee el mapper
+    public static final int[] COLUMNAS = {8, 19, 20, 23, 24};
+
     public static class PredictionMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
+        private static final RegistroCsv.Patron GLUCOSA = new RegistroCsv.Patron("GLUCOSA");
+        private final RegistroCsv registro = new RegistroCsv();
         private double weightAge, weightGlucose, threshold;
 
         @Override
@@ -29,14 +38,14 @@ public class PrediccionReingresoSimple {
         @Override
         public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
             if (key.get() == 0) return;
-            String[] fields = value.toString().split(";", -1);
-            if (fields.length > 24) {
+            registro.set(value);
+            if (registro.campos() > 24) {
                 try {
                     double glucosa = -1;
-                    int edad = Integer.parseInt(fields[8]);
+                    int edad = registro.entero(8);
 
-                    if (fields[19].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[20]);
-                    else if (fields[23].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[24]);
+                    if (registro.contieneMayusculas(19, GLUCOSA)) glucosa = registro.decimal(20);
+                    else if (registro.contieneMayusculas(23, GLUCOSA)) glucosa = registro.decimal(24);
 
                     if (glucosa > 0) {
                         double score = (weightAge * edad) + (weightGlucose * glucosa);
@@ -44,7 +53,9 @@ public class PrediccionReingresoSimple {
 
                         context.write(new Text(prediction), new IntWritable(1));
                     }
-                } catch (Exception e) {}
+                } catch (Exception e) {
+                    context.getCounter(ContadorFilas.MALFORMADAS).increment(1);
+                }
             }
         }
     }
@@ -60,11 +71,16 @@ public class PrediccionReingresoSimple {
         }
     }
 
-    public static boolean runJob(String inputPath, String outputPath) throws Exception {
-        Configuration conf = new Configuration();
+    // Pesos del modelo; también los usa la multiconsulta que ejecuta este mapper
+    public static void configurarModelo(Configuration conf) {
         conf.setDouble("model.weight.age", 0.03);
         conf.setDouble("model.weight.glucose", 0.015);
         conf.setDouble("model.threshold", 4.0);
+    }
+
+    public static boolean runJob(String inputPath, String outputPath) throws Exception {
+        Configuration conf = new Configuration();
+        configurarModelo(conf);
         Job job = Job.getInstance(conf, "Predicción de Reingreso Simple");
         job.setJarByClass(PrediccionReingresoSimple.class);
         job.setMapperClass(PredictionMapper.class);
@@ -72,8 +88,10 @@ public class PrediccionReingresoSimple {
         job.setReducerClass(CountReducer.class);
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(IntWritable.class);
-        FileInputFormat.addInputPath(job, new Path(inputPath));
+        EntradaDatos.configurar(job, new Path(inputPath), COLUMNAS);
+        String glucosa = PredictionMapper.GLUCOSA.getTexto();
+        FiltroZonas.exigir(job, FiltroZonas.contiene(19, glucosa), FiltroZonas.contiene(23, glucosa));
         FileOutputFormat.setOutputPath(job, new Path(outputPath));
-        return job.waitForCompletion(true);
+        return EjecutorJobs.ejecutar(job);
     }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import hadoop.comun.DatosSinteticos;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalAggregationServiceTest {
+
+    private static final String QUERY = "pacientes-depto-sexo";
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private Path state;
+    private IncrementalAggregationService service;
+    // Every row the test appends to the CSV, in order
+    private byte[] rows;
+    private int outputs;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path source = dir.resolve("source.csv");
+        DatosSinteticos.escribir(source, 3000, 0.02, 41);
+        rows = Files.readAllBytes(source);
+        csv = dir.resolve("datos.csv");
+        state = dir.resolve("state");
+        // a third delivery is compacted with the first two
+        service = new IncrementalAggregationService(csv.toString(), state.toString(), 2);
+    }
+
+    @Test
+    void appendedDeliveriesMatchTheFullJob() throws Exception {
+        int first = lineEnd(rows.length / 3);
+        int second = lineEnd(2 * rows.length / 3);
+        int partial = second + 40;
+
+        append(0, first);
+        assertMatchesFullJob();
+
+        // the half-written line is left out of the delivery and the full job answers
+        append(first, partial);
+        Path output = dir.resolve(nextOutput());
+        assertFalse(service.writeJobOutput(QUERY, output.toString()));
+        assertFalse(Files.exists(output));
+        assertEquals(Arrays.asList("0 " + first, first + " " + second), deliveryRanges());
+
+        append(partial, rows.length);
+        assertMatchesFullJob();
+        assertEquals(Arrays.asList("0 " + rows.length), deliveryRanges());
+    }
+
+    @Test
+    void shrunkCsvRebuildsTheState() throws Exception {
+        append(0, rows.length);
+        assertMatchesFullJob();
+
+        Files.delete(csv);
+        append(0, lineEnd(rows.length / 2));
+        assertMatchesFullJob();
+        assertEquals(Arrays.asList("0 " + Files.size(csv)), deliveryRanges());
+    }
+
+    @Test
+    void rewrittenTailRebuildsTheState() throws Exception {
+        int processed = lineEnd(rows.length / 2);
+        append(0, processed);
+        assertMatchesFullJob();
+
+        // the DEPARTAMENTO of the last processed row, overwritten in place so only the tail checksum can tell
+        int from = processed - 2;
+        while (rows[from - 1] != '\n') from--;
+        while (rows[from++] != ';') { }
+        byte[] content = Files.readAllBytes(csv);
+        int to = from;
+        while (content[to] != ';') content[to++] = 'X';
+        Files.write(csv, content);
+        append(processed, rows.length);
+
+        Path output = assertMatchesFullJob();
+        String rewritten = new String(content, from, to - from, StandardCharsets.UTF_8);
+        assertTrue(new String(Files.readAllBytes(output.resolve("part-r-00000")), StandardCharsets.UTF_8)
+                .contains(rewritten + ";"));
+        assertEquals(Arrays.asList("0 " + rows.length), deliveryRanges());
+    }
+
+    // Answers the query from the state and returns its output directory, after checking it against the full job
+    private Path assertMatchesFullJob() throws Exception {
+        Path output = dir.resolve(nextOutput());
+        assertTrue(service.writeJobOutput(QUERY, output.toString()));
+        Path full = dir.resolve(nextOutput());
+        assertTrue(PacientesPorDeptoSexo.runJob(csv.toString(), full.toString()));
+        assertEquals(new String(Files.readAllBytes(full.resolve("part-r-00000")), StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(output.resolve("part-r-00000")), StandardCharsets.UTF_8));
+        return output;
+    }
+
+    private String nextOutput() {
+        return "output-" + outputs++;
+    }
+
+    private void append(int from, int to) throws IOException {
+        Files.write(csv, Arrays.copyOfRange(rows, from, to), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // Position just after the first '\n' at or after from
+    private int lineEnd(int from) {
+        int i = from;
+        while (rows[i] != '\n') i++;
+        return i + 1;
+    }
+
+    // "from to" of each delivery in the manifest
+    private List<String> deliveryRanges() throws IOException {
+        List<String> lines = Files.readAllLines(state.resolve(QUERY).resolve("deliveries"), StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(" ");
+            lines.set(i, fields[0] + " " + fields[1]);
+        }
+        return lines;
+    }
+}
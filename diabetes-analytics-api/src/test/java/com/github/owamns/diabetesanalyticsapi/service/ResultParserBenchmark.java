@@ -0,0 +1,120 @@
+package com.github.owamns.diabetesanalyticsapi.service;
+
+import hadoop.comun.DatosSinteticos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parses LINES synthetic output lines of each job with its ResultParser row
+ * format, both from memory and through JobOutputReader reading them from a
+ * part file (what inline results and paging do). ops/s is lines per second;
+ * gc.alloc.rate.norm is bytes allocated per line.
+ *
+ * mvn -Pbenchmarks test -DskipTests -Djmh.includes=ResultParserBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ResultParserBenchmark.LINES)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultParserBenchmark {
+
+    static final int LINES = 10_000;
+
+    private static final String[] DEPARTMENTS = {"LIMA", "AREQUIPA", "CUSCO", "PIURA", "LA LIBERTAD"};
+
+    @Param({"edad-promedio", "pacientes-depto-sexo", "estadisticas-colesterol", "busqueda-subtexto",
+            "min-max-colesterol", "clasificacion-riesgo", "prediccion-reingreso", "normalizacion-minmax-colesterol"})
+    public String job;
+
+    private ResultParser.RowFormat format;
+    private String[] lines;
+    private Path outputDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        format = ResultParser.forJob(job);
+        Random r = new Random(42);
+        lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = line(r);
+        }
+        outputDir = Files.createTempDirectory("result-parser-benchmark");
+        try (BufferedWriter out = Files.newBufferedWriter(outputDir.resolve("part-r-00000"), StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // One output line in the format the job writes
+    private String line(Random r) {
+        String department = DEPARTMENTS[r.nextInt(DEPARTMENTS.length)];
+        switch (job) {
+            case "edad-promedio":
+                return "DIABETES MELLITUS TIPO " + r.nextInt(100) + "\t" + (40 + r.nextDouble() * 30);
+            case "pacientes-depto-sexo":
+                return department + ";" + (r.nextBoolean() ? "MASCULINO" : "FEMENINO") + "\t" + r.nextInt(100000);
+            case "estadisticas-colesterol":
+                return "Media " + r.nextInt(100) + "\t" + (150 + r.nextDouble() * 100);
+            case "busqueda-subtexto":
+                return DatosSinteticos.fila(r);
+            case "min-max-colesterol":
+                return department + "\tMin: " + (70 + r.nextDouble() * 50) + ", Max: " + (250 + r.nextDouble() * 70);
+            case "clasificacion-riesgo":
+                return "RIESGO " + r.nextInt(100) + "\t" + (40 + r.nextDouble() * 30);
+            case "prediccion-reingreso":
+                return (r.nextBoolean() ? "REINGRESO_PROBABLE" : "SIN_REINGRESO") + "\t" + r.nextInt(100000);
+            case "normalizacion-minmax-colesterol":
+                return DatosSinteticos.fila(r) + ";" + String.format("%.4f", r.nextDouble()).replace(',', '.');
+            default:
+                throw new IllegalArgumentException("Unknown job: " + job);
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (String line : lines) {
+            if (format.accepts(line)) {
+                bh.consume(format.parse(line));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object readOutput() throws IOException {
+        return JobOutputReader.read(outputDir, format, 0, LINES).getRows();
+    }
+}
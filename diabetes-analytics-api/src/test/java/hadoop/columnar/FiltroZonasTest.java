@@ -0,0 +1,163 @@
+package hadoop.columnar;
+
+import hadoop.comun.DatosSinteticos;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroZonasTest {
+
+    private static final String[] DEPARTAMENTOS = {"LIMA", "CUSCO", "PIURA", "AREQUIPA"};
+    private static final int FILAS = 400;
+    private static final int FILAS_POR_GRUPO = 10;
+
+    @TempDir
+    Path dir;
+
+    private final List<String> lineas = new ArrayList<>();
+
+    @BeforeEach
+    void escribirColumnar() throws Exception {
+        Configuration conf = new Configuration();
+        org.apache.hadoop.fs.Path archivo = new org.apache.hadoop.fs.Path(dir.toUri().toString(), "part-m-00000.dcol");
+        ColumnarOutputFormat.EscritorColumnar escritor = new ColumnarOutputFormat.EscritorColumnar(
+                FileSystem.getLocal(conf), archivo, DatosSinteticos.ENCABEZADO, FILAS_POR_GRUPO);
+        long desplazamiento = 0;
+        escritor.write(new LongWritable(desplazamiento), new Text(DatosSinteticos.ENCABEZADO));
+        desplazamiento += DatosSinteticos.ENCABEZADO.getBytes(StandardCharsets.UTF_8).length + 1;
+        Random r = new Random(3);
+        for (int i = 0; i < FILAS; i++) {
+            String linea = fila(r, i);
+            lineas.add(linea);
+            escritor.write(new LongWritable(desplazamiento), new Text(linea));
+            desplazamiento += linea.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        escritor.close(null);
+    }
+
+    // Sobre una fila de DatosSinteticos, las columnas resumidas llevan valores raros en pocas filas,
+    // repartidas en grupos distintos, para que el resto se pueda descartar
+    private static String fila(Random r, int i) {
+        String[] f = DatosSinteticos.campos(r);
+        boolean colesterol = i % 97 == 5;
+        boolean segundo = i % 113 == 20;
+        f[1] = i == 137 ? "ÁNCASH" : i == 288 ? "TACNA" : DEPARTAMENTOS[i % DEPARTAMENTOS.length];
+        f[12] = i % 61 == 0 ? "E780" : "E11";
+        f[13] = i % 61 == 0 ? "Hipercolesterolemia pura" : "DIABETES MELLITUS TIPO 2";
+        f[17] = String.format(Locale.ROOT, "2023-%02d-%02d", 1 + i / 40, 1 + i % 28);
+        f[19] = colesterol ? "colesterol total" : "HEMOGLOBINA GLICOSILADA";
+        f[20] = colesterol ? String.valueOf(180 + i) : String.format(Locale.ROOT, "%.1f", 5 + (i % 7) * 0.5);
+        f[23] = segundo ? "COLESTEROL LDL" : "";
+        f[24] = segundo ? "131.5" : "";
+        // La 350 sin las columnas finales
+        return String.join(";", i == 350 ? Arrays.copyOf(f, 21) : f);
+    }
+
+    @Test
+    void entreConservaLosGruposConValoresEnElRango() throws Exception {
+        verificar(f -> numero(f, 20) >= 300 && numero(f, 20) <= 500, FiltroZonas.entre(20, 300, 500));
+        verificar(f -> numero(f, 24) >= 100 && numero(f, 24) <= 140, FiltroZonas.entre(24, 100, 140));
+    }
+
+    @Test
+    void entreSobreLaFecha() throws Exception {
+        verificar(f -> f[17].compareTo("2023-04-10") >= 0 && f[17].compareTo("2023-05-20") <= 0,
+                FiltroZonas.entre(17, 20230410, 20230520));
+    }
+
+    @Test
+    void igualConservaLosGruposConElValor() throws Exception {
+        verificar(f -> f[1].equals("TACNA"), FiltroZonas.igual(1, "TACNA"));
+        verificar(f -> f[1].equals("ÁNCASH"), FiltroZonas.igual(1, "ÁNCASH"));
+        verificar(f -> f[12].equals("E780"), FiltroZonas.igual(12, "E780"));
+    }
+
+    @Test
+    void contieneConservaLosGruposConElTextoEnMayusculas() throws Exception {
+        verificar(f -> f[13].toUpperCase().contains("COLESTEROL"), FiltroZonas.contiene(13, "COLESTEROL"));
+        verificar(f -> f[19].toUpperCase().contains("COLESTEROL")
+                        || (f.length > 23 && f[23].toUpperCase().contains("COLESTEROL")),
+                FiltroZonas.contiene(19, "COLESTEROL"), FiltroZonas.contiene(23, "COLESTEROL"));
+    }
+
+    @Test
+    void variasClausulasSeCumplenTodas() throws Exception {
+        Job job = Job.getInstance(new Configuration());
+        FiltroZonas.exigir(job, FiltroZonas.contiene(19, "COLESTEROL"));
+        FiltroZonas.exigir(job, FiltroZonas.entre(20, 400, 1000));
+        verificar(job, f -> f[19].toUpperCase().contains("COLESTEROL") && numero(f, 20) >= 400);
+    }
+
+    private void verificar(Predicate<String[]> cumple, FiltroZonas.Condicion... alguna) throws Exception {
+        Job job = Job.getInstance(new Configuration());
+        FiltroZonas.exigir(job, alguna);
+        verificar(job, cumple);
+    }
+
+    // Toda fila que cumple tiene que llegar al mapper, y los grupos sin ninguna tienen que quedar fuera
+    private void verificar(Job job, Predicate<String[]> cumple) throws Exception {
+        FileInputFormat.addInputPath(job, new org.apache.hadoop.fs.Path(dir.toUri().toString()));
+        Set<String> leidas = leer(job);
+        Set<Integer> gruposConCoincidencia = new HashSet<>();
+        for (int i = 0; i < lineas.size(); i++) {
+            if (cumple.test(lineas.get(i).split(";"))) {
+                assertTrue(leidas.contains(lineas.get(i)), "fila " + i + " descartada");
+                gruposConCoincidencia.add(i / FILAS_POR_GRUPO);
+            }
+        }
+        assertFalse(gruposConCoincidencia.isEmpty(), "la condición no coincide con ninguna fila");
+        assertTrue(leidas.size() < lineas.size(), "no se descartó ningún grupo");
+        int gruposLeidos = 0;
+        for (int g = 0; g < FILAS / FILAS_POR_GRUPO; g++) {
+            if (leidas.contains(lineas.get(g * FILAS_POR_GRUPO))) gruposLeidos++;
+        }
+        assertTrue(gruposLeidos >= gruposConCoincidencia.size());
+        assertEquals(gruposLeidos * FILAS_POR_GRUPO, leidas.size());
+    }
+
+    private static Set<String> leer(Job job) throws Exception {
+        ColumnarInputFormat formato = new ColumnarInputFormat();
+        Set<String> leidas = new HashSet<>();
+        for (InputSplit split : formato.getSplits(job)) {
+            TaskAttemptContext contexto = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+            try (RecordReader<LongWritable, Text> lector = formato.createRecordReader(split, contexto)) {
+                lector.initialize(split, contexto);
+                while (lector.nextKeyValue()) {
+                    if (lector.getCurrentKey().get() > 0) leidas.add(lector.getCurrentValue().toString());
+                }
+            }
+        }
+        return leidas;
+    }
+
+    private static double numero(String[] campos, int columna) {
+        if (campos.length <= columna || campos[columna].isEmpty()) return Double.NaN;
+        return Double.parseDouble(campos[columna]);
+    }
+}
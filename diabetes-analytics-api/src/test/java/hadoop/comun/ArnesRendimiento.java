@@ -0,0 +1,250 @@
+package hadoop.comun;
+
+import hadoop.q1_consultas_multiples_campos.EdadPromedioPorDiagnostico;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import hadoop.q1_consultas_multiples_campos.ProcedimientosPorAreaServicio;
+import hadoop.q2_estadisticas_descriptivas.EstadisticasColesterol;
+import hadoop.q3_busqueda_subtexto.BusquedaSubtexto;
+import hadoop.q4_busqueda_rango_fechas.BusquedaPorFechas;
+import hadoop.q5_valores_extremos.MinMaxColesterolPorDepto;
+import hadoop.q6_jobs_encadenados.GlucosaSobrePromedioNacional;
+import hadoop.q6_jobs_encadenados.NormalizacionMinMaxColesterol;
+import hadoop.q7_modelos_clasificacion.ClasificacionRiesgoCardiovascular;
+import hadoop.q7_modelos_clasificacion.PrediccionReingresoSimple;
+
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Corre las once consultas de HadoopJobService, con los mismos runJob y
+ * parámetros que usa el servicio, sobre datasets de DatosSinteticos de tamaño
+ * creciente. Sin umbral de EjecutorJobs los jobs van al runner local de
+ * Hadoop. De cada consulta registra el tiempo total, el pico del heap y el
+ * tamaño de la salida, y agrega una línea por medición a resultados.csv del
+ * directorio de trabajo, con la versión, para comparar las curvas entre
+ * versiones. Los datasets generados quedan en el directorio y se reutilizan.
+ *
+ * Con una lista de códecs de Compresion como cuarto argumento corre además
+ * cada consulta con el dataset, la salida del map y la salida final
+ * comprimidos con cada códec, y agrega a compresion.csv los bytes leídos, los
+ * que materializa el map para el shuffle, los de salida y el tiempo, para
+ * comparar el ahorro de disco y de shuffle con el costo de CPU.
+ *
+ * mvn -Pthroughput test -DskipTests -Dthroughput.scales=1000000,10000000
+ * mvn -Pthroughput test -DskipTests -Dthroughput.scales=1000000 -Dthroughput.codecs=none,deflate,bzip2
+ */
+public final class ArnesRendimiento {
+
+    private static final String ESCALAS_DEFECTO = "1000000,10000000,100000000";
+    private static final double TASA_MALFORMADAS = 0.01;
+    private static final long SEMILLA = 42;
+
+    private interface Consulta {
+        boolean ejecutar(String entrada, String salida) throws Exception;
+    }
+
+    private static final Map<String, Consulta> CONSULTAS = new LinkedHashMap<>();
+
+    static {
+        CONSULTAS.put("edad-promedio", EdadPromedioPorDiagnostico::runJob);
+        CONSULTAS.put("pacientes-depto-sexo", PacientesPorDeptoSexo::runJob);
+        CONSULTAS.put("procedimientos-area-servicio", ProcedimientosPorAreaServicio::runJob);
+        CONSULTAS.put("estadisticas-colesterol", EstadisticasColesterol::runJob);
+        CONSULTAS.put("busqueda-subtexto", (entrada, salida) -> BusquedaSubtexto.runJob(entrada, salida, "hipertension"));
+        CONSULTAS.put("busqueda-fechas", (entrada, salida) ->
+                BusquedaPorFechas.runJob(entrada, salida, "2023-03-01", "2023-03-31"));
+        CONSULTAS.put("min-max-colesterol", MinMaxColesterolPorDepto::runJob);
+        CONSULTAS.put("glucosa-sobre-promedio", GlucosaSobrePromedioNacional::runJob);
+        CONSULTAS.put("clasificacion-riesgo", ClasificacionRiesgoCardiovascular::runJob);
+        CONSULTAS.put("prediccion-reingreso", PrediccionReingresoSimple::runJob);
+        CONSULTAS.put("normalizacion-minmax-colesterol", NormalizacionMinMaxColesterol::runJob);
+    }
+
+    private ArnesRendimiento() { }
+
+    public static void main(String[] args) throws Exception {
+        Path directorio = Paths.get(args.length > 0 ? args[0] : "target/rendimiento");
+        String[] escalas = (args.length > 1 ? args[1] : ESCALAS_DEFECTO).split(",");
+        String version = args.length > 2 ? args[2] : "dev";
+        String codecs = args.length > 3 ? args[3].trim() : "";
+        Files.createDirectories(directorio);
+        Path resultados = directorio.resolve("resultados.csv");
+        if (!Files.exists(resultados)) {
+            Files.write(resultados, "fecha;version;filas;consulta;exito;ms;filasPorSegundo;heapPicoMB;bytesSalida\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        String fecha = LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+        for (String escala : escalas) {
+            long filas = Long.parseLong(escala.trim());
+            Path datos = directorio.resolve("datos-" + filas + ".csv");
+            if (!Files.exists(datos)) {
+                long inicio = System.nanoTime();
+                Path temporal = directorio.resolve("datos-" + filas + ".csv.tmp");
+                DatosSinteticos.escribir(temporal, filas, TASA_MALFORMADAS, SEMILLA);
+                Files.move(temporal, datos);
+                System.out.printf("Generado %s en %d s%n", datos, (System.nanoTime() - inicio) / 1_000_000_000);
+            }
+            for (Map.Entry<String, Consulta> consulta : CONSULTAS.entrySet()) {
+                Path salida = directorio.resolve("salida").resolve(filas + "").resolve(consulta.getKey());
+                borrar(salida);
+                System.gc();
+                reiniciarPicos();
+                long inicio = System.nanoTime();
+                boolean exito = consulta.getValue().ejecutar(datos.toString(), salida.toString());
+                long ms = (System.nanoTime() - inicio) / 1_000_000;
+                long heapPico = picoHeap();
+                long bytesSalida = bytesPartes(salida);
+                borrar(salida);
+
+                String linea = String.format(Locale.ROOT, "%s;%s;%d;%s;%b;%d;%.0f;%.1f;%d", fecha, version, filas,
+                        consulta.getKey(), exito, ms, filas * 1000.0 / Math.max(1, ms),
+                        heapPico / (1024.0 * 1024.0), bytesSalida);
+                System.out.println(linea);
+                try (BufferedWriter escritor = Files.newBufferedWriter(resultados, StandardCharsets.UTF_8,
+                        StandardOpenOption.APPEND)) {
+                    escritor.write(linea);
+                    escritor.write('\n');
+                }
+            }
+            if (!codecs.isEmpty()) {
+                medirCodecs(directorio, datos, filas, codecs.split(","), fecha, version);
+            }
+        }
+        borrar(directorio.resolve("salida"));
+    }
+
+    private static void medirCodecs(Path directorio, Path datos, long filas, String[] codecs, String fecha,
+                                    String version) throws Exception {
+        Path resultados = directorio.resolve("compresion.csv");
+        if (!Files.exists(resultados)) {
+            Files.write(resultados, "fecha;version;filas;codec;consulta;exito;ms;bytesEntrada;bytesShuffle;bytesSalida\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        long[] bytesShuffle = new long[1];
+        EjecutorJobs.setObservador(new EjecutorJobs.Observador() {
+            @Override
+            public void alEnviar(Job job) { }
+
+            // Los jobs encadenados suman el shuffle de cada etapa
+            @Override
+            public void alTerminar(Job job, MetricasJob metricas) {
+                bytesShuffle[0] += metricas.valor(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES);
+            }
+        });
+        try {
+            for (String nombre : codecs) {
+                String codec = nombre.trim();
+                Compresion compresion;
+                try {
+                    compresion = new Compresion(codec, codec);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Se omite " + codec + ": " + e.getMessage());
+                    continue;
+                }
+                Path entrada = comprimido(datos, codec);
+                EjecutorJobs.setCompresion(compresion);
+                for (Map.Entry<String, Consulta> consulta : CONSULTAS.entrySet()) {
+                    Path salida = directorio.resolve("salida").resolve(filas + "-" + codec).resolve(consulta.getKey());
+                    borrar(salida);
+                    bytesShuffle[0] = 0;
+                    long inicio = System.nanoTime();
+                    boolean exito = consulta.getValue().ejecutar(entrada.toString(), salida.toString());
+                    long ms = (System.nanoTime() - inicio) / 1_000_000;
+                    long bytesSalida = bytesPartes(salida);
+                    borrar(salida);
+
+                    String linea = String.format(Locale.ROOT, "%s;%s;%d;%s;%s;%b;%d;%d;%d;%d", fecha, version, filas,
+                            codec, consulta.getKey(), exito, ms, Files.size(entrada), bytesShuffle[0], bytesSalida);
+                    System.out.println(linea);
+                    try (BufferedWriter escritor = Files.newBufferedWriter(resultados, StandardCharsets.UTF_8,
+                            StandardOpenOption.APPEND)) {
+                        escritor.write(linea);
+                        escritor.write('\n');
+                    }
+                }
+            }
+        } finally {
+            EjecutorJobs.limpiarCompresion();
+            EjecutorJobs.limpiarObservador();
+        }
+    }
+
+    // El dataset comprimido con el códec, junto al original; se genera una vez y se reutiliza
+    private static Path comprimido(Path datos, String codec) throws IOException {
+        CompressionCodec instancia = Compresion.crear(codec);
+        if (instancia == null) return datos;
+        Path destino = datos.resolveSibling(datos.getFileName() + instancia.getDefaultExtension());
+        if (Files.exists(destino)) return destino;
+        long inicio = System.nanoTime();
+        Path temporal = datos.resolveSibling(destino.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(datos);
+             OutputStream out = instancia.createOutputStream(Files.newOutputStream(temporal))) {
+            IOUtils.copyBytes(in, out, 1 << 16);
+        }
+        Files.move(temporal, destino);
+        System.out.printf("Generado %s en %d s%n", destino, (System.nanoTime() - inicio) / 1_000_000_000);
+        return destino;
+    }
+
+    private static void reiniciarPicos() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // Suma de los picos de cada pool del heap desde reiniciarPicos(): cota superior del pico real
+    private static long picoHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    private static long bytesPartes(Path salida) throws IOException {
+        if (!Files.isDirectory(salida)) return 0;
+        long total = 0;
+        try (Stream<Path> archivos = Files.walk(salida)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                if (archivo.getFileName().toString().startsWith("part-")) {
+                    total += Files.size(archivo);
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void borrar(Path ruta) throws IOException {
+        if (!Files.exists(ruta)) return;
+        try (Stream<Path> archivos = Files.walk(ruta)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package hadoop.comun;
+
+import hadoop.cubo.MaterializacionCubo;
+import hadoop.q1_consultas_multiples_campos.EdadPromedioPorDiagnostico;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import hadoop.q1_consultas_multiples_campos.ProcedimientosPorAreaServicio;
+import hadoop.q2_estadisticas_descriptivas.EstadisticasColesterol;
+import hadoop.q3_busqueda_subtexto.BusquedaSubtexto;
+import hadoop.q4_busqueda_rango_fechas.BusquedaPorFechas;
+import hadoop.q5_valores_extremos.MinMaxColesterolPorDepto;
+import hadoop.q6_jobs_encadenados.GlucosaSobrePromedioNacional;
+import hadoop.q6_jobs_encadenados.NormalizacionMinMaxColesterol;
+import hadoop.q7_modelos_clasificacion.ClasificacionRiesgoCardiovascular;
+import hadoop.q7_modelos_clasificacion.PrediccionReingresoSimple;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pasa FILAS filas sintéticas por el Mapper de cada consulta de hadoop.q*, y
+ * su salida agrupada por clave por el Reducer, con contextos de Contextos en
+ * lugar de una tarea de Hadoop. Cada invocación crea la instancia y corre su
+ * setup y cleanup, como una tarea. Las operaciones son filas del dataset:
+ * ops/s es filas por segundo y gc.alloc.rate.norm (del perfilador gc que
+ * activa el perfil benchmarks) son los bytes asignados por fila.
+ *
+ * mvn -Pbenchmarks test -DskipTests -Djmh.includes=ConsultasBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ConsultasBenchmark.FILAS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsultasBenchmark {
+
+    static final int FILAS = 10_000;
+
+    private static final TaskAttemptID TAREA = new TaskAttemptID();
+
+    /** Dataset, clases y configuración de una consulta, y la salida de su mapper agrupada por clave. */
+    @SuppressWarnings("rawtypes")
+    abstract static class Consulta {
+        Configuration conf;
+        Class<? extends Mapper> mapper;
+        Class<? extends Reducer> reducer;
+        Text[] filas;
+        long[] posiciones;
+        final List<WritableComparable> claves = new ArrayList<>();
+        final List<List<Writable>> valores = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        void preparar(String nombre) throws Exception {
+            conf = new Configuration();
+            switch (nombre) {
+                case "edad-promedio":
+                    usar(EdadPromedioPorDiagnostico.EdadMapper.class, EdadPromedioPorDiagnostico.AvgReducer.class);
+                    break;
+                case "pacientes-depto-sexo":
+                    usar(PacientesPorDeptoSexo.PacientesMapper.class, PacientesPorDeptoSexo.SumReducer.class);
+                    break;
+                case "procedimientos-area-servicio":
+                    usar(ProcedimientosPorAreaServicio.ProcedimientoMapper.class, ProcedimientosPorAreaServicio.SumReducer.class);
+                    break;
+                case "estadisticas-colesterol":
+                    usar(EstadisticasColesterol.ResumenMapper.class, EstadisticasColesterol.ResumenReducer.class);
+                    break;
+                case "estadisticas-colesterol-exacta":
+                    usar(EstadisticasColesterol.StatsMapper.class, EstadisticasColesterol.StatsReducer.class);
+                    break;
+                case "busqueda-subtexto":
+                    usar(BusquedaSubtexto.SearchMapper.class, null);
+                    conf.set("searchTerm", "glucosa");
+                    break;
+                case "busqueda-fechas":
+                    usar(BusquedaPorFechas.DateRangeMapper.class, null);
+                    conf.set("startDate", "2023-03-01");
+                    conf.set("endDate", "2023-06-30");
+                    break;
+                case "min-max-colesterol":
+                    usar(MinMaxColesterolPorDepto.MinMaxMapper.class, MinMaxColesterolPorDepto.MinMaxReducer.class);
+                    break;
+                case "glucosa-sobre-promedio":
+                    usar(GlucosaSobrePromedioNacional.DeptoAvgMapper.class, GlucosaSobrePromedioNacional.DeptoFilterReducer.class);
+                    break;
+                case "clasificacion-riesgo":
+                    usar(ClasificacionRiesgoCardiovascular.RiesgoMapper.class, ClasificacionRiesgoCardiovascular.AvgReducer.class);
+                    break;
+                case "prediccion-reingreso":
+                    usar(PrediccionReingresoSimple.PredictionMapper.class, PrediccionReingresoSimple.CountReducer.class);
+                    break;
+                case "normalizacion-join":
+                    usar(NormalizacionMinMaxColesterol.ProvinciaMapper.class, NormalizacionMinMaxColesterol.JoinReducer.class);
+                    break;
+                case "materializacion-cubo":
+                    usar(MaterializacionCubo.CeldaMapper.class, MaterializacionCubo.CeldaReducer.class);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Consulta desconocida: " + nombre);
+            }
+            filas = DatosSinteticos.filas(FILAS, 0.01, 42);
+            posiciones = new long[filas.length];
+            for (int i = 1; i < filas.length; i++) {
+                posiciones[i] = posiciones[i - 1] + filas[i - 1].getLength() + 1;
+            }
+            if (reducer != null) {
+                agrupar();
+            }
+        }
+
+        private void usar(Class<? extends Mapper> mapper, Class<? extends Reducer> reducer) {
+            this.mapper = mapper;
+            this.reducer = reducer;
+        }
+
+        // Copia la salida del mapper ordenada por clave, como la recibe el reducer después del sort
+        @SuppressWarnings("unchecked")
+        private void agrupar() throws Exception {
+            Map<WritableComparable, List<Writable>> grupos = new TreeMap<>();
+            mapear(new RecordWriter<WritableComparable, Writable>() {
+                @Override
+                public void write(WritableComparable clave, Writable valor) {
+                    List<Writable> lista = grupos.get(clave);
+                    if (lista == null) {
+                        lista = new ArrayList<>();
+                        grupos.put(WritableUtils.clone(clave, conf), lista);
+                    }
+                    lista.add(WritableUtils.clone(valor, conf));
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) {
+                }
+            });
+            for (Map.Entry<WritableComparable, List<Writable>> grupo : grupos.entrySet()) {
+                claves.add(grupo.getKey());
+                valores.add(grupo.getValue());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void mapear(RecordWriter escritor) throws Exception {
+            Mapper m = ReflectionUtils.newInstance(mapper, conf);
+            m.run(Contextos.mapContext(conf, TAREA, new LectorFilas(filas, posiciones), escritor,
+                    new MotorEnMemoria.Reporte(), null));
+        }
+
+        @SuppressWarnings("unchecked")
+        void reducir(RecordWriter escritor) throws Exception {
+            Reducer r = ReflectionUtils.newInstance(reducer, conf);
+            Reducer.Context ctx = Contextos.reduceContextSoloEscritura(conf, TAREA, escritor,
+                    new MotorEnMemoria.Reporte(), WritableComparator.get(Text.class), Text.class, Writable.class);
+            Contextos.setup(r, ctx);
+            for (int i = 0; i < claves.size(); i++) {
+                Contextos.reduce(r, claves.get(i), valores.get(i), ctx);
+            }
+            Contextos.cleanup(r, ctx);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConsultaMap extends Consulta {
+        @Param({"edad-promedio", "pacientes-depto-sexo", "procedimientos-area-servicio", "estadisticas-colesterol",
+                "estadisticas-colesterol-exacta", "busqueda-subtexto", "busqueda-fechas", "min-max-colesterol",
+                "glucosa-sobre-promedio", "clasificacion-riesgo", "prediccion-reingreso", "normalizacion-join",
+                "materializacion-cubo"})
+        public String consulta;
+
+        @Setup
+        public void preparar() throws Exception {
+            preparar(consulta);
+        }
+    }
+
+    // Las búsquedas no tienen reduce
+    @State(Scope.Thread)
+    public static class ConsultaReduce extends Consulta {
+        @Param({"edad-promedio", "pacientes-depto-sexo", "procedimientos-area-servicio", "estadisticas-colesterol",
+                "estadisticas-colesterol-exacta", "min-max-colesterol", "glucosa-sobre-promedio",
+                "clasificacion-riesgo", "prediccion-reingreso", "normalizacion-join", "materializacion-cubo"})
+        public String consulta;
+
+        @Setup
+        public void preparar() throws Exception {
+            preparar(consulta);
+        }
+    }
+
+    @Benchmark
+    public void map(ConsultaMap consulta, Blackhole bh) throws Exception {
+        consulta.mapear(new Sumidero(bh));
+    }
+
+    @Benchmark
+    public void reduce(ConsultaReduce consulta, Blackhole bh) throws Exception {
+        consulta.reducir(new Sumidero(bh));
+    }
+
+    // Lee las filas del dataset con su posición en bytes como clave, como LineRecordReader
+    private static final class LectorFilas extends RecordReader<LongWritable, Text> {
+        private final Text[] filas;
+        private final long[] posiciones;
+        private final LongWritable clave = new LongWritable();
+        private int actual = -1;
+
+        LectorFilas(Text[] filas, long[] posiciones) {
+            this.filas = filas;
+            this.posiciones = posiciones;
+        }
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) {
+        }
+
+        @Override
+        public boolean nextKeyValue() {
+            if (actual + 1 >= filas.length) return false;
+            actual++;
+            clave.set(posiciones[actual]);
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return clave;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return filas[actual];
+        }
+
+        @Override
+        public float getProgress() {
+            return filas.length == 0 ? 1 : (actual + 1) / (float) filas.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Entrega al Blackhole lo que escribe la tarea
+    private static final class Sumidero extends RecordWriter<Object, Object> {
+        private final Blackhole bh;
+
+        Sumidero(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void write(Object key, Object value) {
+            bh.consume(key);
+            bh.consume(value);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+        }
+    }
+}
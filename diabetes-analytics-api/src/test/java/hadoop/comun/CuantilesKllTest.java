@@ -0,0 +1,105 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CuantilesKllTest {
+
+    private static final int K = 200;
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99};
+
+    @Test
+    void pocosValoresDanCuantilesExactos() {
+        CuantilesKll sketch = new CuantilesKll(K);
+        double[] valores = muestra(new Random(7), 100);
+        for (double v : valores) sketch.agregar(v);
+        Arrays.sort(valores);
+        for (double q : CUANTILES) {
+            assertEquals(valores[(int) Math.ceil(q * valores.length) - 1], sketch.cuantil(q));
+        }
+    }
+
+    @Test
+    void errorDeRangoBajoElLimite() {
+        double[] valores = muestra(new Random(42), 200_000);
+        CuantilesKll sketch = new CuantilesKll(K);
+        for (double v : valores) sketch.agregar(v);
+        assertEquals(valores.length, sketch.getCantidad());
+        verificarError(sketch, valores, K);
+    }
+
+    @Test
+    void combinarPartesRespetaElLimite() {
+        double[] valores = muestra(new Random(43), 200_000);
+        CuantilesKll total = new CuantilesKll(K);
+        for (int parte = 0; parte < 8; parte++) {
+            CuantilesKll sketch = new CuantilesKll(K);
+            for (int i = parte; i < valores.length; i += 8) sketch.agregar(valores[i]);
+            total.combinar(sketch);
+        }
+        assertEquals(valores.length, total.getCantidad());
+        verificarError(total, valores, K);
+    }
+
+    @Test
+    void idaYVueltaSigueIgualQueElOriginal() throws IOException {
+        Random aleatorio = new Random(44);
+        CuantilesKll original = new CuantilesKll(K);
+        for (double v : muestra(aleatorio, 50_000)) original.agregar(v);
+        CuantilesKll copia = idaYVuelta(original);
+        for (double q : CUANTILES) {
+            assertEquals(original.cuantil(q), copia.cuantil(q));
+        }
+        // Las compactaciones siguientes tienen que elegir lo mismo en los dos
+        for (double v : muestra(aleatorio, 50_000)) {
+            original.agregar(v);
+            copia.agregar(v);
+        }
+        assertEquals(original.getCantidad(), copia.getCantidad());
+        for (double q : CUANTILES) {
+            assertEquals(original.cuantil(q), copia.cuantil(q));
+        }
+    }
+
+    static double[] muestra(Random aleatorio, int cantidad) {
+        double[] valores = new double[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            valores[i] = 190 + 40 * aleatorio.nextGaussian();
+        }
+        return valores;
+    }
+
+    // El rango del valor devuelto no se aleja del rango más cercano exacto más de 1.7/k del total
+    static void verificarError(CuantilesKll sketch, double[] valores, int k) {
+        double[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        long n = ordenados.length;
+        for (double q : CUANTILES) {
+            double estimado = sketch.cuantil(q);
+            int posicion = Arrays.binarySearch(ordenados, estimado);
+            assertTrue(posicion >= 0, "el sketch devolvió un valor que no está en la muestra");
+            long rango = posicion + 1;
+            long exacto = (long) Math.ceil(q * n);
+            double error = Math.abs(rango - exacto) / (double) n;
+            assertTrue(error <= 1.7 / k, "cuantil " + q + ": error de rango " + error);
+        }
+    }
+
+    static CuantilesKll idaYVuelta(CuantilesKll sketch) throws IOException {
+        DataOutputBuffer salida = new DataOutputBuffer();
+        sketch.write(salida);
+        DataInputBuffer entrada = new DataInputBuffer();
+        entrada.reset(salida.getData(), salida.getLength());
+        CuantilesKll copia = new CuantilesKll(2);
+        copia.readFields(entrada);
+        return copia;
+    }
+}
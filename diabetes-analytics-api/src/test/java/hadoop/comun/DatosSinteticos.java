@@ -0,0 +1,250 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Filas sintéticas con las 26 columnas de datos.csv (ResultParser.RECORD_HEADERS),
+ * para los benchmarks y ArnesRendimiento. Los departamentos siguen el peso de
+ * su población (Lima concentra un tercio de las filas), los diagnósticos y
+ * procedimientos los de un programa de diabetes (mayoría de diabetes tipo 2,
+ * dosajes de glucosa y colesterol, hemoglobina glicosilada) y los resultados
+ * una distribución plausible para cada procedimiento.
+ *
+ * Una fracción de filas se genera malformada, con los errores de una carga
+ * manual: edad o resultado no numéricos, decimal con coma o fila cortada.
+ *
+ * java ... hadoop.comun.DatosSinteticos salida.csv filas [tasaMalformadas] [semilla]
+ */
+public final class DatosSinteticos {
+
+    public static final String ENCABEZADO = "FECHA_CORTE;DEPARTAMENTO;PROVINCIA;DISTRITO;UBIGEO;RED;IPRESS;"
+            + "ID_PACIENTE;EDAD_PACIENTE;SEXO_PACIENTE;EDAD_MEDICO;ID_MEDICO;COD_DIAG;DIAGNOSTICO;"
+            + "AREA_HOSPITALARIA;SERVICIO_HOSPITALARIO;ACTIVIDAD_HOSPITALARIA;FECHA_MUESTRA;FEC_RESULTADO_1;"
+            + "PROCEDIMIENTO_1;RESULTADO_1;UNIDADES_1;FEC_RESULTADO_2;PROCEDIMIENTO_2;RESULTADO_2;UNIDADES_2";
+
+    // Departamento, su provincia capital y el código de ubigeo del departamento
+    private static final String[][] DEPARTAMENTOS = {
+            {"LIMA", "LIMA", "15"}, {"PIURA", "PIURA", "20"}, {"LA LIBERTAD", "TRUJILLO", "13"},
+            {"AREQUIPA", "AREQUIPA", "04"}, {"CAJAMARCA", "CAJAMARCA", "06"}, {"JUNÍN", "HUANCAYO", "12"},
+            {"CUSCO", "CUSCO", "08"}, {"LAMBAYEQUE", "CHICLAYO", "14"}, {"PUNO", "PUNO", "21"},
+            {"ÁNCASH", "HUARAZ", "02"}, {"CALLAO", "CALLAO", "07"}, {"LORETO", "MAYNAS", "16"},
+            {"ICA", "ICA", "11"}, {"SAN MARTÍN", "MOYOBAMBA", "22"}, {"HUÁNUCO", "HUÁNUCO", "10"},
+            {"AYACUCHO", "HUAMANGA", "05"}, {"UCAYALI", "CORONEL PORTILLO", "25"}, {"APURÍMAC", "ABANCAY", "03"},
+            {"AMAZONAS", "CHACHAPOYAS", "01"}, {"HUANCAVELICA", "HUANCAVELICA", "09"}, {"TACNA", "TACNA", "23"},
+            {"PASCO", "PASCO", "19"}, {"TUMBES", "TUMBES", "24"}, {"MOQUEGUA", "MARISCAL NIETO", "18"},
+            {"MADRE DE DIOS", "TAMBOPATA", "17"}
+    };
+    private static final double[] PESOS_DEPARTAMENTOS = {
+            32.5, 6.3, 6.1, 4.8, 4.6, 4.2, 4.1, 4.0, 3.9, 3.6, 3.4, 3.0, 2.9, 2.9, 2.6, 2.1, 1.7, 1.3, 1.3,
+            1.1, 1.1, 0.8, 0.8, 0.6, 0.5
+    };
+
+    private static final String[][] DIAGNOSTICOS = {
+            {"E11.9", "DIABETES MELLITUS NO INSULINODEPENDIENTE, SIN MENCION DE COMPLICACION"},
+            {"E11.6", "DIABETES MELLITUS NO INSULINODEPENDIENTE, CON OTRAS COMPLICACIONES ESPECIFICADAS"},
+            {"E11.5", "DIABETES MELLITUS NO INSULINODEPENDIENTE, CON COMPLICACIONES CIRCULATORIAS PERIFERICAS"},
+            {"E10.9", "DIABETES MELLITUS INSULINODEPENDIENTE, SIN MENCION DE COMPLICACION"},
+            {"E78.0", "HIPERCOLESTEROLEMIA PURA"},
+            {"E78.5", "HIPERLIPIDEMIA NO ESPECIFICADA"},
+            {"I10", "HIPERTENSION ESENCIAL (PRIMARIA)"},
+            {"R73.0", "ANORMALIDADES EN LA PRUEBA DE TOLERANCIA A LA GLUCOSA"}
+    };
+    private static final double[] PESOS_DIAGNOSTICOS = {38, 8, 4, 7, 14, 6, 18, 5};
+
+    private static final String GLUCOSA = "DOSAJE DE GLUCOSA EN SANGRE, CUANTITATIVO (EXCEPTO CINTA REACTIVA)";
+    private static final String COLESTEROL = "COLESTEROL TOTAL";
+    private static final String HEMOGLOBINA = "HEMOGLOBINA GLICOSILADA";
+    private static final String[] PROCEDIMIENTOS = {
+            GLUCOSA, COLESTEROL, HEMOGLOBINA, "COLESTEROL HDL", "COLESTEROL LDL", "TRIGLICERIDOS"
+    };
+    private static final double[] PESOS_PROCEDIMIENTOS = {38, 24, 20, 7, 6, 5};
+
+    private static final String[] AREAS = {"CONSULTA EXTERNA", "EMERGENCIA", "HOSPITALIZACION"};
+    private static final double[] PESOS_AREAS = {76, 15, 9};
+    private static final String[] SERVICIOS = {"ENDOCRINOLOGIA", "MEDICINA INTERNA", "MEDICINA GENERAL", "CARDIOLOGIA"};
+    private static final double[] PESOS_SERVICIOS = {40, 30, 20, 10};
+
+    private static final String[] DIAS = new String[365];
+
+    static {
+        int[] diasMes = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+        int d = 0;
+        for (int mes = 0; mes < 12; mes++) {
+            for (int dia = 1; dia <= diasMes[mes]; dia++) {
+                DIAS[d++] = String.format("2023-%02d-%02d", mes + 1, dia);
+            }
+        }
+    }
+
+    private DatosSinteticos() { }
+
+    public static String fila(Random r) {
+        return String.join(";", campos(r));
+    }
+
+    // Los 26 campos de una fila, para las pruebas que fijan algunos a mano
+    public static String[] campos(Random r) {
+        String[] f = new String[26];
+        String[] depto = DEPARTAMENTOS[elegir(r, PESOS_DEPARTAMENTOS)];
+        String[] diagnostico = DIAGNOSTICOS[elegir(r, PESOS_DIAGNOSTICOS)];
+        f[0] = "20240101";
+        f[1] = depto[0];
+        // Dos de cada tres atenciones en la provincia capital
+        f[2] = r.nextInt(3) < 2 ? depto[1] : "PROVINCIA " + (1 + r.nextInt(8));
+        f[3] = "DISTRITO " + (1 + r.nextInt(30));
+        f[4] = depto[2] + String.format("%04d", 101 + r.nextInt(1200));
+        f[5] = "RED " + depto[1];
+        f[6] = "IPRESS " + depto[2] + r.nextInt(60);
+        f[7] = String.format("P%08d", r.nextInt(20_000_000));
+        f[8] = Integer.toString(acotar((int) Math.round(58 + r.nextGaussian() * 13), 18, 95));
+        f[9] = r.nextInt(100) < 56 ? "FEMENINO" : "MASCULINO";
+        f[10] = Integer.toString(27 + r.nextInt(40));
+        f[11] = String.format("M%05d", r.nextInt(20000));
+        f[12] = diagnostico[0];
+        f[13] = diagnostico[1];
+        f[14] = AREAS[elegir(r, PESOS_AREAS)];
+        f[15] = SERVICIOS[elegir(r, PESOS_SERVICIOS)];
+        f[16] = "ATENCION";
+        f[17] = DIAS[r.nextInt(DIAS.length)];
+        f[18] = f[17];
+        String primero = PROCEDIMIENTOS[elegir(r, PESOS_PROCEDIMIENTOS)];
+        f[19] = primero;
+        f[20] = resultado(r, primero);
+        f[21] = unidades(primero);
+        // Cuatro de cada diez atenciones tienen un solo procedimiento
+        if (r.nextInt(10) < 4) {
+            f[22] = f[23] = f[24] = f[25] = "";
+        } else {
+            String segundo = PROCEDIMIENTOS[elegir(r, PESOS_PROCEDIMIENTOS)];
+            f[22] = f[17];
+            f[23] = segundo;
+            f[24] = resultado(r, segundo);
+            f[25] = unidades(segundo);
+        }
+        return f;
+    }
+
+    // La fila con uno de los errores de carga que los mappers deben descartar o tolerar
+    public static String malformada(Random r) {
+        String[] f = fila(r).split(";", -1);
+        switch (r.nextInt(4)) {
+            case 0:
+                f[8] = "S/D";
+                break;
+            case 1:
+                f[20] = "PENDIENTE";
+                break;
+            case 2:
+                f[20] = f[20].replace('.', ',');
+                break;
+            default:
+                String[] cortada = new String[8 + r.nextInt(12)];
+                System.arraycopy(f, 0, cortada, 0, cortada.length);
+                return String.join(";", cortada);
+        }
+        return String.join(";", f);
+    }
+
+    // Encabezado más cantidad filas, una fracción de ellas malformadas
+    public static Text[] filas(int cantidad, double malformadas, long semilla) {
+        Random r = new Random(semilla);
+        Text[] filas = new Text[cantidad + 1];
+        filas[0] = new Text(ENCABEZADO);
+        for (int i = 1; i <= cantidad; i++) {
+            filas[i] = new Text(r.nextDouble() < malformadas ? malformada(r) : fila(r));
+        }
+        return filas;
+    }
+
+    // Escribe el CSV con encabezado; con la misma semilla el archivo es siempre el mismo
+    public static void escribir(Path archivo, long filas, double malformadas, long semilla) throws IOException {
+        Random r = new Random(semilla);
+        try (BufferedWriter salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            salida.write(ENCABEZADO);
+            salida.write('\n');
+            for (long i = 0; i < filas; i++) {
+                salida.write(r.nextDouble() < malformadas ? malformada(r) : fila(r));
+                salida.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Como escribir, sin filas malformadas y con una fracción de ellas en el
+     * mismo departamento y sexo: una clave caliente para las consultas que
+     * agrupan por esas columnas.
+     */
+    public static void escribirConClaveCaliente(Path archivo, long filas, double fraccion, long semilla,
+                                                String departamento, String sexo) throws IOException {
+        Random r = new Random(semilla);
+        try (BufferedWriter salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            salida.write(ENCABEZADO);
+            salida.write('\n');
+            for (long i = 0; i < filas; i++) {
+                String[] f = campos(r);
+                if (r.nextDouble() < fraccion) {
+                    f[1] = departamento;
+                    f[9] = sexo;
+                }
+                salida.write(String.join(";", f));
+                salida.write('\n');
+            }
+        }
+    }
+
+    private static String resultado(Random r, String procedimiento) {
+        double valor;
+        if (procedimiento.equals(GLUCOSA)) {
+            valor = Math.exp(4.8 + r.nextGaussian() * 0.3);
+        } else if (procedimiento.equals(HEMOGLOBINA)) {
+            valor = 7.4 + r.nextGaussian() * 1.6;
+        } else if (procedimiento.equals(COLESTEROL)) {
+            valor = 205 + r.nextGaussian() * 42;
+        } else if (procedimiento.equals("COLESTEROL HDL")) {
+            valor = 47 + r.nextGaussian() * 12;
+        } else if (procedimiento.equals("COLESTEROL LDL")) {
+            valor = 125 + r.nextGaussian() * 35;
+        } else {
+            valor = Math.exp(5.0 + r.nextGaussian() * 0.4);
+        }
+        return String.format(Locale.ROOT, "%.2f", Math.max(1, valor));
+    }
+
+    private static String unidades(String procedimiento) {
+        return procedimiento.equals(HEMOGLOBINA) ? "%" : "mg/dl";
+    }
+
+    private static int elegir(Random r, double[] pesos) {
+        double total = 0;
+        for (double p : pesos) total += p;
+        double x = r.nextDouble() * total;
+        for (int i = 0; i < pesos.length - 1; i++) {
+            x -= pesos[i];
+            if (x < 0) return i;
+        }
+        return pesos.length - 1;
+    }
+
+    private static int acotar(int valor, int minimo, int maximo) {
+        return Math.max(minimo, Math.min(maximo, valor));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: DatosSinteticos salida.csv filas [tasaMalformadas] [semilla]");
+            System.exit(1);
+        }
+        double malformadas = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+        long semilla = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        escribir(Paths.get(args[0]), Long.parseLong(args[1]), malformadas, semilla);
+    }
+}
@@ -0,0 +1,49 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FormatoDecimalTest {
+
+    @Test
+    void igualQueStringFormatEnTodosLosDecimales() {
+        Random aleatorio = new Random(42);
+        for (int decimales = 1; decimales <= 9; decimales++) {
+            FormatoDecimal formato = new FormatoDecimal(decimales);
+            for (int i = 0; i < 20000; i++) {
+                // Magnitudes de 1e-3 a 1e12 para cruzar el límite de la vía rápida con cada escala
+                double valor = aleatorio.nextDouble() * Math.pow(10, aleatorio.nextInt(16) - 3);
+                comparar(formato, decimales, valor);
+            }
+        }
+    }
+
+    @Test
+    void igualQueStringFormatEnBordesYEmpates() {
+        double[] valores = {0, 0.5, 1.5, 2.5, 0.125, 0.00005, 0.99995, 1e9, 214748.3647, 9007199254.740993,
+                -0.0, -1.25, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY};
+        for (int decimales = 1; decimales <= 9; decimales++) {
+            FormatoDecimal formato = new FormatoDecimal(decimales);
+            for (double valor : valores) {
+                comparar(formato, decimales, valor);
+            }
+        }
+    }
+
+    @Test
+    void decimalesFueraDeRango() {
+        assertThrows(IllegalArgumentException.class, () -> new FormatoDecimal(0));
+        assertThrows(IllegalArgumentException.class, () -> new FormatoDecimal(10));
+    }
+
+    private static void comparar(FormatoDecimal formato, int decimales, double valor) {
+        Text destino = new Text("x\t");
+        formato.agregar(valor, destino);
+        assertEquals("x\t" + String.format("%." + decimales + "f", valor), destino.toString(), "valor " + valor);
+    }
+}
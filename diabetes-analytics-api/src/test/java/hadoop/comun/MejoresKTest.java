@@ -0,0 +1,113 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MejoresKTest {
+
+    private static final String GRUPOS = "LIMA\t150\nCUSCO\t20\nPIURA\t75\nAREQUIPA\t75\nTACNA\t5\n";
+
+    @Test
+    void seleccionGuardaLosKMayores() {
+        MejoresK.Seleccion seleccion = new MejoresK.Seleccion(2, false);
+        ofrecer(seleccion, GRUPOS);
+        assertEquals(Arrays.asList("LIMA", "AREQUIPA"), claves(seleccion));
+    }
+
+    @Test
+    void seleccionDesempataPorClave() {
+        MejoresK.Seleccion seleccion = new MejoresK.Seleccion(0, false);
+        ofrecer(seleccion, GRUPOS);
+        assertEquals(Arrays.asList("LIMA", "AREQUIPA", "PIURA", "CUSCO", "TACNA"), claves(seleccion));
+    }
+
+    @Test
+    void seleccionPorClave() {
+        MejoresK.Seleccion seleccion = new MejoresK.Seleccion(3, true);
+        ofrecer(seleccion, GRUPOS);
+        assertEquals(Arrays.asList("AREQUIPA", "CUSCO", "LIMA"), claves(seleccion));
+    }
+
+    @Test
+    void seleccionConValoresNoNumericosLosDejaAlFinal() {
+        MejoresK.Seleccion seleccion = new MejoresK.Seleccion(0, false);
+        ofrecer(seleccion, "B\tn/a\nA\t1\nC\t-3\n");
+        assertEquals(Arrays.asList("A", "C", "B"), claves(seleccion));
+    }
+
+    @Test
+    void filtrarEscribeLosKMayoresOrdenados() throws IOException {
+        assertEquals("LIMA\t150\nAREQUIPA\t75\nPIURA\t75\n", filtrar(new MejoresK(3, false), GRUPOS));
+    }
+
+    @Test
+    void filtrarPorClave() throws IOException {
+        assertEquals("AREQUIPA\t75\nCUSCO\t20\n", filtrar(new MejoresK(2, true), GRUPOS));
+    }
+
+    @Test
+    void filtrarSinSaltoDeLineaFinal() throws IOException {
+        assertEquals("A\t2\nB\t1\n", filtrar(new MejoresK(0, false), "B\t1\nA\t2"));
+    }
+
+    @Test
+    void filtrarConservaLasLineasSinTabulador() throws IOException {
+        assertEquals("A\t2\nSIN-VALOR\n", filtrar(new MejoresK(0, false), "SIN-VALOR\nA\t2\n"));
+        assertEquals("A\t2\nSIN-VALOR\n", filtrar(new MejoresK(0, true), "SIN-VALOR\nA\t2\n"));
+    }
+
+    @Test
+    void mezclarUneLasPartesOrdenadasHastaK() throws IOException {
+        MejoresK.Seleccion seleccion = new MejoresK.Seleccion(4, false);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        seleccion.mezclar(Arrays.asList(
+                parte("LIMA\t150\nCUSCO\t20\n"),
+                parte(""),
+                parte("AREQUIPA\t75\nPIURA\t75\nTACNA\t5\n")), salida);
+        assertEquals("LIMA\t150\nAREQUIPA\t75\nPIURA\t75\nCUSCO\t20\n",
+                new String(salida.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void mezclarPorClaveSinK() throws IOException {
+        MejoresK.Seleccion seleccion = new MejoresK.Seleccion(0, true);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        seleccion.mezclar(Arrays.asList(parte("B\t1\nD\t1\n"), parte("A\t1\nC\t1\nE\t1\n")), salida);
+        assertEquals("A\t1\nB\t1\nC\t1\nD\t1\nE\t1\n", new String(salida.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static void ofrecer(MejoresK.Seleccion seleccion, String lineas) {
+        for (String linea : lineas.split("\n")) {
+            int tab = linea.indexOf('\t');
+            seleccion.ofrecer(new Text(linea.substring(0, tab)), new Text(linea.substring(tab + 1)));
+        }
+    }
+
+    private static List<String> claves(MejoresK.Seleccion seleccion) {
+        return seleccion.ordenados().stream().map(g -> g.clave.toString()).collect(Collectors.toList());
+    }
+
+    private static String filtrar(MejoresK mejores, String entrada) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (OutputStream out = mejores.filtrar(salida)) {
+            out.write(entrada.getBytes(StandardCharsets.UTF_8));
+        }
+        return new String(salida.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static BufferedReader parte(String contenido) {
+        return new BufferedReader(new StringReader(contenido));
+    }
+}
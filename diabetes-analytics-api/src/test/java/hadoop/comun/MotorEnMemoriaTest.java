@@ -0,0 +1,99 @@
+package hadoop.comun;
+
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MotorEnMemoriaTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<MetricasJob> terminados = new ArrayList<>();
+
+    @AfterEach
+    void restaurar() {
+        EjecutorJobs.setUmbralEnMemoria(0);
+        EjecutorJobs.setLimiteSalidaMapEnMemoria(0);
+        EjecutorJobs.limpiarReductores();
+        EjecutorJobs.limpiarObservador();
+    }
+
+    @Test
+    void mismaSalidaQueHadoop() throws Exception {
+        Path csv = escribirCsv();
+        Map<String, String> hadoop = correr(csv, "hadoop", 0, 0);
+        assertFalse(terminados.get(0).isEnMemoria());
+        Map<String, String> memoria = correr(csv, "memoria", Long.MAX_VALUE, 0);
+        assertTrue(terminados.get(1).isEnMemoria());
+        assertFalse(hadoop.isEmpty());
+        assertEquals(hadoop, memoria);
+    }
+
+    @Test
+    void mismaSalidaQueHadoopConVariosReducers() throws Exception {
+        Path csv = escribirCsv();
+        EjecutorJobs.setReductores(3);
+        Map<String, String> hadoop = correr(csv, "hadoop", 0, 0);
+        Map<String, String> memoria = correr(csv, "memoria", Long.MAX_VALUE, 0);
+        assertEquals(3, hadoop.size());
+        assertEquals(hadoop, memoria);
+    }
+
+    @Test
+    void salidaDelMapSobreElLimiteCorreEnHadoop() throws Exception {
+        Path csv = escribirCsv();
+        Map<String, String> hadoop = correr(csv, "hadoop", 0, 0);
+        Map<String, String> limitado = correr(csv, "limitado", Long.MAX_VALUE, 64);
+        assertFalse(terminados.get(1).isEnMemoria());
+        assertEquals(hadoop, limitado);
+    }
+
+    // Contenido de cada part-* de la salida, por nombre
+    private Map<String, String> correr(Path csv, String nombre, long umbral, long limite) throws Exception {
+        EjecutorJobs.setUmbralEnMemoria(umbral);
+        EjecutorJobs.setLimiteSalidaMapEnMemoria(limite);
+        EjecutorJobs.setObservador(new EjecutorJobs.Observador() {
+            @Override
+            public void alEnviar(Job job) {
+            }
+
+            @Override
+            public void alTerminar(Job job, MetricasJob metricas) {
+                terminados.add(metricas);
+            }
+        });
+        Path salida = dir.resolve(nombre);
+        assertTrue(PacientesPorDeptoSexo.runJob(csv.toString(), salida.toString()));
+        Map<String, String> partes = new TreeMap<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(salida, "part-*")) {
+            for (Path archivo : archivos) {
+                partes.put(archivo.getFileName().toString(), new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8));
+            }
+        }
+        return partes;
+    }
+
+    // Con filas malformadas y LIMA con un tercio de las filas, como el dataset real
+    private Path escribirCsv() throws IOException {
+        Path csv = dir.resolve("datos.csv");
+        DatosSinteticos.escribir(csv, 400, 0.02, 11);
+        return csv;
+    }
+}
@@ -0,0 +1,151 @@
+package hadoop.comun;
+
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReduccionConSalTest {
+
+    private static final int REDUCTORES = 3;
+    private static final Text CALIENTE = new Text("LIMA;FEMENINO");
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void restaurar() {
+        EjecutorJobs.limpiarReductores();
+        EjecutorJobs.limpiarObservador();
+    }
+
+    @Test
+    void clavesCalientesEncuentraLaClaveSesgada() throws Exception {
+        Map<Text, Integer> calientes = ReduccionConSal.clavesCalientes(trabajo(escribirCsv(), "muestra"));
+        assertEquals(1, calientes.size());
+        assertEquals(REDUCTORES, calientes.get(CALIENTE));
+    }
+
+    @Test
+    void dosPasosConSalDaLoMismoQueElJobSinSal() throws Exception {
+        Path csv = escribirCsv();
+        Job simple = trabajo(csv, "simple");
+        assertTrue(EjecutorJobs.ejecutar(simple));
+
+        Job salado = trabajo(csv, "salado");
+        Map<Text, Integer> calientes = ReduccionConSal.clavesCalientes(salado);
+        assertFalse(calientes.isEmpty());
+        assertTrue(ReduccionConSal.ejecutar(salado, calientes));
+
+        Map<String, String> esperado = partes(dir.resolve("simple"));
+        assertEquals(REDUCTORES, esperado.size());
+        String caliente = CALIENTE + "\t" + filasCalientes(csv) + "\n";
+        assertTrue(esperado.values().stream().anyMatch(p -> p.contains(caliente)));
+        assertEquals(esperado, partes(dir.resolve("salado")));
+        assertFalse(Files.exists(dir.resolve("salado_parciales")));
+    }
+
+    @Test
+    void ejecutorSalaLosJobsConVariosReducers() throws Exception {
+        Path csv = escribirCsv();
+        Job simple = trabajo(csv, "simple");
+        assertTrue(EjecutorJobs.ejecutar(simple));
+
+        List<String> enviados = new ArrayList<>();
+        EjecutorJobs.setObservador(new EjecutorJobs.Observador() {
+            @Override
+            public void alEnviar(Job job) {
+                enviados.add(job.getJobName());
+            }
+
+            @Override
+            public void alTerminar(Job job, MetricasJob metricas) {
+            }
+        });
+        EjecutorJobs.setReductores(REDUCTORES);
+        assertTrue(PacientesPorDeptoSexo.runJob(csv.toString(), dir.resolve("ejecutor").toString()));
+        assertEquals(2, enviados.size());
+        assertTrue(enviados.get(0).endsWith("(parciales)"));
+        assertEquals(partes(dir.resolve("simple")), partes(dir.resolve("ejecutor")));
+    }
+
+    @Test
+    void particionadorRepartePorRuedaLaClaveSalada() {
+        Configuration conf = new Configuration(false);
+        conf.setStrings(ReduccionConSal.CONF_CLAVES, Base64.getEncoder().encodeToString(CALIENTE.copyBytes()) + "=2");
+        ReduccionConSal.ParticionadorConSal particionador = new ReduccionConSal.ParticionadorConSal();
+        particionador.setConf(conf);
+        Set<Integer> particiones = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            particiones.add(particionador.getPartition(CALIENTE, null, 5));
+        }
+        int base = (CALIENTE.hashCode() & Integer.MAX_VALUE) % 5;
+        Set<Integer> esperadas = new HashSet<>();
+        esperadas.add(base);
+        esperadas.add((base + 1) % 5);
+        assertEquals(esperadas, particiones);
+        Text fria = new Text("CUSCO;MASCULINO");
+        assertEquals((fria.hashCode() & Integer.MAX_VALUE) % 5, particionador.getPartition(fria, null, 5));
+    }
+
+    // El job de PacientesPorDeptoSexo con los reducers fijados, como lo arma EjecutorJobs antes de salarlo
+    private Job trabajo(Path csv, String nombre) throws Exception {
+        Job job = Job.getInstance(new Configuration(), "Pacientes por Departamento y Sexo");
+        job.setMapperClass(PacientesPorDeptoSexo.PacientesMapper.class);
+        job.setCombinerClass(PacientesPorDeptoSexo.SumReducer.class);
+        job.setReducerClass(PacientesPorDeptoSexo.SumReducer.class);
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(IntWritable.class);
+        job.setNumReduceTasks(REDUCTORES);
+        EntradaDatos.configurar(job, new org.apache.hadoop.fs.Path(csv.toString()), PacientesPorDeptoSexo.COLUMNAS);
+        FileOutputFormat.setOutputPath(job, new org.apache.hadoop.fs.Path(dir.resolve(nombre).toString()));
+        assertTrue(ReduccionConSal.aplicable(job));
+        return job;
+    }
+
+    private static Map<String, String> partes(Path salida) throws IOException {
+        Map<String, String> partes = new TreeMap<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(salida, "part-*")) {
+            for (Path archivo : archivos) {
+                partes.put(archivo.getFileName().toString(), new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8));
+            }
+        }
+        return partes;
+    }
+
+    // 600 filas, siete de cada diez en LIMA;FEMENINO y el resto repartido como en el dataset real
+    private Path escribirCsv() throws IOException {
+        Path csv = dir.resolve("datos.csv");
+        DatosSinteticos.escribirConClaveCaliente(csv, 600, 0.7, 5, "LIMA", "FEMENINO");
+        return csv;
+    }
+
+    private static long filasCalientes(Path csv) throws IOException {
+        try (Stream<String> lineas = Files.lines(csv, StandardCharsets.UTF_8)) {
+            return lineas.map(l -> l.split(";")).filter(f -> f[1].equals("LIMA") && f[9].equals("FEMENINO")).count();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package hadoop.comun;
+
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el split(";") que usaban los mappers con RegistroCsv sobre filas
+ * sintéticas de 26 columnas. Cada par reproduce el acceso de un mapper real:
+ * clave compuesta (PacientesPorDeptoSexo) y búsqueda + parseo de resultados
+ * (ClasificacionRiesgoCardiovascular).
+ *
+ * mvn -Pbenchmarks test -Djmh.includes=RegistroCsvBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistroCsvBenchmark {
+
+    private static final byte[] SEPARADOR = {';'};
+    private static final RegistroCsv.Patron GLUCOSA = new RegistroCsv.Patron("GLUCOSA");
+    private static final RegistroCsv.Patron COLESTEROL = new RegistroCsv.Patron("COLESTEROL");
+
+    private final Text[] filas = new Text[1024];
+    private final RegistroCsv registro = new RegistroCsv();
+    private final Text clave = new Text();
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        Random r = new Random(42);
+        for (int i = 0; i < filas.length; i++) {
+            filas[i] = new Text(DatosSinteticos.fila(r));
+        }
+        // Ambas versiones deben dar lo mismo antes de comparar tiempos
+        for (Text fila : filas) {
+            if (!claveConSplit(fila).equals(claveConRegistro(fila).toString())
+                    || Double.compare(riesgoConSplit(fila), riesgoConRegistro(fila)) != 0) {
+                throw new IllegalStateException("Resultados distintos para: " + fila);
+            }
+        }
+    }
+
+    private Text siguienteFila() {
+        Text fila = filas[siguiente];
+        siguiente = (siguiente + 1) & (filas.length - 1);
+        return fila;
+    }
+
+    // ---- Clave compuesta DEPARTAMENTO;SEXO ----
+
+    private static String claveConSplit(Text fila) {
+        String[] fields = fila.toString().split(";");
+        return fields.length > 9 ? fields[1].trim() + ";" + fields[9].trim() : "";
+    }
+
+    private Text claveConRegistro(Text fila) {
+        registro.set(fila);
+        clave.clear();
+        if (registro.camposSinVaciosFinales() > 9) {
+            registro.copiarRecortado(1, clave);
+            clave.append(SEPARADOR, 0, 1);
+            registro.agregarRecortado(9, clave);
+        }
+        return clave;
+    }
+
+    @Benchmark
+    public void claveSplit(Blackhole bh) {
+        Text fila = siguienteFila();
+        clave.set(claveConSplit(fila));
+        bh.consume(clave);
+    }
+
+    @Benchmark
+    public void claveRegistro(Blackhole bh) {
+        bh.consume(claveConRegistro(siguienteFila()));
+    }
+
+    // ---- Búsqueda de procedimiento y parseo de edad y resultados ----
+
+    private static double riesgoConSplit(Text fila) {
+        String[] fields = fila.toString().split(";", -1);
+        if (fields.length <= 24) return -1;
+        try {
+            double glucosa = -1, colesterol = -1;
+            int edad = Integer.parseInt(fields[8]);
+            if (fields[19].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[20]);
+            else if (fields[19].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[20]);
+            if (fields[23].toUpperCase().contains("GLUCOSA")) glucosa = Double.parseDouble(fields[24]);
+            else if (fields[23].toUpperCase().contains("COLESTEROL")) colesterol = Double.parseDouble(fields[24]);
+            return edad + glucosa + colesterol;
+        } catch (NumberFormatException e) {
+            return -2;
+        }
+    }
+
+    private double riesgoConRegistro(Text fila) {
+        registro.set(fila);
+        if (registro.campos() <= 24) return -1;
+        try {
+            double glucosa = -1, colesterol = -1;
+            int edad = registro.entero(8);
+            if (registro.contieneMayusculas(19, GLUCOSA)) glucosa = registro.decimal(20);
+            else if (registro.contieneMayusculas(19, COLESTEROL)) colesterol = registro.decimal(20);
+            if (registro.contieneMayusculas(23, GLUCOSA)) glucosa = registro.decimal(24);
+            else if (registro.contieneMayusculas(23, COLESTEROL)) colesterol = registro.decimal(24);
+            return edad + glucosa + colesterol;
+        } catch (NumberFormatException e) {
+            return -2;
+        }
+    }
+
+    @Benchmark
+    public double riesgoSplit() {
+        return riesgoConSplit(siguienteFila());
+    }
+
+    @Benchmark
+    public double riesgoRegistro() {
+        return riesgoConRegistro(siguienteFila());
+    }
+}
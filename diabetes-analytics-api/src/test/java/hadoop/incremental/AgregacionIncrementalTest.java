@@ -0,0 +1,96 @@
+package hadoop.incremental;
+
+import hadoop.comun.DatosSinteticos;
+import hadoop.q1_consultas_multiples_campos.EdadPromedioPorDiagnostico;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import hadoop.q1_consultas_multiples_campos.ProcedimientosPorAreaServicio;
+import hadoop.q5_valores_extremos.MinMaxColesterolPorDepto;
+import hadoop.q7_modelos_clasificacion.ClasificacionRiesgoCardiovascular;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgregacionIncrementalTest {
+
+    private interface JobCompleto {
+        boolean ejecutar(String entrada, String salida) throws Exception;
+    }
+
+    private static final Map<String, JobCompleto> JOBS = new LinkedHashMap<>();
+
+    static {
+        JOBS.put("pacientes-depto-sexo", PacientesPorDeptoSexo::runJob);
+        JOBS.put("edad-promedio", EdadPromedioPorDiagnostico::runJob);
+        JOBS.put("min-max-colesterol", MinMaxColesterolPorDepto::runJob);
+        JOBS.put("procedimientos-area-servicio", ProcedimientosPorAreaServicio::runJob);
+        JOBS.put("clasificacion-riesgo", ClasificacionRiesgoCardiovascular::runJob);
+    }
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    // Límites de tres entregas, cada uno justo después de un fin de línea
+    private long[] cortes;
+
+    @BeforeEach
+    void escribirCsv() throws IOException {
+        csv = dir.resolve("datos.csv");
+        DatosSinteticos.escribir(csv, 3000, 0.02, 31);
+        byte[] datos = Files.readAllBytes(csv);
+        cortes = new long[] {0, finDeLinea(datos, datos.length / 3), finDeLinea(datos, 2 * datos.length / 3), datos.length};
+    }
+
+    @Test
+    void todasLasConsultasEstanCubiertas() {
+        assertEquals(AgregacionIncremental.consultas(), JOBS.keySet());
+    }
+
+    @Test
+    void estadosPorEntregaDanLaSalidaDelJobCompleto() throws Exception {
+        for (Map.Entry<String, JobCompleto> consulta : JOBS.entrySet()) {
+            String nombre = consulta.getKey();
+            Path base = dir.resolve(nombre);
+            assertTrue(consulta.getValue().ejecutar(csv.toString(), base.resolve("completo").toString()));
+            String esperado = parte(base.resolve("completo"));
+
+            String[] estados = new String[cortes.length - 1];
+            for (int i = 0; i < estados.length; i++) {
+                estados[i] = base.resolve("entrega-" + i).toString();
+                assertTrue(AgregacionIncremental.runJobEntrega(nombre, csv.toString(), cortes[i], cortes[i + 1], estados[i]));
+            }
+            assertTrue(AgregacionIncremental.runJobCombinar(nombre, Arrays.asList(estados), base.resolve("entregas").toString()));
+            assertEquals(esperado, parte(base.resolve("entregas")), nombre + " por entregas");
+
+            // Las dos primeras entregas compactadas en un estado, más la última sin compactar
+            String compactado = base.resolve("compactado").toString();
+            assertTrue(AgregacionIncremental.runJobCompactar(nombre, Arrays.asList(estados[0], estados[1]), compactado));
+            List<String> conCompactado = Arrays.asList(compactado, estados[2]);
+            assertTrue(AgregacionIncremental.runJobCombinar(nombre, conCompactado, base.resolve("tras-compactar").toString()));
+            assertEquals(esperado, parte(base.resolve("tras-compactar")), nombre + " tras compactar");
+        }
+    }
+
+    // Posición siguiente al primer '\n' desde desde
+    private static long finDeLinea(byte[] datos, int desde) {
+        int i = desde;
+        while (datos[i] != '\n') i++;
+        return i + 1;
+    }
+
+    private static String parte(Path salida) throws IOException {
+        return new String(Files.readAllBytes(salida.resolve("part-r-00000")), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package hadoop.multiconsulta;
+
+import hadoop.comun.DatosSinteticos;
+import hadoop.comun.EjecutorJobs;
+import hadoop.q1_consultas_multiples_campos.PacientesPorDeptoSexo;
+import hadoop.q2_estadisticas_descriptivas.EstadisticasColesterol;
+import hadoop.q3_busqueda_subtexto.BusquedaSubtexto;
+import hadoop.q6_jobs_encadenados.GlucosaSobrePromedioNacional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EscaneoMultiConsultaTest {
+
+    private static final String TERMINO = "hipercolesterolemia";
+    // Una búsqueda (solo map), una de reducer único, una cuyo mapper emite en cleanup y una agregación común
+    private static final List<String> CONSULTAS = Arrays.asList(
+            EscaneoMultiConsulta.Consulta.BUSQUEDA_SUBTEXTO.getNombre(),
+            EscaneoMultiConsulta.Consulta.GLUCOSA_SOBRE_PROMEDIO.getNombre(),
+            EscaneoMultiConsulta.Consulta.ESTADISTICAS_COLESTEROL.getNombre(),
+            EscaneoMultiConsulta.Consulta.PACIENTES_DEPTO_SEXO.getNombre());
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void restaurar() {
+        EjecutorJobs.limpiarReductores();
+    }
+
+    @Test
+    void cadaConsultaCoincideConSuJob() throws Exception {
+        comparar();
+    }
+
+    // Con varios reducers, glucosa-sobre-promedio debe seguir llegando entera a una partición
+    @Test
+    void cadaConsultaCoincideConSuJobConVariosReducers() throws Exception {
+        EjecutorJobs.setReductores(3);
+        comparar();
+    }
+
+    private void comparar() throws Exception {
+        Path csv = dir.resolve("datos.csv");
+        DatosSinteticos.escribir(csv, 2000, 0.02, 23);
+        Path multi = dir.resolve("multi");
+        assertTrue(EscaneoMultiConsulta.runJob(csv.toString(), multi.toString(), CONSULTAS, TERMINO, null, null));
+
+        Path sola = dir.resolve("solas");
+        assertTrue(BusquedaSubtexto.runJob(csv.toString(), sola.resolve(CONSULTAS.get(0)).toString(), TERMINO));
+        assertTrue(GlucosaSobrePromedioNacional.runJob(csv.toString(), sola.resolve(CONSULTAS.get(1)).toString()));
+        assertTrue(EstadisticasColesterol.runJob(csv.toString(), sola.resolve(CONSULTAS.get(2)).toString()));
+        assertTrue(PacientesPorDeptoSexo.runJob(csv.toString(), sola.resolve(CONSULTAS.get(3)).toString()));
+
+        for (String consulta : CONSULTAS) {
+            List<String> esperado = lineasOrdenadas(sola.resolve(consulta));
+            assertFalse(esperado.isEmpty(), consulta + " no produjo filas");
+            assertEquals(esperado, lineasOrdenadas(multi.resolve(consulta)), consulta);
+        }
+    }
+
+    private static List<String> lineasOrdenadas(Path salida) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(salida, "part-*")) {
+            for (Path archivo : archivos) {
+                lineas.addAll(Files.readAllLines(archivo, StandardCharsets.UTF_8));
+            }
+        }
+        Collections.sort(lineas);
+        return lineas;
+    }
+}
@@ -0,0 +1,94 @@
+package hadoop.q2_estadisticas_descriptivas;
+
+import hadoop.comun.CuantilesKll;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EstadisticasColesterolTest {
+
+    private static final int K = 200;
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99};
+
+    @Test
+    void combinerEIdaYVueltaRespetanElLimite() throws Exception {
+        Random aleatorio = new Random(42);
+        double[] valores = new double[120_000];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = 190 + 40 * aleatorio.nextGaussian();
+        }
+        // Un resumen por tarea map, serializado como viaja al combiner
+        List<EstadisticasColesterol.Resumen> parciales = new ArrayList<>();
+        for (int parte = 0; parte < 6; parte++) {
+            EstadisticasColesterol.Resumen resumen = new EstadisticasColesterol.Resumen(K);
+            for (int i = parte; i < valores.length; i += 6) resumen.agregar(valores[i]);
+            parciales.add(idaYVuelta(resumen));
+        }
+
+        EstadisticasColesterol.Resumen combinado = combinar(parciales);
+        verificarError(combinado.getCuantiles(), valores);
+        EstadisticasColesterol.Resumen copia = idaYVuelta(combinado);
+        verificarError(copia.getCuantiles(), valores);
+        for (double q : CUANTILES) {
+            assertEquals(combinado.getCuantiles().cuantil(q), copia.getCuantiles().cuantil(q));
+        }
+    }
+
+    // Pasa los resúmenes por ResumenCombiner y devuelve lo que emite, ya serializado
+    @SuppressWarnings("unchecked")
+    private static EstadisticasColesterol.Resumen combinar(List<EstadisticasColesterol.Resumen> parciales)
+            throws Exception {
+        EstadisticasColesterol.ResumenCombiner combiner = new EstadisticasColesterol.ResumenCombiner();
+        EstadisticasColesterol.ResumenCombiner.Context contexto = mock(EstadisticasColesterol.ResumenCombiner.Context.class);
+        Configuration conf = new Configuration(false);
+        conf.setInt(EstadisticasColesterol.CONF_PRECISION, K);
+        when(contexto.getConfiguration()).thenReturn(conf);
+        List<EstadisticasColesterol.Resumen> emitidos = new ArrayList<>();
+        doAnswer(invocacion -> {
+            emitidos.add(idaYVuelta(invocacion.getArgument(1)));
+            return null;
+        }).when(contexto).write(any(Text.class), any(EstadisticasColesterol.Resumen.class));
+        combiner.setup(contexto);
+        combiner.reduce(new Text("COLESTEROL_RESULTADO_1"), parciales, contexto);
+        assertEquals(1, emitidos.size());
+        return emitidos.get(0);
+    }
+
+    private static void verificarError(CuantilesKll sketch, double[] valores) {
+        double[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        long n = ordenados.length;
+        assertEquals(n, sketch.getCantidad());
+        for (double q : CUANTILES) {
+            int posicion = Arrays.binarySearch(ordenados, sketch.cuantil(q));
+            assertTrue(posicion >= 0, "el sketch devolvió un valor que no está en la muestra");
+            double error = Math.abs(posicion + 1 - (long) Math.ceil(q * n)) / (double) n;
+            assertTrue(error <= 1.7 / K, "cuantil " + q + ": error de rango " + error);
+        }
+    }
+
+    private static EstadisticasColesterol.Resumen idaYVuelta(EstadisticasColesterol.Resumen resumen) throws IOException {
+        DataOutputBuffer salida = new DataOutputBuffer();
+        resumen.write(salida);
+        DataInputBuffer entrada = new DataInputBuffer();
+        entrada.reset(salida.getData(), salida.getLength());
+        EstadisticasColesterol.Resumen copia = new EstadisticasColesterol.Resumen();
+        copia.readFields(entrada);
+        return copia;
+    }
+}
@@ -0,0 +1,119 @@
+package hadoop.q6_jobs_encadenados;
+
+import hadoop.comun.DatosSinteticos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NormalizacionMinMaxColesterolTest {
+
+    private static final String ENCABEZADO_SALIDA = DatosSinteticos.ENCABEZADO + ";COLESTEROL_NORMALIZADO";
+    private static final int REDUCTORES = 3;
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private List<String> esperado;
+
+    @BeforeEach
+    void prepararReferencia() throws Exception {
+        csv = dir.resolve("datos.csv");
+        escribirCsv(csv);
+        assertTrue(NormalizacionMinMaxColesterol.runJob(csv.toString(), dir.resolve("dos-jobs").toString()));
+        esperado = lineasOrdenadas(dir.resolve("dos-jobs"), "part-m-*");
+        assertEquals(ENCABEZADO_SALIDA, primeraLinea(dir.resolve("dos-jobs").resolve("part-m-00000")));
+    }
+
+    @Test
+    void joinEnElReduceDaLasMismasFilas() throws Exception {
+        comparar("join", NormalizacionMinMaxColesterol.UMBRAL_DERRAME_DEFECTO);
+    }
+
+    // Con un umbral de un byte cada provincia pasa sus filas al archivo temporal desde la primera
+    @Test
+    void joinConDerrameDaLasMismasFilas() throws Exception {
+        comparar("derrame", 1);
+    }
+
+    // Las provincias con menos de 4 KB de filas quedan en memoria y el resto se derrama a mitad de camino
+    @Test
+    void joinConDerrameParcialDaLasMismasFilas() throws Exception {
+        comparar("parcial", 4096);
+    }
+
+    private void comparar(String nombre, long umbralDerrame) throws Exception {
+        List<Path> derramesPrevios = derrames();
+        Path salida = dir.resolve(nombre);
+        assertTrue(NormalizacionMinMaxColesterol.runJobJoinReduce(csv.toString(), salida.toString(),
+                REDUCTORES, umbralDerrame));
+        assertEquals(esperado, lineasOrdenadas(salida, "part-r-*"));
+        // El encabezado va primero en el primer reducer
+        assertEquals(ENCABEZADO_SALIDA, primeraLinea(salida.resolve("part-r-00000")));
+        assertEquals(derramesPrevios, derrames());
+    }
+
+    // Filas de DatosSinteticos más algunas sin provincia: vacía, en blanco o cortada antes de la columna
+    private static void escribirCsv(Path archivo) throws IOException {
+        Random r = new Random(17);
+        try (BufferedWriter salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            salida.write(DatosSinteticos.ENCABEZADO);
+            salida.write('\n');
+            for (int i = 0; i < 1500; i++) {
+                String fila;
+                if (i % 100 == 7) {
+                    String[] f = DatosSinteticos.campos(r);
+                    f[2] = i % 200 == 7 ? "" : "  ";
+                    fila = String.join(";", f);
+                } else if (i == 500) {
+                    fila = "20240101;LIMA";
+                } else {
+                    fila = r.nextInt(50) == 0 ? DatosSinteticos.malformada(r) : DatosSinteticos.fila(r);
+                }
+                salida.write(fila);
+                salida.write('\n');
+            }
+        }
+    }
+
+    private static List<String> lineasOrdenadas(Path salida, String partes) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(salida, partes)) {
+            for (Path archivo : archivos) {
+                lineas.addAll(Files.readAllLines(archivo, StandardCharsets.UTF_8));
+            }
+        }
+        Collections.sort(lineas);
+        return lineas;
+    }
+
+    private static String primeraLinea(Path archivo) throws IOException {
+        return Files.readAllLines(archivo, StandardCharsets.UTF_8).get(0);
+    }
+
+    // Archivos temporales del reducer que siguen en java.io.tmpdir
+    private static List<Path> derrames() throws IOException {
+        List<Path> derrames = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(
+                Paths.get(System.getProperty("java.io.tmpdir")), "normalizacion-*.derrame")) {
+            archivos.forEach(derrames::add);
+        }
+        Collections.sort(derrames);
+        return derrames;
+    }
+}
@@ -28,6 +28,17 @@ function App() {
   const [loading, setLoading] = useState(false)
   const [error, setError] = useState('')
 
+  const waitForRun = async (runId: string) => {
+    for (;;) {
+      const response = await fetch(`${API_BASE}/runs/${runId}`)
+      if (!response.ok) throw new Error(`Error HTTP ${response.status}`)
+      const run = await response.json()
+      if (run.status === 'SUCCEEDED' || run.status === 'FAILED') return run.response
+      setMessage(`Procesando... map ${Math.round(run.mapProgress * 100)}%, reduce ${Math.round(run.reduceProgress * 100)}%`)
+      await new Promise(resolve => setTimeout(resolve, 1000))
+    }
+  }
+
   const handleSubmit = async (endpoint: Endpoint, values: Record<string, string>) => {
     setLoading(true)
     setError('')
@@ -41,12 +52,15 @@ function App() {
         body: JSON.stringify(values),
       })
       if (!response.ok) throw new Error(`Error HTTP ${response.status}`)
-      const data = await response.json()
+      // The backend queues the job and returns its runId; poll until it finishes
+      const accepted = await response.json()
+      const runId = accepted.runId as string
+      const data = await waitForRun(runId)
       setResults(Array.isArray(data.results) ? data.results : [])
       setMessage(data.message || '')
-      // Use runId returned by backend for download URL
-      const runId = data.runId as string
-      setDownloadUrl(`${API_BASE}/download/${runId}/${endpoint.path}`)
+      // Link to the finished run; the backend resolves it to the directory holding the result,
+      // which for a cached response is the one written by an earlier run
+      if (data.success) setDownloadUrl(`${API_BASE}/download/${data.runId}/${endpoint.path}`)
     } catch (err: unknown) {
       const msg = err instanceof Error ? err.message : String(err)
       setError(msg)